@@ -1,8 +1,24 @@
 package org.abutimartin.bpcpayment;
 
+import org.abutimartin.bpcpayment.cache.BindingCache;
 import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.http.GatewaySites;
 import org.abutimartin.bpcpayment.http.HttpClient;
+import org.abutimartin.bpcpayment.http.PoolStats;
+import org.abutimartin.bpcpayment.http.WarmUpResult;
+import org.abutimartin.bpcpayment.journal.IdempotencyJournal;
+import org.abutimartin.bpcpayment.journal.JournaledPayments;
+import org.abutimartin.bpcpayment.outbox.GatewayOutbox;
+import org.abutimartin.bpcpayment.resilience.AdaptiveConcurrencyLimiter;
+import org.abutimartin.bpcpayment.resilience.BulkheadRegistry;
+import org.abutimartin.bpcpayment.resilience.CircuitBreakerRegistry;
+import org.abutimartin.bpcpayment.resilience.RateLimiter;
 import org.abutimartin.bpcpayment.service.*;
+import org.abutimartin.bpcpayment.watch.OrderStatusWatcher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Main entry point for the BomaPay SDK.
@@ -54,6 +70,12 @@ public class BomaPayClient {
     private final ApplePayService applePayService;
     private final GooglePayService googlePayService;
     private final SamsungPayService samsungPayService;
+    private final BulkService bulkService;
+    // guards the lazily opened components below; a lock rather than a monitor since opening them does file I/O
+    private final ReentrantLock lazyLock = new ReentrantLock();
+    private OrderStatusWatcher orderWatcher;
+    private JournaledPayments journaled;
+    private GatewayOutbox outbox;
     
     /**
      * Creates a new BomaPay client with the specified configuration.
@@ -62,8 +84,15 @@ public class BomaPayClient {
      * @throws IllegalArgumentException if config is null or contains invalid values
      */
     public BomaPayClient(BomaPayConfig config) {
+        this(config, new HttpClient(config));
+    }
+    
+    /**
+     * Creates a client on an existing HTTP client, e.g. one sharing a transport with other merchants.
+     */
+    BomaPayClient(BomaPayConfig config, HttpClient httpClient) {
         this.config = config;
-        this.httpClient = new HttpClient(config);
+        this.httpClient = httpClient;
         this.orderService = new OrderService(httpClient, config);
         this.paymentService = new PaymentService(httpClient, config);
         this.bindingService = new BindingService(httpClient, config);
@@ -71,6 +100,103 @@ public class BomaPayClient {
         this.applePayService = new ApplePayService(httpClient, config);
         this.googlePayService = new GooglePayService(httpClient, config);
         this.samsungPayService = new SamsungPayService(httpClient, config);
+        this.bulkService = new BulkService(orderService, config.getBulkParallelism());
+        if (config.isWarmUpOnConstruct()) {
+            warmUp();
+        }
+    }
+    
+    /**
+     * Gets the configuration this client was created with.
+     * 
+     * @return the client configuration
+     */
+    public BomaPayConfig getConfig() {
+        return config;
+    }
+    
+    /**
+     * Pre-resolves the gateway host and opens {@code warmUpConnections} pooled connections, so the
+     * first payments after startup do not pay for DNS, TCP and the TLS handshake. Never throws;
+     * check the result to gate readiness on it.
+     * 
+     * @return timings and the number of connections left in the pool
+     */
+    public WarmUpResult warmUp() {
+        return httpClient.warmUp(config.getWarmUpConnections());
+    }
+    
+    /**
+     * Gets live connection pool and dispatcher statistics for capacity planning.
+     * 
+     * @return a snapshot of idle/active connections and running/queued calls
+     */
+    public PoolStats poolStats() {
+        return httpClient.poolStats();
+    }
+    
+    /**
+     * Gets the per-endpoint circuit breakers, to inspect their state or listen for transitions. With
+     * failover there is one per site and endpoint, named by the site's base URL followed by the path.
+     * 
+     * @return the circuit breaker registry
+     */
+    public CircuitBreakerRegistry circuitBreakers() {
+        return httpClient.circuitBreakers();
+    }
+    
+    /**
+     * Gets the client-side rate limiter, to read the permits currently available per group.
+     * 
+     * @return the rate limiter, or {@code null} if none was configured
+     */
+    public RateLimiter rateLimiter() {
+        return httpClient.rateLimiter();
+    }
+    
+    /**
+     * Gets the adaptive concurrency limiter, to read the current per-endpoint limits.
+     * 
+     * @return the limiter, or {@code null} if none was configured
+     */
+    public AdaptiveConcurrencyLimiter concurrencyLimiter() {
+        return httpClient.concurrencyLimiter();
+    }
+    
+    /**
+     * Gets the bulkheads isolating groups of endpoints, to read their saturation.
+     * 
+     * @return the bulkhead registry, or {@code null} if none were configured
+     */
+    public BulkheadRegistry bulkheads() {
+        return httpClient.bulkheads();
+    }
+    
+    /**
+     * Gets the gateway sites calls fail over between, to read their health and latency.
+     * 
+     * @return the gateway sites, or {@code null} if no failover was configured
+     */
+    public GatewaySites gatewaySites() {
+        return httpClient.gatewaySites();
+    }
+    
+    /**
+     * Gets how many binding lookups were answered by an identical lookup already in flight.
+     * 
+     * @return the number of coalesced read calls since the client was created
+     */
+    public long coalescedCalls() {
+        return httpClient.coalescedCalls();
+    }
+    
+    /**
+     * Gets the binding lookup cache, to read its hit/miss/eviction stats or clear it.
+     * 
+     * @return the binding cache, or {@code null} if none was configured
+     */
+    public BindingCache bindingCache() {
+        return bindingService.cache();
     }
     
     /**
@@ -135,4 +261,81 @@ public class BomaPayClient {
     public SamsungPayService samsungPay() {
         return samsungPayService;
     }
+    
+    /**
+     * Gets the bulk service for depositing, refunding or reversing many orders with bounded parallelism.
+     * 
+     * @return the bulk service instance, running {@code bulkParallelism} calls at a time
+     */
+    public BulkService bulk() {
+        return bulkService;
+    }
+    
+    /**
+     * Gets the watcher that polls pending orders until their status is final. Created on first
+     * use; its timer thread runs until {@link OrderStatusWatcher#close()}.
+     * 
+     * @return the order status watcher, configured by {@code orderWatch}
+     */
+    public OrderStatusWatcher orderWatcher() {
+        lazyLock.lock();
+        try {
+            if (orderWatcher == null) {
+                orderWatcher = new OrderStatusWatcher(orderService, config.getOrderWatchConfig());
+            }
+            return orderWatcher;
+        } finally {
+            lazyLock.unlock();
+        }
+    }
+    
+    /**
+     * Gets deposits, refunds and instant payments recorded in the idempotency journal, so a
+     * repeated submission or a crash mid-call never moves money twice. Opens the journal file on
+     * first use; after a restart, call {@link JournaledPayments#resolveUncertain()} before new work.
+     * 
+     * @return the journaled operations, or {@code null} if no {@code journal} was configured
+     * @throws UncheckedIOException if the journal file cannot be opened
+     */
+    public JournaledPayments journaled() {
+        lazyLock.lock();
+        try {
+            if (journaled == null && config.getJournalConfig() != null) {
+                try {
+                    journaled = new JournaledPayments(IdempotencyJournal.open(config.getJournalConfig()),
+                            orderService, paymentService, httpClient.codec());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not open idempotency journal " + config.getJournalConfig().getPath(), e);
+                }
+            }
+            return journaled;
+        } finally {
+            lazyLock.unlock();
+        }
+    }
+    
+    /**
+     * Gets the store-and-forward queue for deposits, refunds, reversals and card unbinding, which
+     * accepts them during a gateway outage and forwards them once it answers again. Opened on first
+     * use, when it also resumes operations left queued by an earlier process; close it on shutdown.
+     * Deposits and refunds go through {@link #journaled()} when a journal is configured.
+     * 
+     * @return the outbox, or {@code null} if no {@code outbox} was configured
+     * @throws UncheckedIOException if the segment files cannot be opened
+     */
+    public GatewayOutbox outbox() {
+        lazyLock.lock();
+        try {
+            if (outbox == null && config.getOutboxConfig() != null) {
+                try {
+                    outbox = new GatewayOutbox(config.getOutboxConfig(), orderService, bindingService, journaled());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not open outbox " + config.getOutboxConfig().getDirectory(), e);
+                }
+            }
+            return outbox;
+        } finally {
+            lazyLock.unlock();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.http.GatewayTransport;
+import org.abutimartin.bpcpayment.http.HttpClient;
+import org.abutimartin.bpcpayment.http.PoolStats;
+import org.abutimartin.bpcpayment.resilience.Bulkhead;
+import org.abutimartin.bpcpayment.resilience.BulkheadStats;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out clients for many merchant accounts that all share one {@link GatewayTransport}: one
+ * connection pool, one set of dispatcher threads and one JSON codec, instead of one of each per
+ * {@code new BomaPayClient(config)}.
+ * 
+ * <p>Each merchant's config supplies its credentials, defaults and call policy (retries, circuit
+ * breakers, bulkheads, timeouts, caches, instrumentation). Its base URL, pool, dispatcher,
+ * protocol, async executor, virtual thread and Blackbird settings are ignored in favour of the
+ * transport's.
+ * 
+ * <p>A per-merchant concurrency quota keeps one busy merchant from taking every pooled connection
+ * and dispatcher slot. Calls over the quota queue up to its limit, then fail with
+ * {@code BulkheadFullException} naming {@code merchant:<login>}:
+ * <pre>{@code
+ * BomaPayClientFactory factory = BomaPayClientFactory.builder()
+ *     .transport(GatewayTransport.builder()
+ *         .baseUrl("https://api.bomapay.com/payment")
+ *         .maxIdleConnections(32)
+ *         .maxRequestsPerHost(64)
+ *         .build())
+ *     .merchantQuota(8, 32)
+ *     .build();
+ * 
+ * BomaPayClient shop = factory.client(BomaPayConfig.builder()
+ *     .username("shop_api_user")
+ *     .password("shop_api_password")
+ *     .merchantLogin("shop")
+ *     .build());
+ * }</pre>
+ */
+public class BomaPayClientFactory implements AutoCloseable {
+    private final GatewayTransport transport;
+    private final int maxConcurrentCallsPerMerchant;
+    private final int maxQueuedCallsPerMerchant;
+    private final long quotaMaxWaitMillis;
+    private final Map<String, Bulkhead> quotas = new ConcurrentHashMap<>();
+    
+    private BomaPayClientFactory(Builder builder) {
+        this.transport = builder.transport;
+        this.maxConcurrentCallsPerMerchant = builder.maxConcurrentCallsPerMerchant;
+        this.maxQueuedCallsPerMerchant = builder.maxQueuedCallsPerMerchant;
+        this.quotaMaxWaitMillis = builder.quotaMaxWaitMillis;
+    }
+    
+    /**
+     * Creates a client for the merchant with the factory's default quota.
+     * 
+     * @param merchant the merchant's credentials, defaults and call policy
+     * @return a client sharing this factory's transport
+     */
+    public BomaPayClient client(BomaPayConfig merchant) {
+        return client(merchant, maxConcurrentCallsPerMerchant, maxQueuedCallsPerMerchant);
+    }
+    
+    /**
+     * Creates a client for the merchant with its own quota. Clients created for the same merchant
+     * share the quota of the first one; {@code 0} concurrent calls means no quota.
+     * 
+     * @param merchant the merchant's credentials, defaults and call policy
+     * @param maxConcurrentCalls calls the merchant may have in flight at once
+     * @param maxQueuedCalls calls that may wait for a free slot before new ones are rejected
+     * @return a client sharing this factory's transport
+     */
+    public BomaPayClient client(BomaPayConfig merchant, int maxConcurrentCalls, int maxQueuedCalls) {
+        Bulkhead quota = null;
+        if (maxConcurrentCalls > 0) {
+            String name = "merchant:" + merchantKey(merchant);
+            quota = quotas.computeIfAbsent(name, n -> new Bulkhead(n, maxConcurrentCalls, maxQueuedCalls));
+        }
+        return new BomaPayClient(merchant, new HttpClient(merchant, transport, quota, quotaMaxWaitMillis));
+    }
+    
+    /**
+     * Gets the shared transport, e.g. to warm it up or read its pool size.
+     * 
+     * @return the transport every client of this factory runs on
+     */
+    public GatewayTransport transport() {
+        return transport;
+    }
+    
+    /**
+     * Gets connection pool and dispatcher statistics across all merchants.
+     * 
+     * @return a snapshot of the shared pool and dispatcher
+     */
+    public PoolStats poolStats() {
+        return transport.poolStats();
+    }
+    
+    /**
+     * Gets the saturation of every merchant quota, to spot merchants running at their limit.
+     * 
+     * @return quota stats keyed by quota name, e.g. {@code merchant:shop}
+     */
+    public Map<String, BulkheadStats> quotaStats() {
+        Map<String, BulkheadStats> stats = new TreeMap<>();
+        quotas.forEach((name, quota) -> stats.put(name, quota.stats()));
+        return stats;
+    }
+    
+    /**
+     * Closes the shared transport; clients created by this factory stop working.
+     */
+    @Override
+    public void close() {
+        transport.close();
+    }
+    
+    private static String merchantKey(BomaPayConfig merchant) {
+        return merchant.getMerchantLogin() != null ? merchant.getMerchantLogin() : merchant.getUsername();
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private GatewayTransport transport;
+        private int maxConcurrentCallsPerMerchant;
+        private int maxQueuedCallsPerMerchant;
+        private long quotaMaxWaitMillis = 1000;
+        
+        private Builder() {
+        }
+        
+        /** The transport shared by every merchant client. */
+        public Builder transport(GatewayTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+        
+        /**
+         * Default quota of each merchant: calls it may have in flight, and calls that may wait for a
+         * slot before new ones are rejected. No quota when unset.
+         */
+        public Builder merchantQuota(int maxConcurrentCalls, int maxQueuedCalls) {
+            this.maxConcurrentCallsPerMerchant = maxConcurrentCalls;
+            this.maxQueuedCallsPerMerchant = maxQueuedCalls;
+            return this;
+        }
+        
+        /** Longest a blocking call waits in the queue for a quota slot before failing. */
+        public Builder quotaMaxWaitMillis(long quotaMaxWaitMillis) {
+            this.quotaMaxWaitMillis = quotaMaxWaitMillis;
+            return this;
+        }
+        
+        public BomaPayClientFactory build() {
+            if (transport == null) {
+                throw new IllegalArgumentException("Transport is required");
+            }
+            if (maxConcurrentCallsPerMerchant < 0 || maxQueuedCallsPerMerchant < 0 || quotaMaxWaitMillis < 0) {
+                throw new IllegalArgumentException("Merchant quota and wait must not be negative");
+            }
+            return new BomaPayClientFactory(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,232 @@
+package org.abutimartin.bpcpayment.cache;
+
+import org.abutimartin.bpcpayment.model.response.Binding;
+import org.abutimartin.bpcpayment.model.response.BindingsResponse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, expiring cache of binding lookups, keyed by client id and by card number or binding id.
+ * <p>
+ * Entries are kept in write order, which with a single TTL is also expiry order, so expired entries
+ * are always at the head. When the cache is full a TinyLFU admission filter decides between the
+ * oldest entry and the newcomer: whichever key has been asked for more often recently stays.
+ * <p>
+ * Every invalidation bumps a generation counter. Callers read {@link #generation()} before going to
+ * the gateway and hand it back to {@code put}, so a lookup that raced with a binding change is never
+ * stored over the invalidation.
+ */
+public final class BindingCache {
+    private static final String CLIENT = "client:";
+    private static final String CARD = "card:";
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, String> owners;
+    private final FrequencySketch sketch;
+    private final int maximumSize;
+    private final long ttlNanos;
+    private volatile long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+    private long expirations;
+    private long invalidations;
+    
+    public BindingCache(BindingCacheConfig config) {
+        this.maximumSize = config.getMaximumSize();
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.getTtlMillis());
+        this.sketch = new FrequencySketch(maximumSize);
+        // remembers which client a binding belongs to, so re-binding a card can drop that client's list
+        this.owners = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+    
+    /**
+     * Returns the cached bindings of a client, or {@code null} on a miss.
+     */
+    public BindingsResponse getForClient(String clientId) {
+        return get(CLIENT + clientId);
+    }
+    
+    /**
+     * Returns the cached lookup for a card number or binding id, or {@code null} on a miss.
+     */
+    public BindingsResponse getForCardOrId(String panOrBindingId) {
+        return get(CARD + panOrBindingId);
+    }
+    
+    /**
+     * Returns the current invalidation generation; read it before the gateway call that fills the cache.
+     */
+    public long generation() {
+        return generation;
+    }
+    
+    public void putForClient(String clientId, BindingsResponse response, long generation) {
+        put(CLIENT + clientId, clientId, response, generation);
+    }
+    
+    public void putForCardOrId(String panOrBindingId, BindingsResponse response, long generation) {
+        put(CARD + panOrBindingId, null, response, generation);
+    }
+    
+    /**
+     * Drops every entry that lists the binding or was looked up by it, plus the owning client's list.
+     */
+    public void invalidateBinding(String bindingId) {
+        lock.lock();
+        try {
+            generation++;
+            String owner = owners.get(bindingId);
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> entry = it.next();
+                String key = entry.getKey();
+                if (key.equals(CARD + bindingId) || (owner != null && key.equals(CLIENT + owner))
+                        || lists(entry.getValue().response, bindingId)) {
+                    it.remove();
+                    invalidations++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void invalidateClient(String clientId) {
+        lock.lock();
+        try {
+            generation++;
+            if (entries.remove(CLIENT + clientId) != null) {
+                invalidations++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            invalidations += entries.size();
+            entries.clear();
+            owners.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public CacheStats stats() {
+        lock.lock();
+        try {
+            return new CacheStats(hits, misses, evictions, rejections, expirations, invalidations, entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private BindingsResponse get(String key) {
+        lock.lock();
+        try {
+            sketch.increment(key);
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAtNanos >= 0) {
+                entries.remove(key);
+                expirations++;
+                misses++;
+                return null;
+            }
+            hits++;
+            return entry.response;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void put(String key, String clientId, BindingsResponse response, long observedGeneration) {
+        if (response == null || !response.isSuccess()) {
+            return;
+        }
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (observedGeneration != generation) {
+                // a binding changed while this lookup was in flight; its result may already be stale
+                return;
+            }
+            expireHead(now);
+            // re-inserting moves the key to the tail, matching its new expiry
+            if (entries.remove(key) == null && entries.size() >= maximumSize && !admit(key)) {
+                return;
+            }
+            entries.put(key, new Entry(response, now + ttlNanos));
+            if (clientId != null && response.getBindings() != null) {
+                for (Binding binding : response.getBindings()) {
+                    owners.put(binding.getBindingId(), clientId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void expireHead(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().expiresAtNanos < 0) {
+                return;
+            }
+            it.remove();
+            expirations++;
+        }
+    }
+    
+    private boolean admit(String candidate) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        String victim = it.next().getKey();
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+            it.remove();
+            evictions++;
+            return true;
+        }
+        rejections++;
+        return false;
+    }
+    
+    private static boolean lists(BindingsResponse response, String bindingId) {
+        if (response.getBindings() == null) {
+            return false;
+        }
+        for (Binding binding : response.getBindings()) {
+            if (bindingId.equals(binding.getBindingId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static final class Entry {
+        final BindingsResponse response;
+        final long expiresAtNanos;
+        
+        Entry(BindingsResponse response, long expiresAtNanos) {
+            this.response = response;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
\ No newline at end of file
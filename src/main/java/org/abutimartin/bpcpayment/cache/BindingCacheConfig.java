@@ -0,0 +1,54 @@
+package org.abutimartin.bpcpayment.cache;
+
+/**
+ * Bounds for the {@link BindingCache}: how many lookups are kept and for how long.
+ */
+public final class BindingCacheConfig {
+    private final int maximumSize;
+    private final long ttlMillis;
+    
+    private BindingCacheConfig(Builder builder) {
+        this.maximumSize = builder.maximumSize;
+        this.ttlMillis = builder.ttlMillis;
+    }
+    
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+    
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+    
+    public static BindingCacheConfig defaults() {
+        return builder().build();
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private int maximumSize = 10_000;
+        private long ttlMillis = 60_000;
+        
+        /** Most lookups (per client or per card/binding) held at once. */
+        public Builder maximumSize(int maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+        
+        /** How long a cached lookup is served before the gateway is asked again. */
+        public Builder ttlMillis(long ttlMillis) {
+            this.ttlMillis = ttlMillis;
+            return this;
+        }
+        
+        public BindingCacheConfig build() {
+            if (maximumSize < 1 || ttlMillis <= 0) {
+                throw new IllegalArgumentException("Cache size and TTL must be positive");
+            }
+            return new BindingCacheConfig(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package org.abutimartin.bpcpayment.cache;
+
+/**
+ * Point-in-time counters of a {@link BindingCache}.
+ */
+public final class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long rejections;
+    private final long expirations;
+    private final long invalidations;
+    private final int size;
+    
+    public CacheStats(long hits, long misses, long evictions, long rejections, long expirations, long invalidations,
+            int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.rejections = rejections;
+        this.expirations = expirations;
+        this.invalidations = invalidations;
+        this.size = size;
+    }
+    
+    public long getHits() {
+        return hits;
+    }
+    
+    public long getMisses() {
+        return misses;
+    }
+    
+    /** Entries dropped to make room for a newcomer that is looked up more often. */
+    public long getEvictions() {
+        return evictions;
+    }
+    
+    /** Newcomers refused admission to a full cache because the oldest entry is looked up more often. */
+    public long getRejections() {
+        return rejections;
+    }
+    
+    /** Entries dropped because their TTL ran out. */
+    public long getExpirations() {
+        return expirations;
+    }
+    
+    /** Entries dropped because a binding they list was changed through the SDK. */
+    public long getInvalidations() {
+        return invalidations;
+    }
+    
+    public int getSize() {
+        return size;
+    }
+    
+    /** Fraction of lookups served from the cache, from 0.0 to 1.0. */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+    
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + ", rejections=" + rejections + ", expirations=" + expirations
+                + ", invalidations=" + invalidations + ", size=" + size + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package org.abutimartin.bpcpayment.cache;
+
+/**
+ * Count-min sketch of recent key popularity used as the TinyLFU admission filter. Four rows of
+ * saturating counters are indexed by independent hashes; the estimate is the smallest of the four.
+ * All counters are halved once enough increments have been recorded, so old popularity fades.
+ * Not thread-safe; the owning cache guards it with its lock.
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+    private static final int MAX_COUNT = 15;
+    
+    private final byte[][] rows;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+    
+    FrequencySketch(int maximumSize) {
+        int width = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+        this.rows = new byte[SEEDS.length][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * Math.max(16, maximumSize);
+    }
+    
+    void increment(Object key) {
+        int hash = key.hashCode();
+        boolean added = false;
+        for (int i = 0; i < rows.length; i++) {
+            int index = index(hash, i);
+            if (rows[i][index] < MAX_COUNT) {
+                rows[i][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            age();
+        }
+    }
+    
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int min = MAX_COUNT;
+        for (int i = 0; i < rows.length; i++) {
+            min = Math.min(min, rows[i][index(hash, i)]);
+        }
+        return min;
+    }
+    
+    private int index(int hash, int row) {
+        long mixed = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) (mixed >>> 32) & mask;
+    }
+    
+    private void age() {
+        for (byte[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+        additions /= 2;
+    }
+}
\ No newline at end of file
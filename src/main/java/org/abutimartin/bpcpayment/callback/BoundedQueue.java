@@ -0,0 +1,87 @@
+package org.abutimartin.bpcpayment.callback;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free bounded multi-producer multi-consumer queue on a ring of slots, each stamped with a
+ * sequence number (Dmitry Vyukov's design). Producers and consumers claim a position with one CAS
+ * on the tail or head; the stamp tells whether the slot at that position is free or filled, so
+ * neither side ever blocks the other and a full queue is detected without locking.
+ */
+final class BoundedQueue<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    
+    BoundedQueue(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    int capacity() {
+        return mask + 1;
+    }
+    
+    /**
+     * Adds the element unless the queue is full.
+     */
+    boolean offer(E element) {
+        long position;
+        int slot;
+        while (true) {
+            position = tail.get();
+            slot = (int) (position & mask);
+            long lag = sequences.get(slot) - position;
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (lag < 0) {
+                // the slot still holds the element from one lap ago
+                return false;
+            }
+        }
+        items.set(slot, element);
+        sequences.set(slot, position + 1);
+        return true;
+    }
+    
+    /**
+     * Removes the oldest element, or returns {@code null} if the queue is empty.
+     */
+    E poll() {
+        long position;
+        int slot;
+        while (true) {
+            position = head.get();
+            slot = (int) (position & mask);
+            long lag = sequences.get(slot) - (position + 1);
+            if (lag == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (lag < 0) {
+                return null;
+            }
+        }
+        E element = items.get(slot);
+        items.set(slot, null);
+        // free the slot for the producer one lap ahead
+        sequences.set(slot, position + mask + 1);
+        return element;
+    }
+    
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+}
\ No newline at end of file
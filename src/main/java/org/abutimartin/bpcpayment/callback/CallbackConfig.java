@@ -0,0 +1,179 @@
+package org.abutimartin.bpcpayment.callback;
+
+/**
+ * Settings of a {@link CallbackReceiver}: where it listens, how callbacks are verified, and the
+ * bounds that keep its memory use flat under load.
+ */
+public final class CallbackConfig {
+    private final String bindAddress;
+    private final int port;
+    private final String path;
+    private final String secretKey;
+    private final int queueCapacity;
+    private final int workers;
+    private final int acceptorThreads;
+    private final int dedupCapacity;
+    private final int maxBodyBytes;
+    private final long shutdownMillis;
+    
+    private CallbackConfig(Builder builder) {
+        this.bindAddress = builder.bindAddress;
+        this.port = builder.port;
+        this.path = builder.path;
+        this.secretKey = builder.secretKey;
+        this.queueCapacity = builder.queueCapacity;
+        this.workers = builder.workers;
+        this.acceptorThreads = builder.acceptorThreads;
+        this.dedupCapacity = builder.dedupCapacity;
+        this.maxBodyBytes = builder.maxBodyBytes;
+        this.shutdownMillis = builder.shutdownMillis;
+    }
+    
+    public String getBindAddress() {
+        return bindAddress;
+    }
+    
+    public int getPort() {
+        return port;
+    }
+    
+    public String getPath() {
+        return path;
+    }
+    
+    /**
+     * Key for the symmetric checksum, or {@code null} if callbacks are accepted unsigned.
+     */
+    public String getSecretKey() {
+        return secretKey;
+    }
+    
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    public int getWorkers() {
+        return workers;
+    }
+    
+    public int getAcceptorThreads() {
+        return acceptorThreads;
+    }
+    
+    public int getDedupCapacity() {
+        return dedupCapacity;
+    }
+    
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+    
+    public long getShutdownMillis() {
+        return shutdownMillis;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private String bindAddress = "0.0.0.0";
+        private int port;
+        private String path = "/bomapay/callback";
+        private String secretKey;
+        private boolean allowUnsigned;
+        private int queueCapacity = 8192;
+        private int workers = 2;
+        private int acceptorThreads = 2;
+        private int dedupCapacity = 100_000;
+        private int maxBodyBytes = 8192;
+        private long shutdownMillis = 5000;
+        
+        private Builder() {
+        }
+        
+        public Builder bindAddress(String bindAddress) {
+            this.bindAddress = bindAddress;
+            return this;
+        }
+        
+        /** Listening port; {@code 0} picks a free one, see {@link CallbackReceiver#getPort()}. */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+        
+        /** Path the gateway's callback URL points at. */
+        public Builder path(String path) {
+            this.path = path;
+            return this;
+        }
+        
+        /** Symmetric checksum key from the merchant portal; callbacks without a valid checksum are refused. */
+        public Builder secretKey(String secretKey) {
+            this.secretKey = secretKey;
+            return this;
+        }
+        
+        /** Accepts callbacks without a checksum when no secret key is set; for test environments only. */
+        public Builder allowUnsigned(boolean allowUnsigned) {
+            this.allowUnsigned = allowUnsigned;
+            return this;
+        }
+        
+        /** Accepted callbacks waiting for a worker; rounded up to a power of two. Beyond it callbacks get 503. */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+        
+        /** Threads running the {@link CallbackHandler}. */
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+        
+        /** Threads verifying and acknowledging callbacks; they never run handler code. */
+        public Builder acceptorThreads(int acceptorThreads) {
+            this.acceptorThreads = acceptorThreads;
+            return this;
+        }
+        
+        /** Most recent orderId and operation pairs remembered for de-duplication. */
+        public Builder dedupCapacity(int dedupCapacity) {
+            this.dedupCapacity = dedupCapacity;
+            return this;
+        }
+        
+        /** Largest POST body accepted. */
+        public Builder maxBodyBytes(int maxBodyBytes) {
+            this.maxBodyBytes = maxBodyBytes;
+            return this;
+        }
+        
+        /** How long {@link CallbackReceiver#close()} lets workers drain the queue. */
+        public Builder shutdownMillis(long shutdownMillis) {
+            this.shutdownMillis = shutdownMillis;
+            return this;
+        }
+        
+        public CallbackConfig build() {
+            if (secretKey == null && !allowUnsigned) {
+                throw new IllegalArgumentException("A secret key is required unless unsigned callbacks are allowed");
+            }
+            if (bindAddress == null || path == null || !path.startsWith("/")) {
+                throw new IllegalArgumentException("Bind address and an absolute path are required");
+            }
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("Port must be between 0 and 65535");
+            }
+            if (queueCapacity < 1 || workers < 1 || acceptorThreads < 1 || dedupCapacity < 1) {
+                throw new IllegalArgumentException("Queue, worker, acceptor and dedup sizes must be at least 1");
+            }
+            if (maxBodyBytes < 1 || shutdownMillis < 0) {
+                throw new IllegalArgumentException("Body limit must be positive and shutdown time must not be negative");
+            }
+            return new CallbackConfig(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package org.abutimartin.bpcpayment.callback;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One order state change notified by the gateway, e.g. {@code operation=deposited} with
+ * {@code status=1} for a successful deposit.
+ */
+public final class CallbackEvent {
+    private final String orderId;
+    private final String orderNumber;
+    private final String operation;
+    private final String status;
+    private final Map<String, String> parameters;
+    private final long receivedAtMillis;
+    
+    CallbackEvent(Map<String, String> parameters, long receivedAtMillis) {
+        this.orderId = parameters.get("mdOrder");
+        this.orderNumber = parameters.get("orderNumber");
+        this.operation = parameters.get("operation");
+        this.status = parameters.get("status");
+        this.parameters = Collections.unmodifiableMap(parameters);
+        this.receivedAtMillis = receivedAtMillis;
+    }
+    
+    /** The gateway order id, sent as {@code mdOrder}. */
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+    
+    /**
+     * What happened to the order: {@code approved}, {@code deposited}, {@code reversed},
+     * {@code refunded}, {@code declinedByTimeout}, ...
+     */
+    public String getOperation() {
+        return operation;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    /**
+     * Whether the operation succeeded ({@code status=1}).
+     */
+    public boolean isSuccess() {
+        return "1".equals(status);
+    }
+    
+    /**
+     * Every parameter of the callback, including any additional merchant parameters.
+     */
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+    
+    public long getReceivedAtMillis() {
+        return receivedAtMillis;
+    }
+    
+    @Override
+    public String toString() {
+        return "CallbackEvent{orderId=" + orderId + ", operation=" + operation + ", status=" + status + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package org.abutimartin.bpcpayment.callback;
+
+/**
+ * Application logic run for every verified, de-duplicated gateway callback. Runs on a
+ * {@link CallbackReceiver} worker thread after the gateway has been answered, so it may be slow;
+ * throwing lets a redelivery of the same callback through again.
+ */
+@FunctionalInterface
+public interface CallbackHandler {
+    void handle(CallbackEvent event) throws Exception;
+}
\ No newline at end of file
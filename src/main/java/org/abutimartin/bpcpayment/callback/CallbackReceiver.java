@@ -0,0 +1,236 @@
+package org.abutimartin.bpcpayment.callback;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Endpoint for the gateway's order state callbacks, on the JDK's built-in HTTP server. Each
+ * callback is verified, de-duplicated by orderId and operation, put on a bounded lock-free queue
+ * and acknowledged at once; worker threads run the {@link CallbackHandler} afterwards, so slow
+ * application code never holds up the gateway.
+ * 
+ * <p>Memory stays flat under load: the queue and the de-duplication window are fixed in size,
+ * and a full queue answers 503 so the gateway redelivers later instead of the heap growing. A
+ * callback whose handler throws is forgotten by the de-duplication, so its redelivery is
+ * handled again.
+ */
+public final class CallbackReceiver implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CallbackReceiver.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    
+    private final CallbackConfig config;
+    private final CallbackHandler handler;
+    private final ChecksumVerifier verifier;
+    private final BoundedQueue<CallbackEvent> queue;
+    private final RecentKeys recent;
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private HttpServer server;
+    private ExecutorService acceptors;
+    private Thread[] workers;
+    private int nextWake;
+    private volatile boolean running;
+    
+    public CallbackReceiver(CallbackConfig config, CallbackHandler handler) {
+        this.config = config;
+        this.handler = handler;
+        this.verifier = config.getSecretKey() != null ? new ChecksumVerifier(config.getSecretKey()) : null;
+        this.queue = new BoundedQueue<>(config.getQueueCapacity());
+        this.recent = new RecentKeys(config.getDedupCapacity());
+    }
+    
+    /**
+     * Binds the port and starts the acceptor and worker threads.
+     */
+    public synchronized CallbackReceiver start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Callback receiver already started");
+        }
+        running = true;
+        workers = new Thread[config.getWorkers()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(this::work, "bomapay-callback-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        AtomicInteger acceptorCount = new AtomicInteger();
+        acceptors = Executors.newFixedThreadPool(config.getAcceptorThreads(), task -> {
+            Thread thread = new Thread(task, "bomapay-callback-acceptor-" + acceptorCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(config.getBindAddress(), config.getPort()), 1024);
+        server.setExecutor(acceptors);
+        server.createContext(config.getPath(), this::accept);
+        server.start();
+        logger.info("Listening for gateway callbacks on port {} at {}", getPort(), config.getPath());
+        return this;
+    }
+    
+    /**
+     * The bound port, useful when the config asked for any free one.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    public CallbackStats stats() {
+        return new CallbackStats(received.sum(), rejected.sum(), duplicates.sum(), dropped.sum(),
+                handled.sum(), failed.sum(), queue.size());
+    }
+    
+    /**
+     * Stops accepting callbacks, then lets the workers finish the queued ones for up to
+     * {@code shutdownMillis}.
+     */
+    @Override
+    public synchronized void close() {
+        if (server == null || !running) {
+            return;
+        }
+        server.stop(0);
+        acceptors.shutdown();
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getShutdownMillis());
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        try {
+            for (Thread worker : workers) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining > 0) {
+                    worker.join(remaining);
+                }
+                worker.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (queue.size() > 0) {
+            logger.warn("Callback receiver closed with {} callbacks unhandled", queue.size());
+        }
+    }
+    
+    private void accept(HttpExchange exchange) throws IOException {
+        received.increment();
+        try (exchange) {
+            Map<String, String> parameters = parameters(exchange);
+            if (parameters == null) {
+                rejected.increment();
+                exchange.sendResponseHeaders(413, -1);
+                return;
+            }
+            if (verifier != null && !verifier.verify(parameters)) {
+                rejected.increment();
+                logger.warn("Rejected callback for order {} with a missing or wrong checksum", parameters.get("mdOrder"));
+                exchange.sendResponseHeaders(403, -1);
+                return;
+            }
+            CallbackEvent event = new CallbackEvent(parameters, System.currentTimeMillis());
+            if (event.getOrderId() == null || event.getOperation() == null) {
+                rejected.increment();
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            String key = dedupKey(event);
+            if (!recent.add(key)) {
+                duplicates.increment();
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            if (!queue.offer(event)) {
+                recent.remove(key);
+                dropped.increment();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            wakeWorker();
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+    
+    private Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        decode(exchange.getRequestURI().getRawQuery(), parameters);
+        if ("POST".equals(exchange.getRequestMethod())) {
+            InputStream body = exchange.getRequestBody();
+            byte[] bytes = body.readNBytes(config.getMaxBodyBytes() + 1);
+            if (bytes.length > config.getMaxBodyBytes()) {
+                return null;
+            }
+            decode(new String(bytes, StandardCharsets.UTF_8), parameters);
+        }
+        return parameters;
+    }
+    
+    private static void decode(String encoded, Map<String, String> parameters) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            parameters.put(name, value);
+        }
+    }
+    
+    private static String dedupKey(CallbackEvent event) {
+        return event.getOrderId() + '|' + event.getOperation();
+    }
+    
+    private void wakeWorker() {
+        if (idleWorkers.get() > 0) {
+            // racy round robin is fine: a missed wake-up costs at most one park interval
+            int index = Math.floorMod(nextWake++, workers.length);
+            LockSupport.unpark(workers[index]);
+        }
+    }
+    
+    private void work() {
+        while (true) {
+            CallbackEvent event = queue.poll();
+            if (event == null) {
+                if (!running) {
+                    return;
+                }
+                idleWorkers.incrementAndGet();
+                // re-check after announcing idleness, so an offer racing with it is not slept through
+                if (queue.size() == 0 && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idleWorkers.decrementAndGet();
+                continue;
+            }
+            try {
+                handler.handle(event);
+                handled.increment();
+            } catch (Exception e) {
+                failed.increment();
+                recent.remove(dedupKey(event));
+                logger.warn("Handler failed for callback {}; a redelivery will be handled again", event, e);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,64 @@
+package org.abutimartin.bpcpayment.callback;
+
+/**
+ * Point-in-time counters of a {@link CallbackReceiver}.
+ */
+public final class CallbackStats {
+    private final long received;
+    private final long rejected;
+    private final long duplicates;
+    private final long dropped;
+    private final long handled;
+    private final long failed;
+    private final int queued;
+    
+    public CallbackStats(long received, long rejected, long duplicates, long dropped, long handled, long failed, int queued) {
+        this.received = received;
+        this.rejected = rejected;
+        this.duplicates = duplicates;
+        this.dropped = dropped;
+        this.handled = handled;
+        this.failed = failed;
+        this.queued = queued;
+    }
+    
+    /** Callbacks that reached the endpoint. */
+    public long getReceived() {
+        return received;
+    }
+    
+    /** Callbacks refused for a missing or wrong checksum or malformed parameters. */
+    public long getRejected() {
+        return rejected;
+    }
+    
+    /** Repeats of an orderId and operation already accepted; acknowledged and skipped. */
+    public long getDuplicates() {
+        return duplicates;
+    }
+    
+    /** Callbacks turned away with 503 because the queue was full; the gateway redelivers them. */
+    public long getDropped() {
+        return dropped;
+    }
+    
+    public long getHandled() {
+        return handled;
+    }
+    
+    /** Callbacks whose handler threw. */
+    public long getFailed() {
+        return failed;
+    }
+    
+    /** Accepted callbacks waiting for a worker. */
+    public int getQueued() {
+        return queued;
+    }
+    
+    @Override
+    public String toString() {
+        return "CallbackStats{received=" + received + ", rejected=" + rejected + ", duplicates=" + duplicates
+                + ", dropped=" + dropped + ", handled=" + handled + ", failed=" + failed + ", queued=" + queued + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package org.abutimartin.bpcpayment.callback;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Verifies the gateway's symmetric callback checksum: an upper-case hex HMAC-SHA256 over every
+ * parameter except {@code checksum} and {@code sign_alias}, sorted by name and joined as
+ * {@code name1;value1;name2;value2;}.
+ */
+final class ChecksumVerifier {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    
+    private final SecretKeySpec key;
+    // Mac instances are not thread-safe; one per acceptor thread avoids a lookup per callback
+    private final ThreadLocal<Mac> macs;
+    
+    ChecksumVerifier(String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        newMac();
+    }
+    
+    boolean verify(Map<String, String> parameters) {
+        String checksum = parameters.get("checksum");
+        if (checksum == null) {
+            return false;
+        }
+        byte[] expected = sign(parameters).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = checksum.toUpperCase().getBytes(StandardCharsets.US_ASCII);
+        // constant time, so response timing reveals nothing about the expected value
+        return MessageDigest.isEqual(expected, actual);
+    }
+    
+    String sign(Map<String, String> parameters) {
+        StringBuilder data = new StringBuilder(256);
+        for (Map.Entry<String, String> parameter : new TreeMap<>(parameters).entrySet()) {
+            String name = parameter.getKey();
+            if (!"checksum".equals(name) && !"sign_alias".equals(name)) {
+                data.append(name).append(';').append(parameter.getValue()).append(';');
+            }
+        }
+        byte[] digest = macs.get().doFinal(data.toString().getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+    
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package org.abutimartin.bpcpayment.callback;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The last {@code capacity} keys seen, for de-duplication in bounded memory. A ring records
+ * insertion order; adding a key overwrites the oldest ring slot and forgets that key.
+ */
+final class RecentKeys {
+    private final ConcurrentHashMap<String, Entry> keys;
+    private final AtomicReferenceArray<Entry> ring;
+    private final AtomicLong next = new AtomicLong();
+    
+    RecentKeys(int capacity) {
+        this.keys = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+    
+    /**
+     * Records the key; returns {@code false} if it was already recorded.
+     */
+    boolean add(String key) {
+        Entry entry = new Entry(key);
+        if (keys.putIfAbsent(key, entry) != null) {
+            return false;
+        }
+        int slot = (int) (next.getAndIncrement() % ring.length());
+        Entry evicted = ring.getAndSet(slot, entry);
+        if (evicted != null) {
+            // only this very entry: the key may have been removed and added again since
+            keys.remove(evicted.key, evicted);
+        }
+        return true;
+    }
+    
+    /**
+     * Forgets the key, so the next callback with it is accepted again.
+     */
+    void remove(String key) {
+        keys.remove(key);
+    }
+    
+    int size() {
+        return keys.size();
+    }
+    
+    private static final class Entry {
+        final String key;
+        
+        Entry(String key) {
+            this.key = key;
+        }
+    }
+}
\ No newline at end of file
@@ -1,5 +1,22 @@
 package org.abutimartin.bpcpayment.config;
 
+import org.abutimartin.bpcpayment.cache.BindingCacheConfig;
+import org.abutimartin.bpcpayment.journal.JournalConfig;
+import org.abutimartin.bpcpayment.outbox.OutboxConfig;
+import org.abutimartin.bpcpayment.metrics.GatewayInstrumentation;
+import org.abutimartin.bpcpayment.resilience.AdaptiveLimiterConfig;
+import org.abutimartin.bpcpayment.resilience.BulkheadConfig;
+import org.abutimartin.bpcpayment.resilience.CircuitBreakerConfig;
+import org.abutimartin.bpcpayment.resilience.FailoverConfig;
+import org.abutimartin.bpcpayment.resilience.RateLimiterConfig;
+import org.abutimartin.bpcpayment.resilience.RetryPolicy;
+import org.abutimartin.bpcpayment.watch.OrderWatchConfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
 public class BomaPayConfig {
     private final String baseUrl;
     private final String username;
@@ -9,6 +26,35 @@ public class BomaPayConfig {
     private final String language;
     private final String currency;
     private final int timeout;
+    private final long callTimeoutMillis;
+    private final EndpointTimeouts defaultTimeouts;
+    private final Map<String, EndpointTimeouts> endpointTimeouts;
+    private final ExecutorService asyncExecutor;
+    private final boolean virtualThreadDispatcher;
+    private final int maxIdleConnections;
+    private final long keepAliveMillis;
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final HttpProtocol protocol;
+    private final long maxResponseBodyBytes;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreakerConfig circuitBreakerConfig;
+    private final RateLimiterConfig rateLimiterConfig;
+    private final AdaptiveLimiterConfig adaptiveLimiterConfig;
+    private final BulkheadConfig bulkheadConfig;
+    private final FailoverConfig failoverConfig;
+    private final int bulkParallelism;
+    private final OrderWatchConfig orderWatchConfig;
+    private final JournalConfig journalConfig;
+    private final OutboxConfig outboxConfig;
+    private final boolean coalesceReads;
+    private final BindingCacheConfig bindingCacheConfig;
+    private final boolean blackbird;
+    private final int warmUpConnections;
+    private final boolean warmUpOnConstruct;
+    private final GatewayInstrumentation instrumentation;
+    private final boolean recordCallPhases;
+    private final boolean attachCallTimings;
     
     private BomaPayConfig(Builder builder) {
         this.baseUrl = builder.baseUrl;
@@ -19,6 +65,37 @@ public class BomaPayConfig {
         this.language = builder.language;
         this.currency = builder.currency;
         this.timeout = builder.timeout;
+        this.callTimeoutMillis = builder.callTimeoutMillis;
+        this.defaultTimeouts = EndpointTimeouts.of(timeout, timeout, timeout, callTimeoutMillis);
+        Map<String, EndpointTimeouts> resolved = new HashMap<>();
+        builder.endpointTimeouts.forEach((endpoint, timeouts) -> resolved.put(endpoint, timeouts.inheritFrom(defaultTimeouts)));
+        this.endpointTimeouts = Collections.unmodifiableMap(resolved);
+        this.asyncExecutor = builder.asyncExecutor;
+        this.virtualThreadDispatcher = builder.virtualThreadDispatcher;
+        this.maxIdleConnections = builder.maxIdleConnections;
+        this.keepAliveMillis = builder.keepAliveMillis;
+        this.maxRequests = builder.maxRequests;
+        this.maxRequestsPerHost = builder.maxRequestsPerHost;
+        this.protocol = builder.protocol;
+        this.maxResponseBodyBytes = builder.maxResponseBodyBytes;
+        this.retryPolicy = builder.retryPolicy;
+        this.circuitBreakerConfig = builder.circuitBreakerConfig;
+        this.rateLimiterConfig = builder.rateLimiterConfig;
+        this.adaptiveLimiterConfig = builder.adaptiveLimiterConfig;
+        this.bulkheadConfig = builder.bulkheadConfig;
+        this.failoverConfig = builder.failoverConfig;
+        this.bulkParallelism = builder.bulkParallelism;
+        this.orderWatchConfig = builder.orderWatchConfig;
+        this.journalConfig = builder.journalConfig;
+        this.outboxConfig = builder.outboxConfig;
+        this.coalesceReads = builder.coalesceReads;
+        this.bindingCacheConfig = builder.bindingCacheConfig;
+        this.blackbird = builder.blackbird;
+        this.warmUpConnections = builder.warmUpConnections;
+        this.warmUpOnConstruct = builder.warmUpOnConstruct;
+        this.instrumentation = builder.instrumentation;
+        this.recordCallPhases = builder.recordCallPhases || builder.attachCallTimings;
+        this.attachCallTimings = builder.attachCallTimings;
     }
     
     public String getBaseUrl() {
@@ -53,6 +130,128 @@ public class BomaPayConfig {
         return timeout;
     }
     
+    public long getCallTimeoutMillis() {
+        return callTimeoutMillis;
+    }
+    
+    /**
+     * Effective timeouts for the endpoint: its own overrides, with the client-wide values for the rest.
+     */
+    public EndpointTimeouts getTimeouts(String endpoint) {
+        return endpointTimeouts.getOrDefault(endpoint, defaultTimeouts);
+    }
+    
+    /**
+     * Whether any endpoint has timeouts of its own.
+     */
+    public boolean hasEndpointTimeouts() {
+        return !endpointTimeouts.isEmpty();
+    }
+    
+    public ExecutorService getAsyncExecutor() {
+        return asyncExecutor;
+    }
+    
+    public boolean isVirtualThreadDispatcher() {
+        return virtualThreadDispatcher;
+    }
+    
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+    
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+    
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+    
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+    
+    public HttpProtocol getProtocol() {
+        return protocol;
+    }
+    
+    public long getMaxResponseBodyBytes() {
+        return maxResponseBodyBytes;
+    }
+    
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+    
+    public CircuitBreakerConfig getCircuitBreakerConfig() {
+        return circuitBreakerConfig;
+    }
+    
+    public RateLimiterConfig getRateLimiterConfig() {
+        return rateLimiterConfig;
+    }
+    
+    public AdaptiveLimiterConfig getAdaptiveLimiterConfig() {
+        return adaptiveLimiterConfig;
+    }
+    
+    public BulkheadConfig getBulkheadConfig() {
+        return bulkheadConfig;
+    }
+    
+    public FailoverConfig getFailoverConfig() {
+        return failoverConfig;
+    }
+    
+    public int getBulkParallelism() {
+        return bulkParallelism;
+    }
+    
+    public OrderWatchConfig getOrderWatchConfig() {
+        return orderWatchConfig;
+    }
+    
+    public JournalConfig getJournalConfig() {
+        return journalConfig;
+    }
+    
+    public OutboxConfig getOutboxConfig() {
+        return outboxConfig;
+    }
+    
+    public boolean isCoalesceReads() {
+        return coalesceReads;
+    }
+    
+    public BindingCacheConfig getBindingCacheConfig() {
+        return bindingCacheConfig;
+    }
+    
+    public boolean isBlackbird() {
+        return blackbird;
+    }
+    
+    public int getWarmUpConnections() {
+        return warmUpConnections;
+    }
+    
+    public boolean isWarmUpOnConstruct() {
+        return warmUpOnConstruct;
+    }
+    
+    public GatewayInstrumentation getInstrumentation() {
+        return instrumentation;
+    }
+    
+    public boolean isRecordCallPhases() {
+        return recordCallPhases;
+    }
+    
+    public boolean isAttachCallTimings() {
+        return attachCallTimings;
+    }
+    
     public static Builder builder() {
         return new Builder();
     }
@@ -66,6 +265,34 @@ public class BomaPayConfig {
         private String language = "en";
         private String currency = "978";
         private int timeout = 30000;
+        private long callTimeoutMillis;
+        private final Map<String, EndpointTimeouts> endpointTimeouts = new HashMap<>();
+        private ExecutorService asyncExecutor;
+        private boolean virtualThreadDispatcher;
+        private int maxIdleConnections = 5;
+        private long keepAliveMillis = 300000;
+        private int maxRequests = 64;
+        private int maxRequestsPerHost = 5;
+        private HttpProtocol protocol = HttpProtocol.HTTP_2;
+        private long maxResponseBodyBytes = 1024 * 1024;
+        private RetryPolicy retryPolicy = RetryPolicy.defaults();
+        private CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.defaults();
+        private RateLimiterConfig rateLimiterConfig;
+        private AdaptiveLimiterConfig adaptiveLimiterConfig;
+        private BulkheadConfig bulkheadConfig;
+        private FailoverConfig failoverConfig;
+        private int bulkParallelism = 8;
+        private OrderWatchConfig orderWatchConfig = OrderWatchConfig.defaults();
+        private JournalConfig journalConfig;
+        private OutboxConfig outboxConfig;
+        private boolean coalesceReads = true;
+        private BindingCacheConfig bindingCacheConfig;
+        private boolean blackbird;
+        private int warmUpConnections = 2;
+        private boolean warmUpOnConstruct;
+        private GatewayInstrumentation instrumentation = GatewayInstrumentation.NOOP;
+        private boolean recordCallPhases;
+        private boolean attachCallTimings;
         
         public Builder baseUrl(String baseUrl) {
             this.baseUrl = baseUrl;
@@ -102,15 +329,232 @@ public class BomaPayConfig {
             return this;
         }
         
+        /** Connect, read and write timeout for endpoints without timeouts of their own. */
         public Builder timeout(int timeout) {
             this.timeout = timeout;
             return this;
         }
         
+        /** Limit for a whole call, retries and backoff included, for endpoints without their own; none by default. */
+        public Builder callTimeoutMillis(long callTimeoutMillis) {
+            this.callTimeoutMillis = callTimeoutMillis;
+            return this;
+        }
+        
+        /**
+         * Timeouts for the given endpoint paths, e.g. a short read timeout for {@code GatewayEndpoints.BINDINGS}.
+         * Values the override leaves unset inherit {@link #timeout} and {@link #callTimeoutMillis}.
+         */
+        public Builder endpointTimeouts(EndpointTimeouts timeouts, String... endpoints) {
+            for (String endpoint : endpoints) {
+                endpointTimeouts.put(endpoint, timeouts);
+            }
+            return this;
+        }
+        
+        /**
+         * Executor that runs asynchronous gateway calls and completes their futures.
+         * When unset, OkHttp's default cached dispatcher pool is used.
+         */
+        public Builder asyncExecutor(ExecutorService asyncExecutor) {
+            this.asyncExecutor = asyncExecutor;
+            return this;
+        }
+        
+        /**
+         * Runs the OkHttp dispatcher, and so every asynchronous gateway call, on a virtual thread per
+         * call instead of a pooled platform thread. Blocking calls always run on the caller's thread;
+         * call them from virtual threads to get the same effect. Takes effect on Java 21 and later;
+         * older runtimes log a warning and keep the platform pool.
+         */
+        public Builder virtualThreadDispatcher(boolean virtualThreadDispatcher) {
+            this.virtualThreadDispatcher = virtualThreadDispatcher;
+            return this;
+        }
+        
+        /** Maximum number of idle keep-alive connections held in the pool. */
+        public Builder maxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+        
+        /** How long an idle pooled connection is kept before being evicted. */
+        public Builder keepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+            return this;
+        }
+        
+        /** Maximum number of asynchronous calls executing concurrently across all hosts. */
+        public Builder maxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+        
+        /** Maximum number of asynchronous calls executing concurrently against the gateway host. */
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+        
+        public Builder protocol(HttpProtocol protocol) {
+            this.protocol = protocol;
+            return this;
+        }
+        
+        /** Largest gateway response body that will be decoded; bigger bodies fail the call. */
+        public Builder maxResponseBodyBytes(long maxResponseBodyBytes) {
+            this.maxResponseBodyBytes = maxResponseBodyBytes;
+            return this;
+        }
+        
+        /** Retry rules for transient gateway failures; use {@link RetryPolicy#disabled()} to opt out. */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+        
+        /** Per-endpoint circuit breaker thresholds; use {@link CircuitBreakerConfig#disabled()} to opt out. */
+        public Builder circuitBreaker(CircuitBreakerConfig circuitBreakerConfig) {
+            this.circuitBreakerConfig = circuitBreakerConfig;
+            return this;
+        }
+        
+        /** Optional client-side quotas per endpoint group; no rate limiting when unset. */
+        public Builder rateLimiter(RateLimiterConfig rateLimiterConfig) {
+            this.rateLimiterConfig = rateLimiterConfig;
+            return this;
+        }
+        
+        /** Optional latency-driven concurrency limit per endpoint; no limit when unset. */
+        public Builder adaptiveLimiter(AdaptiveLimiterConfig adaptiveLimiterConfig) {
+            this.adaptiveLimiterConfig = adaptiveLimiterConfig;
+            return this;
+        }
+        
+        /** Optional isolation of endpoint groups into bulkheads with their own capacity; none when unset. */
+        public Builder bulkheads(BulkheadConfig bulkheadConfig) {
+            this.bulkheadConfig = bulkheadConfig;
+            return this;
+        }
+        
+        /** Optional set of gateway sites to fail over between; every call goes to {@code baseUrl} when unset. */
+        public Builder failover(FailoverConfig failoverConfig) {
+            this.failoverConfig = failoverConfig;
+            return this;
+        }
+        
+        /** Concurrent calls a {@code BomaPayClient.bulk()} operation runs by default. */
+        public Builder bulkParallelism(int bulkParallelism) {
+            this.bulkParallelism = bulkParallelism;
+            return this;
+        }
+        
+        /** Polling policy of {@code BomaPayClient.orderWatcher()}. */
+        public Builder orderWatch(OrderWatchConfig orderWatchConfig) {
+            this.orderWatchConfig = orderWatchConfig;
+            return this;
+        }
+        
+        /** Idempotency journal behind {@code BomaPayClient.journaled()}; none by default. */
+        public Builder journal(JournalConfig journalConfig) {
+            this.journalConfig = journalConfig;
+            return this;
+        }
+        
+        /** Store-and-forward queue behind {@code BomaPayClient.outbox()}; none by default. */
+        public Builder outbox(OutboxConfig outboxConfig) {
+            this.outboxConfig = outboxConfig;
+            return this;
+        }
+        
+        /** Whether identical concurrent binding lookups share one gateway call; on by default. */
+        public Builder coalesceReads(boolean coalesceReads) {
+            this.coalesceReads = coalesceReads;
+            return this;
+        }
+        
+        /** Optional cache of binding lookups, invalidated by binding changes made through the SDK; none when unset. */
+        public Builder bindingCache(BindingCacheConfig bindingCacheConfig) {
+            this.bindingCacheConfig = bindingCacheConfig;
+            return this;
+        }
+        
+        /**
+         * Decodes responses with Jackson's Blackbird module (generated accessors instead of reflection).
+         * Requires {@code jackson-module-blackbird} on the classpath; without it a warning is logged.
+         */
+        public Builder blackbird(boolean blackbird) {
+            this.blackbird = blackbird;
+            return this;
+        }
+        
+        /** Number of pooled connections {@code BomaPayClient.warmUp()} opens to the gateway. */
+        public Builder warmUpConnections(int warmUpConnections) {
+            this.warmUpConnections = warmUpConnections;
+            return this;
+        }
+        
+        /** Whether the client warms up its connections while being constructed; off by default. */
+        public Builder warmUpOnConstruct(boolean warmUpOnConstruct) {
+            this.warmUpOnConstruct = warmUpOnConstruct;
+            return this;
+        }
+        
+        /** Receives latency and outcome of every gateway call, e.g. a {@code GatewayMetrics}; records nothing by default. */
+        public Builder instrumentation(GatewayInstrumentation instrumentation) {
+            this.instrumentation = instrumentation;
+            return this;
+        }
+        
+        /**
+         * Times the DNS, connect, TLS, request, time-to-first-byte and response phases of every call
+         * and reports them to the instrumentation; off by default.
+         */
+        public Builder recordCallPhases(boolean recordCallPhases) {
+            this.recordCallPhases = recordCallPhases;
+            return this;
+        }
+        
+        /** Attaches each call's phase timings to the returned response; implies {@link #recordCallPhases}. */
+        public Builder attachCallTimings(boolean attachCallTimings) {
+            this.attachCallTimings = attachCallTimings;
+            return this;
+        }
+        
         public BomaPayConfig build() {
             if (username == null || password == null) {
                 throw new IllegalArgumentException("Username and password are required");
             }
+            if (virtualThreadDispatcher && asyncExecutor != null) {
+                throw new IllegalArgumentException("A virtual-thread dispatcher and a custom async executor are mutually exclusive");
+            }
+            if (timeout <= 0 || callTimeoutMillis < 0) {
+                throw new IllegalArgumentException("Timeout must be positive and call timeout must not be negative");
+            }
+            if (maxIdleConnections < 0 || keepAliveMillis <= 0) {
+                throw new IllegalArgumentException("Connection pool size and keep-alive must be positive");
+            }
+            if (maxRequests < 1 || maxRequestsPerHost < 1) {
+                throw new IllegalArgumentException("Dispatcher request limits must be at least 1");
+            }
+            if (maxResponseBodyBytes <= 0) {
+                throw new IllegalArgumentException("Maximum response body size must be positive");
+            }
+            if (warmUpConnections < 1) {
+                throw new IllegalArgumentException("Warm-up connections must be at least 1");
+            }
+            if (bulkParallelism < 1) {
+                throw new IllegalArgumentException("Bulk parallelism must be at least 1");
+            }
+            if (protocol == null) {
+                throw new IllegalArgumentException("Protocol is required");
+            }
+            if (retryPolicy == null || circuitBreakerConfig == null || orderWatchConfig == null) {
+                throw new IllegalArgumentException("Retry policy, circuit breaker and order watch configs are required");
+            }
+            if (instrumentation == null) {
+                throw new IllegalArgumentException("Instrumentation is required; use GatewayInstrumentation.NOOP to record nothing");
+            }
             return new BomaPayConfig(this);
         }
     }
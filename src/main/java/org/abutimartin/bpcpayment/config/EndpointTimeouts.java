@@ -0,0 +1,110 @@
+package org.abutimartin.bpcpayment.config;
+
+/**
+ * Connect, read, write and overall call timeouts for one endpoint. Connect, read and write apply
+ * to each attempt; the call timeout bounds the whole call, retries and backoff included.
+ * Values left unset inherit the client-wide {@code timeout} and {@code callTimeoutMillis}.
+ */
+public final class EndpointTimeouts {
+    private static final long INHERIT = -1;
+    
+    private final long connectMillis;
+    private final long readMillis;
+    private final long writeMillis;
+    private final long callMillis;
+    
+    private EndpointTimeouts(long connectMillis, long readMillis, long writeMillis, long callMillis) {
+        this.connectMillis = connectMillis;
+        this.readMillis = readMillis;
+        this.writeMillis = writeMillis;
+        this.callMillis = callMillis;
+    }
+    
+    public long getConnectMillis() {
+        return connectMillis;
+    }
+    
+    public long getReadMillis() {
+        return readMillis;
+    }
+    
+    public long getWriteMillis() {
+        return writeMillis;
+    }
+    
+    /**
+     * Limit for the whole call including retries, or {@code 0} for none.
+     */
+    public long getCallMillis() {
+        return callMillis;
+    }
+    
+    static EndpointTimeouts of(long connectMillis, long readMillis, long writeMillis, long callMillis) {
+        return new EndpointTimeouts(connectMillis, readMillis, writeMillis, callMillis);
+    }
+    
+    /**
+     * Fills every unset value from {@code defaults}.
+     */
+    EndpointTimeouts inheritFrom(EndpointTimeouts defaults) {
+        return new EndpointTimeouts(
+                connectMillis != INHERIT ? connectMillis : defaults.connectMillis,
+                readMillis != INHERIT ? readMillis : defaults.readMillis,
+                writeMillis != INHERIT ? writeMillis : defaults.writeMillis,
+                callMillis != INHERIT ? callMillis : defaults.callMillis);
+    }
+    
+    @Override
+    public String toString() {
+        return "EndpointTimeouts{connect=" + connectMillis + "ms, read=" + readMillis
+                + "ms, write=" + writeMillis + "ms, call=" + callMillis + "ms}";
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private long connectMillis = INHERIT;
+        private long readMillis = INHERIT;
+        private long writeMillis = INHERIT;
+        private long callMillis = INHERIT;
+        
+        private Builder() {
+        }
+        
+        /** Longest wait for a new TCP and TLS connection to the gateway. */
+        public Builder connectMillis(long connectMillis) {
+            this.connectMillis = connectMillis;
+            return this;
+        }
+        
+        /** Longest silence while waiting for response bytes. */
+        public Builder readMillis(long readMillis) {
+            this.readMillis = readMillis;
+            return this;
+        }
+        
+        /** Longest stall while sending the request. */
+        public Builder writeMillis(long writeMillis) {
+            this.writeMillis = writeMillis;
+            return this;
+        }
+        
+        /** Limit for the whole call, retries and backoff included; {@code 0} for none. */
+        public Builder callMillis(long callMillis) {
+            this.callMillis = callMillis;
+            return this;
+        }
+        
+        public EndpointTimeouts build() {
+            if (connectMillis == 0 || readMillis == 0 || writeMillis == 0) {
+                throw new IllegalArgumentException("Connect, read and write timeouts must be positive");
+            }
+            if (connectMillis < INHERIT || readMillis < INHERIT || writeMillis < INHERIT || callMillis < INHERIT) {
+                throw new IllegalArgumentException("Timeouts must not be negative");
+            }
+            return new EndpointTimeouts(connectMillis, readMillis, writeMillis, callMillis);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package org.abutimartin.bpcpayment.config;
+
+/**
+ * Wire protocol preference for gateway connections.
+ */
+public enum HttpProtocol {
+    /** Plain HTTP/1.1, one in-flight request per connection. */
+    HTTP_1_1,
+    /** Negotiate HTTP/2 over TLS (ALPN) and fall back to HTTP/1.1 when the gateway does not offer it. */
+    HTTP_2,
+    /** Cleartext HTTP/2 without negotiation, for gateways or proxies known to speak it. */
+    H2_PRIOR_KNOWLEDGE
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package org.abutimartin.bpcpayment.exception;
+
+/**
+ * Thrown when a bulkhead has no free call slot and its wait queue is full or the wait timed out.
+ */
+public class BulkheadFullException extends BomaPayException {
+    private final String bulkhead;
+    
+    public BulkheadFullException(String bulkhead) {
+        super("Bulkhead " + bulkhead + " is full");
+        this.bulkhead = bulkhead;
+    }
+    
+    public String getBulkhead() {
+        return bulkhead;
+    }
+}
\ No newline at end of file
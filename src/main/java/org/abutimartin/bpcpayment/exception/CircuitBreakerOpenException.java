@@ -0,0 +1,17 @@
+package org.abutimartin.bpcpayment.exception;
+
+/**
+ * Thrown without contacting the gateway while the circuit breaker for an endpoint is open.
+ */
+public class CircuitBreakerOpenException extends BomaPayException {
+    private final String endpoint;
+    
+    public CircuitBreakerOpenException(String endpoint) {
+        super("Circuit breaker open for " + endpoint);
+        this.endpoint = endpoint;
+    }
+    
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
\ No newline at end of file
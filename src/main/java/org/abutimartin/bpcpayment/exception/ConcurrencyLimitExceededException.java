@@ -0,0 +1,24 @@
+package org.abutimartin.bpcpayment.exception;
+
+/**
+ * Thrown when a call is shed because the endpoint already has as many requests in flight
+ * as its adaptive concurrency limit allows. The call is rejected immediately rather than queued.
+ */
+public class ConcurrencyLimitExceededException extends BomaPayException {
+    private final String endpoint;
+    private final int limit;
+    
+    public ConcurrencyLimitExceededException(String endpoint, int limit) {
+        super("Concurrency limit of " + limit + " reached for " + endpoint);
+        this.endpoint = endpoint;
+        this.limit = limit;
+    }
+    
+    public String getEndpoint() {
+        return endpoint;
+    }
+    
+    public int getLimit() {
+        return limit;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package org.abutimartin.bpcpayment.exception;
+
+/**
+ * Thrown when the caller's deadline passed before the gateway call could complete. The call may
+ * or may not have reached the gateway; use the order status to find out.
+ */
+public class DeadlineExceededException extends BomaPayException {
+    private final String endpoint;
+    
+    public DeadlineExceededException(String endpoint) {
+        super("Deadline exceeded calling " + endpoint);
+        this.endpoint = endpoint;
+    }
+    
+    public DeadlineExceededException(String endpoint, Throwable cause) {
+        super("Deadline exceeded calling " + endpoint, cause);
+        this.endpoint = endpoint;
+    }
+    
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+package org.abutimartin.bpcpayment.exception;
+
+import org.abutimartin.bpcpayment.journal.JournalEntry;
+
+/**
+ * Thrown when an idempotency key is submitted again while its first operation is still in flight,
+ * has an uncertain outcome, or was found applied after a restart.
+ */
+public class DuplicateOperationException extends BomaPayException {
+    private final String key;
+    private final JournalEntry.State state;
+    
+    public DuplicateOperationException(String key, JournalEntry.State state) {
+        super(message(key, state));
+        this.key = key;
+        this.state = state;
+    }
+    
+    private static String message(String key, JournalEntry.State state) {
+        switch (state) {
+            case IN_FLIGHT:
+                return "Operation " + key + " is already in flight";
+            case UNCERTAIN:
+                return "Outcome of operation " + key + " is uncertain; resolve it before submitting again";
+            default:
+                return "Operation " + key + " was already applied";
+        }
+    }
+    
+    public String getKey() {
+        return key;
+    }
+    
+    /**
+     * State of the earlier operation under the same key.
+     */
+    public JournalEntry.State getState() {
+        return state;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package org.abutimartin.bpcpayment.exception;
+
+import org.abutimartin.bpcpayment.model.response.OrderStatusResponse;
+
+/**
+ * Thrown when a watched order is still pending after the watcher's maximum age, e.g. because the
+ * customer abandoned the payment page.
+ */
+public class OrderWatchExpiredException extends BomaPayException {
+    private final String orderId;
+    private final OrderStatusResponse lastStatus;
+    
+    public OrderWatchExpiredException(String orderId, OrderStatusResponse lastStatus) {
+        super("Order " + orderId + " is still pending after the maximum watch time");
+        this.orderId = orderId;
+        this.lastStatus = lastStatus;
+    }
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    /**
+     * The last status read, or {@code null} if no poll succeeded.
+     */
+    public OrderStatusResponse getLastStatus() {
+        return lastStatus;
+    }
+}
\ No newline at end of file
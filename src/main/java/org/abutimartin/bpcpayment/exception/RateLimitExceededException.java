@@ -0,0 +1,18 @@
+package org.abutimartin.bpcpayment.exception;
+
+/**
+ * Thrown when the client-side rate limiter cannot grant a permit for an endpoint group
+ * within the configured wait, so the call is not sent to the gateway.
+ */
+public class RateLimitExceededException extends BomaPayException {
+    private final String group;
+    
+    public RateLimitExceededException(String group, String endpoint) {
+        super("Rate limit exceeded for group " + group + " (" + endpoint + ")");
+        this.group = group;
+    }
+    
+    public String getGroup() {
+        return group;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package org.abutimartin.bpcpayment.flow;
+
+import org.abutimartin.bpcpayment.BomaPayClient;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.model.response.OrderStatusResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * One gateway call, described so a {@link GatewayProcessor} can run it when there is capacity.
+ * The endpoint tells the processor which concurrency limit the call counts against.
+ * 
+ * @param <T> the response type
+ */
+public final class GatewayOperation<T extends BaseResponse> {
+    private final String endpoint;
+    private final String description;
+    private final Function<BomaPayClient, CompletableFuture<T>> call;
+    
+    private GatewayOperation(String endpoint, String description, Function<BomaPayClient, CompletableFuture<T>> call) {
+        this.endpoint = endpoint;
+        this.description = description;
+        this.call = call;
+    }
+    
+    /**
+     * An operation running any async call of the client.
+     * 
+     * @param endpoint the endpoint the call goes to, e.g. {@link GatewayEndpoints#DEPOSIT}
+     */
+    public static <T extends BaseResponse> GatewayOperation<T> of(String endpoint,
+            Function<BomaPayClient, CompletableFuture<T>> call) {
+        return new GatewayOperation<>(endpoint, endpoint, call);
+    }
+    
+    public static GatewayOperation<OrderRegistrationResponse> register(Long amount, String orderNumber, String returnUrl) {
+        return new GatewayOperation<>(GatewayEndpoints.REGISTER, "register " + orderNumber,
+                client -> client.orders().registerAsync(amount, orderNumber, returnUrl));
+    }
+    
+    public static GatewayOperation<BaseResponse> deposit(String orderId, Long amount) {
+        return new GatewayOperation<>(GatewayEndpoints.DEPOSIT, "deposit " + orderId + " " + amount,
+                client -> client.orders().depositAsync(orderId, amount));
+    }
+    
+    public static GatewayOperation<BaseResponse> refund(String orderId, Long amount) {
+        return new GatewayOperation<>(GatewayEndpoints.REFUND, "refund " + orderId + " " + amount,
+                client -> client.orders().refundAsync(orderId, amount));
+    }
+    
+    public static GatewayOperation<BaseResponse> reverse(String orderId) {
+        return new GatewayOperation<>(GatewayEndpoints.REVERSE, "reverse " + orderId,
+                client -> client.orders().reverseAsync(orderId));
+    }
+    
+    public static GatewayOperation<OrderStatusResponse> getOrderStatusExtended(String orderId) {
+        return new GatewayOperation<>(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, "status " + orderId,
+                client -> client.orders().getOrderStatusExtendedAsync(orderId));
+    }
+    
+    public static GatewayOperation<BaseResponse> unBindCard(String bindingId) {
+        return new GatewayOperation<>(GatewayEndpoints.UNBIND_CARD, "unbind " + bindingId,
+                client -> client.bindings().unBindCardAsync(bindingId));
+    }
+    
+    public String getEndpoint() {
+        return endpoint;
+    }
+    
+    /**
+     * Starts the call. Never throws; a call that cannot start returns a failed future.
+     */
+    public CompletableFuture<T> execute(BomaPayClient client) {
+        try {
+            return call.apply(client);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "GatewayOperation{" + description + "}";
+    }
+}
\ No newline at end of file
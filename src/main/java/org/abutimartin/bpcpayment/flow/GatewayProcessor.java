@@ -0,0 +1,276 @@
+package org.abutimartin.bpcpayment.flow;
+
+import org.abutimartin.bpcpayment.BomaPayClient;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.resilience.AdaptiveConcurrencyLimiter;
+import org.abutimartin.bpcpayment.resilience.Bulkhead;
+import org.abutimartin.bpcpayment.resilience.BulkheadRegistry;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a stream of {@link GatewayOperation}s on the client's async API and publishes their results,
+ * pulling operations from upstream only as fast as the gateway takes them. At any time the
+ * processor has at most {@link #capacity()} operations requested or in flight, and never more than
+ * its subscriber has asked results for, so a fast producer is slowed down instead of queueing
+ * without bound.
+ * 
+ * <p>Capacity follows the client's own limits: the adaptive concurrency limit of the stream's
+ * endpoint when one is configured, so the stream slows down as gateway latency climbs, then the
+ * endpoint's bulkhead, then {@code maxRequestsPerHost}. Until the first operation names the
+ * endpoint, one operation is requested.
+ * 
+ * <p>Results are published in completion order. A failed call is published as a result and does
+ * not end the stream. When upstream completes or fails, the processor finishes the calls in flight
+ * and publishes their results first. Results are published on HTTP dispatcher threads, so the
+ * subscriber must not block. One subscriber is supported.
+ * 
+ * @param <T> the response type
+ */
+public final class GatewayProcessor<T extends BaseResponse>
+        implements Flow.Processor<GatewayOperation<T>, OperationResult<T>> {
+    private final BomaPayClient client;
+    private final int maxInFlight;
+    private final AtomicReference<Flow.Subscriber<? super OperationResult<T>>> downstream = new AtomicReference<>();
+    private volatile Flow.Subscription upstream;
+    private final Queue<OperationResult<T>> results = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    // asked of upstream and not yet received
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile String endpoint;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile Throwable badRequest;
+    private volatile boolean cancelled;
+    // only touched inside drain()
+    private boolean terminated;
+    
+    /**
+     * Creates a processor bounded by the client's limits only.
+     */
+    public GatewayProcessor(BomaPayClient client) {
+        this(client, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Creates a processor that also never runs more than {@code maxInFlight} operations at once.
+     */
+    public GatewayProcessor(BomaPayClient client, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("Max in-flight operations must be at least 1");
+        }
+        this.client = client;
+        this.maxInFlight = maxInFlight;
+    }
+    
+    /**
+     * Operations the processor currently allows requested or in flight.
+     */
+    public int capacity() {
+        int limit = Math.min(maxInFlight, client.getConfig().getMaxRequestsPerHost());
+        AdaptiveConcurrencyLimiter limiter = client.concurrencyLimiter();
+        BulkheadRegistry bulkheads = client.bulkheads();
+        if (limiter == null && bulkheads == null) {
+            return limit;
+        }
+        String current = endpoint;
+        if (current == null) {
+            // the first operation shows which limits the stream runs into
+            return 1;
+        }
+        if (limiter != null) {
+            limit = Math.min(limit, limiter.currentLimit(current));
+        }
+        Bulkhead bulkhead = bulkheads != null ? bulkheads.forEndpoint(current) : null;
+        if (bulkhead != null) {
+            limit = Math.min(limit, bulkhead.stats().getMaxConcurrentCalls());
+        }
+        return Math.max(1, limit);
+    }
+    
+    /**
+     * Operations started and not yet completed.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+    
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+    
+    @Override
+    public void onNext(GatewayOperation<T> operation) {
+        Objects.requireNonNull(operation);
+        boolean first = endpoint == null;
+        endpoint = operation.getEndpoint();
+        inFlight.incrementAndGet();
+        requested.decrementAndGet();
+        operation.execute(client).whenComplete((response, error) -> {
+            results.offer(error == null
+                    ? new OperationResult<>(operation, response, null)
+                    : new OperationResult<>(operation, null, toBomaPayException(error)));
+            inFlight.decrementAndGet();
+            drain();
+        });
+        if (first) {
+            // the endpoint's limits are known now, so there may be room for more than the first probe
+            drain();
+        }
+    }
+    
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = Objects.requireNonNull(throwable);
+        upstreamDone = true;
+        drain();
+    }
+    
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+    
+    @Override
+    public void subscribe(Flow.Subscriber<? super OperationResult<T>> subscriber) {
+        Objects.requireNonNull(subscriber);
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+                
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("GatewayProcessor supports only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    badRequest = new IllegalArgumentException("Requested " + n + " results; requests must be positive");
+                } else {
+                    demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+                }
+                drain();
+            }
+            
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Flow.Subscription subscription = upstream;
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                drain();
+            }
+        });
+        drain();
+    }
+    
+    /**
+     * Publishes what the subscriber asked for and tops up upstream requests. Runs on one thread at a
+     * time; a call arriving while another thread drains makes that thread loop once more.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super OperationResult<T>> subscriber = downstream.get();
+            if (cancelled || terminated) {
+                // calls already sent still complete; their results have nowhere to go
+                results.clear();
+            } else if (subscriber != null) {
+                if (badRequest != null) {
+                    terminated = true;
+                    cancelUpstream();
+                    subscriber.onError(badRequest);
+                } else {
+                    publish(subscriber);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+    
+    private void publish(Flow.Subscriber<? super OperationResult<T>> subscriber) {
+        while (demand.get() > 0) {
+            OperationResult<T> result = results.poll();
+            if (result == null) {
+                break;
+            }
+            if (demand.get() != Long.MAX_VALUE) {
+                demand.decrementAndGet();
+            }
+            subscriber.onNext(result);
+        }
+        if (upstreamDone && inFlight.get() == 0 && results.isEmpty()) {
+            terminated = true;
+            if (upstreamError != null) {
+                subscriber.onError(upstreamError);
+            } else {
+                subscriber.onComplete();
+            }
+            return;
+        }
+        requestMore();
+    }
+    
+    private void requestMore() {
+        Flow.Subscription subscription = upstream;
+        if (subscription == null || upstreamDone) {
+            return;
+        }
+        long outstanding = inFlight.get() + requested.get();
+        long byCapacity = capacity() - outstanding;
+        long wanted = demand.get();
+        // results waiting or on their way use up demand when published
+        long byDemand = wanted == Long.MAX_VALUE ? Long.MAX_VALUE : wanted - outstanding - results.size();
+        long more = Math.min(byCapacity, byDemand);
+        if (more > 0) {
+            requested.addAndGet(more);
+            subscription.request(more);
+        }
+    }
+    
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+    
+    private static BomaPayException toBomaPayException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof BomaPayException
+                ? (BomaPayException) cause
+                : new BomaPayException("Failed to make request", cause);
+    }
+}
\ No newline at end of file
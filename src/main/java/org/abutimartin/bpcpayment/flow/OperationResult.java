@@ -0,0 +1,55 @@
+package org.abutimartin.bpcpayment.flow;
+
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+
+/**
+ * Outcome of one {@link GatewayOperation}: either the gateway's response, which may still carry
+ * a business error code, or the exception that kept the call from completing. A failed call does
+ * not end the stream.
+ * 
+ * @param <T> the response type
+ */
+public final class OperationResult<T extends BaseResponse> {
+    private final GatewayOperation<T> operation;
+    private final T response;
+    private final BomaPayException failure;
+    
+    public OperationResult(GatewayOperation<T> operation, T response, BomaPayException failure) {
+        this.operation = operation;
+        this.response = response;
+        this.failure = failure;
+    }
+    
+    public GatewayOperation<T> getOperation() {
+        return operation;
+    }
+    
+    /**
+     * The gateway's response, or {@code null} if the call failed.
+     */
+    public T getResponse() {
+        return response;
+    }
+    
+    /**
+     * Why the call failed, or {@code null} if the gateway answered. A failed money-moving call may
+     * still have been applied; check the order status before resubmitting it.
+     */
+    public BomaPayException getFailure() {
+        return failure;
+    }
+    
+    /**
+     * Whether the gateway answered with error code {@code 0}.
+     */
+    public boolean isSuccess() {
+        return response != null && response.isSuccess();
+    }
+    
+    @Override
+    public String toString() {
+        return "OperationResult{" + operation + ", " + (failure != null ? "failure=" + failure.getMessage()
+                : "errorCode=" + response.getErrorCode()) + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package org.abutimartin.bpcpayment.http;
+
+/**
+ * Retry state of an enqueued call, attached as a request tag. Each attempt of an enqueued call is
+ * its own OkHttp call: rather than sleeping on a dispatcher thread, {@link RetryInterceptor} ends an
+ * attempt worth retrying with a {@link RetryLaterException}, and {@link HttpClient} enqueues the
+ * request again once the backoff has passed. Only one attempt runs at a time.
+ */
+final class AsyncRetry {
+    private volatile int attempt = 1;
+    private volatile boolean timed;
+    private volatile long expiresAtNanos;
+    
+    /**
+     * The attempt the next call makes, starting at 1.
+     */
+    int attempt() {
+        return attempt;
+    }
+    
+    void attempt(int attempt) {
+        this.attempt = attempt;
+    }
+    
+    /**
+     * Cuts the call timeout of an attempt to what is left of the first attempt's, so the timeout
+     * still covers every attempt and the backoffs between them. Zero means no timeout.
+     */
+    long timeoutNanos(long callTimeoutNanos) {
+        long now = System.nanoTime();
+        if (attempt == 1) {
+            timed = callTimeoutNanos > 0;
+            expiresAtNanos = now + callTimeoutNanos;
+            return callTimeoutNanos;
+        }
+        // zero would mean no timeout, so an expired one still gets the smallest
+        return timed ? Math.max(1, expiresAtNanos - now) : 0;
+    }
+    
+    /**
+     * Whether a retry after {@code delayNanos} would still start within the call timeout.
+     */
+    boolean hasTimeFor(long delayNanos) {
+        return !timed || expiresAtNanos - System.nanoTime() > delayNanos;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package org.abutimartin.bpcpayment.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails the read once more than {@code limit} bytes have been consumed, so an oversized
+ * gateway response is rejected while it is being parsed rather than after it is buffered.
+ */
+final class BoundedInputStream extends FilterInputStream {
+    private final long limit;
+    private long consumed;
+    
+    BoundedInputStream(InputStream in, long limit) {
+        super(in);
+        this.limit = limit;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+    
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+    
+    private void count(long n) throws IOException {
+        consumed += n;
+        if (consumed > limit) {
+            throw new IOException("Response body exceeds limit of " + limit + " bytes");
+        }
+    }
+}
\ No newline at end of file
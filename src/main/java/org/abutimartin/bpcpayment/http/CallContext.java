@@ -0,0 +1,40 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.Request;
+
+/**
+ * Per-call metadata attached to every gateway request as an OkHttp tag, so interceptors
+ * can apply endpoint-specific policy without re-parsing the URL.
+ */
+public final class CallContext {
+    private final String endpoint;
+    private final Deadline deadline;
+    
+    public CallContext(String endpoint) {
+        this(endpoint, null);
+    }
+    
+    public CallContext(String endpoint, Deadline deadline) {
+        this.endpoint = endpoint;
+        this.deadline = deadline;
+    }
+    
+    /**
+     * The gateway endpoint path, e.g. {@code /rest/deposit.do}.
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+    
+    /**
+     * The caller's deadline captured when the call was started, or {@code null} if it has none.
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+    
+    public static CallContext of(Request request) {
+        CallContext context = request.tag(CallContext.class);
+        return context != null ? context : new CallContext(request.url().encodedPath());
+    }
+}
\ No newline at end of file
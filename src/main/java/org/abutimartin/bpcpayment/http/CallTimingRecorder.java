@@ -0,0 +1,22 @@
+package org.abutimartin.bpcpayment.http;
+
+import org.abutimartin.bpcpayment.metrics.CallTimings;
+
+/**
+ * The recording side of {@link CallTimings}, tagged on each request and written by
+ * {@link PhaseTimingListener}. Responses and instrumentation see it only as {@code CallTimings}.
+ */
+final class CallTimingRecorder extends CallTimings {
+    
+    CallTimingRecorder(String endpoint) {
+        super(endpoint);
+    }
+    
+    void record(Mark mark) {
+        mark(mark);
+    }
+    
+    void recordConnectionAcquired() {
+        connectionAcquired();
+    }
+}
\ No newline at end of file
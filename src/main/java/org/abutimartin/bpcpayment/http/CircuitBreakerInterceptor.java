@@ -0,0 +1,48 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.abutimartin.bpcpayment.exception.CircuitBreakerOpenException;
+import org.abutimartin.bpcpayment.resilience.CircuitBreaker;
+import org.abutimartin.bpcpayment.resilience.CircuitBreakerRegistry;
+
+import java.io.IOException;
+
+/**
+ * Guards each attempt with the circuit breaker of its endpoint, or of its site and endpoint when
+ * failover is configured. Transport failures and HTTP 5xx responses count as failures; business
+ * errors reported in the body do not.
+ */
+final class CircuitBreakerInterceptor implements Interceptor {
+    private final CircuitBreakerRegistry registry;
+    
+    CircuitBreakerInterceptor(CircuitBreakerRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String endpoint = CallContext.of(chain.request()).getEndpoint();
+        GatewaySites.Site site = chain.request().tag(GatewaySites.Site.class);
+        // with failover every site has its own breakers, so a dead site cannot open them for the healthy ones
+        String name = site != null ? site.spec.getBaseUrl() + endpoint : endpoint;
+        CircuitBreaker breaker = registry.get(name);
+        if (!breaker.tryAcquirePermission()) {
+            throw new RejectedCallException(new CircuitBreakerOpenException(name));
+        }
+        
+        long start = System.nanoTime();
+        try {
+            Response response = chain.proceed(chain.request());
+            breaker.onResult(System.nanoTime() - start, response.code() >= 500);
+            return response;
+        } catch (RejectedCallException e) {
+            // rejected further down the chain before reaching the gateway; says nothing about its health
+            breaker.releasePermission();
+            throw e;
+        } catch (IOException e) {
+            breaker.onResult(System.nanoTime() - start, !chain.call().isCanceled());
+            throw e;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.abutimartin.bpcpayment.exception.ConcurrencyLimitExceededException;
+import org.abutimartin.bpcpayment.resilience.AdaptiveConcurrencyLimiter;
+
+import java.io.IOException;
+
+/**
+ * Sheds attempts that would exceed the endpoint's adaptive concurrency limit and reports each
+ * round trip back to the limiter.
+ */
+final class ConcurrencyLimitInterceptor implements Interceptor {
+    private final AdaptiveConcurrencyLimiter limiter;
+    
+    ConcurrencyLimitInterceptor(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String endpoint = CallContext.of(chain.request()).getEndpoint();
+        AdaptiveConcurrencyLimiter.Limit limit = limiter.tryAcquire(endpoint);
+        if (limit == null) {
+            throw new RejectedCallException(
+                    new ConcurrencyLimitExceededException(endpoint, limiter.currentLimit(endpoint)));
+        }
+        
+        long start = System.nanoTime();
+        try {
+            Response response = chain.proceed(chain.request());
+            limit.release(System.nanoTime() - start, response.code() >= 500);
+            return response;
+        } catch (IOException e) {
+            if (chain.call().isCanceled()) {
+                limit.release();
+            } else {
+                limit.release(System.nanoTime() - start, true);
+            }
+            throw e;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package org.abutimartin.bpcpayment.http;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time after which the caller no longer wants a result, usually derived from the
+ * budget of the request being served. Bind it around SDK calls and every gateway call started on
+ * that thread, blocking or async, is cut short when it passes:
+ * <pre>{@code
+ * try (Deadline.Scope ignored = Deadline.after(Duration.ofMillis(800)).bind()) {
+ *     client.payments().instantPayment(...);
+ * }
+ * }</pre>
+ * The deadline is captured when a call is started, so async calls keep it after the scope closes.
+ */
+public final class Deadline {
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+    
+    private final long expiresAtNanos;
+    
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+    
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+    
+    public static Deadline after(Duration timeout) {
+        return after(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * The deadline bound to the current thread, or {@code null} if there is none.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Time left before the deadline, never negative.
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(remainingNanos(), TimeUnit.NANOSECONDS);
+    }
+    
+    public long remainingNanos() {
+        return Math.max(0, expiresAtNanos - System.nanoTime());
+    }
+    
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+    
+    /**
+     * Makes this the current thread's deadline until the scope is closed. Binding inside an
+     * existing scope keeps whichever deadline is earlier, so inner code can only shorten the budget.
+     */
+    public Scope bind() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(previous != null && previous.expiresAtNanos - expiresAtNanos < 0 ? previous : this);
+        return new Scope(previous);
+    }
+    
+    @Override
+    public String toString() {
+        return "Deadline{remaining=" + remaining(TimeUnit.MILLISECONDS) + "ms}";
+    }
+    
+    /**
+     * Restores the previously bound deadline when closed.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Deadline previous;
+        
+        private Scope(Deadline previous) {
+            this.previous = previous;
+        }
+        
+        @Override
+        public void close() {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.abutimartin.bpcpayment.exception.CircuitBreakerOpenException;
+import org.abutimartin.bpcpayment.resilience.RetryCondition;
+import org.abutimartin.bpcpayment.resilience.RetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sends each attempt to the site chosen by {@link GatewaySites} and moves on to the next site at
+ * once, without backoff, when the failure is one the {@link RetryPolicy} allows retrying for the
+ * endpoint. Money-moving endpoints are only retried when the gateway never received the request,
+ * so a payment is never sent to two sites.
+ * 
+ * <p>Each attempt is tagged with its site, so the circuit breakers further down the chain judge
+ * every site separately.
+ */
+final class FailoverInterceptor implements Interceptor {
+    private static final Logger logger = LoggerFactory.getLogger(FailoverInterceptor.class);
+    
+    private final GatewaySites sites;
+    private final RetryPolicy policy;
+    
+    FailoverInterceptor(GatewaySites sites, RetryPolicy policy) {
+        this.sites = sites;
+        this.policy = policy;
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String endpoint = CallContext.of(request).getEndpoint();
+        Set<RetryCondition> failOverOn = policy.conditionsFor(endpoint);
+        List<GatewaySites.Site> tried = new ArrayList<>(2);
+        
+        GatewaySites.Site site = sites.select(tried);
+        while (true) {
+            Response response = null;
+            IOException failure = null;
+            RejectedCallException rejected = null;
+            long start = System.nanoTime();
+            site.inFlight.incrementAndGet();
+            try {
+                response = chain.proceed(request.newBuilder()
+                        .url(site.url(endpoint))
+                        .tag(GatewaySites.Site.class, site)
+                        .build());
+            } catch (RejectedCallException e) {
+                rejected = e;
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                site.inFlight.decrementAndGet();
+            }
+            
+            tried.add(site);
+            if (rejected != null) {
+                // refused on our side before reaching the site, so it says nothing about the site's
+                // health; an open breaker is this site's alone and the call may still go elsewhere
+                GatewaySites.Site next = rejected.getRejection() instanceof CircuitBreakerOpenException
+                        && !chain.call().isCanceled() ? sites.select(tried) : null;
+                if (next == null) {
+                    throw rejected;
+                }
+                logger.warn("Failing over {} from {} to {} while its circuit breaker is open", endpoint,
+                        site.spec.getBaseUrl(), next.spec.getBaseUrl());
+                site = next;
+                continue;
+            }
+            
+            RetryCondition condition = failure != null
+                    ? RetryInterceptor.classify(failure)
+                    : RetryInterceptor.classify(response);
+            if (failure != null ? condition != null : response.code() >= 500) {
+                sites.onFailure(site);
+            } else if (failure == null && condition != RetryCondition.THROTTLED) {
+                // a throttled answer proves the site is up but says nothing about its latency
+                sites.onSuccess(site, System.nanoTime() - start);
+            }
+            
+            GatewaySites.Site next = condition != null && failOverOn.contains(condition) && !chain.call().isCanceled()
+                    ? sites.select(tried)
+                    : null;
+            if (next == null) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return response;
+            }
+            
+            if (response != null) {
+                response.close();
+            }
+            logger.warn("Failing over {} from {} to {} after {}", endpoint, site.spec.getBaseUrl(),
+                    next.spec.getBaseUrl(), condition);
+            site = next;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,222 @@
+package org.abutimartin.bpcpayment.http;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.model.request.BaseRequest;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@code application/x-www-form-urlencoded} encoder compiled once per request model type.
+ * <p>
+ * Compiling walks the {@link JsonProperty} fields of the model once and pre-encodes every
+ * {@code &name=} separator. The credentials and language always come from {@link BomaPayConfig}
+ * and are encoded into a constant prefix up front. Encoding a request then measures the variable
+ * fields, allocates one exactly sized array and writes straight into it: no map, no per-field
+ * strings, and numbers are written digit by digit without {@code Long.toString}.
+ * <p>
+ * Values are encoded like {@link java.net.URLEncoder}: UTF-8, space as {@code +}, and only
+ * {@code A-Z a-z 0-9 - . _ *} left as is. Null fields are omitted.
+ */
+public final class FormEncoder<T extends BaseRequest> {
+    private static final MediaType FORM_ENCODED = MediaType.get("application/x-www-form-urlencoded");
+    private static final Set<String> CONFIG_FIELDS = Set.of("userName", "password", "language");
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    
+    private final byte[] prefix;
+    private final Field[] fields;
+    private final byte[][] separators;
+    
+    private FormEncoder(byte[] prefix, Field[] fields, byte[][] separators) {
+        this.prefix = prefix;
+        this.fields = fields;
+        this.separators = separators;
+    }
+    
+    /**
+     * Compiles an encoder for the given request model, binding it to the config's credentials.
+     */
+    public static <T extends BaseRequest> FormEncoder<T> compile(Class<T> type, BomaPayConfig config) {
+        // superclass fields first, in declaration order
+        Deque<Class<?>> hierarchy = new ArrayDeque<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            hierarchy.push(c);
+        }
+        List<Field> fields = new ArrayList<>();
+        List<byte[]> separators = new ArrayList<>();
+        for (Class<?> c : hierarchy) {
+            for (Field field : c.getDeclaredFields()) {
+                JsonProperty property = field.getAnnotation(JsonProperty.class);
+                if (property == null || Modifier.isStatic(field.getModifiers()) || CONFIG_FIELDS.contains(property.value())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+                separators.add(ascii("&" + encode(property.value()) + "="));
+            }
+        }
+        String prefix = "userName=" + encode(config.getUsername()) + "&password=" + encode(config.getPassword());
+        if (config.getLanguage() != null) {
+            prefix += "&language=" + encode(config.getLanguage());
+        }
+        return new FormEncoder<>(ascii(prefix), fields.toArray(new Field[0]), separators.toArray(new byte[0][]));
+    }
+    
+    /**
+     * Encodes the request into a form body.
+     */
+    public RequestBody encode(T request) {
+        // measure first, so the body goes into one exactly sized array without holding the values
+        int length = prefix.length;
+        for (int i = 0; i < fields.length; i++) {
+            Object value = read(fields[i], request);
+            if (value != null) {
+                length += separators[i].length + encodedLength(value);
+            }
+        }
+        
+        byte[] body = new byte[length];
+        System.arraycopy(prefix, 0, body, 0, prefix.length);
+        int pos = prefix.length;
+        for (int i = 0; i < fields.length; i++) {
+            Object value = read(fields[i], request);
+            if (value == null) {
+                continue;
+            }
+            byte[] separator = separators[i];
+            System.arraycopy(separator, 0, body, pos, separator.length);
+            pos += separator.length;
+            pos = write(value, body, pos);
+        }
+        return RequestBody.create(body, FORM_ENCODED);
+    }
+    
+    private static Object read(Field field, Object request) {
+        try {
+            return field.get(request);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read form field " + field.getName(), e);
+        }
+    }
+    
+    private static int encodedLength(Object value) {
+        if (value instanceof Long || value instanceof Integer) {
+            return digits(((Number) value).longValue());
+        }
+        String s = value.toString();
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (isUnreserved(c) || c == ' ') {
+                length++;
+            } else if (c < 0x80) {
+                length += 3;
+            } else if (c < 0x800) {
+                length += 6;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 12;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, written as an encoded '?' like String.getBytes does
+                length += 3;
+            } else {
+                length += 9;
+            }
+        }
+        return length;
+    }
+    
+    private static int write(Object value, byte[] out, int pos) {
+        if (value instanceof Long || value instanceof Integer) {
+            return writeDigits(((Number) value).longValue(), out, pos);
+        }
+        String s = value.toString();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (isUnreserved(c)) {
+                out[pos++] = (byte) c;
+            } else if (c == ' ') {
+                out[pos++] = '+';
+            } else if (c < 0x80) {
+                pos = escape(c, out, pos);
+            } else if (c < 0x800) {
+                pos = escape(0xC0 | (c >> 6), out, pos);
+                pos = escape(0x80 | (c & 0x3F), out, pos);
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                pos = escape(0xF0 | (cp >> 18), out, pos);
+                pos = escape(0x80 | ((cp >> 12) & 0x3F), out, pos);
+                pos = escape(0x80 | ((cp >> 6) & 0x3F), out, pos);
+                pos = escape(0x80 | (cp & 0x3F), out, pos);
+            } else if (Character.isSurrogate(c)) {
+                pos = escape('?', out, pos);
+            } else {
+                pos = escape(0xE0 | (c >> 12), out, pos);
+                pos = escape(0x80 | ((c >> 6) & 0x3F), out, pos);
+                pos = escape(0x80 | (c & 0x3F), out, pos);
+            }
+        }
+        return pos;
+    }
+    
+    private static int escape(int b, byte[] out, int pos) {
+        out[pos] = '%';
+        out[pos + 1] = HEX[(b >> 4) & 0xF];
+        out[pos + 2] = HEX[b & 0xF];
+        return pos + 3;
+    }
+    
+    private static int digits(long value) {
+        if (value == Long.MIN_VALUE) {
+            return 20;
+        }
+        int length = value < 0 ? 2 : 1;
+        for (long v = Math.abs(value); v >= 10; v /= 10) {
+            length++;
+        }
+        return length;
+    }
+    
+    private static int writeDigits(long value, byte[] out, int pos) {
+        if (value == Long.MIN_VALUE) {
+            byte[] min = ascii(Long.toString(value));
+            System.arraycopy(min, 0, out, pos, min.length);
+            return pos + min.length;
+        }
+        int end = pos + digits(value);
+        if (value < 0) {
+            out[pos] = '-';
+            value = -value;
+        }
+        int i = end;
+        do {
+            out[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+    
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '*';
+    }
+    
+    private static String encode(String value) {
+        byte[] out = new byte[encodedLength(value)];
+        write(value, out, 0);
+        return new String(out, StandardCharsets.US_ASCII);
+    }
+    
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
\ No newline at end of file
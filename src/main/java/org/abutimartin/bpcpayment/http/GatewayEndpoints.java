@@ -0,0 +1,32 @@
+package org.abutimartin.bpcpayment.http;
+
+/**
+ * Gateway endpoint paths used by the services, grouped by the service that calls them.
+ */
+public final class GatewayEndpoints {
+    public static final String REGISTER = "/rest/register.do";
+    public static final String REGISTER_PRE_AUTH = "/rest/registerPreAuth.do";
+    public static final String DEPOSIT = "/rest/deposit.do";
+    public static final String REVERSE = "/rest/reverse.do";
+    public static final String REFUND = "/rest/refund.do";
+    public static final String DECLINE = "/rest/decline.do";
+    public static final String GET_ORDER_STATUS_EXTENDED = "/rest/getOrderStatusExtended.do";
+    public static final String PAYMENT_ORDER = "/rest/paymentorder.do";
+    public static final String INSTANT_PAYMENT = "/rest/instantPayment.do";
+    public static final String MOTO_PAYMENT = "/rest/motoPayment.do";
+    public static final String GET_BINDINGS = "/rest/getBindings.do";
+    public static final String GET_BINDINGS_BY_CARD_OR_ID = "/rest/getBindingsByCardOrId.do";
+    public static final String UNBIND_CARD = "/rest/unBindCard.do";
+    public static final String BIND_CARD = "/rest/bindCard.do";
+    public static final String EXTEND_BINDING = "/rest/extendBinding.do";
+    
+    /** Endpoints called by {@code OrderService}. */
+    public static final String[] ORDERS = {REGISTER, REGISTER_PRE_AUTH, DEPOSIT, REVERSE, REFUND, DECLINE, GET_ORDER_STATUS_EXTENDED};
+    /** Endpoints called by {@code PaymentService}. */
+    public static final String[] PAYMENTS = {PAYMENT_ORDER, INSTANT_PAYMENT, MOTO_PAYMENT};
+    /** Endpoints called by {@code BindingService}. */
+    public static final String[] BINDINGS = {GET_BINDINGS, GET_BINDINGS_BY_CARD_OR_ID, UNBIND_CARD, BIND_CARD, EXTEND_BINDING};
+    
+    private GatewayEndpoints() {
+    }
+}
\ No newline at end of file
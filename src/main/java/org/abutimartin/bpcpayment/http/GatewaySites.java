@@ -0,0 +1,234 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.abutimartin.bpcpayment.resilience.FailoverConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Health and latency of the gateway sites of a {@link FailoverConfig}, and the choice of site for
+ * each attempt. Sites are judged passively from real calls and, when configured, by probing each
+ * site's base URL with a HEAD request on the health-check thread of the transport.
+ * 
+ * <p>Among available sites of the best priority the one with the lowest peak EWMA latency times
+ * calls in flight, divided by weight, wins. The average decays towards zero while a site is idle,
+ * so a site that was slow once is tried again later instead of being starved.
+ */
+public final class GatewaySites implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GatewaySites.class);
+    
+    private final List<Site> sites;
+    private final int failuresToEject;
+    private final long ejectNanos;
+    private final long decayNanos;
+    private final OkHttpClient probeClient;
+    private final HealthCheck healthCheck;
+    
+    GatewaySites(FailoverConfig config, GatewayTransport transport) {
+        List<Site> sites = new ArrayList<>();
+        for (FailoverConfig.Site spec : config.getSites()) {
+            sites.add(new Site(spec));
+        }
+        this.sites = sites;
+        this.failuresToEject = config.getFailuresToEject();
+        this.ejectNanos = TimeUnit.MILLISECONDS.toNanos(config.getEjectMillis());
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(config.getLatencyDecayMillis());
+        if (config.getHealthCheckIntervalMillis() > 0) {
+            this.probeClient = transport.client().newBuilder()
+                    .callTimeout(config.getHealthCheckTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .build();
+            this.healthCheck = new HealthCheck(this);
+            healthCheck.future = transport.scheduleHealthCheck(healthCheck, config.getHealthCheckIntervalMillis());
+        } else {
+            this.probeClient = null;
+            this.healthCheck = null;
+        }
+    }
+    
+    /**
+     * Returns the current state of every site, in configuration order.
+     */
+    public List<SiteStatus> status() {
+        long now = System.nanoTime();
+        List<SiteStatus> status = new ArrayList<>(sites.size());
+        for (Site site : sites) {
+            status.add(new SiteStatus(site.spec.getBaseUrl(), site.spec.getPriority(), site.spec.getWeight(),
+                    !site.ejected, site.latencyNanos(now, decayNanos) / 1_000_000.0,
+                    site.inFlight.get(), site.consecutiveFailures.get()));
+        }
+        return status;
+    }
+    
+    /**
+     * Stops the active health checks. Calls keep being routed on passive health alone. Closing the
+     * transport stops them too, and so does dropping the client.
+     */
+    @Override
+    public void close() {
+        if (healthCheck != null) {
+            healthCheck.cancel();
+        }
+    }
+    
+    /**
+     * Picks the site for the next attempt, skipping the ones already tried by this call. When every
+     * remaining site is ejected the best of them is still returned: a call that may fail beats one
+     * that certainly does. Returns {@code null} only when all sites were tried.
+     */
+    Site select(Collection<Site> tried) {
+        long now = System.nanoTime();
+        Site best = null;
+        boolean bestAvailable = false;
+        double bestScore = 0;
+        for (Site site : sites) {
+            if (tried.contains(site)) {
+                continue;
+            }
+            boolean available = isAvailable(site, now);
+            double score = site.latencyNanos(now, decayNanos) * (site.inFlight.get() + 1) / site.spec.getWeight();
+            if (best == null
+                    || available && !bestAvailable
+                    || available == bestAvailable && (site.spec.getPriority() < best.spec.getPriority()
+                            || site.spec.getPriority() == best.spec.getPriority() && score < bestScore)) {
+                best = site;
+                bestAvailable = available;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+    
+    void onSuccess(Site site, long rttNanos) {
+        site.observe(rttNanos, decayNanos);
+        readmit(site);
+    }
+    
+    void onFailure(Site site) {
+        if (site.consecutiveFailures.incrementAndGet() >= failuresToEject) {
+            // re-ejecting restarts the cool-down of a site that failed its trial call
+            site.ejectedAtNanos = System.nanoTime();
+            if (!site.ejected) {
+                site.ejected = true;
+                logger.warn("Gateway site {} ejected after {} consecutive failures", site.spec.getBaseUrl(),
+                        site.consecutiveFailures.get());
+            }
+        }
+    }
+    
+    private void readmit(Site site) {
+        site.consecutiveFailures.set(0);
+        if (site.ejected) {
+            site.ejected = false;
+            logger.info("Gateway site {} is healthy again", site.spec.getBaseUrl());
+        }
+    }
+    
+    private boolean isAvailable(Site site, long now) {
+        // with active checks only a successful probe readmits; without them a trial call does after the cool-down
+        return !site.ejected || healthCheck == null && now - site.ejectedAtNanos >= ejectNanos;
+    }
+    
+    private void probeAll() {
+        for (Site site : sites) {
+            probeClient.newCall(new Request.Builder().url(site.baseUrl).head().build()).enqueue(new Callback() {
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    if (response.code() < 500) {
+                        readmit(site);
+                    } else {
+                        GatewaySites.this.onFailure(site);
+                    }
+                }
+                
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    logger.debug("Health check of {} failed", site.spec.getBaseUrl(), e);
+                    GatewaySites.this.onFailure(site);
+                }
+            });
+        }
+    }
+    
+    static final class Site {
+        final FailoverConfig.Site spec;
+        final HttpUrl baseUrl;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        volatile boolean ejected;
+        volatile long ejectedAtNanos;
+        private double latency;
+        private long observedAtNanos;
+        
+        Site(FailoverConfig.Site spec) {
+            this.spec = spec;
+            this.baseUrl = HttpUrl.get(spec.getBaseUrl());
+        }
+        
+        HttpUrl url(String endpoint) {
+            return HttpUrl.get(spec.getBaseUrl() + endpoint);
+        }
+        
+        /**
+         * Peak EWMA: a slower sample replaces the average at once, faster ones blend in over time.
+         */
+        synchronized void observe(long rttNanos, long decayNanos) {
+            long now = System.nanoTime();
+            double current = latencyNanos(now, decayNanos);
+            latency = rttNanos > current ? rttNanos : current + (rttNanos - current) * (1 - decay(now, decayNanos));
+            observedAtNanos = now;
+        }
+        
+        synchronized double latencyNanos(long now, long decayNanos) {
+            return latency * decay(now, decayNanos);
+        }
+        
+        private double decay(long now, long decayNanos) {
+            return Math.exp(-(double) Math.max(0, now - observedAtNanos) / decayNanos);
+        }
+    }
+    
+    /**
+     * The scheduled probe. It holds its sites weakly so a client dropped without closing is still
+     * collected, after which the check cancels itself.
+     */
+    private static final class HealthCheck implements Runnable {
+        private final WeakReference<GatewaySites> sites;
+        private volatile ScheduledFuture<?> future;
+        
+        HealthCheck(GatewaySites sites) {
+            this.sites = new WeakReference<>(sites);
+        }
+        
+        @Override
+        public void run() {
+            GatewaySites target = sites.get();
+            if (target == null) {
+                cancel();
+            } else {
+                target.probeAll();
+            }
+        }
+        
+        void cancel() {
+            ScheduledFuture<?> scheduled = future;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+}
\ No newline at end of file
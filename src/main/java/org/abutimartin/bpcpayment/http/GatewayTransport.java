@@ -0,0 +1,287 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.util.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The expensive, shareable part of a gateway client: connection pool, dispatcher threads and JSON
+ * codec for one gateway base URL. Every {@link HttpClient} runs on a transport; a standalone client
+ * builds its own from its config, while {@code BomaPayClientFactory} shares one across merchants.
+ */
+public final class GatewayTransport implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GatewayTransport.class);
+    private static final long HEALTH_CHECK_IDLE_MILLIS = 10_000;
+    
+    private final String baseUrl;
+    private final int maxIdleConnections;
+    private final int maxRequestsPerHost;
+    private final boolean ownsExecutor;
+    private final ConnectionPool connectionPool;
+    private final Dispatcher dispatcher;
+    private final OkHttpClient client;
+    private final JsonCodec codec;
+    private final ReentrantLock healthCheckLock = new ReentrantLock();
+    private ScheduledThreadPoolExecutor healthChecker;
+    private boolean closed;
+    
+    private GatewayTransport(Builder builder) {
+        this.baseUrl = builder.baseUrl;
+        this.maxIdleConnections = builder.maxIdleConnections;
+        this.maxRequestsPerHost = builder.maxRequestsPerHost;
+        this.ownsExecutor = builder.asyncExecutor == null;
+        this.codec = new JsonCodec(builder.blackbird);
+        this.connectionPool = new ConnectionPool(builder.maxIdleConnections,
+                builder.keepAliveMillis, TimeUnit.MILLISECONDS);
+        this.dispatcher = newDispatcher(builder);
+        this.dispatcher.setMaxRequests(builder.maxRequests);
+        this.dispatcher.setMaxRequestsPerHost(builder.maxRequestsPerHost);
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .protocols(protocols(builder.protocol))
+                .build();
+    }
+    
+    /**
+     * A transport with the connection and dispatcher settings of the given config.
+     */
+    public static GatewayTransport from(BomaPayConfig config) {
+        return builder()
+                .baseUrl(config.getBaseUrl())
+                .asyncExecutor(config.getAsyncExecutor())
+                .virtualThreadDispatcher(config.isVirtualThreadDispatcher())
+                .maxIdleConnections(config.getMaxIdleConnections())
+                .keepAliveMillis(config.getKeepAliveMillis())
+                .maxRequests(config.getMaxRequests())
+                .maxRequestsPerHost(config.getMaxRequestsPerHost())
+                .protocol(config.getProtocol())
+                .blackbird(config.isBlackbird())
+                .build();
+    }
+    
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+    
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+    
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+    
+    /**
+     * Returns live connection pool and dispatcher counters across every client on this transport.
+     */
+    public PoolStats poolStats() {
+        return new PoolStats(connectionPool.connectionCount(), connectionPool.idleConnectionCount(),
+                dispatcher.runningCallsCount(), dispatcher.queuedCallsCount());
+    }
+    
+    /**
+     * Closes pooled connections and stops the dispatcher threads and the failover health checks of
+     * every client on this transport. A caller-supplied async executor is left running.
+     */
+    @Override
+    public void close() {
+        healthCheckLock.lock();
+        try {
+            closed = true;
+            if (healthChecker != null) {
+                healthChecker.shutdownNow();
+            }
+        } finally {
+            healthCheckLock.unlock();
+        }
+        if (ownsExecutor) {
+            dispatcher.executorService().shutdown();
+        }
+        connectionPool.evictAll();
+    }
+    
+    /**
+     * Runs a failover health check every {@code intervalMillis} on the one checker thread shared by
+     * the clients of this transport. The thread is started on first use and exits once no check is
+     * left. Returns {@code null} once the transport is closed.
+     */
+    ScheduledFuture<?> scheduleHealthCheck(Runnable check, long intervalMillis) {
+        healthCheckLock.lock();
+        try {
+            if (closed) {
+                return null;
+            }
+            if (healthChecker == null) {
+                healthChecker = new ScheduledThreadPoolExecutor(1, task -> {
+                    Thread thread = new Thread(task, "bomapay-health-check");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                healthChecker.setRemoveOnCancelPolicy(true);
+                healthChecker.setKeepAliveTime(HEALTH_CHECK_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+                healthChecker.allowCoreThreadTimeOut(true);
+            }
+            return healthChecker.scheduleWithFixedDelay(check, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } finally {
+            healthCheckLock.unlock();
+        }
+    }
+    
+    /**
+     * Base OkHttp client; per-client settings and interceptors go on a {@code newBuilder()} copy,
+     * which keeps the pool and dispatcher.
+     */
+    OkHttpClient client() {
+        return client;
+    }
+    
+    ConnectionPool connectionPool() {
+        return connectionPool;
+    }
+    
+    Dispatcher dispatcher() {
+        return dispatcher;
+    }
+    
+    JsonCodec codec() {
+        return codec;
+    }
+    
+    private static Dispatcher newDispatcher(Builder builder) {
+        // enqueued calls and their completions run on the caller-supplied executor when present
+        if (builder.asyncExecutor != null) {
+            return new Dispatcher(builder.asyncExecutor);
+        }
+        if (!builder.virtualThreadDispatcher) {
+            return new Dispatcher();
+        }
+        if (!VirtualThreads.isSupported()) {
+            logger.warn("Virtual-thread dispatcher requested but the runtime is older than Java 21; using platform threads");
+            return new Dispatcher();
+        }
+        if (builder.protocol != HttpProtocol.HTTP_1_1) {
+            // OkHttp writes HTTP/2 frames while holding a monitor, which pins the carrier thread
+            logger.warn("Virtual threads work best with HttpProtocol.HTTP_1_1; HTTP/2 frame writes pin carrier threads");
+        }
+        return new Dispatcher(VirtualThreads.newThreadPerTaskExecutor("bomapay-vt-"));
+    }
+    
+    private static List<Protocol> protocols(HttpProtocol protocol) {
+        switch (protocol) {
+            case HTTP_1_1:
+                return Collections.singletonList(Protocol.HTTP_1_1);
+            case H2_PRIOR_KNOWLEDGE:
+                return Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE);
+            default:
+                return List.of(Protocol.HTTP_2, Protocol.HTTP_1_1);
+        }
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Same settings and defaults as the matching {@link BomaPayConfig.Builder} setters.
+     */
+    public static class Builder {
+        private String baseUrl = "https://dev.bpcbt.com/payment";
+        private ExecutorService asyncExecutor;
+        private boolean virtualThreadDispatcher;
+        private int maxIdleConnections = 5;
+        private long keepAliveMillis = 300000;
+        private int maxRequests = 64;
+        private int maxRequestsPerHost = 5;
+        private HttpProtocol protocol = HttpProtocol.HTTP_2;
+        private boolean blackbird;
+        
+        private Builder() {
+        }
+        
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+        
+        /** Executor that runs asynchronous gateway calls; OkHttp's cached pool when unset. */
+        public Builder asyncExecutor(ExecutorService asyncExecutor) {
+            this.asyncExecutor = asyncExecutor;
+            return this;
+        }
+        
+        /** Runs the dispatcher, and so asynchronous gateway calls, on virtual threads on Java 21 and later. */
+        public Builder virtualThreadDispatcher(boolean virtualThreadDispatcher) {
+            this.virtualThreadDispatcher = virtualThreadDispatcher;
+            return this;
+        }
+        
+        /** Maximum number of idle keep-alive connections held in the pool. */
+        public Builder maxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+        
+        /** How long an idle pooled connection is kept before being evicted. */
+        public Builder keepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+            return this;
+        }
+        
+        /** Maximum number of asynchronous calls executing concurrently across all hosts. */
+        public Builder maxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+        
+        /** Maximum number of asynchronous calls executing concurrently against the gateway host. */
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+        
+        public Builder protocol(HttpProtocol protocol) {
+            this.protocol = protocol;
+            return this;
+        }
+        
+        /** Decodes responses with Jackson's Blackbird module when it is on the classpath. */
+        public Builder blackbird(boolean blackbird) {
+            this.blackbird = blackbird;
+            return this;
+        }
+        
+        public GatewayTransport build() {
+            if (baseUrl == null) {
+                throw new IllegalArgumentException("Base URL is required");
+            }
+            if (virtualThreadDispatcher && asyncExecutor != null) {
+                throw new IllegalArgumentException("A virtual-thread dispatcher and a custom async executor are mutually exclusive");
+            }
+            if (maxIdleConnections < 0 || keepAliveMillis <= 0) {
+                throw new IllegalArgumentException("Connection pool size and keep-alive must be positive");
+            }
+            if (maxRequests < 1 || maxRequestsPerHost < 1) {
+                throw new IllegalArgumentException("Dispatcher request limits must be at least 1");
+            }
+            if (protocol == null) {
+                throw new IllegalArgumentException("Protocol is required");
+            }
+            return new GatewayTransport(this);
+        }
+    }
+}
\ No newline at end of file
@@ -1,15 +1,36 @@
 package org.abutimartin.bpcpayment.http;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.*;
 import org.abutimartin.bpcpayment.config.BomaPayConfig;
 import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.exception.BulkheadFullException;
+import org.abutimartin.bpcpayment.exception.DeadlineExceededException;
+import org.abutimartin.bpcpayment.metrics.GatewayInstrumentation;
+import org.abutimartin.bpcpayment.model.request.BaseRequest;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.resilience.AdaptiveConcurrencyLimiter;
+import org.abutimartin.bpcpayment.resilience.Bulkhead;
+import org.abutimartin.bpcpayment.resilience.BulkheadRegistry;
+import org.abutimartin.bpcpayment.resilience.CircuitBreakerRegistry;
+import org.abutimartin.bpcpayment.resilience.RateLimiter;
+import org.abutimartin.bpcpayment.resilience.RetryBudget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class HttpClient {
     private static final Logger logger = LoggerFactory.getLogger(HttpClient.class);
@@ -17,30 +38,227 @@ public class HttpClient {
     private static final MediaType FORM_ENCODED = MediaType.get("application/x-www-form-urlencoded");
     
     private final OkHttpClient client;
+    private final GatewayTransport transport;
+    private final String baseUrl;
+    private final RetryInterceptor retryInterceptor;
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final RateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final BulkheadRegistry bulkheads;
+    private final GatewaySites sites;
+    private final Bulkhead quota;
+    private final long quotaMaxWaitMillis;
+    private final SingleFlight singleFlight;
+    private final Map<Class<?>, FormEncoder<?>> formEncoders = new ConcurrentHashMap<>();
     private final BomaPayConfig config;
-    private final ObjectMapper objectMapper;
+    private final JsonCodec codec;
+    private final GatewayInstrumentation instrumentation;
     
     public HttpClient(BomaPayConfig config) {
+        this(config, GatewayTransport.from(config), null, 0);
+    }
+    
+    /**
+     * A client on a shared transport. The transport's base URL, pool, dispatcher and codec are used
+     * instead of the config's; everything else, credentials and call policy included, comes from the config.
+     * 
+     * @param quota slots this client's calls must hold in addition to any endpoint bulkhead, or
+     *              {@code null} for none; shared by every client of the same merchant
+     * @param quotaMaxWaitMillis longest a blocking call waits for a quota slot
+     */
+    public HttpClient(BomaPayConfig config, GatewayTransport transport, Bulkhead quota, long quotaMaxWaitMillis) {
         this.config = config;
-        this.objectMapper = new ObjectMapper();
-        this.client = new OkHttpClient.Builder()
+        this.transport = transport;
+        this.baseUrl = transport.getBaseUrl();
+        this.codec = transport.codec();
+        this.instrumentation = config.getInstrumentation();
+        this.quota = quota;
+        this.quotaMaxWaitMillis = quotaMaxWaitMillis;
+        this.retryInterceptor = new RetryInterceptor(config.getRetryPolicy());
+        this.circuitBreakers = new CircuitBreakerRegistry(config.getCircuitBreakerConfig());
+        this.rateLimiter = config.getRateLimiterConfig() != null
+                ? new RateLimiter(config.getRateLimiterConfig())
+                : null;
+        this.concurrencyLimiter = config.getAdaptiveLimiterConfig() != null
+                ? new AdaptiveConcurrencyLimiter(config.getAdaptiveLimiterConfig())
+                : null;
+        this.bulkheads = config.getBulkheadConfig() != null
+                ? new BulkheadRegistry(config.getBulkheadConfig())
+                : null;
+        this.singleFlight = config.isCoalesceReads() ? new SingleFlight() : null;
+        this.sites = config.getFailoverConfig() != null
+                ? new GatewaySites(config.getFailoverConfig(), transport)
+                : null;
+        if (bulkheads != null && bulkheads.totalCapacity() > transport.getMaxRequestsPerHost()) {
+            logger.warn("Bulkheads allow {} concurrent calls but maxRequestsPerHost is {}; "
+                    + "async calls will queue in the shared dispatcher", bulkheads.totalCapacity(), transport.getMaxRequestsPerHost());
+        }
+        // a copy of the transport's client shares its pool and dispatcher but has its own timeouts and interceptors
+        OkHttpClient.Builder builder = transport.client().newBuilder()
                 .connectTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
                 .readTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
                 .writeTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
-                .build();
+                .addInterceptor(retryInterceptor);
+        if (sites != null) {
+            // inside the retry loop, so each retry picks a site afresh and obeys the same idempotency rules
+            builder.addInterceptor(new FailoverInterceptor(sites, config.getRetryPolicy()));
+        }
+        // first inside the retry and failover loops, so an attempt past the deadline is refused before it spends anything
+        builder.addInterceptor(new TimeoutInterceptor(config));
+        if (config.isRecordCallPhases()) {
+            builder.eventListenerFactory(PhaseTimingListener.factory(instrumentation));
+        }
+        if (rateLimiter != null) {
+            // every attempt, retries included, spends a permit since the gateway quota counts them all
+            builder.addInterceptor(new RateLimiterInterceptor(rateLimiter));
+        }
+        if (config.getCircuitBreakerConfig().isEnabled()) {
+            // inside the retry loop so every attempt is judged, and an open breaker stops further retries
+            builder.addInterceptor(new CircuitBreakerInterceptor(circuitBreakers));
+        }
+        if (concurrencyLimiter != null) {
+            // innermost, so the measured round trip is the gateway's and not our own queueing
+            builder.addInterceptor(new ConcurrencyLimitInterceptor(concurrencyLimiter));
+        }
+        this.client = builder.build();
+    }
+    
+    /**
+     * Returns live connection pool and dispatcher counters, cheap enough to poll from a metrics scraper.
+     */
+    public PoolStats poolStats() {
+        return transport.poolStats();
+    }
+    
+    /**
+     * The JSON codec of this client's transport.
+     */
+    public JsonCodec codec() {
+        return codec;
+    }
+    
+    /**
+     * Returns the shared retry budget, e.g. to export how many retries are currently available.
+     */
+    public RetryBudget retryBudget() {
+        return retryInterceptor.budget();
+    }
+    
+    /**
+     * Returns the per-endpoint circuit breakers, for reading their state or subscribing to transitions.
+     */
+    public CircuitBreakerRegistry circuitBreakers() {
+        return circuitBreakers;
+    }
+    
+    /**
+     * Returns the client-side rate limiter, or {@code null} when none is configured.
+     */
+    public RateLimiter rateLimiter() {
+        return rateLimiter;
+    }
+    
+    /**
+     * Returns the adaptive per-endpoint concurrency limiter, or {@code null} when none is configured.
+     */
+    public AdaptiveConcurrencyLimiter concurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+    
+    /**
+     * Returns the configured bulkheads, or {@code null} when traffic is not isolated.
+     */
+    public BulkheadRegistry bulkheads() {
+        return bulkheads;
+    }
+    
+    /**
+     * Returns the gateway sites calls fail over between, or {@code null} when only {@code baseUrl} is used.
+     */
+    public GatewaySites gatewaySites() {
+        return sites;
+    }
+    
+    /**
+     * Returns how many read calls were answered by an identical request already in flight.
+     */
+    public long coalescedCalls() {
+        return singleFlight != null ? singleFlight.sharedCount() : 0;
+    }
+    
+    /**
+     * Resolves the gateway host and opens up to {@code connections} pooled connections to it, so
+     * the first real calls skip DNS, TCP and TLS setup. Best effort: failures are counted in the
+     * result, never thrown. The count is capped by {@code maxIdleConnections} and
+     * {@code maxRequestsPerHost}, and an HTTP/2 gateway needs only one connection.
+     * <p>
+     * Connections share OkHttp's single TLS socket factory, so the JDK session cache lets later
+     * handshakes resume the warm-up sessions.
+     */
+    public WarmUpResult warmUp(int connections) {
+        long start = System.nanoTime();
+        HttpUrl url = HttpUrl.get(baseUrl);
+        int target = Math.max(1, Math.min(connections,
+                Math.min(transport.getMaxIdleConnections(), transport.getMaxRequestsPerHost())));
+        
+        try {
+            client.dns().lookup(url.host());
+        } catch (IOException e) {
+            logger.warn("Warm-up could not resolve {}", url.host(), e);
+            long elapsed = elapsedMillis(start);
+            return new WarmUpResult(target, transport.connectionPool().connectionCount(), target, elapsed, elapsed);
+        }
+        long dnsMillis = elapsedMillis(start);
+        
+        // same pool, dispatcher and TLS settings, but none of the interceptors: warm-up traffic
+        // must not spend rate limit permits or count towards circuit breakers
+        OkHttpClient.Builder warmUpBuilder = client.newBuilder();
+        warmUpBuilder.interceptors().clear();
+        OkHttpClient warmUpClient = warmUpBuilder.build();
+        
+        // concurrent requests, so each one has to open its own connection
+        CountDownLatch done = new CountDownLatch(target);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < target; i++) {
+            warmUpClient.newCall(new Request.Builder().url(url).head().build()).enqueue(new Callback() {
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    done.countDown();
+                }
+                
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    logger.debug("Warm-up request to {} failed", url, e);
+                    failures.incrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            if (!done.await(config.getTimeout(), TimeUnit.MILLISECONDS)) {
+                failures.addAndGet((int) done.getCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.addAndGet((int) done.getCount());
+        }
+        
+        WarmUpResult result = new WarmUpResult(target, transport.connectionPool().connectionCount(), failures.get(),
+                dnsMillis, elapsedMillis(start));
+        logger.info("Warmed up connections to {}: {}", url.host(), result);
+        return result;
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
     }
     
     public <T> T postJson(String endpoint, Object request, Class<T> responseType) throws BomaPayException {
         try {
-            String json = objectMapper.writeValueAsString(request);
-            RequestBody body = RequestBody.create(json, JSON);
-            
-            Request httpRequest = new Request.Builder()
-                    .url(config.getBaseUrl() + endpoint)
-                    .post(body)
-                    .build();
-            
-            return executeRequest(httpRequest, responseType);
+            return executeRequest(buildJsonRequest(endpoint, request), responseType);
+        } catch (RejectedCallException e) {
+            throw e.getRejection();
         } catch (Exception e) {
             logger.error("Error making JSON POST request to {}", endpoint, e);
             throw new BomaPayException("Failed to make request", e);
@@ -49,38 +267,470 @@ public class HttpClient {
     
     public <T> T postForm(String endpoint, Map<String, String> formData, Class<T> responseType) throws BomaPayException {
         try {
-            FormBody.Builder formBuilder = new FormBody.Builder();
-            for (Map.Entry<String, String> entry : formData.entrySet()) {
-                if (entry.getValue() != null) {
-                    formBuilder.add(entry.getKey(), entry.getValue());
-                }
-            }
-            
-            Request httpRequest = new Request.Builder()
-                    .url(config.getBaseUrl() + endpoint)
-                    .post(formBuilder.build())
-                    .build();
-            
-            return executeRequest(httpRequest, responseType);
+            return executeRequest(buildFormRequest(endpoint, formData), responseType);
+        } catch (RejectedCallException e) {
+            throw e.getRejection();
         } catch (Exception e) {
             logger.error("Error making form POST request to {}", endpoint, e);
             throw new BomaPayException("Failed to make request", e);
         }
     }
     
+    /**
+     * Posts a typed request model as a form, encoded by a {@link FormEncoder} compiled once per model type.
+     */
+    public <T> T postForm(String endpoint, BaseRequest request, Class<T> responseType) throws BomaPayException {
+        try {
+            return executeRequest(buildFormRequest(endpoint, encodeForm(request)), responseType);
+        } catch (RejectedCallException e) {
+            throw e.getRejection();
+        } catch (Exception e) {
+            logger.error("Error making form POST request to {}", endpoint, e);
+            throw new BomaPayException("Failed to make request", e);
+        }
+    }
+    
+    /**
+     * Non-blocking variant of {@link #postJson}. The returned future completes on an OkHttp
+     * dispatcher thread and fails with a {@link BomaPayException} on any transport or HTTP error.
+     */
+    public <T> CompletableFuture<T> postJsonAsync(String endpoint, Object request, Class<T> responseType) {
+        Request httpRequest;
+        try {
+            httpRequest = buildJsonRequest(endpoint, request);
+        } catch (Exception e) {
+            logger.error("Error making JSON POST request to {}", endpoint, e);
+            return CompletableFuture.failedFuture(new BomaPayException("Failed to make request", e));
+        }
+        return enqueueRequest(endpoint, httpRequest, responseType);
+    }
+    
+    /**
+     * Non-blocking variant of {@link #postForm}. The returned future completes on an OkHttp
+     * dispatcher thread and fails with a {@link BomaPayException} on any transport or HTTP error.
+     */
+    public <T> CompletableFuture<T> postFormAsync(String endpoint, Map<String, String> formData, Class<T> responseType) {
+        return enqueueRequest(endpoint, buildFormRequest(endpoint, formData), responseType);
+    }
+    
+    /**
+     * Non-blocking variant of {@link #postForm(String, BaseRequest, Class)}.
+     */
+    public <T> CompletableFuture<T> postFormAsync(String endpoint, BaseRequest request, Class<T> responseType) {
+        Request httpRequest;
+        try {
+            httpRequest = buildFormRequest(endpoint, encodeForm(request));
+        } catch (Exception e) {
+            logger.error("Error making form POST request to {}", endpoint, e);
+            return CompletableFuture.failedFuture(new BomaPayException("Failed to make request", e));
+        }
+        return enqueueRequest(endpoint, httpRequest, responseType);
+    }
+    
+    /**
+     * Variant of {@link #postForm} for read-only endpoints: identical concurrent calls (same endpoint
+     * and form) share one HTTP round trip and all callers receive the same response instance.
+     * Never use it for requests that change gateway state.
+     */
+    public <T> T postFormShared(String endpoint, Map<String, String> formData, Class<T> responseType) throws BomaPayException {
+        if (singleFlight == null) {
+            return postForm(endpoint, formData, responseType);
+        }
+        return singleFlight.execute(endpoint, flightKey(endpoint, formData, responseType), responseType,
+                Deadline.current(), () -> postForm(endpoint, formData, responseType));
+    }
+    
+    /**
+     * Non-blocking variant of {@link #postFormShared}.
+     */
+    public <T> CompletableFuture<T> postFormSharedAsync(String endpoint, Map<String, String> formData, Class<T> responseType) {
+        if (singleFlight == null) {
+            return postFormAsync(endpoint, formData, responseType);
+        }
+        return singleFlight.executeAsync(endpoint, flightKey(endpoint, formData, responseType), responseType,
+                Deadline.current(), () -> postFormAsync(endpoint, formData, responseType));
+    }
+    
+    /**
+     * Like {@link #postFormShared(String, Map, Class)}, but {@code onFetch} is called by the one call
+     * that actually goes to the gateway, just before sending it, and the consumer it returns gets that
+     * call's response before any caller sharing it is answered. Lets a cache record its state as of
+     * the moment the shared request started, and be filled once instead of by every caller.
+     */
+    public <T> T postFormShared(String endpoint, Map<String, String> formData, Class<T> responseType,
+            Supplier<Consumer<T>> onFetch) throws BomaPayException {
+        SingleFlight.Call<T> call = () -> {
+            Consumer<T> fetched = onFetch.get();
+            T response = postForm(endpoint, formData, responseType);
+            fetched.accept(response);
+            return response;
+        };
+        if (singleFlight == null) {
+            return call.execute();
+        }
+        return singleFlight.execute(endpoint, flightKey(endpoint, formData, responseType), responseType,
+                Deadline.current(), call);
+    }
+    
+    /**
+     * Non-blocking variant of {@link #postFormShared(String, Map, Class, Supplier)}.
+     */
+    public <T> CompletableFuture<T> postFormSharedAsync(String endpoint, Map<String, String> formData, Class<T> responseType,
+            Supplier<Consumer<T>> onFetch) {
+        Supplier<CompletableFuture<T>> call = () -> {
+            Consumer<T> fetched = onFetch.get();
+            return postFormAsync(endpoint, formData, responseType).thenApply(response -> {
+                fetched.accept(response);
+                return response;
+            });
+        };
+        if (singleFlight == null) {
+            return call.get();
+        }
+        return singleFlight.executeAsync(endpoint, flightKey(endpoint, formData, responseType), responseType,
+                Deadline.current(), call);
+    }
+    
+    private static String flightKey(String endpoint, Map<String, String> formData, Class<?> responseType) {
+        // sorted, so the same parameters put in a different order still match
+        return endpoint + '|' + responseType.getName() + '|' + new TreeMap<>(formData);
+    }
+    
+    private Request buildJsonRequest(String endpoint, Object request) throws IOException {
+        RequestBody body = RequestBody.create(codec.write(request), JSON);
+        
+        return newRequestBuilder(endpoint)
+                .post(body)
+                .build();
+    }
+    
+    private Request buildFormRequest(String endpoint, Map<String, String> formData) {
+        FormBody.Builder formBuilder = new FormBody.Builder();
+        for (Map.Entry<String, String> entry : formData.entrySet()) {
+            if (entry.getValue() != null) {
+                formBuilder.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return buildFormRequest(endpoint, formBuilder.build());
+    }
+    
+    private Request buildFormRequest(String endpoint, RequestBody body) {
+        return newRequestBuilder(endpoint)
+                .post(body)
+                .build();
+    }
+    
+    private Request.Builder newRequestBuilder(String endpoint) {
+        Request.Builder builder = new Request.Builder()
+                .url(baseUrl + endpoint)
+                .tag(CallContext.class, new CallContext(endpoint, Deadline.current()));
+        if (config.isRecordCallPhases()) {
+            builder.tag(CallTimingRecorder.class, new CallTimingRecorder(endpoint));
+        }
+        return builder;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <R extends BaseRequest> RequestBody encodeForm(R request) {
+        Class<R> type = (Class<R>) request.getClass();
+        FormEncoder<R> encoder = (FormEncoder<R>) formEncoders.computeIfAbsent(type, t -> FormEncoder.compile(type, config));
+        return encoder.encode(request);
+    }
+    
     private <T> T executeRequest(Request request, Class<T> responseType) throws IOException, BomaPayException {
         logger.debug("Making request to: {}", request.url());
         
-        try (Response response = client.newCall(request).execute()) {
-            String responseBody = response.body() != null ? response.body().string() : "";
-            
-            if (!response.isSuccessful()) {
-                logger.error("HTTP error {}: {}", response.code(), responseBody);
-                throw new BomaPayException("HTTP error: " + response.code() + " " + response.message());
+        CallContext context = CallContext.of(request);
+        long start = System.nanoTime();
+        instrumentation.callStarted(context.getEndpoint());
+        Throwable failure = null;
+        try {
+            return executeCall(request, context, responseType);
+        } catch (IOException | BomaPayException | RuntimeException e) {
+            failure = e instanceof RejectedCallException ? ((RejectedCallException) e).getRejection() : e;
+            throw e;
+        } finally {
+            instrumentation.callFinished(context.getEndpoint(), System.nanoTime() - start, failure);
+        }
+    }
+    
+    private <T> T executeCall(Request request, CallContext context, Class<T> responseType) throws IOException, BomaPayException {
+        if (quota != null) {
+            acquire(quota, quotaMaxWaitMillis, context);
+        }
+        try {
+            Bulkhead bulkhead = bulkheads != null ? bulkheads.forEndpoint(context.getEndpoint()) : null;
+            if (bulkhead != null) {
+                acquire(bulkhead, bulkheads.getConfig().getMaxWaitMillis(), context);
+            }
+            try (Response response = newCall(request).execute()) {
+                return readResponse(response, responseType);
+            } catch (InterruptedIOException e) {
+                throw deadlineExceeded(context, e);
+            } finally {
+                if (bulkhead != null) {
+                    bulkhead.release();
+                }
+            }
+        } finally {
+            if (quota != null) {
+                quota.release();
+            }
+        }
+    }
+    
+    private void acquire(Bulkhead bulkhead, long maxWait, CallContext context) throws IOException {
+        Deadline deadline = context.getDeadline();
+        boolean deadlineBound = deadline != null && deadline.remaining(TimeUnit.MILLISECONDS) < maxWait;
+        boolean acquired;
+        try {
+            acquired = bulkhead.acquire(deadlineBound ? deadline.remaining(TimeUnit.MILLISECONDS) : maxWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for bulkhead " + bulkhead.getName());
+        }
+        if (!acquired && deadlineBound) {
+            throw new RejectedCallException(new DeadlineExceededException(context.getEndpoint()));
+        }
+        if (!acquired) {
+            throw new RejectedCallException(new BulkheadFullException(bulkhead.getName()));
+        }
+    }
+    
+    /**
+     * Creates the OkHttp call with a call timeout covering every attempt: the endpoint's own, cut
+     * to what is left of the caller's deadline.
+     */
+    private Call newCall(Request request) {
+        CallContext context = CallContext.of(request);
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getTimeouts(context.getEndpoint()).getCallMillis());
+        AsyncRetry retry = request.tag(AsyncRetry.class);
+        if (retry != null) {
+            timeoutNanos = retry.timeoutNanos(timeoutNanos);
+        }
+        Deadline deadline = context.getDeadline();
+        if (deadline != null) {
+            // zero would mean no timeout, so an expired deadline still gets the smallest one
+            long remaining = Math.max(1, deadline.remainingNanos());
+            timeoutNanos = timeoutNanos > 0 ? Math.min(timeoutNanos, remaining) : remaining;
+        }
+        Call call = client.newCall(request);
+        call.timeout().timeout(timeoutNanos, TimeUnit.NANOSECONDS);
+        return call;
+    }
+    
+    /**
+     * Reports a call cut short by the caller's deadline as such; other interruptions pass through.
+     */
+    private static IOException deadlineExceeded(CallContext context, InterruptedIOException e) {
+        if (context.getDeadline() != null && context.getDeadline().isExpired()) {
+            return new RejectedCallException(new DeadlineExceededException(context.getEndpoint(), e));
+        }
+        return e;
+    }
+    
+    private <T> CompletableFuture<T> enqueueRequest(String endpoint, Request request, Class<T> responseType) {
+        long start = System.nanoTime();
+        instrumentation.callStarted(endpoint);
+        CompletableFuture<T> call = dispatch(endpoint, request, responseType);
+        // the caller's future completes only after the call is reported, and cancelling it cancels the call
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.whenComplete((result, error) -> {
+            instrumentation.callFinished(endpoint, System.nanoTime() - start,
+                    error instanceof CompletionException ? error.getCause() : error);
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        });
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return future;
+    }
+    
+    private <T> CompletableFuture<T> dispatch(String endpoint, Request request, Class<T> responseType) {
+        Supplier<CompletableFuture<T>> call = () -> enqueueCall(endpoint, request, responseType);
+        Bulkhead bulkhead = bulkheads != null ? bulkheads.forEndpoint(endpoint) : null;
+        if (bulkhead != null) {
+            Supplier<CompletableFuture<T>> unguarded = call;
+            call = () -> withSlot(bulkhead, endpoint, request, unguarded);
+        }
+        // the merchant quota is taken first and held while waiting for the endpoint bulkhead
+        return quota != null ? withSlot(quota, endpoint, request, call) : call.get();
+    }
+    
+    private <T> CompletableFuture<T> withSlot(Bulkhead bulkhead, String endpoint, Request request,
+            Supplier<CompletableFuture<T>> guarded) {
+        // wait for a slot without holding a thread, then dispatch and give the slot back on completion
+        CompletableFuture<Void> slot = bulkhead.acquireAsync();
+        if (slot == null) {
+            return CompletableFuture.failedFuture(new BulkheadFullException(bulkhead.getName()));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        slot.thenRun(() -> {
+            if (future.isDone()) {
+                // cancelled while queued for the slot
+                bulkhead.release();
+                return;
+            }
+            CompletableFuture<T> call = guarded.get();
+            call.whenComplete((result, error) -> {
+                bulkhead.release();
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(result);
+                }
+            });
+            future.whenComplete((result, error) -> {
+                if (future.isCancelled()) {
+                    call.cancel(true);
+                }
+            });
+        });
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                // if the slot was already granted, the dispatch step above sees the cancellation and releases it
+                bulkhead.withdraw(slot);
+            }
+        });
+        Deadline deadline = CallContext.of(request).getDeadline();
+        if (deadline != null) {
+            // stop queueing for a slot at the deadline; once granted, the call timeout takes over
+            CompletableFuture.delayedExecutor(deadline.remainingNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                if (bulkhead.withdraw(slot)) {
+                    future.completeExceptionally(new DeadlineExceededException(endpoint));
+                }
+            });
+        }
+        return future;
+    }
+    
+    private <T> CompletableFuture<T> enqueueCall(String endpoint, Request request, Class<T> responseType) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        AtomicReference<Call> current = new AtomicReference<>();
+        Request retryable = request.newBuilder().tag(AsyncRetry.class, new AsyncRetry()).build();
+        enqueueAttempt(endpoint, retryable, responseType, future, current);
+        // cancelling the future aborts the in-flight HTTP call
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                current.get().cancel();
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * Enqueues one attempt of the call. An attempt the retry interceptor wants retried is enqueued
+     * again after its backoff, on a timer, so the backoff holds no dispatcher thread or slot.
+     */
+    private <T> void enqueueAttempt(String endpoint, Request request, Class<T> responseType,
+            CompletableFuture<T> future, AtomicReference<Call> current) {
+        logger.debug("Enqueueing request to: {}", request.url());
+        
+        CallContext context = CallContext.of(request);
+        Call call = newCall(request);
+        current.set(call);
+        if (future.isCancelled()) {
+            // cancelled during the backoff, after the cancellation looked at the previous attempt
+            call.cancel();
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                T result;
+                try (response) {
+                    result = readResponse(response, responseType);
+                } catch (BomaPayException e) {
+                    future.completeExceptionally(e);
+                    return;
+                } catch (Exception e) {
+                    logger.error("Error reading response from {}", endpoint, e);
+                    future.completeExceptionally(new BomaPayException("Failed to make request", e));
+                    return;
+                }
+                // completed only once the response is closed, so attached call timings are final
+                future.complete(result);
             }
             
-            logger.debug("Response: {}", responseBody);
-            return objectMapper.readValue(responseBody, responseType);
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (e instanceof RetryLaterException) {
+                    CompletableFuture.delayedExecutor(((RetryLaterException) e).getDelayMillis(), TimeUnit.MILLISECONDS)
+                            .execute(() -> {
+                                if (!future.isDone()) {
+                                    enqueueAttempt(endpoint, request, responseType, future, current);
+                                }
+                            });
+                    return;
+                }
+                if (e instanceof InterruptedIOException) {
+                    e = deadlineExceeded(context, (InterruptedIOException) e);
+                }
+                if (e instanceof RejectedCallException) {
+                    future.completeExceptionally(((RejectedCallException) e).getRejection());
+                    return;
+                }
+                logger.error("Error making POST request to {}", endpoint, e);
+                future.completeExceptionally(new BomaPayException("Failed to make request", e));
+            }
+        });
+    }
+    
+    private <T> T readResponse(Response response, Class<T> responseType) throws IOException, BomaPayException {
+        T result = null;
+        try {
+            result = decodeResponse(response, responseType);
+            if (config.isAttachCallTimings() && result instanceof BaseResponse) {
+                ((BaseResponse) result).setCallTimings(response.request().tag(CallTimingRecorder.class));
+            }
+            return result;
+        } finally {
+            instrumentation.responseReceived(CallContext.of(response.request()).getEndpoint(), response.code(),
+                    result instanceof BaseResponse ? ((BaseResponse) result).getErrorCode() : null);
+        }
+    }
+    
+    private <T> T decodeResponse(Response response, Class<T> responseType) throws IOException, BomaPayException {
+        ResponseBody body = response.body();
+        long maxBodyBytes = config.getMaxResponseBodyBytes();
+        
+        if (!response.isSuccessful()) {
+            // only the error path pays for a String copy, and never for more than the configured limit
+            String errorBody = body != null ? response.peekBody(maxBodyBytes).string() : "";
+            logger.error("HTTP error {}: {}", response.code(), errorBody);
+            throw new BomaPayException("HTTP error: " + response.code() + " " + response.message());
+        }
+        if (body == null) {
+            throw new BomaPayException("Empty response body");
+        }
+        if (body.contentLength() > maxBodyBytes) {
+            throw new BomaPayException("Response body of " + body.contentLength()
+                    + " bytes exceeds limit of " + maxBodyBytes + " bytes");
+        }
+        
+        if (logger.isDebugEnabled()) {
+            byte[] bytes = body.source().readByteArray(readableLength(body, maxBodyBytes));
+            logger.debug("Response: {}", new String(bytes, StandardCharsets.UTF_8));
+            return codec.read(bytes, responseType);
+        }
+        
+        // decode straight from the socket bytes; no intermediate String or byte[] of the whole body
+        return codec.read(new BoundedInputStream(body.byteStream(), maxBodyBytes), responseType);
+    }
+    
+    private static long readableLength(ResponseBody body, long maxBodyBytes) throws IOException {
+        if (body.contentLength() >= 0) {
+            return body.contentLength();
+        }
+        // chunked body: buffer at most one byte past the limit to detect oversize without reading it all
+        if (body.source().request(maxBodyBytes + 1)) {
+            throw new IOException("Response body exceeds limit of " + maxBodyBytes + " bytes");
         }
+        return body.source().getBuffer().size();
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package org.abutimartin.bpcpayment.http;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Jackson front end for {@link HttpClient}. Readers and writers are resolved once per model type
+ * and reused, so a call never goes back through the mapper's type lookup. Unknown gateway fields
+ * are skipped rather than thrown and caught, since the gateway adds fields without notice.
+ * One codec is owned by each {@link GatewayTransport}; anything else storing gateway models, such
+ * as the idempotency journal, encodes them through it so it gets the same settings.
+ */
+public final class JsonCodec {
+    private static final Logger logger = LoggerFactory.getLogger(JsonCodec.class);
+    private static final String BLACKBIRD_MODULE = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+    
+    private final ObjectMapper mapper;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    
+    JsonCodec(boolean blackbird) {
+        this.mapper = JsonMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        if (blackbird) {
+            if (isOnClasspath(BLACKBIRD_MODULE)) {
+                // only touched here, so the optional dependency may be absent when blackbird is off
+                mapper.registerModule(Blackbird.module());
+            } else {
+                logger.warn("Blackbird requested but jackson-module-blackbird is not on the classpath; using reflection");
+            }
+        }
+    }
+    
+    public <T> T read(byte[] bytes, Class<T> type) throws IOException {
+        return reader(type).readValue(bytes);
+    }
+    
+    /**
+     * Decodes straight from the stream, which is closed afterwards.
+     */
+    <T> T read(InputStream in, Class<T> type) throws IOException {
+        return reader(type).readValue(in);
+    }
+    
+    public byte[] write(Object value) throws IOException {
+        return writers.computeIfAbsent(value.getClass(), mapper::writerFor).writeValueAsBytes(value);
+    }
+    
+    private ObjectReader reader(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+    
+    private static boolean isOnClasspath(String className) {
+        try {
+            Class.forName(className, false, JsonCodec.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+    
+    private static final class Blackbird {
+        static BlackbirdModule module() {
+            return new BlackbirdModule();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import org.abutimartin.bpcpayment.metrics.CallTimings;
+import org.abutimartin.bpcpayment.metrics.GatewayInstrumentation;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+/**
+ * Writes OkHttp's connection events into the {@link CallTimings} tagged on the request, and hands
+ * the finished timings to the instrumentation. Calls without a {@code CallTimings} tag, such as
+ * warm-up requests, are not listened to.
+ */
+final class PhaseTimingListener extends EventListener {
+    private final CallTimingRecorder timings;
+    private final GatewayInstrumentation instrumentation;
+    
+    private PhaseTimingListener(CallTimingRecorder timings, GatewayInstrumentation instrumentation) {
+        this.timings = timings;
+        this.instrumentation = instrumentation;
+    }
+    
+    static EventListener.Factory factory(GatewayInstrumentation instrumentation) {
+        return call -> {
+            CallTimingRecorder timings = call.request().tag(CallTimingRecorder.class);
+            return timings != null ? new PhaseTimingListener(timings, instrumentation) : EventListener.NONE;
+        };
+    }
+    
+    @Override
+    public void callStart(Call call) {
+        AsyncRetry retry = call.request().tag(AsyncRetry.class);
+        // a retried enqueued call is a new OkHttp call per attempt; the call started with the first
+        if (retry == null || retry.attempt() == 1) {
+            timings.record(CallTimings.Mark.CALL_START);
+        }
+    }
+    
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        timings.record(CallTimings.Mark.DNS_START);
+    }
+    
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        timings.record(CallTimings.Mark.DNS_END);
+    }
+    
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        timings.record(CallTimings.Mark.CONNECT_START);
+    }
+    
+    @Override
+    public void secureConnectStart(Call call) {
+        timings.record(CallTimings.Mark.SECURE_START);
+    }
+    
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        timings.record(CallTimings.Mark.SECURE_END);
+    }
+    
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        timings.record(CallTimings.Mark.CONNECT_END);
+    }
+    
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        timings.recordConnectionAcquired();
+    }
+    
+    @Override
+    public void requestHeadersStart(Call call) {
+        timings.record(CallTimings.Mark.REQUEST_START);
+    }
+    
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        timings.record(CallTimings.Mark.REQUEST_END);
+    }
+    
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        timings.record(CallTimings.Mark.REQUEST_END);
+    }
+    
+    @Override
+    public void responseHeadersStart(Call call) {
+        timings.record(CallTimings.Mark.RESPONSE_START);
+    }
+    
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        timings.record(CallTimings.Mark.RESPONSE_END);
+    }
+    
+    @Override
+    public void callEnd(Call call) {
+        finish();
+    }
+    
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        if (!(ioe instanceof RetryLaterException)) {
+            // an attempt handed back for a retry is not the end of the call
+            finish();
+        }
+    }
+    
+    private void finish() {
+        timings.record(CallTimings.Mark.CALL_END);
+        instrumentation.phasesRecorded(timings);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package org.abutimartin.bpcpayment.http;
+
+/**
+ * Point-in-time view of the connection pool and dispatcher backing an {@link HttpClient}.
+ */
+public final class PoolStats {
+    private final int connectionCount;
+    private final int idleConnectionCount;
+    private final int runningCalls;
+    private final int queuedCalls;
+    
+    public PoolStats(int connectionCount, int idleConnectionCount, int runningCalls, int queuedCalls) {
+        this.connectionCount = connectionCount;
+        this.idleConnectionCount = idleConnectionCount;
+        this.runningCalls = runningCalls;
+        this.queuedCalls = queuedCalls;
+    }
+    
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+    
+    public int getIdleConnectionCount() {
+        return idleConnectionCount;
+    }
+    
+    public int getActiveConnectionCount() {
+        return connectionCount - idleConnectionCount;
+    }
+    
+    /** Asynchronous calls currently executing on the dispatcher. */
+    public int getRunningCalls() {
+        return runningCalls;
+    }
+    
+    /** Asynchronous calls waiting for a dispatcher slot. */
+    public int getQueuedCalls() {
+        return queuedCalls;
+    }
+    
+    @Override
+    public String toString() {
+        return "PoolStats{connections=" + connectionCount
+                + ", idle=" + idleConnectionCount
+                + ", active=" + getActiveConnectionCount()
+                + ", running=" + runningCalls
+                + ", queued=" + queuedCalls + "}";
+    }
+}
\ No newline at end of file
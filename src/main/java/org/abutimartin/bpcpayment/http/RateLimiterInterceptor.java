@@ -0,0 +1,44 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.abutimartin.bpcpayment.exception.DeadlineExceededException;
+import org.abutimartin.bpcpayment.exception.RateLimitExceededException;
+import org.abutimartin.bpcpayment.resilience.RateLimiter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Takes a permit from the endpoint's token bucket before each attempt reaches the gateway.
+ */
+final class RateLimiterInterceptor implements Interceptor {
+    private final RateLimiter rateLimiter;
+    
+    RateLimiterInterceptor(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        CallContext context = CallContext.of(chain.request());
+        String endpoint = context.getEndpoint();
+        long maxWait = context.getDeadline() != null ? context.getDeadline().remainingNanos() : Long.MAX_VALUE;
+        boolean granted;
+        try {
+            granted = rateLimiter.acquire(endpoint, maxWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        if (!granted && maxWait < rateLimiter.maxWaitNanos()) {
+            // a permit was due before the configured wait ran out, just not before the caller's deadline
+            throw new RejectedCallException(new DeadlineExceededException(endpoint));
+        }
+        if (!granted) {
+            String group = rateLimiter.getConfig().groupFor(endpoint).getName();
+            throw new RejectedCallException(new RateLimitExceededException(group, endpoint));
+        }
+        return chain.proceed(chain.request());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package org.abutimartin.bpcpayment.http;
+
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+
+import java.io.IOException;
+
+/**
+ * Carries a {@link BomaPayException} out of an OkHttp interceptor, which may only throw
+ * {@link IOException}s. {@link HttpClient} unwraps it so callers see the original exception.
+ */
+final class RejectedCallException extends IOException {
+    private final BomaPayException rejection;
+    
+    RejectedCallException(BomaPayException rejection) {
+        super(rejection.getMessage(), rejection);
+        this.rejection = rejection;
+    }
+    
+    BomaPayException getRejection() {
+        return rejection;
+    }
+}
\ No newline at end of file
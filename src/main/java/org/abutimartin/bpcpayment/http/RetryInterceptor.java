@@ -0,0 +1,151 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.abutimartin.bpcpayment.resilience.RetryBudget;
+import org.abutimartin.bpcpayment.resilience.RetryCondition;
+import org.abutimartin.bpcpayment.resilience.RetryPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application interceptor that re-issues failed gateway calls according to a {@link RetryPolicy}.
+ * Blocking calls back off on the caller thread. Enqueued calls, tagged with {@link AsyncRetry}, run
+ * one attempt each and hand the backoff to {@link HttpClient}, so no dispatcher thread sleeps.
+ */
+final class RetryInterceptor implements Interceptor {
+    private static final Logger logger = LoggerFactory.getLogger(RetryInterceptor.class);
+    
+    private final RetryPolicy policy;
+    private final RetryBudget budget;
+    
+    RetryInterceptor(RetryPolicy policy) {
+        this.policy = policy;
+        this.budget = policy.newBudget();
+    }
+    
+    RetryBudget budget() {
+        return budget;
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        CallContext context = CallContext.of(request);
+        String endpoint = context.getEndpoint();
+        Deadline deadline = context.getDeadline();
+        Set<RetryCondition> retryOn = policy.conditionsFor(endpoint);
+        AsyncRetry async = request.tag(AsyncRetry.class);
+        if (async == null || async.attempt() == 1) {
+            budget.recordRequest();
+        }
+        
+        for (int attempt = async != null ? async.attempt() : 1; ; attempt++) {
+            Response response = null;
+            IOException failure = null;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                failure = e;
+            }
+            
+            RetryCondition condition = failure != null ? classify(failure) : classify(response);
+            boolean retry = condition != null
+                    && attempt < policy.getMaxAttempts()
+                    && retryOn.contains(condition)
+                    && !chain.call().isCanceled();
+            long delay = 0;
+            if (retry) {
+                delay = policy.backoffMillis(attempt);
+                if (response != null) {
+                    delay = Math.max(delay, retryAfterMillis(response));
+                }
+                // a retry that could only start after the caller's deadline is wasted gateway load
+                retry = (deadline == null || deadline.remaining(TimeUnit.MILLISECONDS) > delay)
+                        && (async == null || async.hasTimeFor(TimeUnit.MILLISECONDS.toNanos(delay)))
+                        && budget.tryAcquire();
+            }
+            if (!retry) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return response;
+            }
+            
+            if (response != null) {
+                response.close();
+            }
+            logger.warn("Retrying {} after {} in {} ms (attempt {}/{})",
+                    endpoint, condition, delay, attempt + 1, policy.getMaxAttempts());
+            if (async != null) {
+                async.attempt(attempt + 1);
+                throw new RetryLaterException(delay);
+            }
+            sleep(delay);
+        }
+    }
+    
+    static RetryCondition classify(IOException e) {
+        if (e instanceof RejectedCallException) {
+            return null;
+        }
+        if (e instanceof ConnectException || e instanceof UnknownHostException || e instanceof NoRouteToHostException) {
+            return RetryCondition.CONNECT_FAILURE;
+        }
+        if (e instanceof SocketTimeoutException) {
+            // OkHttp reports connect timeouts with this message; nothing was written yet
+            return "connect timed out".equals(e.getMessage())
+                    ? RetryCondition.CONNECT_FAILURE
+                    : RetryCondition.TIMEOUT;
+        }
+        if (e instanceof InterruptedIOException) {
+            // call cancelled or call timeout elapsed; retrying would outlive the caller
+            return null;
+        }
+        return RetryCondition.IO_ERROR;
+    }
+    
+    static RetryCondition classify(Response response) {
+        switch (response.code()) {
+            case 429:
+                return RetryCondition.THROTTLED;
+            case 502:
+            case 503:
+            case 504:
+                return RetryCondition.SERVER_ERROR;
+            default:
+                return null;
+        }
+    }
+    
+    private long retryAfterMillis(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.min(Long.parseLong(retryAfter.trim()) * 1000, policy.getMaxDelayMillis());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while backing off before retry");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package org.abutimartin.bpcpayment.http;
+
+import java.io.IOException;
+
+/**
+ * Ends an enqueued attempt that {@link RetryInterceptor} wants retried, so the backoff is waited
+ * out on a timer instead of a dispatcher thread. {@link HttpClient} enqueues the request again
+ * after {@link #getDelayMillis()}; callers never see this exception.
+ */
+final class RetryLaterException extends IOException {
+    private final long delayMillis;
+    
+    RetryLaterException(long delayMillis) {
+        super("Retrying in " + delayMillis + " ms");
+        this.delayMillis = delayMillis;
+    }
+    
+    long getDelayMillis() {
+        return delayMillis;
+    }
+}
\ No newline at end of file
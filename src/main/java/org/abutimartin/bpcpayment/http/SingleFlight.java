@@ -0,0 +1,109 @@
+package org.abutimartin.bpcpayment.http;
+
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.exception.DeadlineExceededException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses identical concurrent calls into one: the first caller for a key runs the call and
+ * everyone arriving while it is in flight receives the same result or failure. Only meant for
+ * read-only requests; a write must never be answered with another caller's result.
+ * <p>
+ * The shared call runs under the first caller's deadline. Later callers stop waiting at their
+ * own deadline, but cannot extend the shared call past the first caller's.
+ */
+final class SingleFlight {
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+    
+    interface Call<T> {
+        T execute() throws BomaPayException;
+    }
+    
+    <T> T execute(String endpoint, String key, Class<T> type, Deadline deadline, Call<T> call) throws BomaPayException {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            shared.increment();
+            return type.cast(await(endpoint, leader, deadline));
+        }
+        try {
+            T result = call.execute();
+            land(key, flight, result, null);
+            return result;
+        } catch (Throwable e) {
+            // errors too: a flight left in the map would hang every later identical call
+            land(key, flight, null, e);
+            throw e;
+        }
+    }
+    
+    <T> CompletableFuture<T> executeAsync(String endpoint, String key, Class<T> type, Deadline deadline,
+            Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            shared.increment();
+            // a dependent stage, so one waiter cancelling or timing out does not fail the call for the others
+            CompletableFuture<T> result = leader.thenApply(type::cast);
+            if (deadline != null) {
+                CompletableFuture.delayedExecutor(deadline.remainingNanos(), TimeUnit.NANOSECONDS)
+                        .execute(() -> result.completeExceptionally(new DeadlineExceededException(endpoint)));
+            }
+            return result;
+        }
+        CompletableFuture<T> started;
+        try {
+            started = call.get();
+        } catch (Throwable e) {
+            // failed before it was sent; release the key, or every later identical read would wait on it forever
+            land(key, flight, null, e);
+            throw e;
+        }
+        started.whenComplete((result, error) -> land(key, flight, result, error));
+        return flight.thenApply(type::cast);
+    }
+    
+    /**
+     * Returns how many calls were answered by another caller's in-flight request.
+     */
+    long sharedCount() {
+        return shared.sum();
+    }
+    
+    private void land(String key, CompletableFuture<Object> flight, Object result, Throwable error) {
+        // leave the map first, so callers arriving from now on start a fresh request
+        inFlight.remove(key, flight);
+        if (error != null) {
+            flight.completeExceptionally(error);
+        } else {
+            flight.complete(result);
+        }
+    }
+    
+    private static Object await(String endpoint, CompletableFuture<Object> leader, Deadline deadline)
+            throws BomaPayException {
+        try {
+            return deadline != null ? leader.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS) : leader.get();
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException(endpoint);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BomaPayException("Interrupted while waiting for a shared request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BomaPayException) {
+                throw (BomaPayException) cause;
+            }
+            throw new BomaPayException("Failed to make request", cause);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package org.abutimartin.bpcpayment.http;
+
+/**
+ * Point-in-time health and load of one gateway site in a failover setup.
+ */
+public final class SiteStatus {
+    private final String baseUrl;
+    private final int priority;
+    private final int weight;
+    private final boolean healthy;
+    private final double latencyMillis;
+    private final int inFlight;
+    private final int consecutiveFailures;
+    
+    public SiteStatus(String baseUrl, int priority, int weight, boolean healthy, double latencyMillis,
+            int inFlight, int consecutiveFailures) {
+        this.baseUrl = baseUrl;
+        this.priority = priority;
+        this.weight = weight;
+        this.healthy = healthy;
+        this.latencyMillis = latencyMillis;
+        this.inFlight = inFlight;
+        this.consecutiveFailures = consecutiveFailures;
+    }
+    
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+    
+    public int getPriority() {
+        return priority;
+    }
+    
+    public int getWeight() {
+        return weight;
+    }
+    
+    /**
+     * Whether the site currently receives traffic; {@code false} once it has been ejected.
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+    
+    /**
+     * Exponentially weighted moving average of recent round trips, or {@code 0} before the first one.
+     */
+    public double getLatencyMillis() {
+        return latencyMillis;
+    }
+    
+    public int getInFlight() {
+        return inFlight;
+    }
+    
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+    
+    @Override
+    public String toString() {
+        return "SiteStatus{" + baseUrl + ", healthy=" + healthy + ", latency=" + String.format("%.1f", latencyMillis)
+                + "ms, inFlight=" + inFlight + ", failures=" + consecutiveFailures + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+package org.abutimartin.bpcpayment.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.EndpointTimeouts;
+import org.abutimartin.bpcpayment.exception.DeadlineExceededException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the endpoint's connect, read and write timeouts to each attempt, shortened to whatever
+ * is left of the caller's deadline, and refuses to start an attempt once the deadline has passed.
+ */
+final class TimeoutInterceptor implements Interceptor {
+    private final BomaPayConfig config;
+    
+    TimeoutInterceptor(BomaPayConfig config) {
+        this.config = config;
+    }
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        CallContext context = CallContext.of(chain.request());
+        Deadline deadline = context.getDeadline();
+        if (deadline == null && !config.hasEndpointTimeouts()) {
+            // the client-wide timeouts are already the OkHttp defaults
+            return chain.proceed(chain.request());
+        }
+        
+        EndpointTimeouts timeouts = config.getTimeouts(context.getEndpoint());
+        long remaining = Long.MAX_VALUE;
+        if (deadline != null) {
+            remaining = deadline.remaining(TimeUnit.MILLISECONDS);
+            if (remaining <= 0) {
+                throw new RejectedCallException(new DeadlineExceededException(context.getEndpoint()));
+            }
+        }
+        return chain
+                .withConnectTimeout(clamp(timeouts.getConnectMillis(), remaining), TimeUnit.MILLISECONDS)
+                .withReadTimeout(clamp(timeouts.getReadMillis(), remaining), TimeUnit.MILLISECONDS)
+                .withWriteTimeout(clamp(timeouts.getWriteMillis(), remaining), TimeUnit.MILLISECONDS)
+                .proceed(chain.request());
+    }
+    
+    private static int clamp(long timeoutMillis, long remainingMillis) {
+        return (int) Math.min(Math.min(timeoutMillis, remainingMillis), Integer.MAX_VALUE);
+    }
+}
\ No newline at end of file
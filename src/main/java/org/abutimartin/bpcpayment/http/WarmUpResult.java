@@ -0,0 +1,56 @@
+package org.abutimartin.bpcpayment.http;
+
+/**
+ * Outcome of {@link HttpClient#warmUp(int)}: how long DNS and connection setup took and how many
+ * connections ended up pooled and ready for the first real calls.
+ */
+public final class WarmUpResult {
+    private final int requestedConnections;
+    private final int pooledConnections;
+    private final int failures;
+    private final long dnsMillis;
+    private final long totalMillis;
+    
+    public WarmUpResult(int requestedConnections, int pooledConnections, int failures, long dnsMillis, long totalMillis) {
+        this.requestedConnections = requestedConnections;
+        this.pooledConnections = pooledConnections;
+        this.failures = failures;
+        this.dnsMillis = dnsMillis;
+        this.totalMillis = totalMillis;
+    }
+    
+    public int getRequestedConnections() {
+        return requestedConnections;
+    }
+    
+    /** Connections in the pool once warm-up finished. */
+    public int getPooledConnections() {
+        return pooledConnections;
+    }
+    
+    /** Warm-up requests that could not reach the gateway. */
+    public int getFailures() {
+        return failures;
+    }
+    
+    public long getDnsMillis() {
+        return dnsMillis;
+    }
+    
+    /** Wall-clock time of the whole warm-up, DNS included. */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+    
+    public boolean isSuccessful() {
+        return failures == 0 && pooledConnections > 0;
+    }
+    
+    @Override
+    public String toString() {
+        return "WarmUpResult{pooled=" + pooledConnections + "/" + requestedConnections
+                + ", failures=" + failures
+                + ", dns=" + dnsMillis + "ms"
+                + ", total=" + totalMillis + "ms}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,361 @@
+package org.abutimartin.bpcpayment.journal;
+
+import org.abutimartin.bpcpayment.exception.DuplicateOperationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Crash-safe record of money-moving calls. The intent to call is made durable before the request
+ * is sent and the outcome after the response is read, so after a crash every operation without an
+ * outcome is known to be {@link JournalEntry.State#UNCERTAIN}: it may or may not have reached the
+ * gateway, and must be resolved by a status lookup rather than sent again.
+ * 
+ * <p>An in-memory index of all pending and the most recent finished operations answers duplicate
+ * submissions without touching the file. The journal is usually used through
+ * {@link JournaledPayments}; its entries can be inspected here.
+ */
+public final class IdempotencyJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyJournal.class);
+    private static final byte INTENT = 1;
+    private static final byte OUTCOME = 2;
+    
+    private final JournalConfig config;
+    private final JournalFile file;
+    // a lock rather than a monitor: appends may compact, which writes and forces a whole file, and
+    // a virtual thread doing that inside a monitor would pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock; insertion order is the eviction order of finished entries
+    private final Map<String, JournalEntry> entries = new LinkedHashMap<>();
+    private int finished;
+    private boolean closed;
+    
+    private IdempotencyJournal(JournalConfig config) throws IOException {
+        this.config = config;
+        this.file = new JournalFile(config.getPath(), config.getFileSizeBytes(), config.isFsync());
+        file.replay(this::apply);
+        evictFinished();
+        int uncertain = entries.size() - finished;
+        if (uncertain > 0) {
+            logger.warn("Idempotency journal {} has {} operations with an uncertain outcome", config.getPath(), uncertain);
+        }
+    }
+    
+    /**
+     * Opens the journal file, creating it if missing. Operations that were in flight when the
+     * previous process stopped come back as {@link JournalEntry.State#UNCERTAIN}.
+     */
+    public static IdempotencyJournal open(JournalConfig config) throws IOException {
+        return new IdempotencyJournal(config);
+    }
+    
+    /**
+     * Records the intent to send an operation and waits until it is durable.
+     * 
+     * @return {@code null} if the caller should now send the request, or the finished entry whose
+     *         recorded response answers this repeat submission
+     * @throws DuplicateOperationException if the key is in flight, uncertain, or already applied
+     * @throws IllegalArgumentException if the key was used for a different request
+     */
+    JournalEntry begin(String key, JournaledOperation operation, String orderReference, long amount)
+            throws DuplicateOperationException, IOException {
+        long offset;
+        lock.lock();
+        try {
+            checkOpen();
+            JournalEntry existing = entries.get(key);
+            if (existing != null) {
+                if (!existing.sameRequest(operation, orderReference, amount)) {
+                    throw new IllegalArgumentException("Idempotency key " + key + " was used for " + existing);
+                }
+                if (existing.getState() == JournalEntry.State.COMPLETED) {
+                    return existing;
+                }
+                if (!existing.getState().allowsResubmit()) {
+                    throw new DuplicateOperationException(key, existing.getState());
+                }
+                // resubmitted after nothing reached the gateway; it becomes the newest entry
+                entries.remove(key);
+                finished--;
+            }
+            JournalEntry entry = new JournalEntry(key, operation, orderReference, amount, System.currentTimeMillis(),
+                    JournalEntry.State.IN_FLIGHT, null);
+            offset = append(intentRecord(entry));
+            entries.put(key, entry);
+        } finally {
+            lock.unlock();
+        }
+        file.sync(offset);
+        return null;
+    }
+    
+    /**
+     * Records the outcome of an operation begun or replayed earlier and waits until it is durable.
+     */
+    void finish(String key, JournalEntry.State state, byte[] response) throws IOException {
+        long offset;
+        lock.lock();
+        try {
+            checkOpen();
+            JournalEntry entry = entries.get(key);
+            if (entry == null || entry.getState().isFinished()) {
+                return;
+            }
+            offset = append(outcomeRecord(key, state, response));
+            replace(entry, state, response);
+            evictFinished();
+        } finally {
+            lock.unlock();
+        }
+        file.sync(offset);
+    }
+    
+    /**
+     * Marks an in-flight operation as uncertain, e.g. after a timeout, so it is resolved like one
+     * interrupted by a crash. Nothing is written; the missing outcome already says as much.
+     */
+    void markUncertain(String key) {
+        lock.lock();
+        try {
+            JournalEntry entry = entries.get(key);
+            if (entry != null && entry.getState() == JournalEntry.State.IN_FLIGHT) {
+                entries.put(key, entry.withState(JournalEntry.State.UNCERTAIN, null));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * The entry recorded under {@code key}, or {@code null} if the key is unknown or was forgotten.
+     */
+    public JournalEntry get(String key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Operations whose outcome is uncertain, oldest first.
+     */
+    public List<JournalEntry> uncertain() {
+        lock.lock();
+        try {
+            List<JournalEntry> uncertain = new ArrayList<>();
+            for (JournalEntry entry : entries.values()) {
+                if (entry.getState() == JournalEntry.State.UNCERTAIN) {
+                    uncertain.add(entry);
+                }
+            }
+            return uncertain;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Entries of the given operation on one order, oldest first.
+     */
+    List<JournalEntry> entriesFor(JournaledOperation operation, String orderReference) {
+        lock.lock();
+        try {
+            List<JournalEntry> matching = new ArrayList<>();
+            for (JournalEntry entry : entries.values()) {
+                if (entry.getOperation() == operation && entry.getOrderReference().equals(orderReference)) {
+                    matching.add(entry);
+                }
+            }
+            return matching;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Number of operations remembered, pending and finished.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Number of times the journal was forced to disk. Lower than the number of records written
+     * when concurrent operations share a group commit.
+     */
+    public long fsyncCount() {
+        return file.forces();
+    }
+    
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Idempotency journal is closed");
+        }
+    }
+    
+    private long append(byte[] record) throws IOException {
+        if (!file.fits(record.length)) {
+            compact(record.length);
+        }
+        return file.append(record);
+    }
+    
+    /**
+     * Rewrites the file with the entries still in the index, forgetting the oldest finished ones
+     * if they alone would not leave room.
+     */
+    private void compact(int needed) throws IOException {
+        List<byte[]> records = snapshot();
+        while (!file.fitsEmpty(withRoom(records, needed)) && finished > 0) {
+            // forget the oldest quarter of the finished entries per round rather than re-encoding per entry
+            int forget = Math.max(1, finished / 4);
+            Iterator<JournalEntry> oldest = entries.values().iterator();
+            while (forget > 0 && oldest.hasNext()) {
+                if (oldest.next().getState().isFinished()) {
+                    oldest.remove();
+                    finished--;
+                    forget--;
+                }
+            }
+            records = snapshot();
+        }
+        if (!file.fitsEmpty(withRoom(records, needed))) {
+            throw new IOException("Idempotency journal " + config.getPath() + " is full of pending operations");
+        }
+        file.rewrite(records);
+        logger.debug("Compacted idempotency journal {} to {} operations", config.getPath(), entries.size());
+    }
+    
+    private static List<byte[]> withRoom(List<byte[]> records, int needed) {
+        List<byte[]> padded = new ArrayList<>(records);
+        padded.add(new byte[needed]);
+        return padded;
+    }
+    
+    private List<byte[]> snapshot() throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        for (JournalEntry entry : entries.values()) {
+            records.add(intentRecord(entry));
+            if (entry.getState().isFinished()) {
+                records.add(outcomeRecord(entry.getKey(), entry.getState(), entry.getResponse()));
+            }
+        }
+        return records;
+    }
+    
+    private void evictFinished() {
+        Iterator<JournalEntry> oldest = entries.values().iterator();
+        while (finished > config.getRetainFinished() && oldest.hasNext()) {
+            if (oldest.next().getState().isFinished()) {
+                oldest.remove();
+                finished--;
+            }
+        }
+    }
+    
+    private void replace(JournalEntry entry, JournalEntry.State state, byte[] response) {
+        entries.put(entry.getKey(), entry.withState(state, response));
+        if (state.isFinished() && !entry.getState().isFinished()) {
+            finished++;
+        }
+    }
+    
+    private void apply(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte type = in.readByte();
+            String key = in.readUTF();
+            if (type == INTENT) {
+                JournaledOperation operation = JournaledOperation.values()[in.readByte()];
+                String orderReference = in.readUTF();
+                long amount = in.readLong();
+                long createdAtMillis = in.readLong();
+                JournalEntry previous = entries.remove(key);
+                if (previous != null && previous.getState().isFinished()) {
+                    finished--;
+                }
+                // replayed without an outcome yet, so it was in flight when the journal was last written
+                entries.put(key, new JournalEntry(key, operation, orderReference, amount, createdAtMillis,
+                        JournalEntry.State.UNCERTAIN, null));
+            } else if (type == OUTCOME) {
+                JournalEntry.State state = JournalEntry.State.values()[in.readByte()];
+                int length = in.readInt();
+                byte[] response = null;
+                if (length >= 0) {
+                    response = new byte[length];
+                    in.readFully(response);
+                }
+                JournalEntry entry = entries.get(key);
+                if (entry != null) {
+                    replace(entry, state, response);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static byte[] intentRecord(JournalEntry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(INTENT);
+            out.writeUTF(entry.getKey());
+            out.writeByte(entry.getOperation().ordinal());
+            out.writeUTF(entry.getOrderReference());
+            out.writeLong(entry.getAmount());
+            out.writeLong(entry.getCreatedAtMillis());
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static byte[] outcomeRecord(String key, JournalEntry.State state, byte[] response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (response != null ? response.length : 0));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(OUTCOME);
+            out.writeUTF(key);
+            out.writeByte(state.ordinal());
+            out.writeInt(response != null ? response.length : -1);
+            if (response != null) {
+                out.write(response);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
\ No newline at end of file
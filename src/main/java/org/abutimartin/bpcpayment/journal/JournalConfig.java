@@ -0,0 +1,91 @@
+package org.abutimartin.bpcpayment.journal;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of the {@link IdempotencyJournal}. The journal is one memory-mapped file; when it fills
+ * up it is rewritten with only the operations still pending and the most recent finished ones.
+ */
+public final class JournalConfig {
+    private final Path path;
+    private final int fileSizeBytes;
+    private final int retainFinished;
+    private final boolean fsync;
+    
+    private JournalConfig(Builder builder) {
+        this.path = builder.path;
+        this.fileSizeBytes = builder.fileSizeBytes;
+        this.retainFinished = builder.retainFinished;
+        this.fsync = builder.fsync;
+    }
+    
+    public Path getPath() {
+        return path;
+    }
+    
+    public int getFileSizeBytes() {
+        return fileSizeBytes;
+    }
+    
+    public int getRetainFinished() {
+        return retainFinished;
+    }
+    
+    public boolean isFsync() {
+        return fsync;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private Path path;
+        private int fileSizeBytes = 16 * 1024 * 1024;
+        private int retainFinished = 100_000;
+        private boolean fsync = true;
+        
+        private Builder() {
+        }
+        
+        /** Journal file; created if missing, replayed if present. Required. */
+        public Builder path(Path path) {
+            this.path = path;
+            return this;
+        }
+        
+        /** Size of the mapped file; a full file is compacted in place. */
+        public Builder fileSizeBytes(int fileSizeBytes) {
+            this.fileSizeBytes = fileSizeBytes;
+            return this;
+        }
+        
+        /** Finished operations remembered for duplicate detection; older ones are forgotten. */
+        public Builder retainFinished(int retainFinished) {
+            this.retainFinished = retainFinished;
+            return this;
+        }
+        
+        /**
+         * Whether every record is forced to disk before the operation proceeds; on by default.
+         * Without it the journal still survives a process crash, but not a power loss or OS crash.
+         */
+        public Builder fsync(boolean fsync) {
+            this.fsync = fsync;
+            return this;
+        }
+        
+        public JournalConfig build() {
+            if (path == null) {
+                throw new IllegalArgumentException("Journal path is required");
+            }
+            if (fileSizeBytes < 4096) {
+                throw new IllegalArgumentException("Journal file must be at least 4096 bytes");
+            }
+            if (retainFinished < 0) {
+                throw new IllegalArgumentException("Retained finished operations must not be negative");
+            }
+            return new JournalConfig(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package org.abutimartin.bpcpayment.journal;
+
+/**
+ * One journaled operation and what is known about its outcome.
+ */
+public final class JournalEntry {
+    
+    /**
+     * Where an operation stands. Ordinals are written to the journal file, so new states go at the end.
+     */
+    public enum State {
+        /** Sent or about to be sent by this process; no outcome yet. */
+        IN_FLIGHT(false),
+        /** Sent, but the process died or the call failed before a response was read. */
+        UNCERTAIN(false),
+        /** The gateway answered; its response is recorded. */
+        COMPLETED(true),
+        /** Turned away before anything was sent, e.g. by an open circuit breaker. */
+        NOT_SENT(true),
+        /** Found applied by a status lookup after the outcome was uncertain. */
+        APPLIED(true),
+        /** Found not applied by a status lookup after the outcome was uncertain. */
+        NOT_APPLIED(true);
+        
+        private final boolean finished;
+        
+        State(boolean finished) {
+            this.finished = finished;
+        }
+        
+        /**
+         * Whether the outcome is known.
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+        
+        /**
+         * Whether the same key may be submitted again, because nothing reached the gateway.
+         */
+        boolean allowsResubmit() {
+            return this == NOT_SENT || this == NOT_APPLIED;
+        }
+    }
+    
+    private final String key;
+    private final JournaledOperation operation;
+    private final String orderReference;
+    private final long amount;
+    private final long createdAtMillis;
+    private final State state;
+    private final byte[] response;
+    
+    JournalEntry(String key, JournaledOperation operation, String orderReference, long amount, long createdAtMillis,
+            State state, byte[] response) {
+        this.key = key;
+        this.operation = operation;
+        this.orderReference = orderReference;
+        this.amount = amount;
+        this.createdAtMillis = createdAtMillis;
+        this.state = state;
+        this.response = response;
+    }
+    
+    JournalEntry withState(State state, byte[] response) {
+        return new JournalEntry(key, operation, orderReference, amount, createdAtMillis, state, response);
+    }
+    
+    /**
+     * The caller's idempotency key.
+     */
+    public String getKey() {
+        return key;
+    }
+    
+    public JournaledOperation getOperation() {
+        return operation;
+    }
+    
+    /**
+     * Gateway order id for deposits and refunds, merchant order number for instant payments.
+     */
+    public String getOrderReference() {
+        return orderReference;
+    }
+    
+    /**
+     * Amount in minor currency units.
+     */
+    public long getAmount() {
+        return amount;
+    }
+    
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    /**
+     * The gateway's response as JSON, only for {@link State#COMPLETED}.
+     */
+    byte[] getResponse() {
+        return response;
+    }
+    
+    boolean sameRequest(JournaledOperation operation, String orderReference, long amount) {
+        return this.operation == operation && this.orderReference.equals(orderReference) && this.amount == amount;
+    }
+    
+    @Override
+    public String toString() {
+        return "JournalEntry{key=" + key + ", " + operation + " " + orderReference + " " + amount + ", " + state + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,223 @@
+package org.abutimartin.bpcpayment.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only record log in a memory-mapped file. Each record is framed as length, CRC32C and
+ * payload; replay stops at the first zero length or checksum mismatch, which is where a torn
+ * write from a crash ends the log.
+ * 
+ * <p>Appends only copy into the mapping. {@link #sync(long)} makes them durable with group commit:
+ * the first waiter forces the file for everything appended so far while later waiters queue behind
+ * it, so concurrent operations share one fsync instead of paying for one each.
+ */
+final class JournalFile implements AutoCloseable {
+    private static final int MAGIC = 0x42504A31; // "BPJ1"
+    private static final int HEADER_BYTES = 8;
+    private static final int FRAME_BYTES = 8;
+    
+    private final Path path;
+    private final int size;
+    private final boolean fsync;
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private int position;
+    
+    // logical offsets across rewrites, so a waiter's target stays comparable after compaction
+    private volatile long appended;
+    private long durable;
+    private boolean forcing;
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private final AtomicLong forces = new AtomicLong();
+    
+    JournalFile(Path path, int size, boolean fsync) throws IOException {
+        this.path = path;
+        this.size = size;
+        this.fsync = fsync;
+        map();
+    }
+    
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // a file grown by an earlier, larger configuration is mapped whole so no records are cut off
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, 0);
+        }
+        position = HEADER_BYTES;
+    }
+    
+    /**
+     * Feeds every intact record to {@code reader} and positions appends after the last one.
+     */
+    void replay(Consumer<ByteBuffer> reader) {
+        CRC32C crc = new CRC32C();
+        int offset = HEADER_BYTES;
+        while (offset + FRAME_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + FRAME_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(offset + FRAME_BYTES, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            reader.accept(payload.asReadOnlyBuffer());
+            offset += FRAME_BYTES + length;
+        }
+        position = offset;
+        // wipe a torn tail so later appends are not followed by stale bytes that look like records
+        if (offset + 4 <= buffer.capacity()) {
+            buffer.putInt(offset, 0);
+        }
+    }
+    
+    /**
+     * Whether a record of {@code length} payload bytes fits in the rest of the file.
+     */
+    boolean fits(int length) {
+        // keep room for the zero length that ends the log
+        return position + FRAME_BYTES + length + 4 <= buffer.capacity();
+    }
+    
+    /**
+     * Whether {@code records} fit in an empty file.
+     */
+    boolean fitsEmpty(List<byte[]> records) {
+        long total = HEADER_BYTES + 4;
+        for (byte[] record : records) {
+            total += FRAME_BYTES + record.length;
+        }
+        return total <= size;
+    }
+    
+    /**
+     * Copies the record into the mapping. Callers serialize appends.
+     * 
+     * @return the logical offset to pass to {@link #sync(long)}
+     */
+    long append(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        // payload and terminator first, length last, so a crash mid-append leaves no half record
+        buffer.put(position + FRAME_BYTES, payload);
+        buffer.putInt(position + FRAME_BYTES + payload.length, 0);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, payload.length);
+        position += FRAME_BYTES + payload.length;
+        appended += FRAME_BYTES + payload.length;
+        return appended;
+    }
+    
+    /**
+     * Replaces the file with one holding only {@code records}, written beside it and moved over it
+     * atomically. Callers serialize this with appends.
+     */
+    void rewrite(List<byte[]> records) throws IOException {
+        if (fsync) {
+            // the rename is not durable until the directory is, and a power loss before that brings the
+            // old file back, which must then hold everything waiters are told is durable below
+            buffer.force();
+            forces.incrementAndGet();
+        }
+        Path next = path.resolveSibling(path.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer fresh = out.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            fresh.putInt(0, MAGIC);
+            int offset = HEADER_BYTES;
+            CRC32C crc = new CRC32C();
+            for (byte[] record : records) {
+                crc.reset();
+                crc.update(record);
+                fresh.putInt(offset, record.length);
+                fresh.putInt(offset + 4, (int) crc.getValue());
+                fresh.put(offset + FRAME_BYTES, record);
+                offset += FRAME_BYTES + record.length;
+            }
+            fresh.force();
+        }
+        Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel.close();
+        map();
+        replay(record -> { });
+        // both files were forced above, so everything appended before the rewrite is durable
+        syncLock.lock();
+        try {
+            durable = appended;
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+    
+    /**
+     * Returns once everything up to {@code offset} is on disk. Concurrent callers are covered by
+     * the same force.
+     */
+    void sync(long offset) throws IOException {
+        if (!fsync) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (durable < offset) {
+                if (forcing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                forcing = true;
+                long target = appended;
+                MappedByteBuffer mapping = buffer;
+                syncLock.unlock();
+                boolean forced = false;
+                try {
+                    mapping.force();
+                    forces.incrementAndGet();
+                    forced = true;
+                } finally {
+                    syncLock.lock();
+                    forcing = false;
+                    if (forced) {
+                        durable = Math.max(durable, target);
+                    }
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+    
+    /**
+     * Number of times the file was forced to disk.
+     */
+    long forces() {
+        return forces.get();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (fsync) {
+            buffer.force();
+        }
+        channel.close();
+    }
+}
\ No newline at end of file
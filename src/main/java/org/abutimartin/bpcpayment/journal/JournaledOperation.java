@@ -0,0 +1,14 @@
+package org.abutimartin.bpcpayment.journal;
+
+/**
+ * Money-moving calls the {@link IdempotencyJournal} records. Ordinals are written to the journal
+ * file, so new operations go at the end.
+ */
+public enum JournaledOperation {
+    /** {@code deposit.do}; the order reference is the gateway order id. */
+    DEPOSIT,
+    /** {@code refund.do}; the order reference is the gateway order id. */
+    REFUND,
+    /** {@code instantPayment.do}; the order reference is the merchant's order number. */
+    INSTANT_PAYMENT
+}
\ No newline at end of file
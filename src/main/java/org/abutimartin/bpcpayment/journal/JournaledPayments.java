@@ -0,0 +1,271 @@
+package org.abutimartin.bpcpayment.journal;
+
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.exception.BulkheadFullException;
+import org.abutimartin.bpcpayment.exception.CircuitBreakerOpenException;
+import org.abutimartin.bpcpayment.exception.ConcurrencyLimitExceededException;
+import org.abutimartin.bpcpayment.exception.DuplicateOperationException;
+import org.abutimartin.bpcpayment.exception.RateLimitExceededException;
+import org.abutimartin.bpcpayment.http.JsonCodec;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.model.response.OrderStatus;
+import org.abutimartin.bpcpayment.model.response.OrderStatusResponse;
+import org.abutimartin.bpcpayment.model.response.PaymentAmountInfo;
+import org.abutimartin.bpcpayment.model.response.PaymentResponse;
+import org.abutimartin.bpcpayment.service.OrderService;
+import org.abutimartin.bpcpayment.service.PaymentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deposits, refunds and instant payments recorded in an {@link IdempotencyJournal} under a
+ * caller-chosen idempotency key. Submitting a key again returns the recorded response instead of
+ * moving money twice, and is refused while the first submission is in flight or its outcome is
+ * uncertain.
+ * 
+ * <p>After a restart, call {@link #resolveUncertain()} before taking new work: it looks up the
+ * status of every order whose operation may or may not have reached the gateway and records
+ * whether it was applied. Operations found not applied may be submitted again under the same key.
+ */
+public final class JournaledPayments implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(JournaledPayments.class);
+    private static final String ORDER_NOT_FOUND = "6";
+    
+    private final IdempotencyJournal journal;
+    private final OrderService orders;
+    private final PaymentService payments;
+    private final JsonCodec codec;
+    
+    /**
+     * @param codec encodes recorded responses; the client's own, so the journal stores them with the
+     *              same settings as the gateway calls
+     */
+    public JournaledPayments(IdempotencyJournal journal, OrderService orders, PaymentService payments, JsonCodec codec) {
+        this.journal = journal;
+        this.orders = orders;
+        this.payments = payments;
+        this.codec = codec;
+    }
+    
+    /**
+     * Deposits a pre-authorized order once per key.
+     * 
+     * @throws DuplicateOperationException if the key is in flight, uncertain or already applied
+     */
+    public BaseResponse deposit(String key, String orderId, Long amount) throws BomaPayException {
+        return execute(key, JournaledOperation.DEPOSIT, orderId, amount, BaseResponse.class,
+                () -> orders.deposit(orderId, amount));
+    }
+    
+    /**
+     * Refunds an order once per key. Two refunds of the same amount need two keys.
+     * 
+     * @throws DuplicateOperationException if the key is in flight, uncertain or already applied
+     */
+    public BaseResponse refund(String key, String orderId, Long amount) throws BomaPayException {
+        return execute(key, JournaledOperation.REFUND, orderId, amount, BaseResponse.class,
+                () -> orders.refund(orderId, amount));
+    }
+    
+    /**
+     * Charges a card once per key; an uncertain payment is resolved by its order number.
+     * 
+     * @throws DuplicateOperationException if the key is in flight, uncertain or already applied
+     */
+    public PaymentResponse instantPayment(String key, Long amount, String orderNumber, String description,
+            String pan, String cvc, String expiry, String cardholderName,
+            String backUrl, String failUrl) throws BomaPayException {
+        return execute(key, JournaledOperation.INSTANT_PAYMENT, orderNumber, amount, PaymentResponse.class,
+                () -> payments.instantPayment(amount, orderNumber, description, pan, cvc, expiry, cardholderName,
+                        backUrl, failUrl));
+    }
+    
+    /**
+     * Looks up the gateway status of every uncertain operation and records whether it was applied.
+     * Operations the status cannot settle, e.g. a refund on an order refunded outside the journal,
+     * stay uncertain and are listed by {@link IdempotencyJournal#uncertain()}.
+     * 
+     * @return the entries settled by this call, as {@link JournalEntry.State#APPLIED} or
+     *         {@link JournalEntry.State#NOT_APPLIED}
+     */
+    public List<JournalEntry> resolveUncertain() throws BomaPayException {
+        List<JournalEntry> resolved = new ArrayList<>();
+        for (JournalEntry entry : journal.uncertain()) {
+            JournalEntry.State outcome;
+            try {
+                outcome = resolve(entry);
+            } catch (BomaPayException e) {
+                logger.warn("Could not look up the status of uncertain operation {}", entry, e);
+                continue;
+            }
+            if (outcome == null) {
+                logger.warn("Status of order {} does not settle uncertain operation {}", entry.getOrderReference(), entry);
+                continue;
+            }
+            try {
+                journal.finish(entry.getKey(), outcome, null);
+            } catch (IOException e) {
+                throw new BomaPayException("Could not record the outcome of operation " + entry.getKey(), e);
+            }
+            resolved.add(journal.get(entry.getKey()));
+        }
+        return resolved;
+    }
+    
+    public IdempotencyJournal journal() {
+        return journal;
+    }
+    
+    /**
+     * Closes the journal file.
+     */
+    @Override
+    public void close() {
+        journal.close();
+    }
+    
+    private <T extends BaseResponse> T execute(String key, JournaledOperation operation, String orderReference,
+            Long amount, Class<T> responseType, GatewayCall<T> call) throws BomaPayException {
+        if (key == null || orderReference == null || amount == null) {
+            throw new IllegalArgumentException("Idempotency key, order and amount are required");
+        }
+        JournalEntry recorded;
+        try {
+            recorded = journal.begin(key, operation, orderReference, amount);
+        } catch (IOException e) {
+            // the intent may be in the file but not durable, so nothing is sent
+            journal.markUncertain(key);
+            throw new BomaPayException("Could not record operation " + key + " in the idempotency journal", e);
+        }
+        if (recorded != null) {
+            return decode(recorded, responseType);
+        }
+        
+        T response;
+        try {
+            response = call.send();
+        } catch (BomaPayException e) {
+            if (rejectedBeforeSending(e)) {
+                record(key, JournalEntry.State.NOT_SENT, null);
+            } else {
+                journal.markUncertain(key);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            journal.markUncertain(key);
+            throw e;
+        }
+        record(key, JournalEntry.State.COMPLETED, encode(response));
+        return response;
+    }
+    
+    /**
+     * Records an outcome. A failure here is not the caller's problem: the operation stays uncertain
+     * and is settled by the next {@link #resolveUncertain()}.
+     */
+    private void record(String key, JournalEntry.State state, byte[] response) {
+        try {
+            journal.finish(key, state, response);
+        } catch (IOException e) {
+            journal.markUncertain(key);
+            logger.error("Could not record the outcome of operation {}; it will be resolved by status lookup", key, e);
+        }
+    }
+    
+    private static boolean rejectedBeforeSending(BomaPayException e) {
+        return e instanceof CircuitBreakerOpenException || e instanceof BulkheadFullException
+                || e instanceof RateLimitExceededException || e instanceof ConcurrencyLimitExceededException;
+    }
+    
+    private JournalEntry.State resolve(JournalEntry entry) throws BomaPayException {
+        switch (entry.getOperation()) {
+            case DEPOSIT:
+                return resolveDeposit(orders.getOrderStatusExtended(entry.getOrderReference()));
+            case REFUND:
+                return resolveRefund(entry, orders.getOrderStatusExtended(entry.getOrderReference()));
+            case INSTANT_PAYMENT:
+                return resolvePayment(orders.getOrderStatusExtendedByOrderNumber(entry.getOrderReference()));
+            default:
+                return null;
+        }
+    }
+    
+    private static JournalEntry.State resolveDeposit(OrderStatusResponse status) {
+        OrderStatus state = status.isSuccess() ? status.getStatus() : null;
+        if (state == OrderStatus.DEPOSITED || state == OrderStatus.REFUNDED) {
+            return JournalEntry.State.APPLIED;
+        }
+        if (state == OrderStatus.APPROVED || state == OrderStatus.REVERSED || state == OrderStatus.DECLINED) {
+            return JournalEntry.State.NOT_APPLIED;
+        }
+        return null;
+    }
+    
+    /**
+     * Partial refunds leave the order deposited, so the refunded total is compared with the refunds
+     * the journal knows were applied: it either includes this one or it does not. Any other total
+     * means refunds happened that the journal cannot account for.
+     */
+    private JournalEntry.State resolveRefund(JournalEntry entry, OrderStatusResponse status) throws BomaPayException {
+        PaymentAmountInfo amounts = status.getPaymentAmountInfo();
+        if (!status.isSuccess() || amounts == null || amounts.getRefundedAmount() == null) {
+            return null;
+        }
+        long known = 0;
+        for (JournalEntry other : journal.entriesFor(JournaledOperation.REFUND, entry.getOrderReference())) {
+            if (other.getKey().equals(entry.getKey())) {
+                continue;
+            }
+            if (other.getState() == JournalEntry.State.UNCERTAIN || other.getState() == JournalEntry.State.IN_FLIGHT) {
+                // two unsettled refunds on one order cannot be told apart by the total
+                return null;
+            }
+            if (other.getState() == JournalEntry.State.APPLIED || other.getState() == JournalEntry.State.COMPLETED
+                    && decode(other, BaseResponse.class).isSuccess()) {
+                known += other.getAmount();
+            }
+        }
+        long refunded = amounts.getRefundedAmount();
+        if (refunded == known + entry.getAmount()) {
+            return JournalEntry.State.APPLIED;
+        }
+        return refunded == known ? JournalEntry.State.NOT_APPLIED : null;
+    }
+    
+    private static JournalEntry.State resolvePayment(OrderStatusResponse status) {
+        if (ORDER_NOT_FOUND.equals(status.getErrorCode())) {
+            return JournalEntry.State.NOT_APPLIED;
+        }
+        OrderStatus state = status.isSuccess() ? status.getStatus() : null;
+        if (state == OrderStatus.DECLINED) {
+            return JournalEntry.State.NOT_APPLIED;
+        }
+        // still registered or in 3-D Secure: the customer may yet complete it
+        return state != null && state.isFinal() ? JournalEntry.State.APPLIED : null;
+    }
+    
+    private byte[] encode(BaseResponse response) {
+        try {
+            return codec.write(response);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode " + response.getClass().getSimpleName(), e);
+        }
+    }
+    
+    private <T> T decode(JournalEntry entry, Class<T> responseType) throws BomaPayException {
+        try {
+            return codec.read(entry.getResponse(), responseType);
+        } catch (IOException e) {
+            throw new BomaPayException("Could not read the recorded response of operation " + entry.getKey(), e);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface GatewayCall<T> {
+        T send() throws BomaPayException;
+    }
+}
\ No newline at end of file
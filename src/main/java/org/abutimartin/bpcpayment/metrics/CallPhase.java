@@ -0,0 +1,21 @@
+package org.abutimartin.bpcpayment.metrics;
+
+/**
+ * Phases of one gateway call, as measured by OkHttp's connection events.
+ */
+public enum CallPhase {
+    /** Resolving the gateway host; skipped on a reused connection. */
+    DNS,
+    /** TCP connect; skipped on a reused connection. */
+    CONNECT,
+    /** TLS handshake; skipped on a reused connection and for plain HTTP. */
+    TLS,
+    /** Writing the request headers and body. */
+    REQUEST,
+    /** From the request being sent to the first response byte, i.e. time spent in the gateway. */
+    TIME_TO_FIRST_BYTE,
+    /** Reading the response headers and body. */
+    RESPONSE,
+    /** The whole call, retries included. */
+    TOTAL
+}
\ No newline at end of file
@@ -0,0 +1,129 @@
+package org.abutimartin.bpcpayment.metrics;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase timings of one gateway call, recorded when {@code recordCallPhases} is enabled and
+ * attached to the response when {@code attachCallTimings} is. With retries, every phase except
+ * {@link CallPhase#TOTAL} describes the last attempt.
+ * 
+ * <p>The HTTP layer records into a subclass; callers only read.
+ */
+public class CallTimings {
+    private static final long UNSET = Long.MIN_VALUE;
+    
+    /**
+     * Instants of a call the phases are measured between.
+     */
+    public enum Mark {
+        CALL_START, DNS_START, DNS_END, CONNECT_START, SECURE_START, SECURE_END, CONNECT_END,
+        REQUEST_START, REQUEST_END, RESPONSE_START, RESPONSE_END, CALL_END
+    }
+    
+    private final String endpoint;
+    private final long[] marks = new long[Mark.values().length];
+    private boolean connecting;
+    private boolean connectionReused;
+    private int attempts;
+    
+    protected CallTimings(String endpoint) {
+        this.endpoint = endpoint;
+        Arrays.fill(marks, UNSET);
+    }
+    
+    public String getEndpoint() {
+        return endpoint;
+    }
+    
+    /**
+     * Duration of the phase, or {@code -1} if it did not happen (e.g. DNS on a reused connection).
+     */
+    public long getNanos(CallPhase phase) {
+        switch (phase) {
+            case DNS:
+                return between(Mark.DNS_START, Mark.DNS_END);
+            case CONNECT:
+                return between(Mark.CONNECT_START, marks[Mark.SECURE_START.ordinal()] != UNSET ? Mark.SECURE_START : Mark.CONNECT_END);
+            case TLS:
+                return between(Mark.SECURE_START, Mark.SECURE_END);
+            case REQUEST:
+                return between(Mark.REQUEST_START, Mark.REQUEST_END);
+            case TIME_TO_FIRST_BYTE:
+                return between(Mark.REQUEST_END, Mark.RESPONSE_START);
+            case RESPONSE:
+                return between(Mark.RESPONSE_START, Mark.RESPONSE_END);
+            default:
+                return between(Mark.CALL_START, Mark.CALL_END);
+        }
+    }
+    
+    public long getMillis(CallPhase phase) {
+        long nanos = getNanos(phase);
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+    
+    /**
+     * Every phase that happened, in call order.
+     */
+    public Map<CallPhase, Long> toNanosMap() {
+        Map<CallPhase, Long> phases = new EnumMap<>(CallPhase.class);
+        for (CallPhase phase : CallPhase.values()) {
+            long nanos = getNanos(phase);
+            if (nanos >= 0) {
+                phases.put(phase, nanos);
+            }
+        }
+        return phases;
+    }
+    
+    /**
+     * Whether the last attempt ran on a pooled connection instead of opening a new one.
+     */
+    public boolean isConnectionReused() {
+        return connectionReused;
+    }
+    
+    /**
+     * How many attempts acquired a connection; more than one means the call was retried.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    protected void mark(Mark mark) {
+        marks[mark.ordinal()] = System.nanoTime();
+        if (mark == Mark.CONNECT_START) {
+            connecting = true;
+        }
+    }
+    
+    protected void connectionAcquired() {
+        attempts++;
+        connectionReused = !connecting;
+        connecting = false;
+        if (connectionReused) {
+            // connect phases left over from an earlier attempt do not describe this one
+            for (Mark mark : new Mark[] {Mark.DNS_START, Mark.DNS_END, Mark.CONNECT_START,
+                    Mark.SECURE_START, Mark.SECURE_END, Mark.CONNECT_END}) {
+                marks[mark.ordinal()] = UNSET;
+            }
+        }
+    }
+    
+    private long between(Mark start, Mark end) {
+        long from = marks[start.ordinal()];
+        long to = marks[end.ordinal()];
+        return from == UNSET || to == UNSET || to < from ? -1 : to - from;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CallTimings{endpoint=").append(endpoint);
+        toNanosMap().forEach((phase, nanos) -> sb.append(", ").append(phase).append('=')
+                .append(TimeUnit.NANOSECONDS.toMicros(nanos)).append("us"));
+        return sb.append(", reused=").append(connectionReused).append(", attempts=").append(attempts).append('}').toString();
+    }
+}
\ No newline at end of file
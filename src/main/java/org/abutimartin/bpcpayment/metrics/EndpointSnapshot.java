@@ -0,0 +1,84 @@
+package org.abutimartin.bpcpayment.metrics;
+
+import java.util.Map;
+
+/**
+ * Point-in-time metrics of one gateway endpoint, taken by {@link GatewayMetrics#snapshot()}.
+ * Counters are cumulative since the client was created.
+ */
+public final class EndpointSnapshot {
+    private final String endpoint;
+    private final HistogramSnapshot latency;
+    private final int inFlight;
+    private final Map<Integer, Long> statusCounts;
+    private final Map<String, Long> errorCodeCounts;
+    private final Map<String, Long> failureCounts;
+    private final Map<CallPhase, HistogramSnapshot> phases;
+    private final long reusedConnections;
+    private final long newConnections;
+    
+    EndpointSnapshot(String endpoint, HistogramSnapshot latency, int inFlight, Map<Integer, Long> statusCounts,
+            Map<String, Long> errorCodeCounts, Map<String, Long> failureCounts, Map<CallPhase, HistogramSnapshot> phases,
+            long reusedConnections, long newConnections) {
+        this.endpoint = endpoint;
+        this.latency = latency;
+        this.inFlight = inFlight;
+        this.statusCounts = statusCounts;
+        this.errorCodeCounts = errorCodeCounts;
+        this.failureCounts = failureCounts;
+        this.phases = phases;
+        this.reusedConnections = reusedConnections;
+        this.newConnections = newConnections;
+    }
+    
+    public String getEndpoint() {
+        return endpoint;
+    }
+    
+    /** Latency of finished calls, waits and retries included. */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+    
+    /** Calls started but not yet finished. */
+    public int getInFlight() {
+        return inFlight;
+    }
+    
+    /** Gateway responses by HTTP status code. */
+    public Map<Integer, Long> getStatusCounts() {
+        return statusCounts;
+    }
+    
+    /** Decoded responses by gateway {@code errorCode}; {@code "0"} is success. */
+    public Map<String, Long> getErrorCodeCounts() {
+        return errorCodeCounts;
+    }
+    
+    /** Failed calls by exception type, e.g. {@code BomaPayException} or {@code CircuitBreakerOpenException}. */
+    public Map<String, Long> getFailureCounts() {
+        return failureCounts;
+    }
+    
+    /** Latency per call phase; empty unless {@code recordCallPhases} is enabled. */
+    public Map<CallPhase, HistogramSnapshot> getPhases() {
+        return phases;
+    }
+    
+    /** Calls whose last attempt ran on a pooled connection; counted only while recording call phases. */
+    public long getReusedConnections() {
+        return reusedConnections;
+    }
+    
+    /** Calls whose last attempt had to open a new connection; counted only while recording call phases. */
+    public long getNewConnections() {
+        return newConnections;
+    }
+    
+    @Override
+    public String toString() {
+        return "EndpointSnapshot{endpoint=" + endpoint + ", latency=" + latency + ", inFlight=" + inFlight
+                + ", statuses=" + statusCounts + ", errorCodes=" + errorCodeCounts + ", failures=" + failureCounts
+                + (phases.isEmpty() ? "" : ", phases=" + phases + ", reused=" + reusedConnections + ", new=" + newConnections) + "}";
+    }
+}
\ No newline at end of file
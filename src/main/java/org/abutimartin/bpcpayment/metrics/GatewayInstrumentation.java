@@ -0,0 +1,51 @@
+package org.abutimartin.bpcpayment.metrics;
+
+/**
+ * Hooks {@code HttpClient} calls for every gateway call, to feed latency and outcome metrics into
+ * any monitoring system. Implementations run on the calling or dispatcher thread, so they must be
+ * thread-safe and must not block. {@link GatewayMetrics} is the built-in implementation.
+ * <p>
+ * Every started call is finished exactly once. Retries happen inside one call and are not reported
+ * separately.
+ */
+public interface GatewayInstrumentation {
+    
+    /**
+     * Instrumentation that records nothing; the default.
+     */
+    GatewayInstrumentation NOOP = new GatewayInstrumentation() {
+    };
+    
+    /**
+     * A call to the endpoint was started, before any bulkhead or rate limiter wait.
+     */
+    default void callStarted(String endpoint) {
+    }
+    
+    /**
+     * The gateway answered the call. Reported before {@link #callFinished}, and only for the final
+     * attempt.
+     * 
+     * @param httpStatus the HTTP status code
+     * @param errorCode the gateway {@code errorCode} from the decoded body, or {@code null} if the
+     *                  body was not decoded (e.g. on an HTTP error)
+     */
+    default void responseReceived(String endpoint, int httpStatus, String errorCode) {
+    }
+    
+    /**
+     * The call completed.
+     * 
+     * @param latencyNanos time since {@link #callStarted}, waits and retries included
+     * @param failure why the call failed, or {@code null} if it returned a response object
+     */
+    default void callFinished(String endpoint, long latencyNanos, Throwable failure) {
+    }
+    
+    /**
+     * Phase timings of a finished call, reported only when {@code recordCallPhases} is enabled.
+     * Runs on the thread that finished the call, which may be after {@link #callFinished}.
+     */
+    default void phasesRecorded(CallTimings timings) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package org.abutimartin.bpcpayment.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Built-in {@link GatewayInstrumentation}: per-endpoint latency histograms, outcome counters by
+ * HTTP status, gateway {@code errorCode} and failure type, in-flight gauges, and per-phase
+ * histograms when {@code recordCallPhases} is enabled. Recording takes
+ * no locks; read everything at once with {@link #snapshot()} and export it to any metrics system.
+ */
+public final class GatewayMetrics implements GatewayInstrumentation {
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    
+    @Override
+    public void callStarted(String endpoint) {
+        metrics(endpoint).inFlight.increment();
+    }
+    
+    @Override
+    public void responseReceived(String endpoint, int httpStatus, String errorCode) {
+        EndpointMetrics metrics = metrics(endpoint);
+        counter(metrics.statuses, httpStatus).increment();
+        if (errorCode != null) {
+            counter(metrics.errorCodes, errorCode).increment();
+        }
+    }
+    
+    @Override
+    public void callFinished(String endpoint, long latencyNanos, Throwable failure) {
+        EndpointMetrics metrics = metrics(endpoint);
+        metrics.inFlight.decrement();
+        metrics.latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+        if (failure != null) {
+            counter(metrics.failures, failure.getClass().getSimpleName()).increment();
+        }
+    }
+    
+    @Override
+    public void phasesRecorded(CallTimings timings) {
+        EndpointMetrics metrics = metrics(timings.getEndpoint());
+        Map<CallPhase, LatencyHistogram> phases = metrics.phases();
+        for (CallPhase phase : CallPhase.values()) {
+            long nanos = timings.getNanos(phase);
+            if (nanos >= 0) {
+                phases.get(phase).record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        (timings.isConnectionReused() ? metrics.reusedConnections : metrics.newConnections).increment();
+    }
+    
+    /**
+     * Current metrics of every endpoint called so far, keyed by endpoint path.
+     */
+    public Map<String, EndpointSnapshot> snapshot() {
+        Map<String, EndpointSnapshot> snapshot = new TreeMap<>();
+        endpoints.forEach((endpoint, metrics) -> snapshot.put(endpoint, metrics.snapshot(endpoint)));
+        return Collections.unmodifiableMap(snapshot);
+    }
+    
+    /**
+     * Current metrics of one endpoint, or {@code null} if it has not been called.
+     */
+    public EndpointSnapshot snapshot(String endpoint) {
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        return metrics != null ? metrics.snapshot(endpoint) : null;
+    }
+    
+    private EndpointMetrics metrics(String endpoint) {
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        return metrics != null ? metrics : endpoints.computeIfAbsent(endpoint, e -> new EndpointMetrics());
+    }
+    
+    private static <K> LongAdder counter(Map<K, LongAdder> counters, K key) {
+        // plain get first: computeIfAbsent may lock the bin even when the key is present
+        LongAdder counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+    
+    private static final class EndpointMetrics {
+        final LatencyHistogram latency = new LatencyHistogram();
+        // an adder, since every call touches it twice and calls to one endpoint run in parallel
+        final LongAdder inFlight = new LongAdder();
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final Map<String, LongAdder> errorCodes = new ConcurrentHashMap<>();
+        final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+        final LongAdder reusedConnections = new LongAdder();
+        final LongAdder newConnections = new LongAdder();
+        // 16 KiB per phase, so only allocated once phases are actually recorded
+        private volatile Map<CallPhase, LatencyHistogram> phases;
+        
+        Map<CallPhase, LatencyHistogram> phases() {
+            Map<CallPhase, LatencyHistogram> current = phases;
+            if (current == null) {
+                synchronized (this) {
+                    current = phases;
+                    if (current == null) {
+                        current = new EnumMap<>(CallPhase.class);
+                        for (CallPhase phase : CallPhase.values()) {
+                            current.put(phase, new LatencyHistogram());
+                        }
+                        phases = current;
+                    }
+                }
+            }
+            return current;
+        }
+        
+        EndpointSnapshot snapshot(String endpoint) {
+            Map<CallPhase, HistogramSnapshot> phaseSnapshots = new EnumMap<>(CallPhase.class);
+            Map<CallPhase, LatencyHistogram> current = phases;
+            if (current != null) {
+                current.forEach((phase, histogram) -> phaseSnapshots.put(phase, histogram.snapshot()));
+            }
+            return new EndpointSnapshot(endpoint, latency.snapshot(), inFlight.intValue(),
+                    sums(statuses), sums(errorCodes), sums(failures), Collections.unmodifiableMap(phaseSnapshots),
+                    reusedConnections.sum(), newConnections.sum());
+        }
+        
+        private static <K> Map<K, Long> sums(Map<K, LongAdder> counters) {
+            Map<K, Long> sums = new TreeMap<>();
+            counters.forEach((key, counter) -> sums.put(key, counter.sum()));
+            return Collections.unmodifiableMap(sums);
+        }
+    }
+}
\ No newline at end of file
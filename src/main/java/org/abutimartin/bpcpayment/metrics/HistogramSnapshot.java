@@ -0,0 +1,82 @@
+package org.abutimartin.bpcpayment.metrics;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram}, in microseconds. Snapshots are cumulative since
+ * the histogram was created; {@link #since} gives the distribution of a recent interval.
+ */
+public final class HistogramSnapshot {
+    private final long[] counts;
+    private final long count;
+    
+    HistogramSnapshot(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        this.count = total;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Value below which the given percentage of recorded values fall, e.g. {@code 99.0} for p99.
+     * 
+     * @return the value in microseconds, or {@code 0} if nothing was recorded
+     */
+    public long valueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValueAt(i);
+            }
+        }
+        return getMaxMicros();
+    }
+    
+    public long getMaxMicros() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] > 0) {
+                return LatencyHistogram.highestValueAt(i);
+            }
+        }
+        return 0;
+    }
+    
+    public double getMeanMicros() {
+        if (count == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                sum += (double) counts[i] * LatencyHistogram.highestValueAt(i);
+            }
+        }
+        return sum / count;
+    }
+    
+    /**
+     * Distribution of the values recorded after {@code earlier} was taken from the same histogram.
+     */
+    public HistogramSnapshot since(HistogramSnapshot earlier) {
+        long[] delta = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            delta[i] = Math.max(0, counts[i] - earlier.counts[i]);
+        }
+        return new HistogramSnapshot(delta);
+    }
+    
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{count=" + count + ", p50=" + valueAtPercentile(50) + "us, p99="
+                + valueAtPercentile(99) + "us, p999=" + valueAtPercentile(99.9) + "us, max=" + getMaxMicros() + "us}";
+    }
+}
\ No newline at end of file
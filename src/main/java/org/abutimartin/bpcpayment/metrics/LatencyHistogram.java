@@ -0,0 +1,64 @@
+package org.abutimartin.bpcpayment.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in the style of HdrHistogram: values below
+ * 128 µs are counted exactly, and every power of two above that is split into 64 buckets, so any
+ * recorded value is reported within 1.6% of its true value. Covers up to about 38 hours in 16 KiB.
+ * Recording is a single atomic increment.
+ */
+public final class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    static final int MAX_MAGNITUDE = 36;
+    static final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    
+    public void record(long duration, TimeUnit unit) {
+        recordMicros(unit.toMicros(duration));
+    }
+    
+    public void recordMicros(long micros) {
+        counts.incrementAndGet(indexOf(Math.max(0, micros)));
+    }
+    
+    /**
+     * Copies the current counts. Values recorded while copying may or may not be included.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new HistogramSnapshot(copy);
+    }
+    
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        // shift so the value keeps its top SUB_BUCKET_BITS - 1 bits below the leading one
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (micros >> shift) - HALF_SUB_BUCKETS;
+    }
+    
+    /**
+     * Largest value that maps to the bucket.
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package org.abutimartin.bpcpayment.model.request;
+
+/**
+ * One order to deposit, refund or reverse in a bulk operation. Reversals ignore the amount.
+ */
+public final class BulkItem {
+    private final String orderId;
+    private final Long amount;
+    
+    private BulkItem(String orderId, Long amount) {
+        this.orderId = orderId;
+        this.amount = amount;
+    }
+    
+    public static BulkItem of(String orderId, Long amount) {
+        return new BulkItem(orderId, amount);
+    }
+    
+    /** An item without an amount, for reversals. */
+    public static BulkItem of(String orderId) {
+        return new BulkItem(orderId, null);
+    }
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public Long getAmount() {
+        return amount;
+    }
+    
+    @Override
+    public String toString() {
+        return amount != null ? orderId + " (" + amount + ")" : orderId;
+    }
+}
\ No newline at end of file
@@ -33,6 +33,12 @@ public class InstantPaymentRequest extends BaseRequest {
     @JsonProperty("failUrl")
     private String failUrl;
     
+    @JsonProperty("clientId")
+    private String clientId;
+    
+    @JsonProperty("ip")
+    private String ip;
+    
     public Long getAmount() {
         return amount;
     }
@@ -112,4 +118,20 @@ public class InstantPaymentRequest extends BaseRequest {
     public void setFailUrl(String failUrl) {
         this.failUrl = failUrl;
     }
+    
+    public String getClientId() {
+        return clientId;
+    }
+    
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+    
+    public String getIp() {
+        return ip;
+    }
+    
+    public void setIp(String ip) {
+        this.ip = ip;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package org.abutimartin.bpcpayment.model.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class MotoPaymentRequest extends BaseRequest {
+    @JsonProperty("amount")
+    private Long amount;
+    
+    @JsonProperty("currency")
+    private String currency;
+    
+    @JsonProperty("returnUrl")
+    private String returnUrl;
+    
+    @JsonProperty("description")
+    private String description;
+    
+    @JsonProperty("pan")
+    private String pan;
+    
+    @JsonProperty("expiry")
+    private String expiry;
+    
+    @JsonProperty("cvc")
+    private String cvc;
+    
+    @JsonProperty("cardholder")
+    private String cardholder;
+    
+    public Long getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+    
+    public String getCurrency() {
+        return currency;
+    }
+    
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+    
+    public String getReturnUrl() {
+        return returnUrl;
+    }
+    
+    public void setReturnUrl(String returnUrl) {
+        this.returnUrl = returnUrl;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    public void setDescription(String description) {
+        this.description = description;
+    }
+    
+    public String getPan() {
+        return pan;
+    }
+    
+    public void setPan(String pan) {
+        this.pan = pan;
+    }
+    
+    public String getExpiry() {
+        return expiry;
+    }
+    
+    public void setExpiry(String expiry) {
+        this.expiry = expiry;
+    }
+    
+    public String getCvc() {
+        return cvc;
+    }
+    
+    public void setCvc(String cvc) {
+        this.cvc = cvc;
+    }
+    
+    public String getCardholder() {
+        return cardholder;
+    }
+    
+    public void setCardholder(String cardholder) {
+        this.cardholder = cardholder;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,49 @@
+package org.abutimartin.bpcpayment.model.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class OrderActionRequest extends BaseRequest {
+    @JsonProperty("orderId")
+    private String orderId;
+    
+    @JsonProperty("amount")
+    private Long amount;
+    
+    @JsonProperty("orderNumber")
+    private String orderNumber;
+    
+    @JsonProperty("merchantLogin")
+    private String merchantLogin;
+    
+    public String getOrderId() {
+        return orderId;
+    }
+    
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+    
+    public Long getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+    
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+    
+    public void setOrderNumber(String orderNumber) {
+        this.orderNumber = orderNumber;
+    }
+    
+    public String getMerchantLogin() {
+        return merchantLogin;
+    }
+    
+    public void setMerchantLogin(String merchantLogin) {
+        this.merchantLogin = merchantLogin;
+    }
+}
\ No newline at end of file
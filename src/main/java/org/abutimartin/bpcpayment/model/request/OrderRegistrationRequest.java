@@ -18,6 +18,9 @@ public class OrderRegistrationRequest extends BaseRequest {
     @JsonProperty("clientId")
     private String clientId;
     
+    @JsonProperty("merchantLogin")
+    private String merchantLogin;
+    
     public Long getAmount() {
         return amount;
     }
@@ -57,4 +60,12 @@ public class OrderRegistrationRequest extends BaseRequest {
     public void setClientId(String clientId) {
         this.clientId = clientId;
     }
+    
+    public String getMerchantLogin() {
+        return merchantLogin;
+    }
+    
+    public void setMerchantLogin(String merchantLogin) {
+        this.merchantLogin = merchantLogin;
+    }
 }
\ No newline at end of file
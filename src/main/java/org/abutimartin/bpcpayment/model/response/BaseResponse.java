@@ -1,14 +1,19 @@
 package org.abutimartin.bpcpayment.model.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.abutimartin.bpcpayment.metrics.CallTimings;
 
-public abstract class BaseResponse {
+public class BaseResponse {
     @JsonProperty("errorCode")
     private String errorCode;
     
     @JsonProperty("errorMessage")
     private String errorMessage;
     
+    @JsonIgnore
+    private CallTimings callTimings;
+    
     public String getErrorCode() {
         return errorCode;
     }
@@ -25,6 +30,18 @@ public abstract class BaseResponse {
         this.errorMessage = errorMessage;
     }
     
+    /**
+     * Phase timings of the call that returned this response, or {@code null} unless
+     * {@code attachCallTimings} is enabled. Responses shared by coalesced calls carry the shared call's timings.
+     */
+    public CallTimings getCallTimings() {
+        return callTimings;
+    }
+    
+    public void setCallTimings(CallTimings callTimings) {
+        this.callTimings = callTimings;
+    }
+    
     public boolean isSuccess() {
         return "0".equals(errorCode);
     }
@@ -0,0 +1,51 @@
+package org.abutimartin.bpcpayment.model.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Binding {
+    @JsonProperty("bindingId")
+    private String bindingId;
+    
+    @JsonProperty("maskedPan")
+    private String maskedPan;
+    
+    @JsonProperty("expiryDate")
+    private String expiryDate;
+    
+    @JsonProperty("clientId")
+    private String clientId;
+    
+    public String getBindingId() {
+        return bindingId;
+    }
+    
+    public void setBindingId(String bindingId) {
+        this.bindingId = bindingId;
+    }
+    
+    public String getMaskedPan() {
+        return maskedPan;
+    }
+    
+    public void setMaskedPan(String maskedPan) {
+        this.maskedPan = maskedPan;
+    }
+    
+    public String getExpiryDate() {
+        return expiryDate;
+    }
+    
+    public void setExpiryDate(String expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+    
+    public String getClientId() {
+        return clientId;
+    }
+    
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package org.abutimartin.bpcpayment.model.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Collections;
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BindingsResponse extends BaseResponse {
+    @JsonProperty("bindings")
+    private List<Binding> bindings = Collections.emptyList();
+    
+    public List<Binding> getBindings() {
+        return bindings;
+    }
+    
+    public void setBindings(List<Binding> bindings) {
+        this.bindings = bindings;
+    }
+}
\ No newline at end of file
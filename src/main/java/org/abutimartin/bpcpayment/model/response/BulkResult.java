@@ -0,0 +1,52 @@
+package org.abutimartin.bpcpayment.model.response;
+
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.model.request.BulkItem;
+
+/**
+ * Outcome of one item of a bulk operation: either the gateway's response, which may still carry
+ * a business error code, or the exception that kept the call from completing.
+ */
+public final class BulkResult {
+    private final BulkItem item;
+    private final BaseResponse response;
+    private final BomaPayException failure;
+    
+    public BulkResult(BulkItem item, BaseResponse response, BomaPayException failure) {
+        this.item = item;
+        this.response = response;
+        this.failure = failure;
+    }
+    
+    public BulkItem getItem() {
+        return item;
+    }
+    
+    /**
+     * The gateway's response, or {@code null} if the call failed.
+     */
+    public BaseResponse getResponse() {
+        return response;
+    }
+    
+    /**
+     * Why the call failed, or {@code null} if the gateway answered. A failed money-moving call may
+     * still have been applied; check the order status before resubmitting it.
+     */
+    public BomaPayException getFailure() {
+        return failure;
+    }
+    
+    /**
+     * Whether the gateway answered with error code {@code 0}.
+     */
+    public boolean isSuccess() {
+        return response != null && response.isSuccess();
+    }
+    
+    @Override
+    public String toString() {
+        return "BulkResult{" + item + ", " + (failure != null ? "failure=" + failure.getMessage()
+                : "errorCode=" + response.getErrorCode()) + "}";
+    }
+}
\ No newline at end of file
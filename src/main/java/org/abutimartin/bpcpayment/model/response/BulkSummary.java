@@ -0,0 +1,47 @@
+package org.abutimartin.bpcpayment.model.response;
+
+/**
+ * Totals of a finished bulk operation.
+ */
+public final class BulkSummary {
+    private final long succeeded;
+    private final long declined;
+    private final long failed;
+    private final long elapsedMillis;
+    
+    public BulkSummary(long succeeded, long declined, long failed, long elapsedMillis) {
+        this.succeeded = succeeded;
+        this.declined = declined;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+    }
+    
+    public long getTotal() {
+        return succeeded + declined + failed;
+    }
+    
+    /** Items the gateway accepted with error code {@code 0}. */
+    public long getSucceeded() {
+        return succeeded;
+    }
+    
+    /** Items the gateway answered with a business error code. */
+    public long getDeclined() {
+        return declined;
+    }
+    
+    /** Items whose call did not complete, e.g. on a timeout or a rejection by a client-side limit. */
+    public long getFailed() {
+        return failed;
+    }
+    
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+    
+    @Override
+    public String toString() {
+        return "BulkSummary{total=" + getTotal() + ", succeeded=" + succeeded + ", declined=" + declined
+                + ", failed=" + failed + ", elapsed=" + elapsedMillis + "ms}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package org.abutimartin.bpcpayment.model.response;
+
+/**
+ * Order states reported by {@code getOrderStatusExtended.do}.
+ */
+public enum OrderStatus {
+    /** Registered; the customer has not paid yet. */
+    REGISTERED(0, false),
+    /** Amount held by a pre-authorization, awaiting deposit or reversal. */
+    APPROVED(1, true),
+    /** Paid in full. */
+    DEPOSITED(2, true),
+    REVERSED(3, true),
+    REFUNDED(4, true),
+    /** The customer is in 3-D Secure authentication with their issuer. */
+    ACS_AUTHORIZATION(5, false),
+    DECLINED(6, true);
+    
+    private final int code;
+    private final boolean finalState;
+    
+    OrderStatus(int code, boolean finalState) {
+        this.code = code;
+        this.finalState = finalState;
+    }
+    
+    public int getCode() {
+        return code;
+    }
+    
+    /**
+     * Whether the payment attempt has an outcome; only merchant operations change the order from here.
+     */
+    public boolean isFinal() {
+        return finalState;
+    }
+    
+    /**
+     * Returns the status for a gateway code, or {@code null} for a missing or unknown code.
+     */
+    public static OrderStatus fromCode(Integer code) {
+        if (code != null) {
+            for (OrderStatus status : values()) {
+                if (status.code == code) {
+                    return status;
+                }
+            }
+        }
+        return null;
+    }
+}
\ No newline at end of file
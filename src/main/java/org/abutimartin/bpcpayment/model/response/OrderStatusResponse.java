@@ -0,0 +1,160 @@
+package org.abutimartin.bpcpayment.model.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class OrderStatusResponse extends BaseResponse {
+    @JsonProperty("orderNumber")
+    private String orderNumber;
+    
+    @JsonProperty("orderStatus")
+    private Integer orderStatus;
+    
+    @JsonProperty("actionCode")
+    private Integer actionCode;
+    
+    @JsonProperty("actionCodeDescription")
+    private String actionCodeDescription;
+    
+    @JsonProperty("amount")
+    private Long amount;
+    
+    @JsonProperty("currency")
+    private String currency;
+    
+    @JsonProperty("date")
+    private Long date;
+    
+    @JsonProperty("orderDescription")
+    private String orderDescription;
+    
+    @JsonProperty("ip")
+    private String ip;
+    
+    @JsonProperty("authRefNum")
+    private String authRefNum;
+    
+    @JsonProperty("authDateTime")
+    private Long authDateTime;
+    
+    @JsonProperty("paymentAmountInfo")
+    private PaymentAmountInfo paymentAmountInfo;
+    
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+    
+    public void setOrderNumber(String orderNumber) {
+        this.orderNumber = orderNumber;
+    }
+    
+    public Integer getOrderStatus() {
+        return orderStatus;
+    }
+    
+    public void setOrderStatus(Integer orderStatus) {
+        this.orderStatus = orderStatus;
+    }
+    
+    /**
+     * The order status as an enum, or {@code null} if the gateway sent none or an unknown code.
+     */
+    @JsonIgnore
+    public OrderStatus getStatus() {
+        return OrderStatus.fromCode(orderStatus);
+    }
+    
+    /**
+     * Whether the payment attempt has an outcome, see {@link OrderStatus#isFinal()}.
+     */
+    @JsonIgnore
+    public boolean isFinal() {
+        OrderStatus status = getStatus();
+        return status != null && status.isFinal();
+    }
+    
+    public Integer getActionCode() {
+        return actionCode;
+    }
+    
+    public void setActionCode(Integer actionCode) {
+        this.actionCode = actionCode;
+    }
+    
+    public String getActionCodeDescription() {
+        return actionCodeDescription;
+    }
+    
+    public void setActionCodeDescription(String actionCodeDescription) {
+        this.actionCodeDescription = actionCodeDescription;
+    }
+    
+    public Long getAmount() {
+        return amount;
+    }
+    
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+    
+    public String getCurrency() {
+        return currency;
+    }
+    
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+    
+    /** Registration time in epoch milliseconds. */
+    public Long getDate() {
+        return date;
+    }
+    
+    public void setDate(Long date) {
+        this.date = date;
+    }
+    
+    public String getOrderDescription() {
+        return orderDescription;
+    }
+    
+    public void setOrderDescription(String orderDescription) {
+        this.orderDescription = orderDescription;
+    }
+    
+    public String getIp() {
+        return ip;
+    }
+    
+    public void setIp(String ip) {
+        this.ip = ip;
+    }
+    
+    public String getAuthRefNum() {
+        return authRefNum;
+    }
+    
+    public void setAuthRefNum(String authRefNum) {
+        this.authRefNum = authRefNum;
+    }
+    
+    /** Authorization time in epoch milliseconds. */
+    public Long getAuthDateTime() {
+        return authDateTime;
+    }
+    
+    public void setAuthDateTime(Long authDateTime) {
+        this.authDateTime = authDateTime;
+    }
+    
+    /**
+     * Approved, deposited and refunded amounts, or {@code null} if the gateway sent none.
+     */
+    public PaymentAmountInfo getPaymentAmountInfo() {
+        return paymentAmountInfo;
+    }
+    
+    public void setPaymentAmountInfo(PaymentAmountInfo paymentAmountInfo) {
+        this.paymentAmountInfo = paymentAmountInfo;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package org.abutimartin.bpcpayment.model.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Running totals of an order, in minor currency units, as reported by {@code getOrderStatusExtended.do}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PaymentAmountInfo {
+    @JsonProperty("approvedAmount")
+    private Long approvedAmount;
+    
+    @JsonProperty("depositedAmount")
+    private Long depositedAmount;
+    
+    @JsonProperty("refundedAmount")
+    private Long refundedAmount;
+    
+    @JsonProperty("paymentState")
+    private String paymentState;
+    
+    public Long getApprovedAmount() {
+        return approvedAmount;
+    }
+    
+    public void setApprovedAmount(Long approvedAmount) {
+        this.approvedAmount = approvedAmount;
+    }
+    
+    public Long getDepositedAmount() {
+        return depositedAmount;
+    }
+    
+    public void setDepositedAmount(Long depositedAmount) {
+        this.depositedAmount = depositedAmount;
+    }
+    
+    /** Sum of all refunds made on the order so far. */
+    public Long getRefundedAmount() {
+        return refundedAmount;
+    }
+    
+    public void setRefundedAmount(Long refundedAmount) {
+        this.refundedAmount = refundedAmount;
+    }
+    
+    public String getPaymentState() {
+        return paymentState;
+    }
+    
+    public void setPaymentState(String paymentState) {
+        this.paymentState = paymentState;
+    }
+}
\ No newline at end of file
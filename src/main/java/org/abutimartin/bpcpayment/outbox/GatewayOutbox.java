@@ -0,0 +1,409 @@
+package org.abutimartin.bpcpayment.outbox;
+
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.exception.DuplicateOperationException;
+import org.abutimartin.bpcpayment.journal.JournalEntry;
+import org.abutimartin.bpcpayment.journal.JournaledPayments;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.service.BindingService;
+import org.abutimartin.bpcpayment.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Store-and-forward queue for operations whose caller does not need the gateway's answer right
+ * away: deposits, refunds, reversals and card unbinding. Enqueueing writes the operation to a
+ * local segment file and returns once it is durable, so a gateway outage delays these operations
+ * instead of failing them.
+ * 
+ * <p>A drainer thread forwards queued operations at no more than {@code ratePerSecond} and
+ * {@code maxConcurrency} at a time. Operations on the same order (or binding) are delivered one
+ * at a time in enqueue order, so a refund never overtakes the deposit before it. A failed
+ * delivery pauses the whole drainer with exponential backoff, since the gateway is most likely
+ * down, and is retried first when the pause ends. Any answer from the gateway, a decline
+ * included, completes the operation and goes to the {@link OutboxListener}.
+ * 
+ * <p>Delivery is at least once: an operation sent just before a crash is sent again on restart.
+ * Deposits and reversals of an order already processed are declined by the gateway. With an
+ * idempotency journal configured, deposits and refunds go through it and are not repeated.
+ */
+public final class GatewayOutbox implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GatewayOutbox.class);
+    private static final long NO_AMOUNT = -1;
+    
+    private final OutboxConfig config;
+    private final SegmentQueue queue;
+    private final OrderService orders;
+    private final BindingService bindings;
+    private final JournaledPayments journaled;
+    private final ExecutorService workers;
+    private final Thread drainer;
+    
+    // guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<String, ArrayDeque<OutboxMessage>> lanes = new HashMap<>();
+    private final ArrayDeque<String> ready = new ArrayDeque<>();
+    private int inFlight;
+    private int pending;
+    private int failuresInRow;
+    private long pausedUntilNanos;
+    private boolean running = true;
+    
+    private final long intervalNanos;
+    private long nextStartNanos = System.nanoTime();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    
+    /**
+     * Opens the outbox and starts forwarding operations left queued by an earlier process.
+     * 
+     * @param journaled journal for deposits and refunds, or {@code null} to call the gateway directly
+     */
+    public GatewayOutbox(OutboxConfig config, OrderService orders, BindingService bindings,
+            JournaledPayments journaled) throws IOException {
+        this.config = config;
+        this.orders = orders;
+        this.bindings = bindings;
+        this.journaled = journaled;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / config.getRatePerSecond());
+        this.queue = new SegmentQueue(config.getDirectory(), config.getSegmentBytes(), config.isFsync());
+        for (OutboxMessage message : queue.recovered()) {
+            offer(message);
+        }
+        if (pending > 0) {
+            logger.info("Outbox {} resumes with {} queued operations", config.getDirectory(), pending);
+        }
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(config.getMaxConcurrency(), runnable -> {
+            Thread thread = new Thread(runnable, "bomapay-outbox-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.drainer = new Thread(this::drain, "bomapay-outbox-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+    
+    /**
+     * Queues a deposit of a pre-authorized order.
+     * 
+     * @return the queued message, durable once this returns
+     * @throws BomaPayException if the operation could not be written to disk
+     */
+    public OutboxMessage deposit(String orderId, Long amount) throws BomaPayException {
+        return enqueue(OutboxOperation.DEPOSIT, orderId, requireAmount(amount));
+    }
+    
+    /**
+     * Queues a refund. Refunds of one order are sent in the order they were queued.
+     */
+    public OutboxMessage refund(String orderId, Long amount) throws BomaPayException {
+        return enqueue(OutboxOperation.REFUND, orderId, requireAmount(amount));
+    }
+    
+    /**
+     * Queues a reversal of a pre-authorization.
+     */
+    public OutboxMessage reverse(String orderId) throws BomaPayException {
+        return enqueue(OutboxOperation.REVERSE, orderId, NO_AMOUNT);
+    }
+    
+    /**
+     * Queues the removal of a stored card.
+     */
+    public OutboxMessage unBindCard(String bindingId) throws BomaPayException {
+        return enqueue(OutboxOperation.UNBIND_CARD, bindingId, NO_AMOUNT);
+    }
+    
+    /**
+     * Operations queued and not yet delivered, in flight included.
+     */
+    public int pending() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Operations delivered since the outbox was opened, declines included.
+     */
+    public long deliveredCount() {
+        return delivered.sum();
+    }
+    
+    /**
+     * Delivery attempts that failed since the outbox was opened.
+     */
+    public long failedAttempts() {
+        return failedAttempts.sum();
+    }
+    
+    /**
+     * Number of segment files on disk; fully delivered segments are deleted.
+     */
+    public int segmentCount() {
+        return queue.segmentCount();
+    }
+    
+    /**
+     * Stops forwarding, waits up to {@code shutdownMillis} for deliveries in flight and closes the
+     * segment files. Queued operations are forwarded when the outbox is next opened.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        drainer.interrupt();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(config.getShutdownMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warn("Outbox deliveries still in flight after {} ms; they are sent again on restart",
+                        config.getShutdownMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            queue.close();
+        } catch (IOException e) {
+            logger.warn("Could not close outbox segment files", e);
+        }
+    }
+    
+    private static long requireAmount(Long amount) {
+        if (amount == null || amount < 0) {
+            throw new IllegalArgumentException("Amount must not be negative");
+        }
+        return amount;
+    }
+    
+    private OutboxMessage enqueue(OutboxOperation operation, String target, long amount) throws BomaPayException {
+        if (target == null) {
+            throw new IllegalArgumentException("Order or binding id is required");
+        }
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Outbox is closed");
+            }
+        } finally {
+            lock.unlock();
+        }
+        OutboxMessage message;
+        try {
+            message = queue.append(operation, target, amount);
+        } catch (IOException e) {
+            throw new BomaPayException("Could not queue " + operation + " of " + target, e);
+        }
+        lock.lock();
+        try {
+            offer(message);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return message;
+    }
+    
+    /**
+     * Adds the message behind earlier ones of its lane. Callers hold the lock, or own the outbox
+     * before the drainer starts.
+     */
+    private void offer(OutboxMessage message) {
+        ArrayDeque<OutboxMessage> lane = lanes.get(message.lane());
+        if (lane == null) {
+            lane = new ArrayDeque<>();
+            lanes.put(message.lane(), lane);
+            ready.add(message.lane());
+        }
+        lane.add(message);
+        pending++;
+    }
+    
+    private void drain() {
+        while (true) {
+            OutboxMessage next;
+            lock.lock();
+            try {
+                while (running && !canStart()) {
+                    long pause = pausedUntilNanos - System.nanoTime();
+                    if (pause > 0) {
+                        changed.awaitNanos(pause);
+                    } else {
+                        changed.await();
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                next = lanes.get(ready.poll()).peek();
+                inFlight++;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                pace();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                workers.execute(() -> deliver(next));
+            } catch (RejectedExecutionException e) {
+                // closed meanwhile; the message stays queued on disk
+                return;
+            }
+        }
+    }
+    
+    private boolean canStart() {
+        return !ready.isEmpty() && inFlight < config.getMaxConcurrency() && System.nanoTime() >= pausedUntilNanos;
+    }
+    
+    /**
+     * Spaces delivery starts evenly at the configured rate.
+     */
+    private void pace() throws InterruptedException {
+        long now = System.nanoTime();
+        long wait = nextStartNanos - now;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        nextStartNanos = Math.max(nextStartNanos, now) + intervalNanos;
+    }
+    
+    private void deliver(OutboxMessage message) {
+        message.attempted();
+        BaseResponse response = null;
+        Exception failure = null;
+        try {
+            response = send(message);
+        } catch (DuplicateOperationException e) {
+            if (e.getState() == JournalEntry.State.APPLIED) {
+                // an earlier attempt was found applied after a crash; there is no response to report
+                response = null;
+            } else {
+                failure = e;
+            }
+        } catch (BomaPayException | RuntimeException e) {
+            failure = e;
+        }
+        
+        boolean abandoned = failure != null && config.getMaxAttempts() > 0 && message.getAttempts() >= config.getMaxAttempts();
+        if (failure == null || abandoned) {
+            try {
+                queue.ack(message);
+            } catch (IOException e) {
+                // left unacked on disk, so it is delivered again after a restart
+                logger.error("Could not retire outbox message {}", message, e);
+            }
+        }
+        lock.lock();
+        try {
+            inFlight--;
+            if (failure == null || abandoned) {
+                ArrayDeque<OutboxMessage> lane = lanes.get(message.lane());
+                lane.poll();
+                pending--;
+                if (lane.isEmpty()) {
+                    lanes.remove(message.lane());
+                } else {
+                    ready.add(message.lane());
+                }
+            } else {
+                // the gateway is most likely down: hold every lane back, and retry this one first
+                ready.addFirst(message.lane());
+            }
+            if (failure == null) {
+                failuresInRow = 0;
+            } else {
+                failuresInRow++;
+                pausedUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.backoffMillis(failuresInRow));
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        
+        if (failure == null) {
+            delivered.increment();
+            config.getListener().delivered(message, response);
+        } else {
+            failedAttempts.increment();
+            if (abandoned) {
+                logger.error("Abandoning outbox message {} after {} attempts", message, message.getAttempts(), failure);
+                config.getListener().abandoned(message, failure);
+            } else {
+                logger.debug("Delivery of outbox message {} failed; pausing {} ms", message,
+                        config.backoffMillis(failuresInRow), failure);
+            }
+        }
+    }
+    
+    private BaseResponse send(OutboxMessage message) throws BomaPayException {
+        String key = "outbox-" + message.getId();
+        switch (message.getOperation()) {
+            case DEPOSIT:
+                return journaled != null
+                        ? resolvingUncertain(() -> journaled.deposit(key, message.getTarget(), message.getAmount()))
+                        : orders.deposit(message.getTarget(), message.getAmount());
+            case REFUND:
+                return journaled != null
+                        ? resolvingUncertain(() -> journaled.refund(key, message.getTarget(), message.getAmount()))
+                        : orders.refund(message.getTarget(), message.getAmount());
+            case REVERSE:
+                return orders.reverse(message.getTarget());
+            case UNBIND_CARD:
+                return bindings.unBindCard(message.getTarget());
+            default:
+                throw new IllegalStateException("Unknown outbox operation " + message.getOperation());
+        }
+    }
+    
+    /**
+     * Settles journal entries left uncertain by a crash or failed attempt, so the retry either
+     * returns the recorded outcome or is sent again only if the gateway never applied it.
+     */
+    private BaseResponse resolvingUncertain(JournaledCall call) throws BomaPayException {
+        try {
+            return call.send();
+        } catch (DuplicateOperationException e) {
+            if (e.getState() != JournalEntry.State.UNCERTAIN) {
+                throw e;
+            }
+            journaled.resolveUncertain();
+            return call.send();
+        }
+    }
+    
+    @FunctionalInterface
+    private interface JournaledCall {
+        BaseResponse send() throws BomaPayException;
+    }
+}
\ No newline at end of file
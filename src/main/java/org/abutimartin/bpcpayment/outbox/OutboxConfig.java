@@ -0,0 +1,188 @@
+package org.abutimartin.bpcpayment.outbox;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of the {@link GatewayOutbox}: where queued operations are kept and how fast they are
+ * forwarded once the gateway answers again.
+ */
+public final class OutboxConfig {
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean fsync;
+    private final double ratePerSecond;
+    private final int maxConcurrency;
+    private final long minBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxAttempts;
+    private final long shutdownMillis;
+    private final OutboxListener listener;
+    
+    private OutboxConfig(Builder builder) {
+        this.directory = builder.directory;
+        this.segmentBytes = builder.segmentBytes;
+        this.fsync = builder.fsync;
+        this.ratePerSecond = builder.ratePerSecond;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.minBackoffMillis = builder.minBackoffMillis;
+        this.maxBackoffMillis = builder.maxBackoffMillis;
+        this.maxAttempts = builder.maxAttempts;
+        this.shutdownMillis = builder.shutdownMillis;
+        this.listener = builder.listener;
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+    
+    public boolean isFsync() {
+        return fsync;
+    }
+    
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+    
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+    
+    public long getMinBackoffMillis() {
+        return minBackoffMillis;
+    }
+    
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+    
+    /**
+     * Deliveries tried before a message is abandoned, or {@code 0} to keep trying.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+    
+    public long getShutdownMillis() {
+        return shutdownMillis;
+    }
+    
+    public OutboxListener getListener() {
+        return listener;
+    }
+    
+    /**
+     * Pause after {@code failures} failed deliveries in a row: doubling from the minimum, capped at the maximum.
+     */
+    long backoffMillis(int failures) {
+        return Math.min(maxBackoffMillis, minBackoffMillis << Math.min(Math.max(failures - 1, 0), 20));
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private Path directory;
+        private int segmentBytes = 1024 * 1024;
+        private boolean fsync = true;
+        private double ratePerSecond = 20;
+        private int maxConcurrency = 4;
+        private long minBackoffMillis = 1000;
+        private long maxBackoffMillis = 60_000;
+        private int maxAttempts;
+        private long shutdownMillis = 5000;
+        private OutboxListener listener = OutboxListener.NOOP;
+        
+        private Builder() {
+        }
+        
+        /** Directory of the segment files; created if missing. Required. */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+        
+        /** Size at which a new segment file is started; fully delivered segments are deleted. */
+        public Builder segmentBytes(int segmentBytes) {
+            this.segmentBytes = segmentBytes;
+            return this;
+        }
+        
+        /**
+         * Whether an enqueue waits for its record to reach the disk; on by default. Without it a
+         * power loss can lose operations the caller was told were queued.
+         */
+        public Builder fsync(boolean fsync) {
+            this.fsync = fsync;
+            return this;
+        }
+        
+        /** Most deliveries started per second, so a backlog does not hit a recovering gateway at once. */
+        public Builder ratePerSecond(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+            return this;
+        }
+        
+        /** Deliveries in flight at once. */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+        
+        /** Pause after the first failed delivery; it doubles with every further failure in a row. */
+        public Builder minBackoffMillis(long minBackoffMillis) {
+            this.minBackoffMillis = minBackoffMillis;
+            return this;
+        }
+        
+        /** Longest pause between delivery attempts while the gateway is failing. */
+        public Builder maxBackoffMillis(long maxBackoffMillis) {
+            this.maxBackoffMillis = maxBackoffMillis;
+            return this;
+        }
+        
+        /** Deliveries tried before a message is abandoned; {@code 0}, the default, keeps trying. */
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+        
+        /** How long {@code close()} waits for deliveries in flight. */
+        public Builder shutdownMillis(long shutdownMillis) {
+            this.shutdownMillis = shutdownMillis;
+            return this;
+        }
+        
+        /** Told of every delivered or abandoned message. */
+        public Builder listener(OutboxListener listener) {
+            this.listener = listener;
+            return this;
+        }
+        
+        public OutboxConfig build() {
+            if (directory == null) {
+                throw new IllegalArgumentException("Outbox directory is required");
+            }
+            if (segmentBytes < 4096) {
+                throw new IllegalArgumentException("Segments must be at least 4096 bytes");
+            }
+            if (ratePerSecond <= 0 || maxConcurrency < 1) {
+                throw new IllegalArgumentException("Rate must be positive and concurrency at least 1");
+            }
+            if (minBackoffMillis < 1 || maxBackoffMillis < minBackoffMillis) {
+                throw new IllegalArgumentException("Backoff must satisfy 1 <= min <= max");
+            }
+            if (maxAttempts < 0 || shutdownMillis < 0) {
+                throw new IllegalArgumentException("Max attempts and shutdown time must not be negative");
+            }
+            if (listener == null) {
+                throw new IllegalArgumentException("Listener is required; use OutboxListener.NOOP to ignore outcomes");
+            }
+            return new OutboxConfig(this);
+        }
+    }
+}
\ No newline at end of file
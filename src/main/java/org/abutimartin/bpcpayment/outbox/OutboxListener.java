@@ -0,0 +1,31 @@
+package org.abutimartin.bpcpayment.outbox;
+
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+
+/**
+ * Hears how queued operations end. Runs on outbox worker threads, so implementations must be
+ * thread-safe and should not block for long.
+ */
+public interface OutboxListener {
+    
+    /**
+     * Listener that does nothing; the default.
+     */
+    OutboxListener NOOP = new OutboxListener() {
+    };
+    
+    /**
+     * The gateway answered. The response may still be a decline; check {@link BaseResponse#isSuccess()}.
+     * 
+     * @param response the gateway's answer, or {@code null} if the idempotency journal found the
+     *                 operation already applied by an earlier attempt
+     */
+    default void delivered(OutboxMessage message, BaseResponse response) {
+    }
+    
+    /**
+     * The message was dropped after {@code maxAttempts} failed deliveries.
+     */
+    default void abandoned(OutboxMessage message, Throwable lastFailure) {
+    }
+}
\ No newline at end of file
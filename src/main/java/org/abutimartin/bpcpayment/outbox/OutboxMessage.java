@@ -0,0 +1,73 @@
+package org.abutimartin.bpcpayment.outbox;
+
+/**
+ * One operation held in the {@link GatewayOutbox}.
+ */
+public final class OutboxMessage {
+    private final long id;
+    private final OutboxOperation operation;
+    private final String target;
+    private final long amount;
+    private final long enqueuedAtMillis;
+    private volatile int attempts;
+    
+    OutboxMessage(long id, OutboxOperation operation, String target, long amount, long enqueuedAtMillis) {
+        this.id = id;
+        this.operation = operation;
+        this.target = target;
+        this.amount = amount;
+        this.enqueuedAtMillis = enqueuedAtMillis;
+    }
+    
+    /**
+     * Sequence number, increasing in enqueue order and unique across restarts.
+     */
+    public long getId() {
+        return id;
+    }
+    
+    public OutboxOperation getOperation() {
+        return operation;
+    }
+    
+    /**
+     * The gateway order id, or the binding id for {@link OutboxOperation#UNBIND_CARD}.
+     */
+    public String getTarget() {
+        return target;
+    }
+    
+    /**
+     * Amount in minor currency units, or {@code -1} for operations without one.
+     */
+    public long getAmount() {
+        return amount;
+    }
+    
+    public long getEnqueuedAtMillis() {
+        return enqueuedAtMillis;
+    }
+    
+    /**
+     * Delivery attempts made since this process loaded the message.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    void attempted() {
+        attempts++;
+    }
+    
+    /**
+     * Messages with the same lane are delivered one at a time, in enqueue order.
+     */
+    String lane() {
+        return operation == OutboxOperation.UNBIND_CARD ? "binding:" + target : target;
+    }
+    
+    @Override
+    public String toString() {
+        return "OutboxMessage{" + id + " " + operation + " " + target + (amount >= 0 ? " " + amount : "") + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package org.abutimartin.bpcpayment.outbox;
+
+/**
+ * Operations the {@link GatewayOutbox} can hold for later delivery: those whose caller does not
+ * need the gateway's answer to carry on. Ordinals are written to the segment files, so new
+ * operations go at the end.
+ */
+public enum OutboxOperation {
+    DEPOSIT,
+    REFUND,
+    REVERSE,
+    UNBIND_CARD
+}
\ No newline at end of file
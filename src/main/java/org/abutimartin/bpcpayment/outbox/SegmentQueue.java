@@ -0,0 +1,337 @@
+package org.abutimartin.bpcpayment.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable FIFO of outbox messages in a directory of append-only segment files. A message is
+ * written as an enqueue record and retired by an ack record appended later; a segment is deleted
+ * once every message in it is acked and all older segments are gone, so acks never outlive the
+ * messages they retire.
+ * 
+ * <p>Records are framed as length, CRC32C and payload. Replay stops a segment at the first bad
+ * frame, and the newest segment is cut back to its last good record, which is where a torn write
+ * from a crash ends it. {@link #sync(long)} uses group commit like the idempotency journal: one
+ * force covers every record written before it started.
+ */
+final class SegmentQueue implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentQueue.class);
+    private static final String PREFIX = "outbox-";
+    private static final String SUFFIX = ".seg";
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+    private static final int FRAME_BYTES = 8;
+    
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean fsync;
+    // a lock rather than a monitor, so a virtual thread writing or forcing a segment does not pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock; keyed by the id of the first message the segment may hold
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // filled by replay only
+    private final Map<Long, OutboxMessage> pending = new TreeMap<>();
+    private Segment active;
+    private long nextId = 1;
+    
+    private volatile long written;
+    private long durable;
+    private boolean forcing;
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    
+    SegmentQueue(Path directory, int segmentBytes, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        for (int i = 0; i < files.size(); i++) {
+            replay(files.get(i), i == files.size() - 1);
+        }
+        if (segments.isEmpty()) {
+            roll();
+        } else {
+            active = segments.lastEntry().getValue();
+            active.channel = FileChannel.open(active.path, StandardOpenOption.WRITE);
+            nextId = Math.max(nextId, active.firstId);
+            deleteRetired();
+        }
+    }
+    
+    /**
+     * Messages enqueued and not yet acked when the queue was opened, oldest first.
+     */
+    List<OutboxMessage> recovered() {
+        lock.lock();
+        try {
+            return new ArrayList<>(pending.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Appends a message and waits until it is durable.
+     */
+    OutboxMessage append(OutboxOperation operation, String target, long amount) throws IOException {
+        OutboxMessage message;
+        long offset;
+        lock.lock();
+        try {
+            message = new OutboxMessage(nextId, operation, target, amount, System.currentTimeMillis());
+            offset = write(enqueueRecord(message));
+            nextId++;
+            active.unacked++;
+        } finally {
+            lock.unlock();
+        }
+        sync(offset);
+        return message;
+    }
+    
+    /**
+     * Retires a delivered message and deletes segments left with nothing to deliver.
+     */
+    void ack(OutboxMessage message) throws IOException {
+        long offset;
+        lock.lock();
+        try {
+            offset = write(ackRecord(message.getId()));
+            Map.Entry<Long, Segment> owner = segments.floorEntry(message.getId());
+            if (owner != null) {
+                owner.getValue().unacked--;
+            }
+            deleteRetired();
+        } finally {
+            lock.unlock();
+        }
+        sync(offset);
+    }
+    
+    /**
+     * Number of segment files on disk.
+     */
+    int segmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (fsync) {
+                active.channel.force(false);
+            }
+            active.channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private long write(byte[] payload) throws IOException {
+        // segments are named by their first message id, so one holding only acks keeps growing until the next enqueue
+        if (active.size + FRAME_BYTES + payload.length > segmentBytes && nextId > active.firstId) {
+            roll();
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (frame.hasRemaining()) {
+            active.size += active.channel.write(frame, active.size);
+        }
+        written += FRAME_BYTES + payload.length;
+        return written;
+    }
+    
+    private void roll() throws IOException {
+        if (active != null) {
+            // everything in the old segment becomes durable before writes move on
+            if (fsync) {
+                active.channel.force(false);
+            }
+            active.channel.close();
+        }
+        Segment segment = new Segment(directory.resolve(String.format("%s%020d%s", PREFIX, nextId, SUFFIX)), nextId);
+        segment.channel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        segments.put(segment.firstId, segment);
+        active = segment;
+    }
+    
+    private void deleteRetired() throws IOException {
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest.unacked > 0) {
+                return;
+            }
+            segments.pollFirstEntry();
+            Files.deleteIfExists(oldest.path);
+        }
+    }
+    
+    private void sync(long offset) throws IOException {
+        if (!fsync) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (durable < offset) {
+                if (forcing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                forcing = true;
+                long target = written;
+                syncLock.unlock();
+                boolean forced = false;
+                try {
+                    forceActive();
+                    forced = true;
+                } finally {
+                    syncLock.lock();
+                    forcing = false;
+                    if (forced) {
+                        durable = Math.max(durable, target);
+                    }
+                    synced.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+    
+    private void forceActive() throws IOException {
+        FileChannel channel;
+        lock.lock();
+        try {
+            channel = active.channel;
+        } finally {
+            lock.unlock();
+        }
+        // a roll in the meantime forced and closed the old segment, which covers this target too
+        if (channel.isOpen()) {
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // closed by a concurrent roll after forcing it
+            }
+        }
+    }
+    
+    private void replay(Path file, boolean newest) throws IOException {
+        String name = file.getFileName().toString();
+        long firstId = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        Segment segment = new Segment(file, firstId);
+        segments.put(firstId, segment);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32C crc = new CRC32C();
+        int offset = 0;
+        while (offset + FRAME_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + FRAME_BYTES + length > buffer.limit()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(offset + FRAME_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + FRAME_BYTES, payload);
+            apply(payload);
+            offset += FRAME_BYTES + length;
+        }
+        segment.size = offset;
+        if (offset < buffer.limit()) {
+            if (newest) {
+                logger.warn("Cutting torn tail of outbox segment {} at byte {}", file, offset);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(offset);
+                }
+            } else {
+                logger.error("Outbox segment {} is corrupt after byte {}; later records in it are lost", file, offset);
+            }
+        }
+    }
+    
+    private void apply(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte type = in.readByte();
+            long id = in.readLong();
+            if (type == ENQUEUE) {
+                OutboxOperation operation = OutboxOperation.values()[in.readByte()];
+                String target = in.readUTF();
+                long amount = in.readLong();
+                long enqueuedAtMillis = in.readLong();
+                pending.put(id, new OutboxMessage(id, operation, target, amount, enqueuedAtMillis));
+                segments.floorEntry(id).getValue().unacked++;
+                nextId = Math.max(nextId, id + 1);
+            } else if (type == ACK && pending.remove(id) != null) {
+                segments.floorEntry(id).getValue().unacked--;
+            }
+        }
+    }
+    
+    private static byte[] enqueueRecord(OutboxMessage message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ENQUEUE);
+            out.writeLong(message.getId());
+            out.writeByte(message.getOperation().ordinal());
+            out.writeUTF(message.getTarget());
+            out.writeLong(message.getAmount());
+            out.writeLong(message.getEnqueuedAtMillis());
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static byte[] ackRecord(long id) {
+        return ByteBuffer.allocate(9).put(ACK).putLong(id).array();
+    }
+    
+    private static final class Segment {
+        final Path path;
+        final long firstId;
+        FileChannel channel;
+        long size;
+        int unacked;
+        
+        Segment(Path path, long firstId) {
+            this.path = path;
+            this.firstId = firstId;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package org.abutimartin.bpcpayment.reactor;
+
+import org.abutimartin.bpcpayment.BomaPayClient;
+import org.abutimartin.bpcpayment.flow.GatewayOperation;
+import org.abutimartin.bpcpayment.flow.GatewayProcessor;
+import org.abutimartin.bpcpayment.flow.OperationResult;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.reactivestreams.Publisher;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactor front end for the client's async API. Needs {@code io.projectreactor:reactor-core} on
+ * the classpath, which the SDK declares optional; nothing else in the SDK loads this class.
+ */
+public final class ReactorGateway {
+    private final BomaPayClient client;
+    
+    public ReactorGateway(BomaPayClient client) {
+        this.client = client;
+    }
+    
+    /**
+     * A {@code Mono} that runs the operation on subscription. Cancelling it cancels the HTTP call.
+     */
+    public <T extends BaseResponse> Mono<T> mono(GatewayOperation<T> operation) {
+        return Mono.fromFuture(() -> operation.execute(client));
+    }
+    
+    /**
+     * Runs the operations through a {@link GatewayProcessor}, so they are pulled from
+     * {@code operations} only as fast as the gateway's concurrency allows. Each subscription runs
+     * the operations once.
+     */
+    public <T extends BaseResponse> Flux<OperationResult<T>> flux(Publisher<GatewayOperation<T>> operations) {
+        return flux(operations, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Like {@link #flux(Publisher)}, running at most {@code maxInFlight} operations at once.
+     */
+    public <T extends BaseResponse> Flux<OperationResult<T>> flux(Publisher<GatewayOperation<T>> operations,
+            int maxInFlight) {
+        return Flux.defer(() -> {
+            GatewayProcessor<T> processor = new GatewayProcessor<>(client, maxInFlight);
+            JdkFlowAdapter.publisherToFlowPublisher(operations).subscribe(processor);
+            return JdkFlowAdapter.flowPublisherToFlux(processor);
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-endpoint concurrency limits that follow the gateway's latency instead of being fixed.
+ * 
+ * <p>Each endpoint compares a long-term RTT baseline against the latest sample. While latency stays
+ * near the baseline the limit grows by roughly {@code sqrt(limit)} per sample; when it climbs the limit
+ * shrinks in proportion (gradient), and timeouts or 5xx responses cut it multiplicatively (AIMD).
+ * Calls beyond the limit are rejected immediately rather than queued.
+ */
+public final class AdaptiveConcurrencyLimiter {
+    private final AdaptiveLimiterConfig config;
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+    
+    public AdaptiveConcurrencyLimiter(AdaptiveLimiterConfig config) {
+        this.config = config;
+    }
+    
+    /**
+     * Takes an in-flight slot for the endpoint.
+     * 
+     * @return the endpoint's limit handle, or {@code null} if the endpoint is at its limit
+     */
+    public Limit tryAcquire(String endpoint) {
+        Limit limit = limits.get(endpoint);
+        if (limit == null) {
+            limit = limits.computeIfAbsent(endpoint, e -> new Limit(config));
+        }
+        return limit.tryAcquire() ? limit : null;
+    }
+    
+    public int currentLimit(String endpoint) {
+        Limit limit = limits.get(endpoint);
+        return limit != null ? limit.getLimit() : config.getInitialLimit();
+    }
+    
+    /**
+     * Current limit of every endpoint that has seen traffic, sorted by endpoint path.
+     */
+    public Map<String, Integer> limits() {
+        Map<String, Integer> snapshot = new TreeMap<>();
+        limits.forEach((endpoint, limit) -> snapshot.put(endpoint, limit.getLimit()));
+        return snapshot;
+    }
+    
+    /**
+     * Limit state for one endpoint. Slot accounting is a CAS on the in-flight count; the estimator
+     * update runs under a short monitor that never spans I/O.
+     */
+    public static final class Limit {
+        private final AdaptiveLimiterConfig config;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile int limit;
+        private double estimatedLimit;
+        private double longRttNanos;
+        private long samples;
+        
+        Limit(AdaptiveLimiterConfig config) {
+            this.config = config;
+            this.limit = config.getInitialLimit();
+            this.estimatedLimit = config.getInitialLimit();
+        }
+        
+        public int getLimit() {
+            return limit;
+        }
+        
+        public int getInFlight() {
+            return inFlight.get();
+        }
+        
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= limit) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+        
+        /**
+         * Releases the slot and feeds the observed round trip into the estimator.
+         * 
+         * @param dropped {@code true} for timeouts, transport errors and 5xx responses
+         */
+        public void release(long rttNanos, boolean dropped) {
+            int observedInFlight = inFlight.getAndDecrement();
+            update(rttNanos, dropped, observedInFlight);
+        }
+        
+        /**
+         * Releases the slot without a sample, e.g. when the call was cancelled.
+         */
+        public void release() {
+            inFlight.decrementAndGet();
+        }
+        
+        private synchronized void update(long rttNanos, boolean dropped, int observedInFlight) {
+            double next;
+            if (dropped) {
+                next = estimatedLimit * config.getBackoffRatio();
+            } else {
+                samples++;
+                double weight = 1.0 / Math.min(samples, config.getLongWindow());
+                longRttNanos = longRttNanos == 0 ? rttNanos : longRttNanos + (rttNanos - longRttNanos) * weight;
+                // with little concurrency in use, latency says nothing about headroom
+                if (observedInFlight < estimatedLimit / 2) {
+                    return;
+                }
+                double gradient = Math.max(0.5, Math.min(1.0, config.getRttTolerance() * longRttNanos / rttNanos));
+                double queueSize = Math.sqrt(estimatedLimit);
+                next = estimatedLimit * gradient + queueSize;
+                next = estimatedLimit * (1 - config.getSmoothing()) + next * config.getSmoothing();
+            }
+            estimatedLimit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), next));
+            limit = (int) estimatedLimit;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,122 @@
+package org.abutimartin.bpcpayment.resilience;
+
+/**
+ * Tuning for the gradient-based {@link AdaptiveConcurrencyLimiter}.
+ */
+public final class AdaptiveLimiterConfig {
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final double backoffRatio;
+    private final int longWindow;
+    
+    private AdaptiveLimiterConfig(Builder builder) {
+        this.initialLimit = builder.initialLimit;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.smoothing = builder.smoothing;
+        this.rttTolerance = builder.rttTolerance;
+        this.backoffRatio = builder.backoffRatio;
+        this.longWindow = builder.longWindow;
+    }
+    
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+    
+    public int getMinLimit() {
+        return minLimit;
+    }
+    
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+    
+    public double getSmoothing() {
+        return smoothing;
+    }
+    
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+    
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+    
+    public int getLongWindow() {
+        return longWindow;
+    }
+    
+    public static AdaptiveLimiterConfig defaults() {
+        return builder().build();
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 4;
+        private int maxLimit = 500;
+        private double smoothing = 0.2;
+        private double rttTolerance = 1.5;
+        private double backoffRatio = 0.9;
+        private int longWindow = 600;
+        
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+        
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+        
+        public Builder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+        
+        /** Weight given to each new limit estimate, between 0 and 1. */
+        public Builder smoothing(double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+        
+        /** How much the short-term latency may exceed the long-term baseline before the limit shrinks. */
+        public Builder rttTolerance(double rttTolerance) {
+            this.rttTolerance = rttTolerance;
+            return this;
+        }
+        
+        /** Multiplicative decrease applied on timeouts, transport errors and 5xx responses. */
+        public Builder backoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+        
+        /** Number of samples the long-term latency baseline averages over. */
+        public Builder longWindow(int longWindow) {
+            this.longWindow = longWindow;
+            return this;
+        }
+        
+        public AdaptiveLimiterConfig build() {
+            if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+                throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+            }
+            if (smoothing <= 0 || smoothing > 1 || backoffRatio <= 0 || backoffRatio >= 1) {
+                throw new IllegalArgumentException("Smoothing must be in (0, 1] and backoff ratio in (0, 1)");
+            }
+            if (rttTolerance < 1 || longWindow < 1) {
+                throw new IllegalArgumentException("RTT tolerance must be >= 1 and long window >= 1");
+            }
+            return new AdaptiveLimiterConfig(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed number of call slots with a bounded FIFO of waiters. Slots are handed directly to the
+ * oldest waiter on release. Waiters are futures, so the same bulkhead serves blocking callers
+ * (which wait on the future) and asynchronous ones (which chain onto it) without parking a thread.
+ */
+public final class Bulkhead {
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final int maxQueuedCalls;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentLinkedQueue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<>();
+    private final LongAdder rejected = new LongAdder();
+    
+    public Bulkhead(String name, int maxConcurrentCalls, int maxQueuedCalls) {
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxQueuedCalls = maxQueuedCalls;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Takes a slot without waiting.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxConcurrentCalls) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Returns a future that completes once a slot has been granted to the caller, or
+     * {@code null} if no slot is free and the wait queue is full.
+     */
+    public CompletableFuture<Void> acquireAsync() {
+        if (waiters.isEmpty() && tryAcquire()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (queued.incrementAndGet() > maxQueuedCalls) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return null;
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        // a slot may have been released between the failed tryAcquire and joining the queue
+        drain();
+        return waiter;
+    }
+    
+    /**
+     * Blocks for up to {@code maxWaitMillis} for a slot.
+     * 
+     * @return {@code false} if the queue was full or the wait timed out
+     */
+    public boolean acquire(long maxWaitMillis) throws InterruptedException {
+        CompletableFuture<Void> waiter = acquireAsync();
+        if (waiter == null) {
+            return false;
+        }
+        try {
+            waiter.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException | InterruptedException e) {
+            if (!withdraw(waiter)) {
+                // the slot was granted just as we gave up
+                release();
+            }
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            rejected.increment();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+    
+    /**
+     * Withdraws a pending slot request from the queue.
+     * 
+     * @return {@code false} if the slot had already been granted, in which case the caller owns it
+     */
+    public boolean withdraw(CompletableFuture<Void> waiter) {
+        if (!waiter.cancel(false)) {
+            return false;
+        }
+        if (waiters.remove(waiter)) {
+            queued.decrementAndGet();
+        }
+        return true;
+    }
+    
+    public void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+    
+    public BulkheadStats stats() {
+        return new BulkheadStats(name, maxConcurrentCalls, inFlight.get(), maxQueuedCalls, queued.get(), rejected.sum());
+    }
+    
+    private void drain() {
+        while (!waiters.isEmpty() && tryAcquire()) {
+            CompletableFuture<Void> waiter = waiters.poll();
+            if (waiter == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            if (!waiter.complete(null)) {
+                // abandoned while queued; hand the slot to the next waiter
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Named compartments of gateway capacity. Each bulkhead owns a fixed number of in-flight calls
+ * and a bounded wait queue, so traffic assigned to one (e.g. back-office refunds) can never use
+ * capacity reserved for another (e.g. customer payments).
+ */
+public final class BulkheadConfig {
+    private final Map<String, Spec> bulkheads;
+    private final Map<String, String> endpointBulkheads;
+    private final long maxWaitMillis;
+    
+    private BulkheadConfig(Builder builder) {
+        this.bulkheads = Collections.unmodifiableMap(new LinkedHashMap<>(builder.bulkheads));
+        this.endpointBulkheads = Collections.unmodifiableMap(new HashMap<>(builder.endpointBulkheads));
+        this.maxWaitMillis = builder.maxWaitMillis;
+    }
+    
+    public Map<String, Spec> getBulkheads() {
+        return bulkheads;
+    }
+    
+    /**
+     * Name of the bulkhead the endpoint belongs to, or {@code null} if it is not isolated.
+     */
+    public String bulkheadFor(String endpoint) {
+        return endpointBulkheads.get(endpoint);
+    }
+    
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static final class Spec {
+        private final String name;
+        private final int maxConcurrentCalls;
+        private final int maxQueuedCalls;
+        
+        Spec(String name, int maxConcurrentCalls, int maxQueuedCalls) {
+            this.name = name;
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.maxQueuedCalls = maxQueuedCalls;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+        
+        public int getMaxQueuedCalls() {
+            return maxQueuedCalls;
+        }
+    }
+    
+    public static class Builder {
+        private final Map<String, Spec> bulkheads = new LinkedHashMap<>();
+        private final Map<String, String> endpointBulkheads = new HashMap<>();
+        private long maxWaitMillis = 1000;
+        
+        /**
+         * Declares a bulkhead for the given endpoint paths, e.g. {@code GatewayEndpoints.PAYMENTS}.
+         */
+        public Builder bulkhead(String name, int maxConcurrentCalls, int maxQueuedCalls, String... endpoints) {
+            if (maxConcurrentCalls < 1 || maxQueuedCalls < 0) {
+                throw new IllegalArgumentException("Bulkhead needs at least one call slot and a non-negative queue");
+            }
+            bulkheads.put(name, new Spec(name, maxConcurrentCalls, maxQueuedCalls));
+            for (String endpoint : endpoints) {
+                endpointBulkheads.put(endpoint, name);
+            }
+            return this;
+        }
+        
+        /** Longest a blocking call waits in the queue for a slot before failing. */
+        public Builder maxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+            return this;
+        }
+        
+        public BulkheadConfig build() {
+            if (maxWaitMillis < 0) {
+                throw new IllegalArgumentException("Max wait must not be negative");
+            }
+            return new BulkheadConfig(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The bulkheads declared in a {@link BulkheadConfig}, looked up by endpoint path.
+ */
+public final class BulkheadRegistry {
+    private final BulkheadConfig config;
+    private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+    
+    public BulkheadRegistry(BulkheadConfig config) {
+        this.config = config;
+        for (BulkheadConfig.Spec spec : config.getBulkheads().values()) {
+            bulkheads.put(spec.getName(), new Bulkhead(spec.getName(), spec.getMaxConcurrentCalls(), spec.getMaxQueuedCalls()));
+        }
+    }
+    
+    public BulkheadConfig getConfig() {
+        return config;
+    }
+    
+    /**
+     * Bulkhead guarding the endpoint, or {@code null} if the endpoint is not isolated.
+     */
+    public Bulkhead forEndpoint(String endpoint) {
+        String name = config.bulkheadFor(endpoint);
+        return name != null ? bulkheads.get(name) : null;
+    }
+    
+    public Bulkhead get(String name) {
+        return bulkheads.get(name);
+    }
+    
+    /**
+     * Total call slots across all bulkheads.
+     */
+    public int totalCapacity() {
+        int total = 0;
+        for (BulkheadConfig.Spec spec : config.getBulkheads().values()) {
+            total += spec.getMaxConcurrentCalls();
+        }
+        return total;
+    }
+    
+    /**
+     * Saturation of every bulkhead, in declaration order.
+     */
+    public Map<String, BulkheadStats> stats() {
+        Map<String, BulkheadStats> stats = new LinkedHashMap<>();
+        bulkheads.forEach((name, bulkhead) -> stats.put(name, bulkhead.stats()));
+        return stats;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+package org.abutimartin.bpcpayment.resilience;
+
+/**
+ * Point-in-time saturation of a {@link Bulkhead}.
+ */
+public final class BulkheadStats {
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final int inFlight;
+    private final int maxQueuedCalls;
+    private final int queued;
+    private final long rejected;
+    
+    public BulkheadStats(String name, int maxConcurrentCalls, int inFlight, int maxQueuedCalls, int queued, long rejected) {
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.inFlight = inFlight;
+        this.maxQueuedCalls = maxQueuedCalls;
+        this.queued = queued;
+        this.rejected = rejected;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+    
+    public int getInFlight() {
+        return inFlight;
+    }
+    
+    public int getMaxQueuedCalls() {
+        return maxQueuedCalls;
+    }
+    
+    public int getQueued() {
+        return queued;
+    }
+    
+    /** Calls turned away since the bulkhead was created. */
+    public long getRejected() {
+        return rejected;
+    }
+    
+    /** Fraction of call slots in use, from 0.0 to 1.0. */
+    public double getSaturation() {
+        return (double) inFlight / maxConcurrentCalls;
+    }
+    
+    @Override
+    public String toString() {
+        return "BulkheadStats{name=" + name
+                + ", inFlight=" + inFlight + "/" + maxConcurrentCalls
+                + ", queued=" + queued + "/" + maxQueuedCalls
+                + ", rejected=" + rejected + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker for a single gateway endpoint, tripped by the failure rate or slow-call rate
+ * over a time-based sliding window of one-second buckets.
+ * 
+ * <p>Everything is lock-free: a successful call costs a volatile read of the state and a
+ * {@link LongAdder} increment. Rates are only re-evaluated when a failed or slow call is recorded,
+ * because a success can never push the breaker open.
+ */
+public final class CircuitBreaker {
+    
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    private final String endpoint;
+    private final CircuitBreakerConfig config;
+    private final CircuitBreakerListener listener;
+    private final long slowCallNanos;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private final AtomicInteger halfOpenCompleted = new AtomicInteger();
+    private final AtomicInteger halfOpenFailures = new AtomicInteger();
+    private volatile long openedAtNanos;
+    
+    public CircuitBreaker(String endpoint, CircuitBreakerConfig config, CircuitBreakerListener listener) {
+        this.endpoint = endpoint;
+        this.config = config;
+        this.listener = listener;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationMillis());
+        this.buckets = new AtomicReferenceArray<>(config.getSlidingWindowSeconds());
+    }
+    
+    public String getEndpoint() {
+        return endpoint;
+    }
+    
+    public State getState() {
+        return state.get();
+    }
+    
+    /**
+     * Returns {@code true} if a call may proceed. While open this fails fast until the open
+     * duration has elapsed, after which a limited number of trial calls are let through.
+     */
+    public boolean tryAcquirePermission() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < TimeUnit.MILLISECONDS.toNanos(config.getOpenDurationMillis())) {
+                return false;
+            }
+            if (transition(State.OPEN, State.HALF_OPEN)) {
+                halfOpenCompleted.set(0);
+                halfOpenFailures.set(0);
+                halfOpenPermits.set(config.getHalfOpenCalls());
+            }
+        }
+        // never below zero, so a permit handed back by releasePermission is usable again at once
+        return halfOpenPermits.getAndUpdate(permits -> permits > 0 ? permits - 1 : 0) > 0;
+    }
+    
+    /**
+     * Hands back a permit for a call that was refused on our side before reaching the gateway, so
+     * it neither counts as a trial call nor uses up one of the half-open slots.
+     */
+    public void releasePermission() {
+        if (state.get() == State.HALF_OPEN) {
+            halfOpenPermits.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Records the outcome of a permitted call.
+     */
+    public void onResult(long durationNanos, boolean failed) {
+        boolean slow = durationNanos >= slowCallNanos;
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            recordTrial(failed || slow);
+            return;
+        }
+        
+        Bucket bucket = currentBucket();
+        bucket.calls.increment();
+        if (failed) {
+            bucket.failures.increment();
+        }
+        if (slow) {
+            bucket.slow.increment();
+        }
+        if ((failed || slow) && current == State.CLOSED && thresholdExceeded()) {
+            open(State.CLOSED);
+        }
+    }
+    
+    /**
+     * Forces the breaker back to closed and clears its window.
+     */
+    public void reset() {
+        State previous = state.getAndSet(State.CLOSED);
+        clearWindow();
+        if (previous != State.CLOSED) {
+            listener.onStateTransition(endpoint, previous, State.CLOSED);
+        }
+    }
+    
+    private void recordTrial(boolean failed) {
+        if (failed) {
+            halfOpenFailures.incrementAndGet();
+        }
+        int completed = halfOpenCompleted.incrementAndGet();
+        if (completed < config.getHalfOpenCalls()) {
+            return;
+        }
+        int failureRate = halfOpenFailures.get() * 100 / completed;
+        if (failureRate >= config.getFailureRateThreshold()) {
+            open(State.HALF_OPEN);
+        } else if (transition(State.HALF_OPEN, State.CLOSED)) {
+            clearWindow();
+        }
+    }
+    
+    private boolean thresholdExceeded() {
+        long now = epochSecond();
+        long calls = 0;
+        long failures = 0;
+        long slow = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && now - bucket.second < buckets.length()) {
+                calls += bucket.calls.sum();
+                failures += bucket.failures.sum();
+                slow += bucket.slow.sum();
+            }
+        }
+        if (calls < config.getMinimumCalls()) {
+            return false;
+        }
+        return failures * 100 / calls >= config.getFailureRateThreshold()
+                || slow * 100 / calls >= config.getSlowCallRateThreshold();
+    }
+    
+    private void open(State from) {
+        openedAtNanos = System.nanoTime();
+        transition(from, State.OPEN);
+    }
+    
+    private boolean transition(State from, State to) {
+        if (state.compareAndSet(from, to)) {
+            listener.onStateTransition(endpoint, from, to);
+            return true;
+        }
+        return false;
+    }
+    
+    private Bucket currentBucket() {
+        long second = epochSecond();
+        int index = (int) (second % buckets.length());
+        Bucket bucket = buckets.get(index);
+        if (bucket != null && bucket.second == second) {
+            return bucket;
+        }
+        // roll the slot over to the current second; a losing racer just uses the winner's bucket
+        Bucket fresh = new Bucket(second);
+        if (buckets.compareAndSet(index, bucket, fresh)) {
+            return fresh;
+        }
+        return buckets.get(index);
+    }
+    
+    private void clearWindow() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, null);
+        }
+    }
+    
+    private static long epochSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+    }
+    
+    private static final class Bucket {
+        final long second;
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder slow = new LongAdder();
+        
+        Bucket(long second) {
+            this.second = second;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,141 @@
+package org.abutimartin.bpcpayment.resilience;
+
+/**
+ * Thresholds and timings shared by every per-endpoint {@link CircuitBreaker}.
+ */
+public final class CircuitBreakerConfig {
+    private final boolean enabled;
+    private final int failureRateThreshold;
+    private final int slowCallRateThreshold;
+    private final long slowCallDurationMillis;
+    private final int slidingWindowSeconds;
+    private final int minimumCalls;
+    private final long openDurationMillis;
+    private final int halfOpenCalls;
+    
+    private CircuitBreakerConfig(Builder builder) {
+        this.enabled = builder.enabled;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallDurationMillis = builder.slowCallDurationMillis;
+        this.slidingWindowSeconds = builder.slidingWindowSeconds;
+        this.minimumCalls = builder.minimumCalls;
+        this.openDurationMillis = builder.openDurationMillis;
+        this.halfOpenCalls = builder.halfOpenCalls;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+    
+    public int getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+    
+    public long getSlowCallDurationMillis() {
+        return slowCallDurationMillis;
+    }
+    
+    public int getSlidingWindowSeconds() {
+        return slidingWindowSeconds;
+    }
+    
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+    
+    public long getOpenDurationMillis() {
+        return openDurationMillis;
+    }
+    
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+    
+    public static CircuitBreakerConfig defaults() {
+        return builder().build();
+    }
+    
+    public static CircuitBreakerConfig disabled() {
+        return builder().enabled(false).build();
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private boolean enabled = true;
+        private int failureRateThreshold = 50;
+        private int slowCallRateThreshold = 80;
+        private long slowCallDurationMillis = 5000;
+        private int slidingWindowSeconds = 10;
+        private int minimumCalls = 20;
+        private long openDurationMillis = 30000;
+        private int halfOpenCalls = 5;
+        
+        public Builder enabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+        
+        /** Percentage of failed calls in the window that opens the breaker. */
+        public Builder failureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+        
+        /** Percentage of slow calls in the window that opens the breaker. */
+        public Builder slowCallRateThreshold(int slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+        
+        /** Calls taking longer than this count as slow. */
+        public Builder slowCallDurationMillis(long slowCallDurationMillis) {
+            this.slowCallDurationMillis = slowCallDurationMillis;
+            return this;
+        }
+        
+        public Builder slidingWindowSeconds(int slidingWindowSeconds) {
+            this.slidingWindowSeconds = slidingWindowSeconds;
+            return this;
+        }
+        
+        /** Calls required in the window before rates are evaluated. */
+        public Builder minimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+        
+        /** How long the breaker stays open before letting trial calls through. */
+        public Builder openDurationMillis(long openDurationMillis) {
+            this.openDurationMillis = openDurationMillis;
+            return this;
+        }
+        
+        /** Trial calls permitted while half-open. */
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+        
+        public CircuitBreakerConfig build() {
+            if (failureRateThreshold < 1 || failureRateThreshold > 100
+                    || slowCallRateThreshold < 1 || slowCallRateThreshold > 100) {
+                throw new IllegalArgumentException("Rate thresholds must be between 1 and 100");
+            }
+            if (slidingWindowSeconds < 1 || minimumCalls < 1 || halfOpenCalls < 1) {
+                throw new IllegalArgumentException("Window size, minimum calls and half-open calls must be at least 1");
+            }
+            if (slowCallDurationMillis <= 0 || openDurationMillis <= 0) {
+                throw new IllegalArgumentException("Durations must be positive");
+            }
+            return new CircuitBreakerConfig(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package org.abutimartin.bpcpayment.resilience;
+
+/**
+ * Receives circuit breaker state changes, e.g. to publish them as metrics or alerts.
+ * Called synchronously on the thread that caused the transition, so implementations must be fast.
+ */
+@FunctionalInterface
+public interface CircuitBreakerListener {
+    
+    void onStateTransition(String endpoint, CircuitBreaker.State from, CircuitBreaker.State to);
+}
\ No newline at end of file
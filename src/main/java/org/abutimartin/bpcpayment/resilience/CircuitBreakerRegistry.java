@@ -0,0 +1,65 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Lazily creates one {@link CircuitBreaker} per endpoint path, or per site base URL and endpoint path
+ * with failover, and fans state changes out to listeners.
+ */
+public final class CircuitBreakerRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerRegistry.class);
+    
+    private final CircuitBreakerConfig config;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<>();
+    
+    public CircuitBreakerRegistry(CircuitBreakerConfig config) {
+        this.config = config;
+    }
+    
+    public CircuitBreakerConfig getConfig() {
+        return config;
+    }
+    
+    public CircuitBreaker get(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            breaker = breakers.computeIfAbsent(endpoint, e -> new CircuitBreaker(e, config, this::publish));
+        }
+        return breaker;
+    }
+    
+    public void addListener(CircuitBreakerListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(CircuitBreakerListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Current state of every endpoint that has seen traffic, sorted by endpoint path.
+     */
+    public Map<String, CircuitBreaker.State> states() {
+        Map<String, CircuitBreaker.State> states = new TreeMap<>();
+        breakers.forEach((endpoint, breaker) -> states.put(endpoint, breaker.getState()));
+        return states;
+    }
+    
+    private void publish(String endpoint, CircuitBreaker.State from, CircuitBreaker.State to) {
+        logger.warn("Circuit breaker for {} changed from {} to {}", endpoint, from, to);
+        for (CircuitBreakerListener listener : listeners) {
+            try {
+                listener.onStateTransition(endpoint, from, to);
+            } catch (RuntimeException e) {
+                logger.error("Circuit breaker listener failed", e);
+            }
+        }
+    }
+}
\ No newline at end of file
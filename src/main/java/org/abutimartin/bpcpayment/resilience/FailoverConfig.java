@@ -0,0 +1,178 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Several gateway sites serving the same merchant, e.g. the BPC primary and disaster-recovery
+ * sites. Calls go to the healthy site with the best priority and, among equals, the lowest recent
+ * latency relative to its weight. Sites are ejected after consecutive failures and readmitted by
+ * an active health check, or after a cool-down when active checks are off.
+ * 
+ * <p>A call only moves to another site when its {@link RetryPolicy} allows retrying the failure,
+ * so money-moving calls fail over only when the first site provably never received them.
+ */
+public final class FailoverConfig {
+    private final List<Site> sites;
+    private final int failuresToEject;
+    private final long ejectMillis;
+    private final long healthCheckIntervalMillis;
+    private final long healthCheckTimeoutMillis;
+    private final long latencyDecayMillis;
+    
+    private FailoverConfig(Builder builder) {
+        this.sites = Collections.unmodifiableList(new ArrayList<>(builder.sites));
+        this.failuresToEject = builder.failuresToEject;
+        this.ejectMillis = builder.ejectMillis;
+        this.healthCheckIntervalMillis = builder.healthCheckIntervalMillis;
+        this.healthCheckTimeoutMillis = builder.healthCheckTimeoutMillis;
+        this.latencyDecayMillis = builder.latencyDecayMillis;
+    }
+    
+    public List<Site> getSites() {
+        return sites;
+    }
+    
+    public int getFailuresToEject() {
+        return failuresToEject;
+    }
+    
+    public long getEjectMillis() {
+        return ejectMillis;
+    }
+    
+    /**
+     * How often every site is probed, or {@code 0} when health is only judged from real calls.
+     */
+    public long getHealthCheckIntervalMillis() {
+        return healthCheckIntervalMillis;
+    }
+    
+    public long getHealthCheckTimeoutMillis() {
+        return healthCheckTimeoutMillis;
+    }
+    
+    public long getLatencyDecayMillis() {
+        return latencyDecayMillis;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static final class Site {
+        private final String baseUrl;
+        private final int priority;
+        private final int weight;
+        
+        Site(String baseUrl, int priority, int weight) {
+            this.baseUrl = baseUrl;
+            this.priority = priority;
+            this.weight = weight;
+        }
+        
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+        
+        /**
+         * Lower is preferred; a site only takes traffic when no site with a lower priority is healthy.
+         */
+        public int getPriority() {
+            return priority;
+        }
+        
+        /**
+         * Relative capacity among sites of the same priority; a site of weight 2 is chosen over a
+         * site of weight 1 until its latency is twice as high.
+         */
+        public int getWeight() {
+            return weight;
+        }
+        
+        @Override
+        public String toString() {
+            return baseUrl + " (priority " + priority + ", weight " + weight + ")";
+        }
+    }
+    
+    public static class Builder {
+        private final List<Site> sites = new ArrayList<>();
+        private int failuresToEject = 3;
+        private long ejectMillis = 30000;
+        private long healthCheckIntervalMillis = 5000;
+        private long healthCheckTimeoutMillis = 2000;
+        private long latencyDecayMillis = 10000;
+        
+        private Builder() {
+        }
+        
+        /** Adds a site with priority 0 and weight 1. */
+        public Builder site(String baseUrl) {
+            return site(baseUrl, 0, 1);
+        }
+        
+        /** Adds a site; lower priorities are preferred, weights split traffic within a priority. */
+        public Builder site(String baseUrl, int priority, int weight) {
+            if (baseUrl == null || priority < 0 || weight < 1) {
+                throw new IllegalArgumentException("Site needs a base URL, a non-negative priority and a weight of at least 1");
+            }
+            sites.add(new Site(baseUrl, priority, weight));
+            return this;
+        }
+        
+        /** Consecutive failed calls after which a site stops receiving traffic. */
+        public Builder failuresToEject(int failuresToEject) {
+            this.failuresToEject = failuresToEject;
+            return this;
+        }
+        
+        /** How long an ejected site rests before a trial call, when active health checks are off. */
+        public Builder ejectMillis(long ejectMillis) {
+            this.ejectMillis = ejectMillis;
+            return this;
+        }
+        
+        /** How often each site's base URL is probed with a HEAD request; {@code 0} turns probing off. */
+        public Builder healthCheckIntervalMillis(long healthCheckIntervalMillis) {
+            this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+            return this;
+        }
+        
+        public Builder healthCheckTimeoutMillis(long healthCheckTimeoutMillis) {
+            this.healthCheckTimeoutMillis = healthCheckTimeoutMillis;
+            return this;
+        }
+        
+        /** How quickly old latency samples lose weight in a site's moving average. */
+        public Builder latencyDecayMillis(long latencyDecayMillis) {
+            this.latencyDecayMillis = latencyDecayMillis;
+            return this;
+        }
+        
+        public FailoverConfig build() {
+            if (sites.isEmpty()) {
+                throw new IllegalArgumentException("At least one site is required");
+            }
+            Set<String> urls = new HashSet<>();
+            for (Site site : sites) {
+                if (!urls.add(site.baseUrl)) {
+                    throw new IllegalArgumentException("Duplicate site " + site.baseUrl);
+                }
+            }
+            if (failuresToEject < 1) {
+                throw new IllegalArgumentException("failuresToEject must be at least 1");
+            }
+            if (ejectMillis <= 0 || healthCheckTimeoutMillis <= 0 || latencyDecayMillis <= 0) {
+                throw new IllegalArgumentException("Eject time, health check timeout and latency decay must be positive");
+            }
+            if (healthCheckIntervalMillis < 0) {
+                throw new IllegalArgumentException("Health check interval must not be negative");
+            }
+            return new FailoverConfig(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One {@link TokenBucket} per endpoint group. Buckets are independent, so there is no lock or
+ * shared counter across groups.
+ */
+public final class RateLimiter {
+    private final RateLimiterConfig config;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    
+    public RateLimiter(RateLimiterConfig config) {
+        this.config = config;
+        for (RateLimiterConfig.Group group : config.getGroups().values()) {
+            buckets.put(group.getName(), new TokenBucket(group.getPermitsPerSecond(), group.getBurst()));
+        }
+    }
+    
+    /**
+     * Acquires a permit for the endpoint according to the configured acquire mode.
+     * Endpoints outside every group are always granted.
+     * 
+     * @return {@code false} if no permit could be obtained within the allowed wait
+     * @throws InterruptedException if interrupted while waiting for a permit
+     */
+    public boolean acquire(String endpoint) throws InterruptedException {
+        return acquire(endpoint, Long.MAX_VALUE);
+    }
+    
+    /**
+     * Like {@link #acquire(String)}, but never waits longer than {@code maxWaitNanos}, e.g. the
+     * time left before the caller's deadline.
+     */
+    public boolean acquire(String endpoint, long maxWaitNanos) throws InterruptedException {
+        RateLimiterConfig.Group group = config.groupFor(endpoint);
+        if (group == null) {
+            return true;
+        }
+        TokenBucket bucket = buckets.computeIfAbsent(group.getName(),
+                name -> new TokenBucket(group.getPermitsPerSecond(), group.getBurst()));
+        
+        long maxWait = Math.min(maxWaitNanos(), maxWaitNanos);
+        long wait = bucket.reserve(maxWait);
+        if (wait < 0) {
+            return false;
+        }
+        if (wait > 0) {
+            long deadline = System.nanoTime() + wait;
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Interrupted while waiting for rate limit permit");
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Longest a caller waits for a permit under the configured acquire mode.
+     */
+    public long maxWaitNanos() {
+        switch (config.getAcquireMode()) {
+            case BLOCK:
+                return Long.MAX_VALUE;
+            case FAIL_FAST:
+                return 0;
+            default:
+                return TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMillis());
+        }
+    }
+    
+    public RateLimiterConfig getConfig() {
+        return config;
+    }
+    
+    /**
+     * Permits each group could hand out right now, keyed by group name.
+     */
+    public Map<String, Long> availablePermits() {
+        Map<String, Long> permits = new ConcurrentHashMap<>();
+        buckets.forEach((group, bucket) -> permits.put(group, bucket.availablePermits()));
+        return permits;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,135 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Client-side quotas, expressed as token buckets shared by a group of endpoints
+ * (for example all payment endpoints sharing one contractual requests-per-second limit).
+ */
+public final class RateLimiterConfig {
+    
+    public enum AcquireMode {
+        /** Wait as long as it takes for a permit. */
+        BLOCK,
+        /** Wait up to {@link #getMaxWaitMillis()} for a permit, then fail. */
+        TIMED_WAIT,
+        /** Fail immediately when no permit is available. */
+        FAIL_FAST
+    }
+    
+    private final Map<String, Group> groups;
+    private final Map<String, String> endpointGroups;
+    private final Group defaultGroup;
+    private final AcquireMode acquireMode;
+    private final long maxWaitMillis;
+    
+    private RateLimiterConfig(Builder builder) {
+        this.groups = Collections.unmodifiableMap(new LinkedHashMap<>(builder.groups));
+        this.endpointGroups = Collections.unmodifiableMap(new HashMap<>(builder.endpointGroups));
+        this.defaultGroup = builder.defaultGroup;
+        this.acquireMode = builder.acquireMode;
+        this.maxWaitMillis = builder.maxWaitMillis;
+    }
+    
+    public Map<String, Group> getGroups() {
+        return groups;
+    }
+    
+    /**
+     * Group that governs the endpoint, or {@code null} if the endpoint is not rate limited.
+     */
+    public Group groupFor(String endpoint) {
+        String name = endpointGroups.get(endpoint);
+        return name != null ? groups.get(name) : defaultGroup;
+    }
+    
+    public AcquireMode getAcquireMode() {
+        return acquireMode;
+    }
+    
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static final class Group {
+        private final String name;
+        private final double permitsPerSecond;
+        private final int burst;
+        
+        Group(String name, double permitsPerSecond, int burst) {
+            this.name = name;
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+        
+        public int getBurst() {
+            return burst;
+        }
+    }
+    
+    public static class Builder {
+        private final Map<String, Group> groups = new LinkedHashMap<>();
+        private final Map<String, String> endpointGroups = new HashMap<>();
+        private Group defaultGroup;
+        private AcquireMode acquireMode = AcquireMode.TIMED_WAIT;
+        private long maxWaitMillis = 1000;
+        
+        /**
+         * Declares a quota shared by the given endpoint paths.
+         */
+        public Builder group(String name, double permitsPerSecond, int burst, String... endpoints) {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+            }
+            groups.put(name, new Group(name, permitsPerSecond, burst));
+            for (String endpoint : endpoints) {
+                endpointGroups.put(endpoint, name);
+            }
+            return this;
+        }
+        
+        /**
+         * Quota for endpoints not assigned to any group; unassigned endpoints are unlimited otherwise.
+         */
+        public Builder defaultGroup(double permitsPerSecond, int burst) {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+            }
+            this.defaultGroup = new Group("default", permitsPerSecond, burst);
+            return this;
+        }
+        
+        public Builder acquireMode(AcquireMode acquireMode) {
+            this.acquireMode = acquireMode;
+            return this;
+        }
+        
+        /** Longest wait for a permit in {@link AcquireMode#TIMED_WAIT} mode. */
+        public Builder maxWaitMillis(long maxWaitMillis) {
+            this.maxWaitMillis = maxWaitMillis;
+            return this;
+        }
+        
+        public RateLimiterConfig build() {
+            if (acquireMode == null || maxWaitMillis < 0) {
+                throw new IllegalArgumentException("Acquire mode is required and max wait must not be negative");
+            }
+            return new RateLimiterConfig(this);
+        }
+    }
+}
\ No newline at end of file
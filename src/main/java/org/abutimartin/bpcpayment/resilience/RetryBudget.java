@@ -0,0 +1,57 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps retries to a percentage of original traffic so a gateway brownout is not amplified
+ * into a retry storm. Every original request deposits a fraction of a token and every retry
+ * withdraws a whole one; balances are kept in thousandths of a token in a single CAS-updated long.
+ */
+public final class RetryBudget {
+    private static final long SCALE = 1000;
+    
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+    
+    /**
+     * @param retryPercent retries allowed per hundred original requests
+     * @param minRetries   retries available up front, before any traffic has built up a balance
+     */
+    public RetryBudget(int retryPercent, int minRetries) {
+        this.depositPerRequest = retryPercent * SCALE / 100;
+        this.maxBalance = Math.max(minRetries, retryPercent) * SCALE;
+        this.balance = new AtomicLong(minRetries * SCALE);
+    }
+    
+    public void recordRequest() {
+        if (depositPerRequest == 0) {
+            return;
+        }
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current, Math.min(maxBalance, current + depositPerRequest)));
+    }
+    
+    public boolean tryAcquire() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+    
+    /**
+     * Whole retries currently available.
+     */
+    public long available() {
+        return balance.get() / SCALE;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package org.abutimartin.bpcpayment.resilience;
+
+/**
+ * Failure classes a {@link RetryPolicy} can be configured to retry.
+ */
+public enum RetryCondition {
+    /** The connection could not be established, so the request never reached the gateway. */
+    CONNECT_FAILURE,
+    /** The gateway was reached but did not answer in time; the request may have been processed. */
+    TIMEOUT,
+    /** The connection failed after the request was sent; the request may have been processed. */
+    IO_ERROR,
+    /** HTTP 502, 503 or 504 from the gateway or a proxy in front of it. */
+    SERVER_ERROR,
+    /** HTTP 429; the gateway rejected the request without processing it. */
+    THROTTLED
+}
\ No newline at end of file
@@ -0,0 +1,186 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry rules for gateway calls: exponential backoff with full jitter, a traffic-proportional
+ * retry budget, and a per-endpoint table of which failures are safe to retry.
+ * 
+ * <p>The default table only retries money-moving operations ({@code register}, {@code deposit},
+ * {@code refund}, {@code instantPayment}, ...) when the request provably never reached the gateway
+ * or was explicitly throttled. Reads and state-setting binding calls are retried on any transient failure.
+ * 
+ * <p>Blocking calls back off on the caller thread. Async calls back off on a timer and are enqueued
+ * again, so the delay holds no dispatcher thread or dispatcher slot.
+ */
+public final class RetryPolicy {
+    private static final Set<RetryCondition> NOT_PROCESSED =
+            Collections.unmodifiableSet(EnumSet.of(RetryCondition.CONNECT_FAILURE, RetryCondition.THROTTLED));
+    private static final Set<RetryCondition> ANY_TRANSIENT =
+            Collections.unmodifiableSet(EnumSet.allOf(RetryCondition.class));
+    
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int budgetPercent;
+    private final int minRetries;
+    private final Map<String, Set<RetryCondition>> endpointRules;
+    private final Set<RetryCondition> defaultRule;
+    
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseDelayMillis = builder.baseDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.budgetPercent = builder.budgetPercent;
+        this.minRetries = builder.minRetries;
+        this.endpointRules = Collections.unmodifiableMap(new HashMap<>(builder.endpointRules));
+        this.defaultRule = builder.defaultRule;
+    }
+    
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+    
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+    
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+    
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+    
+    public int getMinRetries() {
+        return minRetries;
+    }
+    
+    /**
+     * Failures that may be retried for the given endpoint path.
+     */
+    public Set<RetryCondition> conditionsFor(String endpoint) {
+        return endpointRules.getOrDefault(endpoint, defaultRule);
+    }
+    
+    /**
+     * Full-jitter backoff: a uniformly random delay between zero and the exponential ceiling
+     * for this attempt, so synchronized clients spread out instead of retrying in lockstep.
+     * 
+     * @param attempt the attempt that just failed, starting at 1
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = baseDelayMillis << Math.min(attempt - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMillis) {
+            ceiling = maxDelayMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+    
+    public RetryBudget newBudget() {
+        return new RetryBudget(budgetPercent, minRetries);
+    }
+    
+    public static RetryPolicy defaults() {
+        return builder().build();
+    }
+    
+    public static RetryPolicy disabled() {
+        return builder().maxAttempts(1).build();
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private int maxAttempts = 3;
+        private long baseDelayMillis = 100;
+        private long maxDelayMillis = 2000;
+        private int budgetPercent = 10;
+        private int minRetries = 10;
+        private final Map<String, Set<RetryCondition>> endpointRules = new HashMap<>();
+        private Set<RetryCondition> defaultRule = NOT_PROCESSED;
+        
+        private Builder() {
+            endpointRules.put("/rest/register.do", NOT_PROCESSED);
+            endpointRules.put("/rest/registerPreAuth.do", NOT_PROCESSED);
+            endpointRules.put("/rest/deposit.do", NOT_PROCESSED);
+            endpointRules.put("/rest/refund.do", NOT_PROCESSED);
+            endpointRules.put("/rest/reverse.do", NOT_PROCESSED);
+            endpointRules.put("/rest/paymentorder.do", NOT_PROCESSED);
+            endpointRules.put("/rest/instantPayment.do", NOT_PROCESSED);
+            endpointRules.put("/rest/motoPayment.do", NOT_PROCESSED);
+            endpointRules.put("/rest/decline.do", ANY_TRANSIENT);
+            endpointRules.put("/rest/getOrderStatusExtended.do", ANY_TRANSIENT);
+            endpointRules.put("/rest/getBindings.do", ANY_TRANSIENT);
+            endpointRules.put("/rest/getBindingsByCardOrId.do", ANY_TRANSIENT);
+            endpointRules.put("/rest/bindCard.do", ANY_TRANSIENT);
+            endpointRules.put("/rest/unBindCard.do", ANY_TRANSIENT);
+            endpointRules.put("/rest/extendBinding.do", ANY_TRANSIENT);
+        }
+        
+        /** Total attempts including the first one; 1 disables retries. */
+        public Builder maxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+        
+        public Builder baseDelayMillis(long baseDelayMillis) {
+            this.baseDelayMillis = baseDelayMillis;
+            return this;
+        }
+        
+        public Builder maxDelayMillis(long maxDelayMillis) {
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+        
+        /** Retries allowed per hundred original requests. */
+        public Builder budgetPercent(int budgetPercent) {
+            this.budgetPercent = budgetPercent;
+            return this;
+        }
+        
+        /** Retries available before traffic has built up a budget, e.g. right after startup. */
+        public Builder minRetries(int minRetries) {
+            this.minRetries = minRetries;
+            return this;
+        }
+        
+        /** Overrides which failures may be retried for an endpoint; no conditions means never retry. */
+        public Builder endpoint(String endpoint, RetryCondition... conditions) {
+            Set<RetryCondition> rule = EnumSet.noneOf(RetryCondition.class);
+            Collections.addAll(rule, conditions);
+            endpointRules.put(endpoint, Collections.unmodifiableSet(rule));
+            return this;
+        }
+        
+        /** Rule for endpoints missing from the table. */
+        public Builder defaultRule(RetryCondition... conditions) {
+            Set<RetryCondition> rule = EnumSet.noneOf(RetryCondition.class);
+            Collections.addAll(rule, conditions);
+            this.defaultRule = Collections.unmodifiableSet(rule);
+            return this;
+        }
+        
+        public RetryPolicy build() {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+            if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+                throw new IllegalArgumentException("Backoff delays must satisfy 0 <= base <= max");
+            }
+            if (budgetPercent < 0 || minRetries < 0) {
+                throw new IllegalArgumentException("Retry budget must not be negative");
+            }
+            return new RetryPolicy(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package org.abutimartin.bpcpayment.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket using the generic cell rate algorithm: the whole bucket is a single
+ * "theoretical arrival time" updated by CAS, so acquiring a permit never takes a lock and never
+ * needs a refill thread.
+ */
+public final class TokenBucket {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+    
+    /**
+     * @param permitsPerSecond sustained rate
+     * @param burst            permits that may be taken back-to-back after an idle period
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+        }
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - toleranceNanos);
+    }
+    
+    /**
+     * Reserves one permit if it becomes available within {@code maxWaitNanos}.
+     * 
+     * @return nanoseconds the caller must wait before using the permit, or {@code -1} if
+     *         no permit was reserved because the wait would exceed {@code maxWaitNanos}
+     */
+    public long reserve(long maxWaitNanos) {
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long start = tat - now > 0 ? tat : now;
+            long wait = Math.max(0, start - toleranceNanos - now);
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(tat, start + intervalNanos)) {
+                return wait;
+            }
+        }
+    }
+    
+    /**
+     * Permits that could be taken right now without waiting.
+     */
+    public long availablePermits() {
+        long now = System.nanoTime();
+        long tat = theoreticalArrival.get();
+        long headroom = now + toleranceNanos - (tat - now > 0 ? tat : now);
+        return Math.max(0, headroom / intervalNanos + 1);
+    }
+}
\ No newline at end of file
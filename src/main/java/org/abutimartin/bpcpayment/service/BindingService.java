@@ -1,66 +1,172 @@
 package org.abutimartin.bpcpayment.service;
 
+import org.abutimartin.bpcpayment.cache.BindingCache;
 import org.abutimartin.bpcpayment.config.BomaPayConfig;
 import org.abutimartin.bpcpayment.exception.BomaPayException;
 import org.abutimartin.bpcpayment.http.HttpClient;
 import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.model.response.BindingsResponse;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class BindingService {
     private final HttpClient httpClient;
     private final BomaPayConfig config;
+    private final BindingCache cache;
     
     public BindingService(HttpClient httpClient, BomaPayConfig config) {
         this.httpClient = httpClient;
         this.config = config;
+        this.cache = config.getBindingCacheConfig() != null
+                ? new BindingCache(config.getBindingCacheConfig())
+                : null;
     }
     
-    public BaseResponse getBindings(String clientId) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("clientId", clientId);
-        
-        return httpClient.postForm("/rest/getBindings.do", formData, BaseResponse.class);
+    /**
+     * Returns the binding lookup cache, or {@code null} when caching is not configured.
+     */
+    public BindingCache cache() {
+        return cache;
     }
     
-    public BaseResponse getBindingsByCardOrId(String pan) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("pan", pan);
-        
-        return httpClient.postForm("/rest/getBindingsByCardOrId.do", formData, BaseResponse.class);
+    /**
+     * Lists the stored cards of a client. Identical concurrent lookups share one gateway call,
+     * so callers must treat the returned response as read-only. Only the call that went to the
+     * gateway fills the cache, under the generation read when it started, so a caller that joined
+     * it after a binding change cannot store the stale result.
+     */
+    public BindingsResponse getBindings(String clientId) throws BomaPayException {
+        if (cache == null) {
+            return httpClient.postFormShared("/rest/getBindings.do", credentialsForm("clientId", clientId), BindingsResponse.class);
+        }
+        BindingsResponse cached = cache.getForClient(clientId);
+        if (cached != null) {
+            return cached;
+        }
+        return httpClient.postFormShared("/rest/getBindings.do", credentialsForm("clientId", clientId), BindingsResponse.class,
+                () -> {
+                    long generation = cache.generation();
+                    return response -> cache.putForClient(clientId, response, generation);
+                });
+    }
+    
+    public CompletableFuture<BindingsResponse> getBindingsAsync(String clientId) {
+        if (cache == null) {
+            return httpClient.postFormSharedAsync("/rest/getBindings.do", credentialsForm("clientId", clientId), BindingsResponse.class);
+        }
+        BindingsResponse cached = cache.getForClient(clientId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return httpClient.postFormSharedAsync("/rest/getBindings.do", credentialsForm("clientId", clientId), BindingsResponse.class,
+                () -> {
+                    long generation = cache.generation();
+                    return response -> cache.putForClient(clientId, response, generation);
+                });
+    }
+    
+    /**
+     * Looks up bindings by card number or binding id, sharing identical concurrent lookups like
+     * {@link #getBindings}.
+     */
+    public BindingsResponse getBindingsByCardOrId(String pan) throws BomaPayException {
+        if (cache == null) {
+            return httpClient.postFormShared("/rest/getBindingsByCardOrId.do", credentialsForm("pan", pan), BindingsResponse.class);
+        }
+        BindingsResponse cached = cache.getForCardOrId(pan);
+        if (cached != null) {
+            return cached;
+        }
+        return httpClient.postFormShared("/rest/getBindingsByCardOrId.do", credentialsForm("pan", pan), BindingsResponse.class,
+                () -> {
+                    long generation = cache.generation();
+                    return response -> cache.putForCardOrId(pan, response, generation);
+                });
+    }
+    
+    public CompletableFuture<BindingsResponse> getBindingsByCardOrIdAsync(String pan) {
+        if (cache == null) {
+            return httpClient.postFormSharedAsync("/rest/getBindingsByCardOrId.do", credentialsForm("pan", pan), BindingsResponse.class);
+        }
+        BindingsResponse cached = cache.getForCardOrId(pan);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return httpClient.postFormSharedAsync("/rest/getBindingsByCardOrId.do", credentialsForm("pan", pan), BindingsResponse.class,
+                () -> {
+                    long generation = cache.generation();
+                    return response -> cache.putForCardOrId(pan, response, generation);
+                });
     }
     
     public BaseResponse unBindCard(String bindingId) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("bindingId", bindingId);
-        
-        return httpClient.postForm("/rest/unBindCard.do", formData, BaseResponse.class);
+        try {
+            return httpClient.postForm("/rest/unBindCard.do", credentialsForm("bindingId", bindingId), BaseResponse.class);
+        } finally {
+            invalidate(bindingId);
+        }
+    }
+    
+    public CompletableFuture<BaseResponse> unBindCardAsync(String bindingId) {
+        return invalidateOnCompletion(bindingId,
+                httpClient.postFormAsync("/rest/unBindCard.do", credentialsForm("bindingId", bindingId), BaseResponse.class));
     }
     
     public BaseResponse bindCard(String bindingId) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("bindingId", bindingId);
-        
-        return httpClient.postForm("/rest/bindCard.do", formData, BaseResponse.class);
+        try {
+            return httpClient.postForm("/rest/bindCard.do", credentialsForm("bindingId", bindingId), BaseResponse.class);
+        } finally {
+            invalidate(bindingId);
+        }
+    }
+    
+    public CompletableFuture<BaseResponse> bindCardAsync(String bindingId) {
+        return invalidateOnCompletion(bindingId,
+                httpClient.postFormAsync("/rest/bindCard.do", credentialsForm("bindingId", bindingId), BaseResponse.class));
     }
     
     public BaseResponse extendBinding(String bindingId, String newExpiry) throws BomaPayException {
+        try {
+            return httpClient.postForm("/rest/extendBinding.do", extendBindingForm(bindingId, newExpiry), BaseResponse.class);
+        } finally {
+            invalidate(bindingId);
+        }
+    }
+    
+    public CompletableFuture<BaseResponse> extendBindingAsync(String bindingId, String newExpiry) {
+        return invalidateOnCompletion(bindingId,
+                httpClient.postFormAsync("/rest/extendBinding.do", extendBindingForm(bindingId, newExpiry), BaseResponse.class));
+    }
+    
+    private void invalidate(String bindingId) {
+        // also on failure: a timed-out write may still have been applied by the gateway
+        if (cache != null) {
+            cache.invalidateBinding(bindingId);
+        }
+    }
+    
+    private <T> CompletableFuture<T> invalidateOnCompletion(String bindingId, CompletableFuture<T> future) {
+        if (cache != null) {
+            // observe rather than chain, so cancelling the returned future still aborts the HTTP call
+            future.whenComplete((result, error) -> invalidate(bindingId));
+        }
+        return future;
+    }
+    
+    private Map<String, String> credentialsForm(String key, String value) {
         Map<String, String> formData = new HashMap<>();
         formData.put("userName", config.getUsername());
         formData.put("password", config.getPassword());
-        formData.put("bindingId", bindingId);
+        formData.put(key, value);
+        return formData;
+    }
+    
+    private Map<String, String> extendBindingForm(String bindingId, String newExpiry) {
+        Map<String, String> formData = credentialsForm("bindingId", bindingId);
         formData.put("newExpiry", newExpiry);
         formData.put("language", config.getLanguage());
-        
-        return httpClient.postForm("/rest/extendBinding.do", formData, BaseResponse.class);
+        return formData;
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package org.abutimartin.bpcpayment.service;
+
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.model.request.BulkItem;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.model.response.BulkResult;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * Results of a bulk operation in completion order. Reading drives the operation: items are taken
+ * from the input only as results are read, and at most {@code parallelism} items are outstanding,
+ * in flight or completed but unread. Memory therefore stays bounded however large the input, and a
+ * consumer that stops reading stops new calls.
+ * 
+ * <p>Read from one thread. {@link #close()} stops taking new items; results of calls already in
+ * flight can still be read.
+ */
+public final class BulkResults implements Iterator<BulkResult>, AutoCloseable {
+    private final Iterator<BulkItem> items;
+    private final int parallelism;
+    private final Function<BulkItem, CompletableFuture<? extends BaseResponse>> call;
+    private final BlockingQueue<BulkResult> completed = new LinkedBlockingQueue<>();
+    private int outstanding;
+    private boolean closed;
+    
+    BulkResults(Iterable<BulkItem> items, int parallelism, Function<BulkItem, CompletableFuture<? extends BaseResponse>> call) {
+        this.items = items.iterator();
+        this.parallelism = parallelism;
+        this.call = call;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        submitMore();
+        return outstanding > 0;
+    }
+    
+    /**
+     * Blocks until the next call completes.
+     * 
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    @Override
+    public BulkResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BulkResult result;
+        try {
+            result = completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for bulk results");
+        }
+        outstanding--;
+        // keep the pipeline full while the caller handles this result
+        submitMore();
+        return result;
+    }
+    
+    /**
+     * Number of items taken from the input whose results have not been read yet.
+     */
+    public int outstanding() {
+        return outstanding;
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+    }
+    
+    private void submitMore() {
+        while (!closed && outstanding < parallelism && items.hasNext()) {
+            BulkItem item = items.next();
+            outstanding++;
+            start(item);
+        }
+    }
+    
+    private void start(BulkItem item) {
+        CompletableFuture<? extends BaseResponse> future;
+        try {
+            future = call.apply(item);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((response, error) -> completed.add(error == null
+                ? new BulkResult(item, response, null)
+                : new BulkResult(item, null, toBomaPayException(error))));
+    }
+    
+    private static BomaPayException toBomaPayException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof BomaPayException
+                ? (BomaPayException) cause
+                : new BomaPayException("Failed to make request", cause);
+    }
+}
\ No newline at end of file
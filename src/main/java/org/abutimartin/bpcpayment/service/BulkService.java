@@ -0,0 +1,105 @@
+package org.abutimartin.bpcpayment.service;
+
+import org.abutimartin.bpcpayment.model.request.BulkItem;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.model.response.BulkResult;
+import org.abutimartin.bpcpayment.model.response.BulkSummary;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Deposits, refunds and reversals for many orders at once, e.g. from an end-of-month job. Up to
+ * {@code parallelism} calls run concurrently on the asynchronous API, and the input is read lazily,
+ * so it may be a stream over a file or a database cursor of any size.
+ * 
+ * <p>Each operation comes in two forms: one returns {@link BulkResults} to iterate, the other
+ * blocks and hands every result to a callback on the calling thread. Items go through the
+ * client's usual retries, rate limits and bulkheads; keep {@code parallelism} within the bulkhead
+ * capacity of the order endpoints, or items are rejected with {@code BulkheadFullException}.
+ */
+public class BulkService {
+    private final OrderService orders;
+    private final int parallelism;
+    
+    public BulkService(OrderService orders, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Bulk parallelism must be at least 1");
+        }
+        this.orders = orders;
+        this.parallelism = parallelism;
+    }
+    
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    /**
+     * Returns a bulk service running up to {@code parallelism} calls at a time.
+     */
+    public BulkService withParallelism(int parallelism) {
+        return new BulkService(orders, parallelism);
+    }
+    
+    public BulkResults deposits(Iterable<BulkItem> items) {
+        return start(items, item -> orders.depositAsync(item.getOrderId(), item.getAmount()));
+    }
+    
+    public BulkSummary deposits(Iterable<BulkItem> items, Consumer<BulkResult> onResult) {
+        return run(deposits(items), onResult);
+    }
+    
+    public BulkResults refunds(Iterable<BulkItem> items) {
+        return start(items, item -> orders.refundAsync(item.getOrderId(), item.getAmount()));
+    }
+    
+    public BulkSummary refunds(Iterable<BulkItem> items, Consumer<BulkResult> onResult) {
+        return run(refunds(items), onResult);
+    }
+    
+    public BulkResults reverses(Iterable<BulkItem> items) {
+        return start(items, item -> orders.reverseAsync(item.getOrderId()));
+    }
+    
+    public BulkSummary reverses(Iterable<BulkItem> items, Consumer<BulkResult> onResult) {
+        return run(reverses(items), onResult);
+    }
+    
+    private BulkResults start(Iterable<BulkItem> items, Function<BulkItem, CompletableFuture<? extends BaseResponse>> call) {
+        return new BulkResults(items, parallelism, call);
+    }
+    
+    /**
+     * Feeds every result to the callback as it arrives. If the callback throws, no further items
+     * are started; calls already in flight are waited for, unreported, before the exception propagates.
+     */
+    private static BulkSummary run(BulkResults results, Consumer<BulkResult> onResult) {
+        long start = System.nanoTime();
+        long succeeded = 0;
+        long declined = 0;
+        long failed = 0;
+        try {
+            while (results.hasNext()) {
+                BulkResult result = results.next();
+                if (result.isSuccess()) {
+                    succeeded++;
+                } else if (result.getFailure() == null) {
+                    declined++;
+                } else {
+                    failed++;
+                }
+                onResult.accept(result);
+            }
+        } catch (RuntimeException e) {
+            results.close();
+            while (results.hasNext()) {
+                results.next();
+            }
+            throw e;
+        }
+        return new BulkSummary(succeeded, declined, failed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
\ No newline at end of file
@@ -3,12 +3,15 @@ package org.abutimartin.bpcpayment.service;
 import org.abutimartin.bpcpayment.config.BomaPayConfig;
 import org.abutimartin.bpcpayment.exception.BomaPayException;
 import org.abutimartin.bpcpayment.http.HttpClient;
+import org.abutimartin.bpcpayment.model.request.OrderActionRequest;
 import org.abutimartin.bpcpayment.model.request.OrderRegistrationRequest;
 import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
 import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.model.response.OrderStatusResponse;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class OrderService {
     private final HttpClient httpClient;
@@ -20,88 +23,115 @@ public class OrderService {
     }
     
     public OrderRegistrationResponse register(Long amount, String orderNumber, String returnUrl) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("amount", amount.toString());
-        formData.put("currency", config.getCurrency());
-        formData.put("language", config.getLanguage());
-        formData.put("orderNumber", orderNumber);
-        formData.put("returnUrl", returnUrl);
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        
-        // Add optional parameters
-        if (config.getClientId() != null) {
-            formData.put("clientId", config.getClientId());
-        }
-        if (config.getMerchantLogin() != null) {
-            formData.put("merchantLogin", config.getMerchantLogin());
-        }
-        
-        return httpClient.postForm("/rest/register.do", formData, OrderRegistrationResponse.class);
+        return httpClient.postForm("/rest/register.do", registrationRequest(amount, orderNumber, returnUrl), OrderRegistrationResponse.class);
+    }
+    
+    public CompletableFuture<OrderRegistrationResponse> registerAsync(Long amount, String orderNumber, String returnUrl) {
+        return httpClient.postFormAsync("/rest/register.do", registrationRequest(amount, orderNumber, returnUrl), OrderRegistrationResponse.class);
     }
     
     public OrderRegistrationResponse registerPreAuth(Long amount, String orderNumber, String returnUrl) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("amount", amount.toString());
-        formData.put("currency", config.getCurrency());
-        formData.put("language", config.getLanguage());
-        formData.put("orderNumber", orderNumber);
-        formData.put("returnUrl", returnUrl);
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        
-        // Add optional parameters
-        if (config.getClientId() != null) {
-            formData.put("clientId", config.getClientId());
-        }
-        if (config.getMerchantLogin() != null) {
-            formData.put("merchantLogin", config.getMerchantLogin());
-        }
-        
-        return httpClient.postForm("/rest/registerPreAuth.do", formData, OrderRegistrationResponse.class);
+        return httpClient.postForm("/rest/registerPreAuth.do", registrationRequest(amount, orderNumber, returnUrl), OrderRegistrationResponse.class);
+    }
+    
+    public CompletableFuture<OrderRegistrationResponse> registerPreAuthAsync(Long amount, String orderNumber, String returnUrl) {
+        return httpClient.postFormAsync("/rest/registerPreAuth.do", registrationRequest(amount, orderNumber, returnUrl), OrderRegistrationResponse.class);
     }
     
     public BaseResponse deposit(String orderId, Long amount) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("amount", amount.toString());
-        formData.put("orderId", orderId);
-        formData.put("language", config.getLanguage());
-        
-        return httpClient.postForm("/rest/deposit.do", formData, BaseResponse.class);
+        return httpClient.postForm("/rest/deposit.do", amountRequest(orderId, amount), BaseResponse.class);
+    }
+    
+    public CompletableFuture<BaseResponse> depositAsync(String orderId, Long amount) {
+        return httpClient.postFormAsync("/rest/deposit.do", amountRequest(orderId, amount), BaseResponse.class);
     }
     
     public BaseResponse reverse(String orderId) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("orderId", orderId);
-        formData.put("language", config.getLanguage());
-        
-        return httpClient.postForm("/rest/reverse.do", formData, BaseResponse.class);
+        return httpClient.postForm("/rest/reverse.do", reverseRequest(orderId), BaseResponse.class);
+    }
+    
+    public CompletableFuture<BaseResponse> reverseAsync(String orderId) {
+        return httpClient.postFormAsync("/rest/reverse.do", reverseRequest(orderId), BaseResponse.class);
     }
     
     public BaseResponse refund(String orderId, Long amount) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("amount", amount.toString());
-        formData.put("orderId", orderId);
-        formData.put("language", config.getLanguage());
-        
-        return httpClient.postForm("/rest/refund.do", formData, BaseResponse.class);
+        return httpClient.postForm("/rest/refund.do", amountRequest(orderId, amount), BaseResponse.class);
+    }
+    
+    public CompletableFuture<BaseResponse> refundAsync(String orderId, Long amount) {
+        return httpClient.postFormAsync("/rest/refund.do", amountRequest(orderId, amount), BaseResponse.class);
     }
     
     public BaseResponse decline(String orderId, String orderNumber) throws BomaPayException {
+        return httpClient.postForm("/rest/decline.do", declineRequest(orderId, orderNumber), BaseResponse.class);
+    }
+    
+    public CompletableFuture<BaseResponse> declineAsync(String orderId, String orderNumber) {
+        return httpClient.postFormAsync("/rest/decline.do", declineRequest(orderId, orderNumber), BaseResponse.class);
+    }
+    
+    /**
+     * Reads the order's status, amounts and authorization details. Identical concurrent lookups
+     * share one gateway call.
+     */
+    public OrderStatusResponse getOrderStatusExtended(String orderId) throws BomaPayException {
+        return httpClient.postFormShared("/rest/getOrderStatusExtended.do", statusForm(orderId), OrderStatusResponse.class);
+    }
+    
+    public CompletableFuture<OrderStatusResponse> getOrderStatusExtendedAsync(String orderId) {
+        return httpClient.postFormSharedAsync("/rest/getOrderStatusExtended.do", statusForm(orderId), OrderStatusResponse.class);
+    }
+    
+    /**
+     * Reads the status of the order registered under the merchant's own order number, e.g. when
+     * the gateway's order id was never received.
+     */
+    public OrderStatusResponse getOrderStatusExtendedByOrderNumber(String orderNumber) throws BomaPayException {
+        return httpClient.postFormShared("/rest/getOrderStatusExtended.do", statusForm("orderNumber", orderNumber),
+                OrderStatusResponse.class);
+    }
+    
+    private OrderRegistrationRequest registrationRequest(Long amount, String orderNumber, String returnUrl) {
+        OrderRegistrationRequest request = new OrderRegistrationRequest();
+        request.setAmount(amount);
+        request.setCurrency(config.getCurrency());
+        request.setOrderNumber(orderNumber);
+        request.setReturnUrl(returnUrl);
+        // optional parameters; null fields are left out of the form
+        request.setClientId(config.getClientId());
+        request.setMerchantLogin(config.getMerchantLogin());
+        return request;
+    }
+    
+    private OrderActionRequest amountRequest(String orderId, Long amount) {
+        OrderActionRequest request = reverseRequest(orderId);
+        request.setAmount(amount);
+        return request;
+    }
+    
+    private OrderActionRequest reverseRequest(String orderId) {
+        OrderActionRequest request = new OrderActionRequest();
+        request.setOrderId(orderId);
+        return request;
+    }
+    
+    private Map<String, String> statusForm(String orderId) {
+        return statusForm("orderId", orderId);
+    }
+    
+    private Map<String, String> statusForm(String idName, String id) {
         Map<String, String> formData = new HashMap<>();
         formData.put("userName", config.getUsername());
         formData.put("password", config.getPassword());
-        formData.put("orderId", orderId);
-        formData.put("orderNumber", orderNumber);
-        formData.put("merchantLogin", config.getMerchantLogin());
+        formData.put(idName, id);
         formData.put("language", config.getLanguage());
-        
-        return httpClient.postForm("/rest/decline.do", formData, BaseResponse.class);
+        return formData;
+    }
+    
+    private OrderActionRequest declineRequest(String orderId, String orderNumber) {
+        OrderActionRequest request = reverseRequest(orderId);
+        request.setOrderNumber(orderNumber);
+        request.setMerchantLogin(config.getMerchantLogin());
+        return request;
     }
 }
\ No newline at end of file
@@ -4,10 +4,11 @@ import org.abutimartin.bpcpayment.config.BomaPayConfig;
 import org.abutimartin.bpcpayment.exception.BomaPayException;
 import org.abutimartin.bpcpayment.http.HttpClient;
 import org.abutimartin.bpcpayment.model.request.InstantPaymentRequest;
+import org.abutimartin.bpcpayment.model.request.MotoPaymentRequest;
+import org.abutimartin.bpcpayment.model.request.PaymentOrderRequest;
 import org.abutimartin.bpcpayment.model.response.PaymentResponse;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class PaymentService {
     private final HttpClient httpClient;
@@ -19,62 +20,84 @@ public class PaymentService {
     }
     
     public PaymentResponse paymentOrder(String mdOrder, String pan, String cvc, String year, String month, String cardholderName) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("language", config.getLanguage());
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("MDORDER", mdOrder);
-        formData.put("$PAN", pan);
-        formData.put("$CVC", cvc);
-        formData.put("YYYY", year);
-        formData.put("MM", month);
-        formData.put("TEXT", cardholderName);
-        
-        return httpClient.postForm("/rest/paymentorder.do", formData, PaymentResponse.class);
+        return httpClient.postForm("/rest/paymentorder.do", paymentOrderRequest(mdOrder, pan, cvc, year, month, cardholderName), PaymentResponse.class);
+    }
+    
+    public CompletableFuture<PaymentResponse> paymentOrderAsync(String mdOrder, String pan, String cvc, String year, String month, String cardholderName) {
+        return httpClient.postFormAsync("/rest/paymentorder.do", paymentOrderRequest(mdOrder, pan, cvc, year, month, cardholderName), PaymentResponse.class);
     }
     
-    public PaymentResponse instantPayment(Long amount, String orderNumber, String description, 
+    public PaymentResponse instantPayment(Long amount, String orderNumber, String description,
                                         String pan, String cvc, String expiry, String cardholderName,
                                         String backUrl, String failUrl) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("amount", amount.toString());
-        formData.put("currency", config.getCurrency());
-        formData.put("description", description);
-        formData.put("orderNumber", orderNumber);
-        formData.put("pan", pan);
-        formData.put("cvc", cvc);
-        formData.put("expiry", expiry);
-        formData.put("cardHolderName", cardholderName);
-        formData.put("language", config.getLanguage());
-        formData.put("backUrl", backUrl);
-        formData.put("failUrl", failUrl);
-        
-        // Add common optional parameters that might be required
-        if (config.getClientId() != null) {
-            formData.put("clientId", config.getClientId());
-        }
-        formData.put("ip", "127.0.0.1"); // Default IP for testing
-        
-        return httpClient.postForm("/rest/instantPayment.do", formData, PaymentResponse.class);
+        return httpClient.postForm("/rest/instantPayment.do",
+                instantPaymentRequest(amount, orderNumber, description, pan, cvc, expiry, cardholderName, backUrl, failUrl),
+                PaymentResponse.class);
+    }
+    
+    public CompletableFuture<PaymentResponse> instantPaymentAsync(Long amount, String orderNumber, String description,
+                                                                 String pan, String cvc, String expiry, String cardholderName,
+                                                                 String backUrl, String failUrl) {
+        return httpClient.postFormAsync("/rest/instantPayment.do",
+                instantPaymentRequest(amount, orderNumber, description, pan, cvc, expiry, cardholderName, backUrl, failUrl),
+                PaymentResponse.class);
     }
     
     public PaymentResponse motoPayment(Long amount, String description, String pan, String expiry,
                                      String cvc, String cardholder, String returnUrl) throws BomaPayException {
-        Map<String, String> formData = new HashMap<>();
-        formData.put("amount", amount.toString());
-        formData.put("currency", config.getCurrency());
-        formData.put("userName", config.getUsername());
-        formData.put("password", config.getPassword());
-        formData.put("returnUrl", returnUrl);
-        formData.put("description", description);
-        formData.put("pan", pan);
-        formData.put("expiry", expiry);
-        formData.put("cvc", cvc);
-        formData.put("cardholder", cardholder);
-        formData.put("language", config.getLanguage());
+        return httpClient.postForm("/rest/motoPayment.do",
+                motoPaymentRequest(amount, description, pan, expiry, cvc, cardholder, returnUrl), PaymentResponse.class);
+    }
+    
+    public CompletableFuture<PaymentResponse> motoPaymentAsync(Long amount, String description, String pan, String expiry,
+                                                              String cvc, String cardholder, String returnUrl) {
+        return httpClient.postFormAsync("/rest/motoPayment.do",
+                motoPaymentRequest(amount, description, pan, expiry, cvc, cardholder, returnUrl), PaymentResponse.class);
+    }
+    
+    private PaymentOrderRequest paymentOrderRequest(String mdOrder, String pan, String cvc, String year, String month, String cardholderName) {
+        PaymentOrderRequest request = new PaymentOrderRequest();
+        request.setMdOrder(mdOrder);
+        request.setPan(pan);
+        request.setCvc(cvc);
+        request.setYear(year);
+        request.setMonth(month);
+        request.setCardholderName(cardholderName);
+        return request;
+    }
+    
+    private InstantPaymentRequest instantPaymentRequest(Long amount, String orderNumber, String description,
+                                                        String pan, String cvc, String expiry, String cardholderName,
+                                                        String backUrl, String failUrl) {
+        InstantPaymentRequest request = new InstantPaymentRequest();
+        request.setAmount(amount);
+        request.setCurrency(config.getCurrency());
+        request.setDescription(description);
+        request.setOrderNumber(orderNumber);
+        request.setPan(pan);
+        request.setCvc(cvc);
+        request.setExpiry(expiry);
+        request.setCardHolderName(cardholderName);
+        request.setBackUrl(backUrl);
+        request.setFailUrl(failUrl);
         
-        return httpClient.postForm("/rest/motoPayment.do", formData, PaymentResponse.class);
+        // Add common optional parameters that might be required
+        request.setClientId(config.getClientId());
+        request.setIp("127.0.0.1"); // Default IP for testing
+        return request;
+    }
+    
+    private MotoPaymentRequest motoPaymentRequest(Long amount, String description, String pan, String expiry,
+                                                  String cvc, String cardholder, String returnUrl) {
+        MotoPaymentRequest request = new MotoPaymentRequest();
+        request.setAmount(amount);
+        request.setCurrency(config.getCurrency());
+        request.setReturnUrl(returnUrl);
+        request.setDescription(description);
+        request.setPan(pan);
+        request.setExpiry(expiry);
+        request.setCvc(cvc);
+        request.setCardholder(cardholder);
+        return request;
     }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package org.abutimartin.bpcpayment.util;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Java 17 baseline of the virtual thread bridge. The multi-release JAR replaces this class with the
+ * version under {@code META-INF/versions/21}, so callers never need reflection or a runtime check of their own.
+ */
+public final class VirtualThreads {
+    
+    private VirtualThreads() {
+    }
+    
+    /**
+     * Returns whether this runtime can start virtual threads.
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+    
+    /**
+     * Returns an executor that starts one virtual thread per task.
+     * 
+     * @throws UnsupportedOperationException on runtimes older than Java 21
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,218 @@
+package org.abutimartin.bpcpayment.watch;
+
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.exception.OrderWatchExpiredException;
+import org.abutimartin.bpcpayment.model.response.OrderStatus;
+import org.abutimartin.bpcpayment.model.response.OrderStatusResponse;
+import org.abutimartin.bpcpayment.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Polls {@code getOrderStatusExtended} for pending orders until each reaches a final status, e.g.
+ * after {@code register} while the customer is on the payment page. Thousands of orders share one
+ * timer wheel thread instead of a sleeping thread each. Polls that come due on the same tick are
+ * dispatched together on the asynchronous API with at most {@code maxConcurrentPolls} in flight;
+ * the rest wait in a queue for a free slot.
+ * 
+ * <p>Results are delivered through the returned futures, completed on an HTTP dispatcher thread,
+ * so callbacks must not block.
+ */
+public final class OrderStatusWatcher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusWatcher.class);
+    // the gateway's "system error"; every other error code means the lookup itself is wrong
+    private static final String SYSTEM_ERROR = "7";
+    
+    private final OrderService orders;
+    private final OrderWatchConfig config;
+    private final TimerWheel<Watch> wheel;
+    private final ConcurrentHashMap<String, Watch> watches = new ConcurrentHashMap<>();
+    private final Queue<Watch> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder polls = new LongAdder();
+    private volatile boolean closed;
+    
+    public OrderStatusWatcher(OrderService orders, OrderWatchConfig config) {
+        this.orders = orders;
+        this.config = config;
+        this.wheel = new TimerWheel<>(config.getTickMillis(), config.getWheelSize(), "bomapay-order-watcher", this::onDue);
+    }
+    
+    /**
+     * Watches the order until its status is final. Watching an order already being watched returns
+     * the existing future; cancelling it stops the watch for every caller.
+     * 
+     * @return a future completed with the final status, or failed with an
+     *         {@link OrderWatchExpiredException} when the order is still pending after {@code maxAgeMillis},
+     *         a {@link BomaPayException} when the gateway rejects the lookup, or a
+     *         {@link RejectedExecutionException} when {@code maxWatchedOrders} are already watched
+     */
+    public CompletableFuture<OrderStatusResponse> watch(String orderId) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Order watcher is closed"));
+        }
+        Watch existing = watches.get(orderId);
+        if (existing != null) {
+            return existing.future;
+        }
+        if (watches.size() >= config.getMaxWatchedOrders()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Already watching " + config.getMaxWatchedOrders() + " orders"));
+        }
+        Watch watch = new Watch(orderId);
+        existing = watches.putIfAbsent(orderId, watch);
+        if (existing != null) {
+            return existing.future;
+        }
+        watch.future.whenComplete((status, error) -> {
+            watches.remove(orderId, watch);
+            TimerWheel.Entry<Watch> entry = watch.timer;
+            if (entry != null) {
+                entry.cancel();
+            }
+        });
+        schedule(watch, config.nextDelayMillis(0, false, 0));
+        return watch.future;
+    }
+    
+    /**
+     * Watches the order and calls {@code callback} with the final status or the failure.
+     */
+    public CompletableFuture<OrderStatusResponse> watch(String orderId, BiConsumer<OrderStatusResponse, Throwable> callback) {
+        CompletableFuture<OrderStatusResponse> future = watch(orderId);
+        future.whenComplete(callback);
+        return future;
+    }
+    
+    /**
+     * Number of orders currently watched.
+     */
+    public int watching() {
+        return watches.size();
+    }
+    
+    /**
+     * Status calls sent since the watcher was created.
+     */
+    public long pollCount() {
+        return polls.sum();
+    }
+    
+    /**
+     * Stops the timer thread and fails every pending watch with a {@link CancellationException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        wheel.close();
+        for (Watch watch : watches.values()) {
+            watch.future.completeExceptionally(new CancellationException("Order watcher closed"));
+        }
+    }
+    
+    private void schedule(Watch watch, long delayMillis) {
+        watch.timer = wheel.schedule(watch, delayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    private void onDue(List<Watch> due) {
+        ready.addAll(due);
+        drain();
+    }
+    
+    /**
+     * Starts queued polls while slots are free. Called by the wheel thread and by every completed poll.
+     */
+    private void drain() {
+        while (!ready.isEmpty() && !closed) {
+            int current = inFlight.get();
+            if (current >= config.getMaxConcurrentPolls()) {
+                // a poll in flight drains again when it completes
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Watch watch = ready.poll();
+            if (watch == null || watch.future.isDone()) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            poll(watch);
+        }
+    }
+    
+    private void poll(Watch watch) {
+        polls.increment();
+        CompletableFuture<OrderStatusResponse> status;
+        try {
+            status = orders.getOrderStatusExtendedAsync(watch.orderId);
+        } catch (RuntimeException e) {
+            status = CompletableFuture.failedFuture(e);
+        }
+        status.whenComplete((response, error) -> {
+            inFlight.decrementAndGet();
+            try {
+                onPolled(watch, response, error);
+            } finally {
+                drain();
+            }
+        });
+    }
+    
+    private void onPolled(Watch watch, OrderStatusResponse response, Throwable error) {
+        if (watch.future.isDone()) {
+            return;
+        }
+        if (error == null && response.isSuccess()) {
+            watch.last = response;
+            watch.failures = 0;
+            if (response.isFinal()) {
+                watch.future.complete(response);
+                return;
+            }
+        } else if (error == null && !SYSTEM_ERROR.equals(response.getErrorCode())) {
+            watch.future.completeExceptionally(new BomaPayException("Status lookup of order " + watch.orderId
+                    + " failed: " + response.getErrorCode() + " " + response.getErrorMessage()));
+            return;
+        } else {
+            watch.failures++;
+            logger.debug("Status poll of order {} failed ({} in a row)", watch.orderId, watch.failures, error);
+        }
+        
+        long ageMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - watch.startNanos);
+        if (ageMillis >= config.getMaxAgeMillis()) {
+            watch.future.completeExceptionally(new OrderWatchExpiredException(watch.orderId, watch.last));
+            return;
+        }
+        boolean active = watch.last != null && watch.last.getStatus() == OrderStatus.ACS_AUTHORIZATION;
+        long delay = config.nextDelayMillis(ageMillis, active, watch.failures);
+        // the last poll lands on the maximum age, so the expiry reports a fresh status
+        schedule(watch, Math.min(delay, config.getMaxAgeMillis() - ageMillis));
+    }
+    
+    static final class Watch {
+        final String orderId;
+        final long startNanos = System.nanoTime();
+        final CompletableFuture<OrderStatusResponse> future = new CompletableFuture<>();
+        // written by the poll that completed last; polls of one order never overlap
+        volatile TimerWheel.Entry<Watch> timer;
+        volatile OrderStatusResponse last;
+        volatile int failures;
+        
+        Watch(String orderId) {
+            this.orderId = orderId;
+        }
+    }
+}
\ No newline at end of file
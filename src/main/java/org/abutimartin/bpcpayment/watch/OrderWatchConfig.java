@@ -0,0 +1,174 @@
+package org.abutimartin.bpcpayment.watch;
+
+/**
+ * Polling policy of the {@link OrderStatusWatcher}. A pending order is polled at an interval
+ * proportional to its age, so fresh orders are checked often and old ones rarely; orders in
+ * 3-D Secure authentication are polled at the faster active interval. Failed polls back off
+ * exponentially up to the maximum interval.
+ */
+public final class OrderWatchConfig {
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final long activeIntervalMillis;
+    private final double ageFactor;
+    private final long maxAgeMillis;
+    private final int maxConcurrentPolls;
+    private final int maxWatchedOrders;
+    private final long tickMillis;
+    private final int wheelSize;
+    
+    private OrderWatchConfig(Builder builder) {
+        this.minIntervalMillis = builder.minIntervalMillis;
+        this.maxIntervalMillis = builder.maxIntervalMillis;
+        this.activeIntervalMillis = builder.activeIntervalMillis;
+        this.ageFactor = builder.ageFactor;
+        this.maxAgeMillis = builder.maxAgeMillis;
+        this.maxConcurrentPolls = builder.maxConcurrentPolls;
+        this.maxWatchedOrders = builder.maxWatchedOrders;
+        this.tickMillis = builder.tickMillis;
+        this.wheelSize = builder.wheelSize;
+    }
+    
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+    
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+    
+    public long getActiveIntervalMillis() {
+        return activeIntervalMillis;
+    }
+    
+    public double getAgeFactor() {
+        return ageFactor;
+    }
+    
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+    
+    public int getMaxConcurrentPolls() {
+        return maxConcurrentPolls;
+    }
+    
+    public int getMaxWatchedOrders() {
+        return maxWatchedOrders;
+    }
+    
+    public long getTickMillis() {
+        return tickMillis;
+    }
+    
+    public int getWheelSize() {
+        return wheelSize;
+    }
+    
+    /**
+     * Delay before the next poll of an order of the given age, after the given number of failed
+     * polls in a row.
+     */
+    long nextDelayMillis(long ageMillis, boolean active, int failures) {
+        long interval = active
+                ? activeIntervalMillis
+                : Math.max(minIntervalMillis, Math.min(maxIntervalMillis, (long) (ageMillis * ageFactor)));
+        if (failures > 0) {
+            interval = Math.min(maxIntervalMillis, interval << Math.min(failures, 20));
+        }
+        return interval;
+    }
+    
+    public static OrderWatchConfig defaults() {
+        return builder().build();
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public static class Builder {
+        private long minIntervalMillis = 1000;
+        private long maxIntervalMillis = 60_000;
+        private long activeIntervalMillis = 2000;
+        private double ageFactor = 0.1;
+        private long maxAgeMillis = 20 * 60_000;
+        private int maxConcurrentPolls = 8;
+        private int maxWatchedOrders = 100_000;
+        private long tickMillis = 100;
+        private int wheelSize = 512;
+        
+        private Builder() {
+        }
+        
+        /** Shortest interval between polls of a pending order. */
+        public Builder minIntervalMillis(long minIntervalMillis) {
+            this.minIntervalMillis = minIntervalMillis;
+            return this;
+        }
+        
+        /** Longest interval between polls, backoff after failures included. */
+        public Builder maxIntervalMillis(long maxIntervalMillis) {
+            this.maxIntervalMillis = maxIntervalMillis;
+            return this;
+        }
+        
+        /** Interval while the customer is in 3-D Secure authentication. */
+        public Builder activeIntervalMillis(long activeIntervalMillis) {
+            this.activeIntervalMillis = activeIntervalMillis;
+            return this;
+        }
+        
+        /** Poll interval as a fraction of the order's age, e.g. 0.1 polls a ten-minute-old order every minute. */
+        public Builder ageFactor(double ageFactor) {
+            this.ageFactor = ageFactor;
+            return this;
+        }
+        
+        /** How long an order is watched before giving up; match the gateway's payment session timeout. */
+        public Builder maxAgeMillis(long maxAgeMillis) {
+            this.maxAgeMillis = maxAgeMillis;
+            return this;
+        }
+        
+        /** Status calls in flight at once, however many polls come due together. */
+        public Builder maxConcurrentPolls(int maxConcurrentPolls) {
+            this.maxConcurrentPolls = maxConcurrentPolls;
+            return this;
+        }
+        
+        /** Most orders watched at once; further watches are refused. */
+        public Builder maxWatchedOrders(int maxWatchedOrders) {
+            this.maxWatchedOrders = maxWatchedOrders;
+            return this;
+        }
+        
+        /** Timer resolution; polls are sent up to one tick late. */
+        public Builder tickMillis(long tickMillis) {
+            this.tickMillis = tickMillis;
+            return this;
+        }
+        
+        /** Buckets in the timer wheel; rounded up to a power of two. */
+        public Builder wheelSize(int wheelSize) {
+            this.wheelSize = wheelSize;
+            return this;
+        }
+        
+        public OrderWatchConfig build() {
+            if (minIntervalMillis < 1 || maxIntervalMillis < minIntervalMillis || activeIntervalMillis < 1) {
+                throw new IllegalArgumentException("Poll intervals must satisfy 1 <= min <= max and active >= 1");
+            }
+            if (ageFactor < 0 || maxAgeMillis < 1) {
+                throw new IllegalArgumentException("Age factor must not be negative and max age must be positive");
+            }
+            if (maxConcurrentPolls < 1 || maxWatchedOrders < 1) {
+                throw new IllegalArgumentException("Concurrent polls and watched orders must be at least 1");
+            }
+            if (tickMillis < 1 || wheelSize < 1) {
+                throw new IllegalArgumentException("Tick and wheel size must be positive");
+            }
+            return new OrderWatchConfig(this);
+        }
+    }
+}
\ No newline at end of file
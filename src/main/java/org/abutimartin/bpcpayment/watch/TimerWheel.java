@@ -0,0 +1,142 @@
+package org.abutimartin.bpcpayment.watch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel: one thread, a ring of buckets advanced every tick, and entries hashed into
+ * the bucket of their deadline with a count of full turns still to wait. Scheduling and
+ * cancelling are O(1) whatever the number of timers, which a priority queue cannot offer, at the
+ * price of tick granularity.
+ * 
+ * <p>Instead of running a task per timer, each tick hands everything that came due to one
+ * consumer, so the caller can act on them as a batch. The consumer runs on the wheel thread and
+ * must not block.
+ */
+final class TimerWheel<T> implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+    
+    private final long tickNanos;
+    private final int mask;
+    private final List<Entry<T>>[] buckets;
+    // schedule() may be called from any thread; only the wheel thread touches the buckets
+    private final Queue<Entry<T>> scheduled = new ConcurrentLinkedQueue<>();
+    private final Consumer<List<T>> onDue;
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean closed;
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(long tickMillis, int wheelSize, String threadName, Consumer<List<T>> onDue) {
+        if (tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = Math.max(1, size) - 1;
+        this.buckets = new List[mask + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.onDue = onDue;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+    
+    /**
+     * Schedules {@code value} to be handed to the consumer on the first tick at or after the delay.
+     */
+    Entry<T> schedule(T value, long delay, TimeUnit unit) {
+        Entry<T> entry = new Entry<>(value, System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay)));
+        scheduled.add(entry);
+        return entry;
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+    }
+    
+    private void run() {
+        long tick = 0;
+        while (!closed) {
+            long sleepNanos = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                if (System.nanoTime() - startNanos < (tick + 1) * tickNanos) {
+                    continue;
+                }
+            }
+            tick++;
+            transferScheduled(tick);
+            List<T> due = expire(buckets[(int) (tick & mask)]);
+            if (!due.isEmpty()) {
+                try {
+                    onDue.accept(due);
+                } catch (RuntimeException e) {
+                    logger.error("Timer wheel consumer failed for {} due entries", due.size(), e);
+                }
+            }
+        }
+    }
+    
+    private void transferScheduled(long tick) {
+        for (Entry<T> entry; (entry = scheduled.poll()) != null; ) {
+            if (entry.cancelled) {
+                continue;
+            }
+            // an entry whose deadline already passed goes in the current bucket
+            long dueTick = Math.max(tick, (entry.deadlineNanos + tickNanos - 1) / tickNanos);
+            entry.remainingRounds = (dueTick - tick) / buckets.length;
+            buckets[(int) (dueTick & mask)].add(entry);
+        }
+    }
+    
+    private List<T> expire(List<Entry<T>> bucket) {
+        List<T> due = new ArrayList<>();
+        int kept = 0;
+        for (Entry<T> entry : bucket) {
+            if (entry.cancelled) {
+                continue;
+            }
+            if (entry.remainingRounds > 0) {
+                entry.remainingRounds--;
+                bucket.set(kept++, entry);
+            } else {
+                due.add(entry.value);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+        return due;
+    }
+    
+    static final class Entry<T> {
+        final T value;
+        final long deadlineNanos;
+        long remainingRounds;
+        volatile boolean cancelled;
+        
+        Entry(T value, long deadlineNanos) {
+            this.value = value;
+            this.deadlineNanos = deadlineNanos;
+        }
+        
+        /**
+         * Keeps the entry from coming due; it is dropped when the wheel next reaches it.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
\ No newline at end of file
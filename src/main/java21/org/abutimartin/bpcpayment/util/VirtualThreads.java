@@ -0,0 +1,27 @@
+package org.abutimartin.bpcpayment.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Java 21 version of the virtual thread bridge, picked up from {@code META-INF/versions/21}.
+ */
+public final class VirtualThreads {
+    
+    private VirtualThreads() {
+    }
+    
+    /**
+     * Returns whether this runtime can start virtual threads.
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+    
+    /**
+     * Returns an executor that starts one virtual thread per task.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.exception.ConcurrencyLimitExceededException;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.resilience.AdaptiveConcurrencyLimiter;
+import org.abutimartin.bpcpayment.resilience.AdaptiveLimiterConfig;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class AdaptiveLimiterTest {
+    
+    private static final String REGISTER = "/rest/register.do";
+    private static final long MILLIS = 1_000_000L;
+    
+    private StubGatewayServer server;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    @DisplayName("Calls above the limit should be shed immediately")
+    void testExcessLoadIsShed() throws Exception {
+        server.stub(REGISTER, 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}", 300);
+        BomaPayClient client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .adaptiveLimiter(AdaptiveLimiterConfig.builder().minLimit(2).initialLimit(2).maxLimit(2).build())
+                .build());
+        
+        List<CompletableFuture<OrderRegistrationResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(client.orders().registerAsync(100L, "ORDER-" + i, "https://return"));
+        }
+        
+        int succeeded = 0;
+        int shed = 0;
+        for (CompletableFuture<OrderRegistrationResponse> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(ConcurrencyLimitExceededException.class, e.getCause());
+                shed++;
+            }
+        }
+        assertEquals(2, succeeded);
+        assertEquals(3, shed);
+        assertEquals(2, server.hits(REGISTER));
+    }
+    
+    @Test
+    @DisplayName("Limit should grow under stable latency and shrink on drops and latency spikes")
+    void testLimitAdapts() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveLimiterConfig.builder()
+                .initialLimit(10).minLimit(2).maxLimit(100).smoothing(0.5).build());
+        
+        for (int round = 0; round < 10; round++) {
+            runRound(limiter, 10 * MILLIS, false);
+        }
+        int grown = limiter.currentLimit(REGISTER);
+        assertTrue(grown > 10, "Limit should grow, was " + grown);
+        
+        for (int round = 0; round < 5; round++) {
+            runRound(limiter, 100 * MILLIS, false);
+        }
+        int slowed = limiter.currentLimit(REGISTER);
+        assertTrue(slowed < grown, "Limit should shrink on latency, was " + slowed);
+        
+        runRound(limiter, 10 * MILLIS, true);
+        assertTrue(limiter.currentLimit(REGISTER) < slowed);
+    }
+    
+    private static void runRound(AdaptiveConcurrencyLimiter limiter, long rttNanos, boolean dropped) {
+        List<AdaptiveConcurrencyLimiter.Limit> slots = new ArrayList<>();
+        int limit = limiter.currentLimit(REGISTER);
+        for (int i = 0; i < limit; i++) {
+            AdaptiveConcurrencyLimiter.Limit slot = limiter.tryAcquire(REGISTER);
+            assertNotNull(slot);
+            slots.add(slot);
+        }
+        assertNull(limiter.tryAcquire(REGISTER));
+        for (AdaptiveConcurrencyLimiter.Limit slot : slots) {
+            slot.release(rttNanos, dropped);
+        }
+    }
+}
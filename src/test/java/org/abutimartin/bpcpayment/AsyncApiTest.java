@@ -0,0 +1,90 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exercises the CompletableFuture API against a local stub gateway.
+ */
+@Tag("integration")
+public class AsyncApiTest {
+    
+    private StubGatewayServer server;
+    private ExecutorService executor;
+    private BomaPayClient client;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        executor = Executors.newFixedThreadPool(4);
+        client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .asyncExecutor(executor)
+                .build());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+        executor.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("Async register should complete with the decoded response")
+    void testRegisterAsync() throws Exception {
+        server.stub("/rest/register.do", 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\",\"formUrl\":\"https://form\"}");
+        
+        OrderRegistrationResponse response = client.orders()
+                .registerAsync(10000L, "ORDER-1", "https://return")
+                .get(5, TimeUnit.SECONDS);
+        
+        assertTrue(response.isSuccess());
+        assertEquals("ORD-1", response.getOrderId());
+        assertEquals("secret", server.lastForm("/rest/register.do").get("password"));
+    }
+    
+    @Test
+    @DisplayName("Many concurrent async calls should be driven by a small executor")
+    void testManyConcurrentCalls() throws Exception {
+        server.stub("/rest/register.do", 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}", 5);
+        
+        List<CompletableFuture<OrderRegistrationResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(client.orders().registerAsync(100L, "ORDER-" + i, "https://return"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        
+        assertEquals(200, server.hits("/rest/register.do"));
+    }
+    
+    @Test
+    @DisplayName("HTTP errors should fail the future with BomaPayException")
+    void testHttpErrorFailsFuture() {
+        server.stub("/rest/register.do", 500, "boom");
+        
+        CompletableFuture<OrderRegistrationResponse> future = client.orders()
+                .registerAsync(10000L, "ORDER-2", "https://return");
+        
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(BomaPayException.class, e.getCause());
+    }
+}
@@ -0,0 +1,172 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.cache.BindingCacheConfig;
+import org.abutimartin.bpcpayment.cache.CacheStats;
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.model.response.BindingsResponse;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class BindingCacheTest {
+    
+    private static final String BINDINGS = "{\"errorCode\":\"0\",\"bindings\":[{\"bindingId\":\"B-1\","
+            + "\"maskedPan\":\"411111**1111\",\"expiryDate\":\"203012\"}]}";
+    
+    private StubGatewayServer server;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        server.stub(GatewayEndpoints.GET_BINDINGS, 200, BINDINGS);
+        server.stub(GatewayEndpoints.GET_BINDINGS_BY_CARD_OR_ID, 200, BINDINGS);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    private BomaPayClient client(BindingCacheConfig cacheConfig) {
+        return new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .bindingCache(cacheConfig)
+                .build());
+    }
+    
+    @Test
+    @DisplayName("Repeated lookups for a client should be served from the cache")
+    void testRepeatedLookupIsCached() throws Exception {
+        BomaPayClient client = client(BindingCacheConfig.defaults());
+        
+        BindingsResponse first = client.bindings().getBindings("CLIENT-1");
+        BindingsResponse second = client.bindings().getBindings("CLIENT-1");
+        BindingsResponse third = client.bindings().getBindingsAsync("CLIENT-1").get();
+        
+        assertSame(first, second);
+        assertSame(first, third);
+        assertEquals(1, server.hits(GatewayEndpoints.GET_BINDINGS));
+        CacheStats stats = client.bindingCache().stats();
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getSize());
+    }
+    
+    @Test
+    @DisplayName("Binding changes should invalidate the client list and card lookups that list the binding")
+    void testWritesInvalidateAffectedEntries() throws Exception {
+        server.stub(GatewayEndpoints.UNBIND_CARD, 200, "{\"errorCode\":\"0\"}");
+        server.stub(GatewayEndpoints.BIND_CARD, 200, "{\"errorCode\":\"0\"}");
+        BomaPayClient client = client(BindingCacheConfig.defaults());
+        client.bindings().getBindings("CLIENT-1");
+        client.bindings().getBindingsByCardOrId("4111111111111111");
+        server.stub(GatewayEndpoints.GET_BINDINGS, 200, "{\"errorCode\":\"0\",\"bindings\":[]}");
+        
+        assertTrue(client.bindings().unBindCard("B-1").isSuccess());
+        
+        assertEquals(2, client.bindingCache().stats().getInvalidations());
+        assertTrue(client.bindings().getBindings("CLIENT-1").getBindings().isEmpty());
+        client.bindings().getBindingsByCardOrId("4111111111111111");
+        assertEquals(2, server.hits(GatewayEndpoints.GET_BINDINGS_BY_CARD_OR_ID));
+        
+        // the refreshed list no longer shows B-1, but re-binding it must still drop the client's list
+        assertTrue(client.bindings().bindCard("B-1").isSuccess());
+        client.bindings().getBindings("CLIENT-1");
+        assertEquals(3, server.hits(GatewayEndpoints.GET_BINDINGS));
+    }
+    
+    @Test
+    @DisplayName("A lookup that joins a shared call started before an invalidation should not cache its result")
+    void testJoinedLookupAfterInvalidationIsNotCached() throws Exception {
+        server.stub(GatewayEndpoints.GET_BINDINGS, 200, BINDINGS, 300);
+        server.stub(GatewayEndpoints.BIND_CARD, 200, "{\"errorCode\":\"0\"}");
+        BomaPayClient client = client(BindingCacheConfig.defaults());
+        
+        CompletableFuture<BindingsResponse> leader = client.bindings().getBindingsAsync("CLIENT-1");
+        Thread.sleep(100);
+        assertTrue(client.bindings().bindCard("B-1").isSuccess());
+        CompletableFuture<BindingsResponse> joined = client.bindings().getBindingsAsync("CLIENT-1");
+        leader.get(5, TimeUnit.SECONDS);
+        joined.get(5, TimeUnit.SECONDS);
+        assertEquals(1, client.coalescedCalls());
+        
+        // fetched before the bind, so it must not be served from the cache
+        client.bindings().getBindings("CLIENT-1");
+        assertEquals(2, server.hits(GatewayEndpoints.GET_BINDINGS));
+    }
+    
+    @Test
+    @DisplayName("Entries should expire after the TTL")
+    void testEntriesExpire() throws Exception {
+        BomaPayClient client = client(BindingCacheConfig.builder().ttlMillis(100).build());
+        
+        client.bindings().getBindings("CLIENT-1");
+        Thread.sleep(150);
+        client.bindings().getBindings("CLIENT-1");
+        
+        assertEquals(2, server.hits(GatewayEndpoints.GET_BINDINGS));
+        assertEquals(1, client.bindingCache().stats().getExpirations());
+    }
+    
+    @Test
+    @DisplayName("A full cache should keep frequently used entries over one-off lookups")
+    void testSizeBoundKeepsPopularEntries() throws Exception {
+        BomaPayClient client = client(BindingCacheConfig.builder().maximumSize(2).build());
+        for (int i = 0; i < 5; i++) {
+            client.bindings().getBindings("REGULAR");
+        }
+        
+        for (int i = 0; i < 20; i++) {
+            client.bindings().getBindings("ONE-OFF-" + i);
+        }
+        client.bindings().getBindings("REGULAR");
+        
+        CacheStats stats = client.bindingCache().stats();
+        assertTrue(stats.getSize() <= 2);
+        assertTrue(stats.getRejections() > 0);
+        assertEquals(21, server.hits(GatewayEndpoints.GET_BINDINGS));
+    }
+    
+    @Test
+    @DisplayName("Only entries actually dropped for a newcomer should count as evictions")
+    void testEvictionsAndRejectionsAreCountedApart() throws Exception {
+        BomaPayClient client = client(BindingCacheConfig.builder().maximumSize(1).build());
+        
+        client.bindings().getBindings("FIRST");
+        client.bindings().getBindings("SECOND");
+        CacheStats stats = client.bindingCache().stats();
+        assertEquals(0, stats.getEvictions());
+        assertEquals(1, stats.getRejections(), "seen as often as the entry it would replace");
+        
+        client.bindings().getBindings("SECOND");
+        stats = client.bindingCache().stats();
+        assertEquals(1, stats.getEvictions());
+        assertEquals(1, stats.getRejections());
+        assertEquals(1, stats.getSize());
+    }
+    
+    @Test
+    @DisplayName("Failed lookups should not be cached")
+    void testErrorsAreNotCached() throws Exception {
+        server.stub(GatewayEndpoints.GET_BINDINGS, 200, "{\"errorCode\":\"5\",\"errorMessage\":\"Access denied\"}");
+        BomaPayClient client = client(BindingCacheConfig.defaults());
+        
+        assertFalse(client.bindings().getBindings("CLIENT-1").isSuccess());
+        assertFalse(client.bindings().getBindings("CLIENT-1").isSuccess());
+        
+        assertEquals(2, server.hits(GatewayEndpoints.GET_BINDINGS));
+        assertEquals(0, client.bindingCache().stats().getSize());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.model.request.BulkItem;
+import org.abutimartin.bpcpayment.model.response.BulkResult;
+import org.abutimartin.bpcpayment.model.response.BulkSummary;
+import org.abutimartin.bpcpayment.service.BulkResults;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class BulkTest {
+    
+    private static final String OK = "{\"errorCode\":\"0\"}";
+    
+    private StubGatewayServer server;
+    private BomaPayClient client;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        server.defaultStub(200, OK, 10);
+        client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1)
+                .maxRequestsPerHost(16)
+                .bulkParallelism(4)
+                .build());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    /** Generates items on demand and counts how many were taken. */
+    private static Iterable<BulkItem> generated(int count, AtomicInteger taken) {
+        return () -> new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return taken.get() < count;
+            }
+            
+            @Override
+            public BulkItem next() {
+                return BulkItem.of("ORD-" + taken.incrementAndGet(), 100L);
+            }
+        };
+    }
+    
+    @Test
+    @DisplayName("Every item should be reported once on the calling thread, with a summary of outcomes")
+    void testRefundsWithCallback() throws Exception {
+        server.enqueue(GatewayEndpoints.REFUND, 200, "{\"errorCode\":\"7\",\"errorMessage\":\"Refund amount exceeds deposit\"}");
+        server.enqueue(GatewayEndpoints.REFUND, 500, "{}");
+        Thread caller = Thread.currentThread();
+        Set<String> reported = new HashSet<>();
+        
+        BulkSummary summary = client.bulk().refunds(generated(40, new AtomicInteger()), result -> {
+            assertSame(caller, Thread.currentThread());
+            assertTrue(reported.add(result.getItem().getOrderId()), "reported twice: " + result);
+        });
+        
+        assertEquals(40, reported.size());
+        assertEquals(40, server.hits(GatewayEndpoints.REFUND));
+        assertEquals(40, summary.getTotal());
+        assertEquals(38, summary.getSucceeded());
+        assertEquals(1, summary.getDeclined());
+        assertEquals(1, summary.getFailed());
+    }
+    
+    @Test
+    @DisplayName("A huge input should only be read as fast as results are consumed")
+    @SuppressWarnings("try") // closed early on purpose, to stop reading the input mid-iteration
+    void testBoundedOutstandingItems() throws Exception {
+        AtomicInteger taken = new AtomicInteger();
+        List<BulkResult> results = new ArrayList<>();
+        
+        try (BulkResults deposits = client.bulk().withParallelism(3).deposits(generated(Integer.MAX_VALUE, taken))) {
+            while (results.size() < 25 && deposits.hasNext()) {
+                results.add(deposits.next());
+                assertTrue(deposits.outstanding() <= 3, "outstanding " + deposits.outstanding());
+                assertTrue(taken.get() <= results.size() + 3);
+            }
+            deposits.close();
+            while (deposits.hasNext()) {
+                results.add(deposits.next());
+            }
+        }
+        
+        assertTrue(results.size() <= 28, String.valueOf(results.size()));
+        assertEquals(taken.get(), results.size(), "every item taken is reported");
+        assertEquals(taken.get(), server.hits(GatewayEndpoints.DEPOSIT));
+        assertTrue(results.stream().allMatch(BulkResult::isSuccess));
+    }
+    
+    @Test
+    @DisplayName("A failing callback should stop the operation without leaving calls running")
+    void testCallbackFailureStops() throws Exception {
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger seen = new AtomicInteger();
+        
+        IllegalStateException e = assertThrows(IllegalStateException.class, () ->
+                client.bulk().reverses(generated(1000, taken), result -> {
+                    if (seen.incrementAndGet() == 5) {
+                        throw new IllegalStateException("ledger unavailable");
+                    }
+                }));
+        
+        assertEquals("ledger unavailable", e.getMessage());
+        assertTrue(taken.get() <= 5 + 4, String.valueOf(taken.get()));
+        assertEquals(taken.get(), server.hits(GatewayEndpoints.REVERSE), "no call outlives the operation");
+    }
+}
\ No newline at end of file
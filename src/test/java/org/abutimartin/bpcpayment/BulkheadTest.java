@@ -0,0 +1,98 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.exception.BulkheadFullException;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.model.response.PaymentResponse;
+import org.abutimartin.bpcpayment.resilience.BulkheadConfig;
+import org.abutimartin.bpcpayment.resilience.BulkheadStats;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class BulkheadTest {
+    
+    private StubGatewayServer server;
+    private BomaPayClient client;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        server.stub(GatewayEndpoints.REGISTER, 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}", 300);
+        server.stub(GatewayEndpoints.INSTANT_PAYMENT, 200, "{\"errorCode\":\"0\",\"orderId\":\"PAY-1\"}");
+        client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .maxRequestsPerHost(10)
+                .bulkheads(BulkheadConfig.builder()
+                        .bulkhead("back-office", 1, 2, GatewayEndpoints.ORDERS)
+                        .bulkhead("payments", 4, 10, GatewayEndpoints.PAYMENTS)
+                        .maxWaitMillis(50)
+                        .build())
+                .build());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    @DisplayName("A saturated bulkhead should not block calls isolated in another bulkhead")
+    void testPaymentsKeepReservedCapacity() throws Exception {
+        CompletableFuture<OrderRegistrationResponse> slow = client.orders().registerAsync(100L, "ORDER-1", "https://return");
+        Thread.sleep(50);
+        
+        assertThrows(BulkheadFullException.class, () -> client.orders().register(100L, "ORDER-2", "https://return"));
+        PaymentResponse payment = client.payments().instantPayment(100L, "ORDER-3", "desc", "4111111111111111",
+                "123", "203012", "TEST", "https://ok", "https://fail");
+        
+        assertEquals("PAY-1", payment.getOrderId());
+        assertEquals("ORD-1", slow.get(5, TimeUnit.SECONDS).getOrderId());
+    }
+    
+    @Test
+    @DisplayName("Async calls should queue for a slot and be rejected once the queue is full")
+    void testAsyncQueueBound() throws Exception {
+        List<CompletableFuture<OrderRegistrationResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(client.orders().registerAsync(100L, "ORDER-" + i, "https://return"));
+        }
+        
+        BulkheadStats saturated = client.bulkheads().stats().get("back-office");
+        assertEquals(1, saturated.getInFlight());
+        assertEquals(2, saturated.getQueued());
+        assertEquals(1.0, saturated.getSaturation());
+        
+        int rejected = 0;
+        for (CompletableFuture<OrderRegistrationResponse> future : futures) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertInstanceOf(BulkheadFullException.class, e.getCause());
+                rejected++;
+            }
+        }
+        assertEquals(1, rejected);
+        assertEquals(3, server.hits(GatewayEndpoints.REGISTER));
+        
+        BulkheadStats drained = client.bulkheads().stats().get("back-office");
+        assertEquals(0, drained.getInFlight());
+        assertEquals(0, drained.getQueued());
+        assertEquals(1, drained.getRejected());
+    }
+}
@@ -0,0 +1,115 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.metrics.CallPhase;
+import org.abutimartin.bpcpayment.metrics.CallTimings;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.metrics.EndpointSnapshot;
+import org.abutimartin.bpcpayment.metrics.GatewayMetrics;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class CallTimingsTest {
+    
+    private static final String REGISTERED = "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}";
+    private static final long GATEWAY_DELAY_MILLIS = 150;
+    
+    private StubGatewayServer server;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED, GATEWAY_DELAY_MILLIS);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    private BomaPayConfig.Builder configBuilder() {
+        return BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1);
+    }
+    
+    @Test
+    @DisplayName("Attached timings should tell gateway time apart from connection setup")
+    void testAttachedTimings() throws Exception {
+        BomaPayClient client = new BomaPayClient(configBuilder().attachCallTimings(true).build());
+        
+        CallTimings first = client.orders().register(100L, "ORDER-1", "https://return").getCallTimings();
+        assertNotNull(first);
+        assertFalse(first.isConnectionReused());
+        assertEquals(1, first.getAttempts());
+        assertTrue(first.getNanos(CallPhase.CONNECT) >= 0);
+        assertEquals(-1, first.getNanos(CallPhase.TLS), "plain HTTP has no handshake");
+        assertTrue(first.getMillis(CallPhase.TIME_TO_FIRST_BYTE) >= GATEWAY_DELAY_MILLIS - 5);
+        assertTrue(first.getNanos(CallPhase.TOTAL) >= first.getNanos(CallPhase.TIME_TO_FIRST_BYTE));
+        assertTrue(first.getNanos(CallPhase.RESPONSE) >= 0);
+        
+        CallTimings second = client.orders().register(100L, "ORDER-2", "https://return").getCallTimings();
+        assertTrue(second.isConnectionReused());
+        assertEquals(-1, second.getNanos(CallPhase.CONNECT));
+        assertFalse(second.toNanosMap().containsKey(CallPhase.DNS));
+    }
+    
+    @Test
+    @DisplayName("Async responses should carry complete timings when their future completes")
+    void testAsyncTimingsComplete() throws Exception {
+        BomaPayClient client = new BomaPayClient(configBuilder().attachCallTimings(true).build());
+        
+        OrderRegistrationResponse response = client.orders()
+                .registerAsync(100L, "ORDER-1", "https://return")
+                .get(5, TimeUnit.SECONDS);
+        
+        assertTrue(response.getCallTimings().getNanos(CallPhase.TOTAL) > 0);
+    }
+    
+    @Test
+    @DisplayName("Phase timings should be aggregated into per-endpoint histograms")
+    void testPhaseHistograms() throws Exception {
+        GatewayMetrics metrics = new GatewayMetrics();
+        BomaPayClient client = new BomaPayClient(configBuilder()
+                .instrumentation(metrics)
+                .recordCallPhases(true)
+                .build());
+        
+        for (int i = 0; i < 3; i++) {
+            OrderRegistrationResponse response = client.orders().register(100L, "ORDER-" + i, "https://return");
+            assertNull(response.getCallTimings(), "timings are only attached when asked for");
+        }
+        
+        EndpointSnapshot snapshot = metrics.snapshot(GatewayEndpoints.REGISTER);
+        assertEquals(1, snapshot.getNewConnections());
+        assertEquals(2, snapshot.getReusedConnections());
+        assertEquals(1, snapshot.getPhases().get(CallPhase.CONNECT).getCount());
+        assertEquals(3, snapshot.getPhases().get(CallPhase.TIME_TO_FIRST_BYTE).getCount());
+        assertTrue(snapshot.getPhases().get(CallPhase.TIME_TO_FIRST_BYTE).valueAtPercentile(50)
+                >= TimeUnit.MILLISECONDS.toMicros(GATEWAY_DELAY_MILLIS - 5));
+        assertEquals(3, snapshot.getPhases().get(CallPhase.TOTAL).getCount());
+    }
+    
+    @Test
+    @DisplayName("Phases should not be recorded unless enabled")
+    void testDisabledByDefault() throws Exception {
+        GatewayMetrics metrics = new GatewayMetrics();
+        BomaPayClient client = new BomaPayClient(configBuilder().instrumentation(metrics).build());
+        
+        assertNull(client.orders().register(100L, "ORDER-1", "https://return").getCallTimings());
+        assertTrue(metrics.snapshot(GatewayEndpoints.REGISTER).getPhases().isEmpty());
+    }
+}
\ No newline at end of file
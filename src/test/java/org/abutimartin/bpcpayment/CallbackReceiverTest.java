@@ -0,0 +1,211 @@
+package org.abutimartin.bpcpayment;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.abutimartin.bpcpayment.callback.CallbackConfig;
+import org.abutimartin.bpcpayment.callback.CallbackEvent;
+import org.abutimartin.bpcpayment.callback.CallbackHandler;
+import org.abutimartin.bpcpayment.callback.CallbackReceiver;
+import org.abutimartin.bpcpayment.callback.CallbackStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class CallbackReceiverTest {
+    
+    private static final String SECRET = "merchant-secret";
+    
+    private final OkHttpClient http = new OkHttpClient();
+    private CallbackReceiver receiver;
+    
+    @AfterEach
+    void tearDown() {
+        receiver.close();
+    }
+    
+    private CallbackReceiver start(CallbackConfig.Builder config, CallbackHandler handler) throws Exception {
+        receiver = new CallbackReceiver(config.bindAddress("127.0.0.1").secretKey(SECRET).build(), handler).start();
+        return receiver;
+    }
+    
+    private int send(String query) throws Exception {
+        Request request = new Request.Builder()
+                .url("http://127.0.0.1:" + receiver.getPort() + "/bomapay/callback?" + query)
+                .build();
+        try (Response response = http.newCall(request).execute()) {
+            return response.code();
+        }
+    }
+    
+    private static String signed(String orderId, String operation) throws Exception {
+        Map<String, String> parameters = new TreeMap<>();
+        parameters.put("mdOrder", orderId);
+        parameters.put("orderNumber", "N-" + orderId);
+        parameters.put("operation", operation);
+        parameters.put("status", "1");
+        StringBuilder data = new StringBuilder();
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            data.append(parameter.getKey()).append(';').append(parameter.getValue()).append(';');
+            query.append(parameter.getKey()).append('=').append(parameter.getValue()).append('&');
+        }
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        StringBuilder checksum = new StringBuilder();
+        for (byte b : mac.doFinal(data.toString().getBytes(StandardCharsets.UTF_8))) {
+            checksum.append(String.format("%02X", b));
+        }
+        return query.append("checksum=").append(checksum).toString();
+    }
+    
+    @Test
+    @DisplayName("A verified callback should be acknowledged before its slow handler runs")
+    void testAcknowledgeThenHandle() throws Exception {
+        BlockingQueue<CallbackEvent> events = new LinkedBlockingQueue<>();
+        start(CallbackConfig.builder(), event -> {
+            Thread.sleep(500);
+            events.add(event);
+        });
+        
+        long start = System.nanoTime();
+        assertEquals(200, send(signed("ORD-1", "deposited")));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 400, "acknowledged without waiting");
+        
+        CallbackEvent event = events.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals("ORD-1", event.getOrderId());
+        assertEquals("N-ORD-1", event.getOrderNumber());
+        assertEquals("deposited", event.getOperation());
+        assertTrue(event.isSuccess());
+    }
+    
+    @Test
+    @DisplayName("Callbacks with a wrong or missing checksum should be refused")
+    void testChecksumVerification() throws Exception {
+        AtomicInteger handled = new AtomicInteger();
+        start(CallbackConfig.builder(), event -> handled.incrementAndGet());
+        
+        assertEquals(403, send(signed("ORD-1", "deposited").replace("status=1", "status=0")));
+        assertEquals(403, send("mdOrder=ORD-1&operation=deposited&status=1"));
+        assertEquals(200, send(signed("ORD-1", "deposited").toLowerCase().replace("mdorder=ord-1", "mdOrder=ORD-1")
+                .replace("ordernumber=n-ord-1", "orderNumber=N-ORD-1")), "hex case does not matter");
+        
+        Thread.sleep(200);
+        assertEquals(1, handled.get());
+        assertEquals(2, receiver.stats().getRejected());
+    }
+    
+    @Test
+    @DisplayName("Repeats of an orderId and operation should be acknowledged but handled once")
+    void testDeduplication() throws Exception {
+        List<String> seen = new ArrayList<>();
+        start(CallbackConfig.builder().workers(1), event -> seen.add(event.getOperation()));
+        
+        assertEquals(200, send(signed("ORD-1", "approved")));
+        assertEquals(200, send(signed("ORD-1", "approved")));
+        assertEquals(200, send(signed("ORD-1", "deposited")));
+        
+        Thread.sleep(300);
+        assertEquals(List.of("approved", "deposited"), seen);
+        assertEquals(1, receiver.stats().getDuplicates());
+    }
+    
+    @Test
+    @DisplayName("A callback whose handler failed should be handled again when redelivered")
+    void testRedeliveryAfterHandlerFailure() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        start(CallbackConfig.builder(), event -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("database down");
+            }
+            done.countDown();
+        });
+        
+        assertEquals(200, send(signed("ORD-1", "refunded")));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (receiver.stats().getFailed() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(200, send(signed("ORD-1", "refunded")));
+        
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, attempts.get());
+    }
+    
+    @Test
+    @DisplayName("A full queue should turn callbacks away with 503 instead of growing")
+    void testFullQueueRejects() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        start(CallbackConfig.builder().workers(1).queueCapacity(2), event -> release.await());
+        
+        assertEquals(200, send(signed("ORD-0", "deposited")));
+        Thread.sleep(200);
+        assertEquals(200, send(signed("ORD-1", "deposited")));
+        assertEquals(200, send(signed("ORD-2", "deposited")));
+        assertEquals(503, send(signed("ORD-3", "deposited")));
+        release.countDown();
+        
+        Thread.sleep(200);
+        assertEquals(200, send(signed("ORD-3", "deposited")), "accepted once there is room");
+        CallbackStats stats = receiver.stats();
+        assertEquals(1, stats.getDropped());
+        assertEquals(0, stats.getDuplicates());
+    }
+    
+    @Test
+    @DisplayName("Thousands of concurrent callbacks should all be handled exactly once")
+    void testSustainedLoad() throws Exception {
+        AtomicInteger handled = new AtomicInteger();
+        start(CallbackConfig.builder(), event -> handled.incrementAndGet());
+        int senders = 8;
+        int perSender = 500;
+        
+        ExecutorService pool = Executors.newFixedThreadPool(senders);
+        List<Future<?>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int s = 0; s < senders; s++) {
+            int sender = s;
+            results.add(pool.submit(() -> {
+                for (int i = 0; i < perSender; i++) {
+                    assertEquals(200, send(signed("ORD-" + sender + "-" + i, "deposited")));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (handled.get() < senders * perSender && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        
+        assertEquals(senders * perSender, handled.get());
+        assertEquals(senders * perSender, receiver.stats().getReceived());
+        System.out.println("Handled " + handled.get() + " callbacks in " + millis + " ms");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.exception.CircuitBreakerOpenException;
+import org.abutimartin.bpcpayment.exception.ConcurrencyLimitExceededException;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.resilience.AdaptiveLimiterConfig;
+import org.abutimartin.bpcpayment.resilience.CircuitBreaker;
+import org.abutimartin.bpcpayment.resilience.CircuitBreakerConfig;
+import org.abutimartin.bpcpayment.resilience.RetryPolicy;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class CircuitBreakerTest {
+    
+    private static final String REGISTER = "/rest/register.do";
+    
+    private StubGatewayServer server;
+    private BomaPayClient client;
+    private final List<CircuitBreaker.State> transitions = new CopyOnWriteArrayList<>();
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .retryPolicy(RetryPolicy.disabled())
+                .circuitBreaker(CircuitBreakerConfig.builder()
+                        .minimumCalls(4)
+                        .failureRateThreshold(50)
+                        .openDurationMillis(200)
+                        .halfOpenCalls(2)
+                        .build())
+                .build());
+        client.circuitBreakers().addListener((endpoint, from, to) -> transitions.add(to));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    @DisplayName("Breaker should open on failures, fail fast, then recover through half-open")
+    void testOpenAndRecover() throws Exception {
+        server.stub(REGISTER, 500, "down");
+        for (int i = 0; i < 4; i++) {
+            BomaPayException e = assertThrows(BomaPayException.class, this::register);
+            assertFalse(e instanceof CircuitBreakerOpenException);
+        }
+        
+        assertThrows(CircuitBreakerOpenException.class, this::register);
+        assertEquals(4, server.hits(REGISTER));
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitBreakers().states().get(REGISTER));
+        
+        server.stub(REGISTER, 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}");
+        Thread.sleep(250);
+        register();
+        register();
+        
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitBreakers().states().get(REGISTER));
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED),
+                transitions);
+    }
+    
+    @Test
+    @DisplayName("Failed trial calls should re-open the breaker")
+    void testHalfOpenFailureReopens() throws Exception {
+        server.stub(REGISTER, 503, "down");
+        for (int i = 0; i < 4; i++) {
+            assertThrows(BomaPayException.class, this::register);
+        }
+        Thread.sleep(250);
+        assertThrows(BomaPayException.class, this::register);
+        assertThrows(BomaPayException.class, this::register);
+        
+        assertThrows(CircuitBreakerOpenException.class, this::register);
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitBreakers().states().get(REGISTER));
+    }
+    
+    @Test
+    @DisplayName("Trial calls shed by the concurrency limiter should not leave the breaker stuck half-open")
+    void testShedTrialReleasesPermit() throws Exception {
+        BomaPayClient limited = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .retryPolicy(RetryPolicy.disabled())
+                .circuitBreaker(CircuitBreakerConfig.builder()
+                        .minimumCalls(2)
+                        .failureRateThreshold(50)
+                        .openDurationMillis(200)
+                        .halfOpenCalls(2)
+                        .build())
+                .adaptiveLimiter(AdaptiveLimiterConfig.builder().minLimit(1).initialLimit(1).maxLimit(1).build())
+                .build());
+        server.stub(REGISTER, 500, "down");
+        for (int i = 0; i < 2; i++) {
+            assertThrows(BomaPayException.class, () -> limited.orders().register(100L, "ORDER-1", "https://return"));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, limited.circuitBreakers().states().get(REGISTER));
+        
+        server.stub(REGISTER, 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}", 300);
+        Thread.sleep(250);
+        // both take a half-open permit, the limiter lets only one through
+        CompletableFuture<OrderRegistrationResponse> first = limited.orders().registerAsync(100L, "ORDER-1", "https://return");
+        CompletableFuture<OrderRegistrationResponse> second = limited.orders().registerAsync(100L, "ORDER-2", "https://return");
+        int shed = 0;
+        for (CompletableFuture<OrderRegistrationResponse> future : List.of(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertInstanceOf(ConcurrencyLimitExceededException.class, e.getCause());
+                shed++;
+            }
+        }
+        assertEquals(1, shed);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, limited.circuitBreakers().states().get(REGISTER));
+        
+        limited.orders().register(100L, "ORDER-3", "https://return");
+        assertEquals(CircuitBreaker.State.CLOSED, limited.circuitBreakers().states().get(REGISTER));
+    }
+    
+    private void register() throws BomaPayException {
+        client.orders().register(100L, "ORDER-1", "https://return");
+    }
+}
\ No newline at end of file
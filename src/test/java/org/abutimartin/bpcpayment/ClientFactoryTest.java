@@ -0,0 +1,153 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.exception.BulkheadFullException;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.http.GatewayTransport;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.resilience.BulkheadStats;
+import org.abutimartin.bpcpayment.resilience.FailoverConfig;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class ClientFactoryTest {
+    
+    private static final String REGISTERED = "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}";
+    
+    private StubGatewayServer server;
+    private BomaPayClientFactory factory;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED);
+        factory = BomaPayClientFactory.builder()
+                .transport(GatewayTransport.builder()
+                        .baseUrl(server.baseUrl())
+                        .protocol(HttpProtocol.HTTP_1_1)
+                        .maxRequestsPerHost(10)
+                        .build())
+                .merchantQuota(1, 1)
+                .quotaMaxWaitMillis(50)
+                .build();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        factory.close();
+        server.close();
+    }
+    
+    private static BomaPayConfig merchant(String login) {
+        // no base URL: the transport's is used
+        return BomaPayConfig.builder()
+                .username(login + "-api")
+                .password("secret")
+                .merchantLogin(login)
+                .build();
+    }
+    
+    @Test
+    @DisplayName("Merchant clients should share one pool while sending their own credentials")
+    void testSharedPoolOwnCredentials() throws Exception {
+        BomaPayClient shopA = factory.client(merchant("shop-a"));
+        BomaPayClient shopB = factory.client(merchant("shop-b"));
+        
+        shopA.orders().register(100L, "ORDER-A", "https://return");
+        assertEquals("shop-a-api", server.lastForm(GatewayEndpoints.REGISTER).get("userName"));
+        shopB.orders().register(100L, "ORDER-B", "https://return");
+        assertEquals("shop-b-api", server.lastForm(GatewayEndpoints.REGISTER).get("userName"));
+        
+        assertEquals(1, factory.poolStats().getConnectionCount(), "the second merchant reuses the first one's connection");
+        assertEquals(factory.poolStats().getConnectionCount(), shopA.poolStats().getConnectionCount());
+    }
+    
+    @Test
+    @DisplayName("A merchant at its quota should be rejected without affecting other merchants")
+    void testQuotaIsolatesMerchants() throws Exception {
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED, 300);
+        BomaPayClient shopA = factory.client(merchant("shop-a"));
+        BomaPayClient shopB = factory.client(merchant("shop-b"));
+        
+        CompletableFuture<OrderRegistrationResponse> first = shopA.orders().registerAsync(100L, "A-1", "https://return");
+        CompletableFuture<OrderRegistrationResponse> queued = shopA.orders().registerAsync(100L, "A-2", "https://return");
+        CompletableFuture<OrderRegistrationResponse> rejected = shopA.orders().registerAsync(100L, "A-3", "https://return");
+        
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(BulkheadFullException.class, e.getCause());
+        assertEquals("merchant:shop-a", ((BulkheadFullException) e.getCause()).getBulkhead());
+        BulkheadStats saturated = factory.quotaStats().get("merchant:shop-a");
+        assertEquals(1, saturated.getInFlight());
+        assertEquals(1, saturated.getQueued());
+        
+        assertEquals("ORD-1", shopB.orders().register(100L, "B-1", "https://return").getOrderId());
+        
+        first.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(0, factory.quotaStats().get("merchant:shop-a").getInFlight());
+        assertEquals(0, factory.quotaStats().get("merchant:shop-b").getInFlight());
+    }
+    
+    @Test
+    @DisplayName("Clients created for the same merchant should share its quota")
+    void testQuotaSharedPerMerchant() throws Exception {
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED, 300);
+        BomaPayClient first = factory.client(merchant("shop-a"));
+        BomaPayClient second = factory.client(merchant("shop-a"), 5, 5);
+        
+        CompletableFuture<OrderRegistrationResponse> inFlight = first.orders().registerAsync(100L, "A-1", "https://return");
+        Thread.sleep(50);
+        assertThrows(BulkheadFullException.class, () -> second.orders().register(100L, "A-2", "https://return"));
+        
+        inFlight.get(5, TimeUnit.SECONDS);
+        assertEquals(1, factory.quotaStats().size());
+    }
+    
+    @Test
+    @DisplayName("Merchant health checks should share one thread that stops when the factory closes")
+    void testHealthChecksShareOneThread() throws Exception {
+        long before = healthCheckThreads();
+        for (String login : new String[] {"shop-a", "shop-b", "shop-c"}) {
+            factory.client(BomaPayConfig.builder()
+                    .username(login + "-api")
+                    .password("secret")
+                    .merchantLogin(login)
+                    .failover(FailoverConfig.builder()
+                            .site(server.baseUrl(), 0, 1)
+                            .healthCheckIntervalMillis(20)
+                            .build())
+                    .build());
+        }
+        long deadline = System.currentTimeMillis() + 3000;
+        while (server.hits("") < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(server.hits("") >= 3, "the sites are probed");
+        assertTrue(healthCheckThreads() <= before + 1, "one checker thread for the transport");
+        
+        factory.close();
+        deadline = System.currentTimeMillis() + 3000;
+        while (healthCheckThreads() > before && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(healthCheckThreads() <= before, "the checker thread stops with the factory");
+    }
+    
+    private static long healthCheckThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("bomapay-health-check"))
+                .count();
+    }
+}
\ No newline at end of file
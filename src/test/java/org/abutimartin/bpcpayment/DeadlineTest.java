@@ -0,0 +1,179 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.EndpointTimeouts;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.exception.DeadlineExceededException;
+import org.abutimartin.bpcpayment.http.Deadline;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.resilience.RetryCondition;
+import org.abutimartin.bpcpayment.resilience.RetryPolicy;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class DeadlineTest {
+    
+    private static final String REGISTERED = "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}";
+    private static final String BINDINGS = "{\"errorCode\":\"0\",\"bindings\":[]}";
+    
+    private StubGatewayServer server;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    private BomaPayConfig.Builder configBuilder() {
+        return BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1)
+                .timeout(5000)
+                .retryPolicy(RetryPolicy.disabled());
+    }
+    
+    @Test
+    @DisplayName("Endpoint timeouts should apply only to the endpoints they are configured for")
+    void testEndpointReadTimeout() throws Exception {
+        server.stub(GatewayEndpoints.GET_BINDINGS, 200, BINDINGS, 1000);
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED, 500);
+        BomaPayClient client = new BomaPayClient(configBuilder()
+                .endpointTimeouts(EndpointTimeouts.builder().readMillis(200).build(), GatewayEndpoints.BINDINGS)
+                .build());
+        
+        long start = System.nanoTime();
+        BomaPayException e = assertThrows(BomaPayException.class, () -> client.bindings().getBindings("CLIENT-1"));
+        assertFalse(e instanceof DeadlineExceededException);
+        assertTrue(elapsedMillis(start) < 900, "read timeout should fire well before the stub answers");
+        
+        assertEquals("ORD-1", client.orders().register(100L, "ORDER-1", "https://return").getOrderId());
+    }
+    
+    @Test
+    @DisplayName("Endpoint call timeouts should bound the whole call")
+    void testEndpointCallTimeout() {
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED, 1000);
+        BomaPayClient client = new BomaPayClient(configBuilder()
+                .endpointTimeouts(EndpointTimeouts.builder().callMillis(200).build(), GatewayEndpoints.REGISTER)
+                .build());
+        
+        long start = System.nanoTime();
+        assertThrows(BomaPayException.class, () -> client.orders().register(100L, "ORDER-1", "https://return"));
+        assertTrue(elapsedMillis(start) < 900);
+    }
+    
+    @Test
+    @DisplayName("A bound deadline should cut a slow call short")
+    void testDeadlineCutsCallShort() {
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED, 2000);
+        BomaPayClient client = new BomaPayClient(configBuilder().build());
+        
+        long start = System.nanoTime();
+        Deadline.Scope scope = Deadline.after(Duration.ofMillis(300)).bind();
+        try (scope) {
+            DeadlineExceededException e = assertThrows(DeadlineExceededException.class,
+                    () -> client.orders().register(100L, "ORDER-1", "https://return"));
+            assertEquals(GatewayEndpoints.REGISTER, e.getEndpoint());
+        }
+        assertTrue(elapsedMillis(start) < 1500);
+        assertNull(Deadline.current());
+    }
+    
+    @Test
+    @DisplayName("An expired deadline should not send the request at all")
+    void testExpiredDeadlineSendsNothing() {
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED);
+        BomaPayClient client = new BomaPayClient(configBuilder().build());
+        
+        Deadline.Scope scope = Deadline.after(0, TimeUnit.MILLISECONDS).bind();
+        try (scope) {
+            assertThrows(DeadlineExceededException.class,
+                    () -> client.orders().register(100L, "ORDER-1", "https://return"));
+        }
+        assertEquals(0, server.hits(GatewayEndpoints.REGISTER));
+    }
+    
+    @Test
+    @DisplayName("Retries should stop once their backoff would run past the deadline")
+    void testNoRetryPastDeadline() {
+        server.stub(GatewayEndpoints.REGISTER, 503, "unavailable");
+        BomaPayClient client = new BomaPayClient(configBuilder()
+                .retryPolicy(RetryPolicy.builder()
+                        .maxAttempts(50)
+                        .baseDelayMillis(200)
+                        .maxDelayMillis(200)
+                        .minRetries(50)
+                        .endpoint(GatewayEndpoints.REGISTER, RetryCondition.SERVER_ERROR)
+                        .build())
+                .build());
+        client.warmUp();
+        
+        long start = System.nanoTime();
+        Deadline.Scope scope = Deadline.after(Duration.ofMillis(500)).bind();
+        try (scope) {
+            assertThrows(BomaPayException.class, () -> client.orders().register(100L, "ORDER-1", "https://return"));
+        }
+        assertTrue(elapsedMillis(start) < 700, "no retry should start after the deadline");
+        assertTrue(server.hits(GatewayEndpoints.REGISTER) < 50);
+    }
+    
+    @Test
+    @DisplayName("Async calls should keep the deadline bound when they were started")
+    void testAsyncCallCapturesDeadline() {
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED, 2000);
+        BomaPayClient client = new BomaPayClient(configBuilder().build());
+        
+        CompletableFuture<OrderRegistrationResponse> future;
+        Deadline.Scope scope = Deadline.after(Duration.ofMillis(300)).bind();
+        try (scope) {
+            future = client.orders().registerAsync(100L, "ORDER-1", "https://return");
+        }
+        
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1500, TimeUnit.MILLISECONDS));
+        assertInstanceOf(DeadlineExceededException.class, e.getCause());
+    }
+    
+    @Test
+    @DisplayName("Nested scopes should keep the earlier deadline and restore the outer one on close")
+    void testNestedScopes() {
+        Deadline outer = Deadline.after(Duration.ofMillis(100));
+        Deadline.Scope outerScope = outer.bind();
+        try (outerScope) {
+            Deadline.Scope longerScope = Deadline.after(Duration.ofSeconds(10)).bind();
+            try (longerScope) {
+                assertSame(outer, Deadline.current());
+            }
+            Deadline shorter = Deadline.after(Duration.ofMillis(10));
+            Deadline.Scope shorterScope = shorter.bind();
+            try (shorterScope) {
+                assertSame(shorter, Deadline.current());
+            }
+            assertSame(outer, Deadline.current());
+        }
+        assertNull(Deadline.current());
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,190 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.http.SiteStatus;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.resilience.CircuitBreaker;
+import org.abutimartin.bpcpayment.resilience.CircuitBreakerConfig;
+import org.abutimartin.bpcpayment.resilience.FailoverConfig;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class FailoverTest {
+    
+    private static final String REGISTERED = "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}";
+    
+    private StubGatewayServer primary;
+    private StubGatewayServer secondary;
+    private BomaPayClient client;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        primary = new StubGatewayServer();
+        secondary = new StubGatewayServer();
+        primary.stub(GatewayEndpoints.REGISTER, 200, REGISTERED);
+        secondary.stub(GatewayEndpoints.REGISTER, 200, REGISTERED);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.gatewaySites().close();
+        }
+        primary.close();
+        secondary.close();
+    }
+    
+    private BomaPayClient newClient(FailoverConfig failover) {
+        return newClient(failover, CircuitBreakerConfig.disabled());
+    }
+    
+    private BomaPayClient newClient(FailoverConfig failover, CircuitBreakerConfig circuitBreaker) {
+        return new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(primary.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1)
+                .timeout(300)
+                .circuitBreaker(circuitBreaker)
+                .failover(failover)
+                .build());
+    }
+    
+    private FailoverConfig.Builder prioritized() {
+        return FailoverConfig.builder()
+                .site(primary.baseUrl(), 0, 1)
+                .site(secondary.baseUrl(), 1, 1)
+                .healthCheckIntervalMillis(0);
+    }
+    
+    @Test
+    @DisplayName("Calls should move to the secondary site when the primary is killed, and stay there")
+    void testFailsOverWhenPrimaryKilled() throws Exception {
+        client = newClient(prioritized().failuresToEject(1).build());
+        client.orders().register(100L, "ORDER-1", "https://return");
+        assertEquals(1, primary.hits(GatewayEndpoints.REGISTER));
+        assertEquals(0, secondary.hits(GatewayEndpoints.REGISTER));
+        
+        primary.close();
+        
+        // the register never reached the dead site, so it is safe to send it to the other one
+        assertEquals("ORD-1", client.orders().register(100L, "ORDER-2", "https://return").getOrderId());
+        assertEquals(1, secondary.hits(GatewayEndpoints.REGISTER));
+        SiteStatus dead = client.gatewaySites().status().get(0);
+        assertFalse(dead.isHealthy(), dead.toString());
+        assertEquals(1, dead.getConsecutiveFailures());
+        
+        client.orders().register(100L, "ORDER-3", "https://return");
+        assertEquals(2, secondary.hits(GatewayEndpoints.REGISTER));
+        assertEquals(1, client.gatewaySites().status().get(0).getConsecutiveFailures(), "the ejected site is skipped");
+    }
+    
+    @Test
+    @DisplayName("A killed site should not open the circuit breaker for the healthy one")
+    void testKilledSiteKeepsHealthyBreakerClosed() throws Exception {
+        client = newClient(prioritized().failuresToEject(3).build(), CircuitBreakerConfig.builder()
+                .minimumCalls(4)
+                .failureRateThreshold(50)
+                .build());
+        primary.close();
+        
+        List<CompletableFuture<OrderRegistrationResponse>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            calls.add(client.orders().registerAsync(100L, "ORDER-" + i, "https://return"));
+        }
+        for (CompletableFuture<OrderRegistrationResponse> call : calls) {
+            assertEquals("ORD-1", call.get(5, TimeUnit.SECONDS).getOrderId());
+        }
+        
+        Map<String, CircuitBreaker.State> states = client.circuitBreakers().states();
+        assertEquals(CircuitBreaker.State.CLOSED, states.get(secondary.baseUrl() + GatewayEndpoints.REGISTER), states.toString());
+        assertFalse(states.containsKey(GatewayEndpoints.REGISTER), "breakers are kept per site");
+        client.orders().register(100L, "ORDER-9", "https://return");
+        assertEquals(9, secondary.hits(GatewayEndpoints.REGISTER));
+    }
+    
+    @Test
+    @DisplayName("A payment that may have reached a site should never be sent to another one")
+    void testNoFailoverOnceRequestSent() throws Exception {
+        client = newClient(prioritized().build());
+        primary.stub(GatewayEndpoints.DEPOSIT, 200, "{\"errorCode\":\"0\"}", 1000);
+        primary.stub(GatewayEndpoints.REFUND, 503, "{}");
+        
+        assertThrows(BomaPayException.class, () -> client.orders().deposit("ORD-1", 100L));
+        assertThrows(BomaPayException.class, () -> client.orders().refund("ORD-1", 100L));
+        
+        assertEquals(1, primary.hits(GatewayEndpoints.DEPOSIT));
+        assertEquals(0, secondary.hits(GatewayEndpoints.DEPOSIT));
+        assertEquals(0, secondary.hits(GatewayEndpoints.REFUND));
+    }
+    
+    @Test
+    @DisplayName("Reads should fail over on a server error")
+    void testReadsFailOverOnServerError() throws Exception {
+        client = newClient(prioritized().build());
+        primary.stub(GatewayEndpoints.GET_BINDINGS, 503, "{}");
+        
+        assertEquals("0", client.bindings().getBindings("client-1").getErrorCode());
+        assertEquals(1, primary.hits(GatewayEndpoints.GET_BINDINGS));
+        assertEquals(1, secondary.hits(GatewayEndpoints.GET_BINDINGS));
+    }
+    
+    @Test
+    @DisplayName("Among sites of equal priority the one with the lowest recent latency should take the traffic")
+    void testLowestLatencySiteWins() throws Exception {
+        primary.stub(GatewayEndpoints.REGISTER, 200, REGISTERED, 150);
+        client = newClient(FailoverConfig.builder()
+                .site(primary.baseUrl())
+                .site(secondary.baseUrl())
+                .healthCheckIntervalMillis(0)
+                .latencyDecayMillis(60000)
+                .build());
+        
+        for (int i = 0; i < 10; i++) {
+            client.orders().register(100L, "ORDER-" + i, "https://return");
+        }
+        
+        assertEquals(1, primary.hits(GatewayEndpoints.REGISTER), "the slow site is only measured once");
+        assertEquals(9, secondary.hits(GatewayEndpoints.REGISTER));
+        assertTrue(client.gatewaySites().status().get(0).getLatencyMillis() > 100);
+    }
+    
+    @Test
+    @DisplayName("An active health check should readmit an ejected site once it recovers")
+    void testHealthCheckReadmitsSite() throws Exception {
+        client = newClient(prioritized().failuresToEject(1).healthCheckIntervalMillis(100).build());
+        primary.stub(GatewayEndpoints.GET_BINDINGS, 503, "{}");
+        primary.defaultStub(503, "{}", 0);
+        
+        client.bindings().getBindings("client-1");
+        assertFalse(client.gatewaySites().status().get(0).isHealthy());
+        
+        primary.stub(GatewayEndpoints.GET_BINDINGS, 200, "{\"errorCode\":\"0\"}");
+        primary.defaultStub(200, "{\"errorCode\":\"0\"}", 0);
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!client.gatewaySites().status().get(0).isHealthy() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(client.gatewaySites().status().get(0).isHealthy(), "readmitted by the health check");
+        
+        client.bindings().getBindings("client-2");
+        assertEquals(2, primary.hits(GatewayEndpoints.GET_BINDINGS));
+        assertEquals(1, secondary.hits(GatewayEndpoints.GET_BINDINGS));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,225 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.flow.GatewayOperation;
+import org.abutimartin.bpcpayment.flow.GatewayProcessor;
+import org.abutimartin.bpcpayment.flow.OperationResult;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.reactor.ReactorGateway;
+import org.abutimartin.bpcpayment.resilience.AdaptiveLimiterConfig;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class FlowProcessorTest {
+    
+    private static final String OK = "{\"errorCode\":\"0\"}";
+    
+    private StubGatewayServer server;
+    private BomaPayClient client;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    private BomaPayClient newClient(BomaPayConfig.Builder config) {
+        client = new BomaPayClient(config
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1)
+                .build());
+        return client;
+    }
+    
+    /**
+     * Counts deposits from the moment the processor starts them until they complete, and keeps the
+     * peak. Measured where the processor enforces its limit: the stub server still counts an exchange
+     * for a moment after the client has the response and may already be sending the next one.
+     */
+    private static final class InFlightTracker {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        
+        GatewayOperation<BaseResponse> deposit(String orderId) {
+            return GatewayOperation.of(GatewayEndpoints.DEPOSIT, client -> {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                // a dependent stage, so the count drops before the processor sees the result and pulls more
+                return client.orders().depositAsync(orderId, 100L)
+                        .whenComplete((response, error) -> active.decrementAndGet());
+            });
+        }
+    }
+    
+    /** Emits {@code count} deposits on request and records how far ahead of completion it was asked. */
+    private static final class DepositSource implements Flow.Publisher<GatewayOperation<BaseResponse>> {
+        final int count;
+        final InFlightTracker tracker = new InFlightTracker();
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger emitted = new AtomicInteger();
+        
+        DepositSource(int count) {
+            this.count = count;
+        }
+        
+        @Override
+        public void subscribe(Flow.Subscriber<? super GatewayOperation<BaseResponse>> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested.addAndGet(n);
+                    while (emitted.get() < Math.min(count, requested.get())) {
+                        int i = emitted.getAndIncrement();
+                        subscriber.onNext(tracker.deposit("ORD-" + i));
+                        if (i + 1 == count) {
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+                
+                @Override
+                public void cancel() {
+                }
+            });
+        }
+    }
+    
+    /** Collects results, asking for {@code batch} more whenever the previous batch has arrived. */
+    private static final class Collector implements Flow.Subscriber<OperationResult<BaseResponse>> {
+        final List<OperationResult<BaseResponse>> results = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final long initial;
+        Flow.Subscription subscription;
+        
+        Collector(long initial) {
+            this.initial = initial;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initial);
+        }
+        
+        @Override
+        public void onNext(OperationResult<BaseResponse> item) {
+            results.add(item);
+        }
+        
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+        
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+    
+    @Test
+    @DisplayName("Upstream should be asked for no more operations than the gateway concurrency allows")
+    void testBackpressureFollowsDispatcherLimit() throws Exception {
+        server.stub(GatewayEndpoints.DEPOSIT, 200, OK, 50);
+        newClient(BomaPayConfig.builder().maxRequestsPerHost(4));
+        DepositSource source = new DepositSource(40);
+        GatewayProcessor<BaseResponse> processor = new GatewayProcessor<>(client);
+        Collector collector = new Collector(Long.MAX_VALUE);
+        
+        source.subscribe(processor);
+        processor.subscribe(collector);
+        Thread.sleep(100);
+        assertTrue(source.requested.get() <= 4 + collector.results.size(), "requested " + source.requested.get());
+        
+        collector.done.get(10, TimeUnit.SECONDS);
+        assertEquals(40, collector.results.size());
+        assertTrue(collector.results.stream().allMatch(OperationResult::isSuccess));
+        assertTrue(source.tracker.peak.get() <= 4, "max in flight " + source.tracker.peak.get());
+    }
+    
+    @Test
+    @DisplayName("Nothing should be pulled or sent beyond the subscriber's demand")
+    void testDownstreamDemandBoundsCalls() throws Exception {
+        server.stub(GatewayEndpoints.DEPOSIT, 200, OK);
+        newClient(BomaPayConfig.builder().maxRequestsPerHost(16));
+        DepositSource source = new DepositSource(10);
+        GatewayProcessor<BaseResponse> processor = new GatewayProcessor<>(client);
+        Collector collector = new Collector(3);
+        
+        source.subscribe(processor);
+        processor.subscribe(collector);
+        Thread.sleep(300);
+        assertEquals(3, collector.results.size());
+        assertEquals(3, server.hits(GatewayEndpoints.DEPOSIT));
+        assertEquals(3, source.requested.get());
+        
+        collector.subscription.request(7);
+        collector.done.get(5, TimeUnit.SECONDS);
+        assertEquals(10, server.hits(GatewayEndpoints.DEPOSIT));
+    }
+    
+    @Test
+    @DisplayName("The adaptive concurrency limit should cap operations in flight, and failures should not end the stream")
+    void testAdaptiveLimitAndFailures() throws Exception {
+        server.stub(GatewayEndpoints.DEPOSIT, 200, OK, 50);
+        server.enqueue(GatewayEndpoints.DEPOSIT, 500, "");
+        newClient(BomaPayConfig.builder()
+                .maxRequestsPerHost(32)
+                .adaptiveLimiter(AdaptiveLimiterConfig.builder().initialLimit(3).minLimit(1).maxLimit(3).build()));
+        GatewayProcessor<BaseResponse> processor = new GatewayProcessor<>(client);
+        Collector collector = new Collector(Long.MAX_VALUE);
+        DepositSource source = new DepositSource(20);
+        
+        source.subscribe(processor);
+        processor.subscribe(collector);
+        collector.done.get(10, TimeUnit.SECONDS);
+        
+        assertEquals(20, collector.results.size());
+        assertEquals(1, collector.results.stream().filter(result -> result.getFailure() != null).count());
+        assertTrue(source.tracker.peak.get() <= 3, "max in flight " + source.tracker.peak.get());
+        assertEquals(0, processor.inFlight());
+    }
+    
+    @Test
+    @DisplayName("Reactor wrappers should run single operations and streams")
+    void testReactorWrappers() {
+        server.stub(GatewayEndpoints.DEPOSIT, 200, OK, 20);
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, "{\"errorCode\":\"0\",\"orderStatus\":2}");
+        newClient(BomaPayConfig.builder().maxRequestsPerHost(4));
+        ReactorGateway reactor = new ReactorGateway(client);
+        InFlightTracker tracker = new InFlightTracker();
+        
+        assertTrue(reactor.mono(GatewayOperation.getOrderStatusExtended("ORD-1")).block(Duration.ofSeconds(5)).isFinal());
+        
+        List<OperationResult<BaseResponse>> results = reactor
+                .flux(Flux.range(0, 25).map(i -> tracker.deposit("ORD-" + i)))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        assertEquals(25, results.size());
+        assertTrue(tracker.peak.get() <= 4, "max in flight " + tracker.peak.get());
+    }
+}
\ No newline at end of file
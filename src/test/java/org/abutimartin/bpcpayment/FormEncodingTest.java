@@ -0,0 +1,87 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks what the compiled form encoder puts on the wire, as decoded by the stub gateway.
+ */
+@Tag("integration")
+public class FormEncodingTest {
+    
+    private StubGatewayServer server;
+    private BomaPayClient client;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user name")
+                .password("p&ss=word")
+                .merchantLogin("merchant")
+                .currency("454")
+                .build());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    @DisplayName("Registration should carry config values and request fields, skipping unset ones")
+    void testRegistrationForm() throws Exception {
+        client.orders().register(12345L, "ORDER-1", "https://shop.example/return?x=1&y=2");
+        
+        Map<String, String> form = server.lastForm(GatewayEndpoints.REGISTER);
+        assertEquals("user name", form.get("userName"));
+        assertEquals("p&ss=word", form.get("password"));
+        assertEquals("en", form.get("language"));
+        assertEquals("12345", form.get("amount"));
+        assertEquals("454", form.get("currency"));
+        assertEquals("ORDER-1", form.get("orderNumber"));
+        assertEquals("https://shop.example/return?x=1&y=2", form.get("returnUrl"));
+        assertEquals("merchant", form.get("merchantLogin"));
+        assertFalse(form.containsKey("clientId"));
+        assertEquals(8, form.size());
+    }
+    
+    @Test
+    @DisplayName("Non-ASCII values and symbol field names should survive encoding")
+    void testPaymentOrderForm() throws Exception {
+        client.payments().paymentOrder("MD-1", "4111111111111111", "123", "2030", "12", "Zoë Ñúñez 😀");
+        
+        Map<String, String> form = server.lastForm(GatewayEndpoints.PAYMENT_ORDER);
+        assertEquals("4111111111111111", form.get("$PAN"));
+        assertEquals("123", form.get("$CVC"));
+        assertEquals("MD-1", form.get("MDORDER"));
+        assertEquals("Zoë Ñúñez 😀", form.get("TEXT"));
+    }
+    
+    @Test
+    @DisplayName("Order follow-ups should send only the fields their operation uses")
+    void testOrderActionForms() throws Exception {
+        client.orders().refund("ORD-1", -42L);
+        Map<String, String> refund = server.lastForm(GatewayEndpoints.REFUND);
+        assertEquals("-42", refund.get("amount"));
+        assertEquals("ORD-1", refund.get("orderId"));
+        assertFalse(refund.containsKey("merchantLogin"));
+        
+        client.orders().decline("ORD-1", "ORDER-1");
+        Map<String, String> decline = server.lastForm(GatewayEndpoints.DECLINE);
+        assertEquals("merchant", decline.get("merchantLogin"));
+        assertEquals("ORDER-1", decline.get("orderNumber"));
+        assertFalse(decline.containsKey("amount"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.metrics.EndpointSnapshot;
+import org.abutimartin.bpcpayment.metrics.GatewayMetrics;
+import org.abutimartin.bpcpayment.metrics.HistogramSnapshot;
+import org.abutimartin.bpcpayment.metrics.LatencyHistogram;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.resilience.RetryPolicy;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class GatewayMetricsTest {
+    
+    private static final String REGISTERED = "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}";
+    
+    private StubGatewayServer server;
+    private GatewayMetrics metrics;
+    private BomaPayClient client;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        metrics = new GatewayMetrics();
+        client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .retryPolicy(RetryPolicy.disabled())
+                .instrumentation(metrics)
+                .build());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    @DisplayName("Outcomes should be counted by HTTP status, gateway errorCode and failure type")
+    void testOutcomeCounters() throws Exception {
+        server.enqueue(GatewayEndpoints.REGISTER, 200, REGISTERED);
+        server.enqueue(GatewayEndpoints.REGISTER, 200, "{\"errorCode\":\"1\",\"errorMessage\":\"Duplicate order\"}");
+        server.enqueue(GatewayEndpoints.REGISTER, 503, "unavailable");
+        
+        client.orders().register(100L, "ORDER-1", "https://return");
+        client.orders().register(100L, "ORDER-1", "https://return");
+        assertThrows(BomaPayException.class, () -> client.orders().register(100L, "ORDER-1", "https://return"));
+        
+        EndpointSnapshot snapshot = metrics.snapshot(GatewayEndpoints.REGISTER);
+        assertEquals(3, snapshot.getLatency().getCount());
+        assertEquals(0, snapshot.getInFlight());
+        assertEquals(2L, snapshot.getStatusCounts().get(200));
+        assertEquals(1L, snapshot.getStatusCounts().get(503));
+        assertEquals(1L, snapshot.getErrorCodeCounts().get("0"));
+        assertEquals(1L, snapshot.getErrorCodeCounts().get("1"));
+        assertEquals(1L, snapshot.getFailureCounts().get("BomaPayException"));
+        assertNull(metrics.snapshot(GatewayEndpoints.DEPOSIT));
+    }
+    
+    @Test
+    @DisplayName("In-flight gauges should track async calls until they complete")
+    void testInFlightGauge() throws Exception {
+        server.stub(GatewayEndpoints.REGISTER, 200, REGISTERED, 300);
+        
+        List<CompletableFuture<OrderRegistrationResponse>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(client.orders().registerAsync(100L, "ORDER-" + i, "https://return"));
+        }
+        assertEquals(3, metrics.snapshot(GatewayEndpoints.REGISTER).getInFlight());
+        
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        EndpointSnapshot snapshot = metrics.snapshot(GatewayEndpoints.REGISTER);
+        assertEquals(0, snapshot.getInFlight());
+        assertEquals(3, snapshot.getLatency().getCount());
+        assertTrue(snapshot.getLatency().valueAtPercentile(50) >= TimeUnit.MILLISECONDS.toMicros(300));
+    }
+    
+    @Test
+    @DisplayName("Histogram percentiles should stay within the bucket precision")
+    void testHistogramPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) {
+            histogram.recordMicros(micros);
+        }
+        HistogramSnapshot before = histogram.snapshot();
+        
+        assertEquals(100_000, before.getCount());
+        assertWithin(50_000, before.valueAtPercentile(50));
+        assertWithin(99_000, before.valueAtPercentile(99));
+        assertWithin(100_000, before.getMaxMicros());
+        assertEquals(0, new LatencyHistogram().snapshot().valueAtPercentile(99));
+        
+        histogram.record(2, TimeUnit.SECONDS);
+        HistogramSnapshot interval = histogram.snapshot().since(before);
+        assertEquals(1, interval.getCount());
+        assertWithin(2_000_000, interval.valueAtPercentile(99));
+    }
+    
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 64, "expected ~" + expected + " but was " + actual);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.http.PoolStats;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Transport-level behaviour (pooling, protocol selection) against a local stub gateway.
+ */
+@Tag("integration")
+public class HttpTransportTest {
+    
+    private StubGatewayServer server;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        server.stub("/rest/register.do", 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    private BomaPayConfig.Builder configBuilder() {
+        return BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret");
+    }
+    
+    @Test
+    @DisplayName("Pool statistics should reflect a kept-alive connection after a call")
+    void testPoolStatsAfterCall() throws Exception {
+        BomaPayClient client = new BomaPayClient(configBuilder()
+                .maxIdleConnections(20)
+                .keepAliveMillis(60000)
+                .maxRequestsPerHost(50)
+                .protocol(HttpProtocol.HTTP_1_1)
+                .build());
+        
+        client.orders().register(100L, "ORDER-1", "https://return");
+        
+        PoolStats stats = client.poolStats();
+        assertEquals(1, stats.getConnectionCount());
+        assertEquals(1, stats.getIdleConnectionCount());
+        assertEquals(0, stats.getActiveConnectionCount());
+        assertEquals(0, stats.getQueuedCalls());
+    }
+    
+    @Test
+    @DisplayName("Fields the models do not declare should be skipped, with and without Blackbird")
+    void testUnknownFieldsTolerated() throws Exception {
+        server.stub("/rest/register.do", 200,
+                "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\",\"info\":\"new\",\"attributes\":[{\"name\":\"a\"}]}");
+        
+        for (boolean blackbird : new boolean[] {false, true}) {
+            BomaPayClient client = new BomaPayClient(configBuilder().blackbird(blackbird).build());
+            
+            OrderRegistrationResponse response = client.orders().register(100L, "ORDER-1", "https://return");
+            
+            assertEquals("ORD-1", response.getOrderId());
+            assertTrue(client.orders().deposit("ORD-1", 100L).isSuccess());
+        }
+    }
+    
+    @Test
+    @DisplayName("Responses larger than the configured limit should be rejected")
+    void testOversizedResponseRejected() throws Exception {
+        BomaPayClient client = new BomaPayClient(configBuilder().maxResponseBodyBytes(64).build());
+        server.stub("/rest/register.do", 200,
+                "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\",\"formUrl\":\"https://example.com/" + "x".repeat(200) + "\"}");
+        
+        assertThrows(BomaPayException.class,
+                () -> client.orders().register(100L, "ORDER-1", "https://return"));
+    }
+    
+    @Test
+    @DisplayName("Responses should be decoded from the body stream")
+    void testStreamingDecode() throws Exception {
+        BomaPayClient client = new BomaPayClient(configBuilder().build());
+        server.stub("/rest/register.do", 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-7\",\"formUrl\":\"https://form\"}");
+        
+        OrderRegistrationResponse response = client.orders().register(100L, "ORDER-7", "https://return");
+        
+        assertEquals("ORD-7", response.getOrderId());
+        assertEquals("https://form", response.getFormUrl());
+    }
+    
+    @Test
+    @DisplayName("Invalid dispatcher limits should be rejected by the builder")
+    void testInvalidPoolSettings() {
+        assertThrows(IllegalArgumentException.class, () -> configBuilder().maxRequestsPerHost(0).build());
+        assertThrows(IllegalArgumentException.class, () -> configBuilder().keepAliveMillis(0).build());
+        assertThrows(IllegalArgumentException.class, () -> configBuilder()
+                .virtualThreadDispatcher(true).asyncExecutor(Executors.newSingleThreadExecutor()).build());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,222 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.exception.DuplicateOperationException;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.journal.JournalConfig;
+import org.abutimartin.bpcpayment.journal.JournalEntry;
+import org.abutimartin.bpcpayment.journal.JournaledPayments;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.model.response.PaymentResponse;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class JournalTest {
+    
+    private static final String OK = "{\"errorCode\":\"0\",\"errorMessage\":\"Success\"}";
+    private static final String PAID = "{\"errorCode\":\"0\",\"orderId\":\"GW-1\",\"orderNumber\":\"N-1\",\"orderStatus\":2}";
+    
+    @TempDir
+    Path dir;
+    
+    private StubGatewayServer server;
+    private JournaledPayments journaled;
+    private JournalConfig.Builder journalConfig;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        journaled.close();
+        server.close();
+    }
+    
+    private JournaledPayments open(JournalConfig.Builder journal) {
+        journalConfig = journal;
+        BomaPayClient client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1)
+                .maxRequestsPerHost(32)
+                .journal(journal.path(dir.resolve("payments.journal")).build())
+                .build());
+        journaled = client.journaled();
+        assertSame(journaled, client.journaled());
+        return journaled;
+    }
+    
+    /** Simulates a process restart: the file is reopened by a fresh client. */
+    private JournaledPayments restart() {
+        journaled.close();
+        return open(journalConfig);
+    }
+    
+    private static String status(int orderStatus, long deposited, long refunded) {
+        return "{\"errorCode\":\"0\",\"orderStatus\":" + orderStatus + ",\"paymentAmountInfo\":{\"approvedAmount\":"
+                + deposited + ",\"depositedAmount\":" + deposited + ",\"refundedAmount\":" + refunded + "}}";
+    }
+    
+    @Test
+    @DisplayName("A repeated key should return the recorded response without calling the gateway, even after a restart")
+    void testRepeatReturnsRecordedResponse() throws Exception {
+        server.stub(GatewayEndpoints.DEPOSIT, 200, OK);
+        open(JournalConfig.builder());
+        
+        assertTrue(journaled.deposit("dep-1", "ORD-1", 1500L).isSuccess());
+        assertTrue(journaled.deposit("dep-1", "ORD-1", 1500L).isSuccess());
+        assertThrows(IllegalArgumentException.class, () -> journaled.deposit("dep-1", "ORD-1", 900L));
+        
+        restart();
+        BaseResponse replayed = journaled.deposit("dep-1", "ORD-1", 1500L);
+        assertEquals("Success", replayed.getErrorMessage());
+        assertEquals(1, server.hits(GatewayEndpoints.DEPOSIT));
+        assertEquals(JournalEntry.State.COMPLETED, journaled.journal().get("dep-1").getState());
+    }
+    
+    @Test
+    @DisplayName("An in-flight key should refuse a concurrent duplicate")
+    void testConcurrentDuplicateRefused() throws Exception {
+        server.stub(GatewayEndpoints.REFUND, 200, OK, 300);
+        open(JournalConfig.builder());
+        
+        CompletableFuture<BaseResponse> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return journaled.refund("ref-1", "ORD-1", 500L);
+            } catch (BomaPayException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        DuplicateOperationException duplicate = assertThrows(DuplicateOperationException.class,
+                () -> journaled.refund("ref-1", "ORD-1", 500L));
+        assertEquals(JournalEntry.State.IN_FLIGHT, duplicate.getState());
+        
+        assertTrue(first.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, server.hits(GatewayEndpoints.REFUND));
+    }
+    
+    @Test
+    @DisplayName("A deposit with no response should stay uncertain across a restart and be resolved by status, not resent")
+    void testUncertainDepositResolvedByStatus() throws Exception {
+        server.stub(GatewayEndpoints.DEPOSIT, 500, "");
+        open(JournalConfig.builder());
+        
+        assertThrows(BomaPayException.class, () -> journaled.deposit("dep-1", "ORD-1", 1500L));
+        DuplicateOperationException duplicate = assertThrows(DuplicateOperationException.class,
+                () -> journaled.deposit("dep-1", "ORD-1", 1500L));
+        assertEquals(JournalEntry.State.UNCERTAIN, duplicate.getState());
+        
+        restart();
+        assertEquals(1, journaled.journal().uncertain().size());
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, status(2, 1500, 0));
+        List<JournalEntry> resolved = journaled.resolveUncertain();
+        
+        assertEquals(1, resolved.size());
+        assertEquals(JournalEntry.State.APPLIED, resolved.get(0).getState());
+        assertEquals("ORD-1", server.lastForm(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED).get("orderId"));
+        assertThrows(DuplicateOperationException.class, () -> journaled.deposit("dep-1", "ORD-1", 1500L));
+        assertEquals(1, server.hits(GatewayEndpoints.DEPOSIT));
+        
+        restart();
+        assertEquals(JournalEntry.State.APPLIED, journaled.journal().get("dep-1").getState());
+    }
+    
+    @Test
+    @DisplayName("An uncertain partial refund should be settled against the refunds the journal knows")
+    void testUncertainRefundResolvedByRefundedTotal() throws Exception {
+        server.enqueue(GatewayEndpoints.REFUND, 200, OK);
+        server.enqueue(GatewayEndpoints.REFUND, 500, "");
+        open(JournalConfig.builder());
+        assertTrue(journaled.refund("ref-1", "ORD-1", 300L).isSuccess());
+        assertThrows(BomaPayException.class, () -> journaled.refund("ref-2", "ORD-1", 200L));
+        
+        restart();
+        // only the first refund reached the gateway
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, status(2, 1500, 300));
+        assertEquals(JournalEntry.State.NOT_APPLIED, journaled.resolveUncertain().get(0).getState());
+        
+        server.stub(GatewayEndpoints.REFUND, 200, OK);
+        assertTrue(journaled.refund("ref-2", "ORD-1", 200L).isSuccess(), "a refund found not applied may be sent again");
+        assertEquals(3, server.hits(GatewayEndpoints.REFUND));
+    }
+    
+    @Test
+    @DisplayName("An uncertain instant payment should be looked up by its order number")
+    void testUncertainPaymentResolvedByOrderNumber() throws Exception {
+        server.stub(GatewayEndpoints.INSTANT_PAYMENT, 500, "");
+        open(JournalConfig.builder());
+        assertThrows(BomaPayException.class, () -> journaled.instantPayment("pay-1", 1500L, "N-1", "Test",
+                "4111111111111111", "123", "203012", "JOHN SMITH", "https://ok", "https://fail"));
+        
+        restart();
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200,
+                "{\"errorCode\":\"6\",\"errorMessage\":\"Order not found\"}");
+        assertEquals(JournalEntry.State.NOT_APPLIED, journaled.resolveUncertain().get(0).getState());
+        assertEquals("N-1", server.lastForm(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED).get("orderNumber"));
+        
+        server.stub(GatewayEndpoints.INSTANT_PAYMENT, 200, PAID);
+        PaymentResponse payment = journaled.instantPayment("pay-1", 1500L, "N-1", "Test",
+                "4111111111111111", "123", "203012", "JOHN SMITH", "https://ok", "https://fail");
+        assertEquals("GW-1", payment.getOrderId());
+    }
+    
+    @Test
+    @DisplayName("Concurrent operations should share fsyncs and survive compaction of a small journal")
+    void testGroupCommitAndCompaction() throws Exception {
+        server.stub(GatewayEndpoints.DEPOSIT, 200, OK, 5);
+        open(JournalConfig.builder().fileSizeBytes(16 * 1024).retainFinished(50));
+        int threads = 16;
+        int perThread = 25;
+        
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            results.add(pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    assertTrue(journaled.deposit("dep-" + thread + "-" + i, "ORD-" + thread + "-" + i, 100L).isSuccess());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        
+        int operations = threads * perThread;
+        assertEquals(operations, server.hits(GatewayEndpoints.DEPOSIT));
+        long fsyncs = journaled.journal().fsyncCount();
+        assertTrue(fsyncs < 2 * operations, "group commit shares fsyncs: " + fsyncs + " for " + 2 * operations + " records");
+        assertEquals(50, journaled.journal().size(), "older finished operations are forgotten");
+        
+        restart();
+        assertEquals(50, journaled.journal().size());
+        assertTrue(journaled.journal().uncertain().isEmpty());
+        assertTrue(journaled.deposit("dep-15-24", "ORD-15-24", 100L).isSuccess());
+        assertEquals(operations, server.hits(GatewayEndpoints.DEPOSIT));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,147 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.exception.OrderWatchExpiredException;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.model.response.OrderStatus;
+import org.abutimartin.bpcpayment.model.response.OrderStatusResponse;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.abutimartin.bpcpayment.watch.OrderStatusWatcher;
+import org.abutimartin.bpcpayment.watch.OrderWatchConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class OrderWatcherTest {
+    
+    private static final String PENDING = "{\"errorCode\":\"0\",\"orderStatus\":0}";
+    private static final String DEPOSITED = "{\"errorCode\":\"0\",\"orderStatus\":2,\"orderNumber\":\"ORDER-1\","
+            + "\"amount\":1500,\"currency\":\"978\",\"actionCode\":0,\"authRefNum\":\"111\"}";
+    
+    private StubGatewayServer server;
+    private OrderStatusWatcher watcher;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        watcher.close();
+        server.close();
+    }
+    
+    private OrderStatusWatcher newWatcher(OrderWatchConfig.Builder watchConfig) {
+        BomaPayClient client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1)
+                .maxRequestsPerHost(32)
+                .orderWatch(watchConfig.tickMillis(10).build())
+                .build());
+        watcher = client.orderWatcher();
+        assertSame(watcher, client.orderWatcher());
+        return watcher;
+    }
+    
+    @Test
+    @DisplayName("A pending order should be polled until its status is final")
+    void testWatchUntilFinal() throws Exception {
+        newWatcher(OrderWatchConfig.builder().minIntervalMillis(50));
+        server.enqueue(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, PENDING);
+        server.enqueue(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, PENDING);
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, DEPOSITED);
+        
+        OrderStatusResponse status = watcher.watch("ORD-1").get(5, TimeUnit.SECONDS);
+        
+        assertEquals(OrderStatus.DEPOSITED, status.getStatus());
+        assertEquals(1500L, status.getAmount());
+        assertEquals("111", status.getAuthRefNum());
+        assertEquals(3, server.hits(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED));
+        assertEquals("ORD-1", server.lastForm(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED).get("orderId"));
+        assertEquals(0, watcher.watching());
+    }
+    
+    @Test
+    @DisplayName("Polls coming due together should run with bounded concurrency")
+    void testManyOrdersBoundedConcurrency() throws Exception {
+        newWatcher(OrderWatchConfig.builder().minIntervalMillis(20).maxConcurrentPolls(4));
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, DEPOSITED, 20);
+        
+        List<CompletableFuture<OrderStatusResponse>> watches = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            watches.add(watcher.watch("ORD-" + i));
+        }
+        assertEquals(100, watcher.watching());
+        CompletableFuture.allOf(watches.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        
+        assertEquals(100, server.hits(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED));
+        assertEquals(100, watcher.pollCount());
+        int maxInFlight = server.maxConcurrentRequests();
+        assertTrue(maxInFlight <= 4, "max in flight " + maxInFlight);
+        assertTrue(maxInFlight > 1, "due polls are dispatched together");
+    }
+    
+    @Test
+    @DisplayName("An order still pending after the maximum age should fail with its last status")
+    void testExpiry() throws Exception {
+        newWatcher(OrderWatchConfig.builder().minIntervalMillis(50).maxAgeMillis(300));
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, PENDING);
+        
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> watcher.watch("ORD-1").get(5, TimeUnit.SECONDS));
+        
+        OrderWatchExpiredException expired = assertInstanceOf(OrderWatchExpiredException.class, e.getCause());
+        assertEquals("ORD-1", expired.getOrderId());
+        assertEquals(OrderStatus.REGISTERED, expired.getLastStatus().getStatus());
+        int hits = server.hits(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED);
+        assertTrue(hits >= 3 && hits <= 7, "polls " + hits);
+    }
+    
+    @Test
+    @DisplayName("A rejected lookup should end the watch after one poll")
+    void testUnknownOrder() throws Exception {
+        newWatcher(OrderWatchConfig.builder().minIntervalMillis(20));
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, "{\"errorCode\":\"6\",\"errorMessage\":\"Unknown order\"}");
+        
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> watcher.watch("ORD-X").get(5, TimeUnit.SECONDS));
+        
+        assertInstanceOf(BomaPayException.class, e.getCause());
+        assertEquals(1, server.hits(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED));
+    }
+    
+    @Test
+    @DisplayName("Watching an order twice should share one watch, and cancelling it should stop polling")
+    void testSharedWatchAndCancel() throws Exception {
+        newWatcher(OrderWatchConfig.builder().minIntervalMillis(50));
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, PENDING);
+        
+        CompletableFuture<OrderStatusResponse> first = watcher.watch("ORD-1");
+        assertSame(first, watcher.watch("ORD-1"));
+        Thread.sleep(200);
+        first.cancel(true);
+        // counted by the watcher when it starts a poll, unlike server hits, which may still be on the wire
+        long polls = watcher.pollCount();
+        assertTrue(polls >= 1);
+        
+        Thread.sleep(300);
+        assertEquals(polls, watcher.pollCount(), "no polls after cancelling");
+        assertEquals(0, watcher.watching());
+    }
+}
\ No newline at end of file
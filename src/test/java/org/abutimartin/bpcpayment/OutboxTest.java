@@ -0,0 +1,192 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.journal.JournalConfig;
+import org.abutimartin.bpcpayment.journal.JournalEntry;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.outbox.GatewayOutbox;
+import org.abutimartin.bpcpayment.outbox.OutboxConfig;
+import org.abutimartin.bpcpayment.outbox.OutboxListener;
+import org.abutimartin.bpcpayment.outbox.OutboxMessage;
+import org.abutimartin.bpcpayment.outbox.OutboxOperation;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class OutboxTest {
+    
+    private static final String OK = "{\"errorCode\":\"0\"}";
+    
+    @TempDir
+    Path dir;
+    
+    private StubGatewayServer server;
+    private BomaPayClient client;
+    private GatewayOutbox outbox;
+    private final List<OutboxMessage> delivered = new CopyOnWriteArrayList<>();
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        outbox.close();
+        if (client.journaled() != null) {
+            client.journaled().close();
+        }
+        server.close();
+    }
+    
+    private GatewayOutbox open(OutboxConfig.Builder outboxConfig, boolean journal) {
+        BomaPayConfig.Builder config = BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1)
+                .maxRequestsPerHost(32)
+                .outbox(outboxConfig
+                        .directory(dir.resolve("outbox"))
+                        .minBackoffMillis(50)
+                        .maxBackoffMillis(200)
+                        .listener(new OutboxListener() {
+                            @Override
+                            public void delivered(OutboxMessage message, BaseResponse response) {
+                                delivered.add(message);
+                            }
+                        })
+                        .build());
+        if (journal) {
+            config.journal(JournalConfig.builder().path(dir.resolve("payments.journal")).build());
+        }
+        client = new BomaPayClient(config.build());
+        outbox = client.outbox();
+        assertSame(outbox, client.outbox());
+        return outbox;
+    }
+    
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+    
+    @Test
+    @DisplayName("Operations queued during an outage should be forwarded once the gateway answers again")
+    void testOutageBecomesDelay() throws Exception {
+        server.stub(GatewayEndpoints.DEPOSIT, 500, "");
+        server.stub(GatewayEndpoints.REFUND, 500, "");
+        server.stub(GatewayEndpoints.REVERSE, 500, "");
+        server.stub(GatewayEndpoints.UNBIND_CARD, 500, "");
+        open(OutboxConfig.builder(), true);
+        
+        outbox.deposit("ORD-1", 1500L);
+        outbox.refund("ORD-1", 500L);
+        outbox.reverse("ORD-2");
+        outbox.unBindCard("BND-1");
+        await(() -> outbox.failedAttempts() >= 3);
+        assertEquals(4, outbox.pending());
+        assertTrue(delivered.isEmpty());
+        
+        // the journal settles the failed deposit and refund by status before sending them again
+        server.stub(GatewayEndpoints.GET_ORDER_STATUS_EXTENDED, 200, "{\"errorCode\":\"0\",\"orderStatus\":1,"
+                + "\"paymentAmountInfo\":{\"approvedAmount\":1500,\"depositedAmount\":0,\"refundedAmount\":0}}");
+        server.stub(GatewayEndpoints.DEPOSIT, 200, OK);
+        server.stub(GatewayEndpoints.REFUND, 200, OK);
+        server.stub(GatewayEndpoints.REVERSE, 200, OK);
+        server.stub(GatewayEndpoints.UNBIND_CARD, 200, OK);
+        await(() -> outbox.pending() == 0);
+        
+        assertEquals(4, outbox.deliveredCount());
+        assertEquals("BND-1", server.lastForm(GatewayEndpoints.UNBIND_CARD).get("bindingId"));
+        assertEquals(JournalEntry.State.COMPLETED, client.journaled().journal().get("outbox-2").getState(),
+                "refunds go through the idempotency journal");
+    }
+    
+    @Test
+    @DisplayName("Operations on one order should be delivered in enqueue order while other orders proceed in parallel")
+    void testPerOrderOrdering() throws Exception {
+        server.stub(GatewayEndpoints.DEPOSIT, 200, OK, 30);
+        server.stub(GatewayEndpoints.REFUND, 200, OK, 30);
+        open(OutboxConfig.builder().ratePerSecond(1000).maxConcurrency(4), false);
+        
+        for (int i = 0; i < 8; i++) {
+            for (int order = 0; order < 4; order++) {
+                if (i == 0) {
+                    outbox.deposit("ORD-" + order, 1000L);
+                } else {
+                    outbox.refund("ORD-" + order, 10L);
+                }
+            }
+        }
+        await(() -> outbox.pending() == 0);
+        
+        Map<String, Long> lastId = new HashMap<>();
+        for (OutboxMessage message : delivered) {
+            Long previous = lastId.put(message.getTarget(), message.getId());
+            assertTrue(previous == null || previous < message.getId(), "out of order: " + message);
+            assertEquals(previous == null ? OutboxOperation.DEPOSIT : OutboxOperation.REFUND, message.getOperation());
+        }
+        assertEquals(32, delivered.size());
+        assertTrue(server.maxConcurrentRequests() > 1, "different orders run in parallel");
+        assertTrue(server.maxConcurrentRequests() <= 4);
+    }
+    
+    @Test
+    @DisplayName("Queued operations should survive a restart and fully delivered segments should be deleted")
+    void testSurvivesRestart() throws Exception {
+        server.stub(GatewayEndpoints.UNBIND_CARD, 500, "");
+        open(OutboxConfig.builder().segmentBytes(4096).maxBackoffMillis(60_000).minBackoffMillis(60_000), false);
+        for (int i = 0; i < 200; i++) {
+            outbox.unBindCard("BND-" + i);
+        }
+        assertTrue(outbox.segmentCount() > 1, "segments roll over at segmentBytes");
+        outbox.close();
+        
+        server.stub(GatewayEndpoints.UNBIND_CARD, 200, OK);
+        open(OutboxConfig.builder().segmentBytes(4096).ratePerSecond(10_000), false);
+        assertEquals(200, outbox.pending());
+        await(() -> outbox.pending() == 0);
+        
+        assertEquals(200, delivered.size());
+        assertEquals(1, outbox.segmentCount());
+        outbox.close();
+        open(OutboxConfig.builder(), false);
+        assertEquals(0, outbox.pending(), "acknowledged operations are not redelivered");
+    }
+    
+    @Test
+    @DisplayName("The drainer should not start deliveries faster than the configured rate")
+    void testRateLimit() throws Exception {
+        server.stub(GatewayEndpoints.REVERSE, 200, OK);
+        open(OutboxConfig.builder().ratePerSecond(20), false);
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            outbox.reverse("ORD-" + i);
+        }
+        await(() -> outbox.pending() == 0);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        
+        assertTrue(millis >= 400, "10 deliveries at 20/s took " + millis + " ms");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.exception.RateLimitExceededException;
+import org.abutimartin.bpcpayment.resilience.RateLimiterConfig;
+import org.abutimartin.bpcpayment.resilience.TokenBucket;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class RateLimiterTest {
+    
+    private StubGatewayServer server;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        server.stub("/rest/register.do", 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    private BomaPayClient client(RateLimiterConfig.AcquireMode mode) {
+        return new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .rateLimiter(RateLimiterConfig.builder()
+                        .group("orders", 5, 2, "/rest/register.do", "/rest/registerPreAuth.do")
+                        .acquireMode(mode)
+                        .maxWaitMillis(50)
+                        .build())
+                .build());
+    }
+    
+    @Test
+    @DisplayName("Fail-fast mode should reject calls beyond the burst without contacting the gateway")
+    void testFailFast() throws Exception {
+        BomaPayClient client = client(RateLimiterConfig.AcquireMode.FAIL_FAST);
+        
+        client.orders().register(100L, "ORDER-1", "https://return");
+        client.orders().registerPreAuth(100L, "ORDER-2", "https://return");
+        RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                () -> client.orders().register(100L, "ORDER-3", "https://return"));
+        
+        assertEquals("orders", e.getGroup());
+        assertEquals(1, server.hits("/rest/register.do"));
+    }
+    
+    @Test
+    @DisplayName("Blocking mode should smooth bursts to the configured rate")
+    void testBlockingSmoothsBurst() throws Exception {
+        BomaPayClient client = client(RateLimiterConfig.AcquireMode.BLOCK);
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            client.orders().register(100L, "ORDER-" + i, "https://return");
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        
+        // burst of 2, then two more permits at 200 ms intervals
+        assertTrue(elapsedMillis >= 350, "Expected throttling but took " + elapsedMillis + " ms");
+        assertEquals(4, server.hits("/rest/register.do"));
+    }
+    
+    @Test
+    @DisplayName("Token bucket should honour burst and refill rate")
+    void testTokenBucket() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 3);
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(-1, bucket.reserve(0));
+        
+        Thread.sleep(25);
+        assertEquals(0, bucket.reserve(0));
+    }
+}
@@ -0,0 +1,175 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.metrics.GatewayInstrumentation;
+import org.abutimartin.bpcpayment.model.response.BaseResponse;
+import org.abutimartin.bpcpayment.model.response.BindingsResponse;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class ReadCoalescingTest {
+    
+    private static final String BINDINGS = "{\"errorCode\":\"0\",\"bindings\":[{\"bindingId\":\"B-1\","
+            + "\"maskedPan\":\"411111**1111\",\"expiryDate\":\"203012\",\"cardholderName\":\"TEST\"}]}";
+    
+    private StubGatewayServer server;
+    private ExecutorService callers;
+    private BomaPayClient client;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        callers = Executors.newFixedThreadPool(20);
+        client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .build());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+        callers.shutdownNow();
+    }
+    
+    @Test
+    @DisplayName("Identical concurrent binding lookups should share one gateway call")
+    void testIdenticalReadsShareOneCall() throws Exception {
+        server.stub(GatewayEndpoints.GET_BINDINGS, 200, BINDINGS, 300);
+        
+        List<Future<BindingsResponse>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(callers.submit(() -> client.bindings().getBindings("CLIENT-1")));
+        }
+        results.add(client.bindings().getBindingsAsync("CLIENT-1"));
+        
+        for (Future<BindingsResponse> result : results) {
+            BindingsResponse response = result.get(5, TimeUnit.SECONDS);
+            assertTrue(response.isSuccess());
+            assertEquals("B-1", response.getBindings().get(0).getBindingId());
+        }
+        assertEquals(1, server.hits(GatewayEndpoints.GET_BINDINGS));
+        assertEquals(20, client.coalescedCalls());
+    }
+    
+    @Test
+    @DisplayName("Lookups with different parameters should not be coalesced")
+    void testDifferentParametersAreSeparate() throws Exception {
+        server.stub(GatewayEndpoints.GET_BINDINGS, 200, BINDINGS, 200);
+        
+        CompletableFuture<BindingsResponse> first = client.bindings().getBindingsAsync("CLIENT-1");
+        CompletableFuture<BindingsResponse> second = client.bindings().getBindingsAsync("CLIENT-2");
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        
+        assertEquals(2, server.hits(GatewayEndpoints.GET_BINDINGS));
+    }
+    
+    @Test
+    @DisplayName("A failed shared call should fail every waiter, and the next lookup should go to the gateway")
+    void testFailureIsSharedButNotCached() throws Exception {
+        server.stub(GatewayEndpoints.GET_BINDINGS_BY_CARD_OR_ID, 500, "boom", 300);
+        
+        List<CompletableFuture<BindingsResponse>> waiters = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            waiters.add(client.bindings().getBindingsByCardOrIdAsync("4111111111111111"));
+        }
+        for (CompletableFuture<BindingsResponse> waiter : waiters) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(BomaPayException.class, e.getCause());
+        }
+        assertEquals(1, server.hits(GatewayEndpoints.GET_BINDINGS_BY_CARD_OR_ID));
+        
+        server.stub(GatewayEndpoints.GET_BINDINGS_BY_CARD_OR_ID, 200, BINDINGS);
+        assertTrue(client.bindings().getBindingsByCardOrId("4111111111111111").isSuccess());
+        assertEquals(2, server.hits(GatewayEndpoints.GET_BINDINGS_BY_CARD_OR_ID));
+    }
+    
+    @Test
+    @DisplayName("A shared call that fails before it is sent should not block later identical lookups")
+    void testSynchronousFailureReleasesKey() throws Exception {
+        server.stub(GatewayEndpoints.GET_BINDINGS, 200, BINDINGS);
+        AtomicBoolean failNext = new AtomicBoolean(true);
+        BomaPayClient flaky = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .instrumentation(new GatewayInstrumentation() {
+                    @Override
+                    public void callStarted(String endpoint) {
+                        if (failNext.getAndSet(false)) {
+                            throw new IllegalStateException("instrumentation down");
+                        }
+                    }
+                })
+                .build());
+        
+        assertThrows(IllegalStateException.class, () -> flaky.bindings().getBindingsAsync("CLIENT-1"));
+        
+        assertTrue(flaky.bindings().getBindingsAsync("CLIENT-1").get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, server.hits(GatewayEndpoints.GET_BINDINGS));
+        assertEquals(0, flaky.coalescedCalls());
+    }
+    
+    @Test
+    @DisplayName("A shared blocking call that dies with an Error should not block later identical lookups")
+    void testErrorReleasesKey() throws Exception {
+        server.stub(GatewayEndpoints.GET_BINDINGS, 200, BINDINGS);
+        AtomicBoolean failNext = new AtomicBoolean(true);
+        BomaPayClient flaky = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .instrumentation(new GatewayInstrumentation() {
+                    @Override
+                    public void callStarted(String endpoint) {
+                        if (failNext.getAndSet(false)) {
+                            throw new AssertionError("instrumentation broken");
+                        }
+                    }
+                })
+                .build());
+        
+        assertThrows(AssertionError.class, () -> flaky.bindings().getBindings("CLIENT-1"));
+        
+        Future<BindingsResponse> retry = callers.submit(() -> flaky.bindings().getBindings("CLIENT-1"));
+        assertTrue(retry.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, server.hits(GatewayEndpoints.GET_BINDINGS));
+    }
+    
+    @Test
+    @DisplayName("Identical concurrent writes should each reach the gateway")
+    void testWritesAreNeverCoalesced() throws Exception {
+        server.stub(GatewayEndpoints.UNBIND_CARD, 200, "{\"errorCode\":\"0\"}", 200);
+        
+        List<CompletableFuture<BaseResponse>> writes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            writes.add(client.bindings().unBindCardAsync("B-1"));
+        }
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]))
+                .handle((result, error) -> null)
+                .get(5, TimeUnit.SECONDS);
+        
+        assertEquals(5, server.hits(GatewayEndpoints.UNBIND_CARD));
+        assertEquals(0, client.coalescedCalls());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,138 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.exception.BomaPayException;
+import org.abutimartin.bpcpayment.model.response.OrderRegistrationResponse;
+import org.abutimartin.bpcpayment.resilience.RetryBudget;
+import org.abutimartin.bpcpayment.resilience.RetryCondition;
+import org.abutimartin.bpcpayment.resilience.RetryPolicy;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class RetryPolicyTest {
+    
+    private static final String REGISTERED = "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}";
+    
+    private StubGatewayServer server;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        server.stub("/rest/register.do", 200, REGISTERED);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    private BomaPayClient client(RetryPolicy policy) {
+        return new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .retryPolicy(policy)
+                .build());
+    }
+    
+    @Test
+    @DisplayName("Non-idempotent calls should not be retried on server errors by default")
+    void testNoRetryForMoneyMovingCalls() {
+        server.enqueue("/rest/register.do", 503, "unavailable");
+        BomaPayClient client = client(RetryPolicy.builder().baseDelayMillis(1).maxDelayMillis(5).build());
+        
+        assertThrows(BomaPayException.class, () -> client.orders().register(100L, "ORDER-1", "https://return"));
+        assertEquals(1, server.hits("/rest/register.do"));
+    }
+    
+    @Test
+    @DisplayName("Endpoints configured as retryable should recover from transient errors")
+    void testRetryRecoversFromServerErrors() throws Exception {
+        server.enqueue("/rest/register.do", 503, "unavailable");
+        server.enqueue("/rest/register.do", 502, "bad gateway");
+        BomaPayClient client = client(RetryPolicy.builder()
+                .baseDelayMillis(1)
+                .maxDelayMillis(5)
+                .endpoint("/rest/register.do", RetryCondition.SERVER_ERROR)
+                .build());
+        
+        OrderRegistrationResponse response = client.orders().register(100L, "ORDER-1", "https://return");
+        
+        assertEquals("ORD-1", response.getOrderId());
+        assertEquals(3, server.hits("/rest/register.do"));
+    }
+    
+    @Test
+    @DisplayName("An async call backing off before a retry should not hold a dispatcher slot")
+    void testAsyncBackoffFreesDispatcher() throws Exception {
+        server.enqueue("/rest/register.do", 429, "slow down", Map.of("Retry-After", "1"));
+        BomaPayClient client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .maxRequests(1)
+                .retryPolicy(RetryPolicy.builder().baseDelayMillis(1).maxDelayMillis(2000).build())
+                .build());
+        
+        CompletableFuture<OrderRegistrationResponse> throttled = client.orders().registerAsync(100L, "ORDER-1", "https://return");
+        long deadline = System.currentTimeMillis() + 3000;
+        while (server.hits("/rest/register.do") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        // the only dispatcher slot is free while the first call waits out Retry-After
+        OrderRegistrationResponse other = client.orders().registerAsync(100L, "ORDER-2", "https://return")
+                .get(500, TimeUnit.MILLISECONDS);
+        
+        assertEquals("ORD-1", other.getOrderId());
+        assertFalse(throttled.isDone(), "still backing off");
+        assertEquals("ORD-1", throttled.get(3, TimeUnit.SECONDS).getOrderId());
+        assertEquals(3, server.hits("/rest/register.do"));
+    }
+    
+    @Test
+    @DisplayName("Throttled calls should be retried even for money-moving endpoints")
+    void testThrottledIsRetried() throws Exception {
+        server.enqueue("/rest/register.do", 429, "slow down");
+        BomaPayClient client = client(RetryPolicy.builder().baseDelayMillis(1).maxDelayMillis(5).build());
+        
+        assertEquals("ORD-1", client.orders().register(100L, "ORDER-1", "https://return").getOrderId());
+        assertEquals(2, server.hits("/rest/register.do"));
+    }
+    
+    @Test
+    @DisplayName("Retry budget should cap retries to a share of traffic")
+    void testRetryBudget() {
+        RetryBudget budget = new RetryBudget(10, 2);
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        
+        for (int i = 0; i < 10; i++) {
+            budget.recordRequest();
+        }
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+    }
+    
+    @Test
+    @DisplayName("Backoff should stay within the exponential ceiling")
+    void testBackoffBounds() {
+        RetryPolicy policy = RetryPolicy.builder().baseDelayMillis(100).maxDelayMillis(1000).build();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(policy.backoffMillis(1) <= 100);
+            assertTrue(policy.backoffMillis(3) <= 400);
+            assertTrue(policy.backoffMillis(20) <= 1000);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+package org.abutimartin.bpcpayment;
+
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.http.WarmUpResult;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("integration")
+public class WarmUpTest {
+    
+    private StubGatewayServer server;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubGatewayServer();
+        // slow enough that the warm-up requests overlap and each needs its own connection
+        server.defaultStub(200, "{\"errorCode\":\"0\"}", 200);
+        server.stub(GatewayEndpoints.REGISTER, 200, "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\"}");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+    
+    private BomaPayConfig.Builder configBuilder() {
+        return BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1);
+    }
+    
+    @Test
+    @DisplayName("Warm-up should leave the requested connections pooled for the first real calls")
+    void testWarmUpOpensPooledConnections() throws Exception {
+        BomaPayClient client = new BomaPayClient(configBuilder().warmUpConnections(3).build());
+        
+        WarmUpResult result = client.warmUp();
+        
+        assertTrue(result.isSuccessful(), result.toString());
+        assertEquals(3, result.getPooledConnections());
+        assertEquals(3, client.poolStats().getIdleConnectionCount());
+        
+        client.orders().register(100L, "ORDER-1", "https://return");
+        assertEquals(3, client.poolStats().getConnectionCount());
+        assertEquals(1, server.hits(GatewayEndpoints.REGISTER));
+    }
+    
+    @Test
+    @DisplayName("Warm-up should be capped by the pool size")
+    void testWarmUpCappedByPool() throws Exception {
+        BomaPayClient client = new BomaPayClient(configBuilder().maxIdleConnections(2).warmUpConnections(10).build());
+        
+        WarmUpResult result = client.warmUp();
+        
+        assertEquals(2, result.getRequestedConnections());
+        assertEquals(2, result.getPooledConnections());
+    }
+    
+    @Test
+    @DisplayName("The construct flag should warm up before the client is returned")
+    void testWarmUpOnConstruct() throws Exception {
+        BomaPayClient client = new BomaPayClient(configBuilder().warmUpConnections(2).warmUpOnConstruct(true).build());
+        
+        assertEquals(2, client.poolStats().getConnectionCount());
+    }
+    
+    @Test
+    @DisplayName("An unreachable gateway should be reported, not thrown")
+    void testWarmUpFailureReported() throws Exception {
+        String baseUrl = server.baseUrl();
+        server.close();
+        BomaPayClient client = new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(baseUrl)
+                .username("user")
+                .password("secret")
+                .timeout(2000)
+                .build());
+        
+        WarmUpResult result = client.warmUp();
+        
+        assertFalse(result.isSuccessful());
+        assertEquals(result.getRequestedConnections(), result.getFailures());
+        assertEquals(0, result.getPooledConnections());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package org.abutimartin.bpcpayment.benchmark;
+
+import okhttp3.FormBody;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.http.FormEncoder;
+import org.abutimartin.bpcpayment.model.request.OrderRegistrationRequest;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures bytes allocated per register call body, from the service arguments (order number
+ * string included) to bytes on the wire, for the old map + {@link FormBody} path and the
+ * compiled {@link FormEncoder}. Run with
+ * {@code java -cp target/classes:target/test-classes:<deps> org.abutimartin.bpcpayment.benchmark.FormEncodingBenchmark}.
+ */
+public class FormEncodingBenchmark {
+    
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+    
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    
+    public static void main(String[] args) throws Exception {
+        BomaPayConfig config = BomaPayConfig.builder()
+                .username("merchant-api")
+                .password("s3cret!pass")
+                .merchantLogin("merchant")
+                .build();
+        FormEncoder<OrderRegistrationRequest> encoder = FormEncoder.compile(OrderRegistrationRequest.class, config);
+        Buffer sink = new Buffer();
+        
+        Body mapPath = i -> formBody(config, 10000L + i, "ORDER-" + (i & 1023), "https://shop.example/return");
+        Body encoderPath = i -> encoder.encode(registration(config, 10000L + i, "ORDER-" + (i & 1023), "https://shop.example/return"));
+        
+        double before = measure(mapPath, sink);
+        double after = measure(encoderPath, sink);
+        System.out.printf("map + FormBody:  %6.0f bytes/call%n", before);
+        System.out.printf("FormEncoder:     %6.0f bytes/call%n", after);
+    }
+    
+    private static double measure(Body body, Buffer sink) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            write(body.build(i), sink);
+        }
+        long thread = Thread.currentThread().getId();
+        long start = THREADS.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            write(body.build(i), sink);
+        }
+        return (double) (THREADS.getThreadAllocatedBytes(thread) - start) / ITERATIONS;
+    }
+    
+    private static void write(RequestBody body, Buffer sink) throws Exception {
+        body.writeTo(sink);
+        sink.clear();
+    }
+    
+    /** The form path as it was before the encoder: a map copied from config, then FormBody. */
+    private static RequestBody formBody(BomaPayConfig config, Long amount, String orderNumber, String returnUrl) {
+        Map<String, String> formData = new HashMap<>();
+        formData.put("amount", amount.toString());
+        formData.put("currency", config.getCurrency());
+        formData.put("language", config.getLanguage());
+        formData.put("orderNumber", orderNumber);
+        formData.put("returnUrl", returnUrl);
+        formData.put("userName", config.getUsername());
+        formData.put("password", config.getPassword());
+        if (config.getMerchantLogin() != null) {
+            formData.put("merchantLogin", config.getMerchantLogin());
+        }
+        FormBody.Builder formBuilder = new FormBody.Builder();
+        for (Map.Entry<String, String> entry : formData.entrySet()) {
+            if (entry.getValue() != null) {
+                formBuilder.add(entry.getKey(), entry.getValue());
+            }
+        }
+        return formBuilder.build();
+    }
+    
+    private static OrderRegistrationRequest registration(BomaPayConfig config, Long amount, String orderNumber, String returnUrl) {
+        OrderRegistrationRequest request = new OrderRegistrationRequest();
+        request.setAmount(amount);
+        request.setCurrency(config.getCurrency());
+        request.setOrderNumber(orderNumber);
+        request.setReturnUrl(returnUrl);
+        request.setClientId(config.getClientId());
+        request.setMerchantLogin(config.getMerchantLogin());
+        return request;
+    }
+    
+    private interface Body {
+        RequestBody build(int i);
+    }
+}
\ No newline at end of file
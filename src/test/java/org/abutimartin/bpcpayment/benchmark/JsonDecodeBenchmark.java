@@ -0,0 +1,93 @@
+package org.abutimartin.bpcpayment.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.abutimartin.bpcpayment.model.response.PaymentResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a {@link PaymentResponse} the way {@code HttpClient} used to (a plain mapper and
+ * {@code readValue(String, Class)}) against the cached per-type reader, with and without Blackbird.
+ * The {@code unknownFields} cases feed a body carrying fields the model does not declare.
+ * <p>
+ * Run with {@code java -cp target/classes:target/test-classes:<deps> org.openjdk.jmh.Main JsonDecodeBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDecodeBenchmark {
+    
+    private static final String KNOWN = "{\"errorCode\":\"0\",\"errorMessage\":\"Success\",\"orderId\":\"70906e55-7114-41d6-8332-4609dc6590f4\","
+            + "\"orderNumber\":\"ORDER-1234567\",\"orderStatus\":2,\"amount\":125000,\"currency\":\"454\","
+            + "\"redirectUrl\":\"https://shop.example/return?orderId=70906e55\",\"acsUrl\":null,\"paReq\":null,\"termUrl\":null}";
+    private static final String UNKNOWN = KNOWN.substring(0, KNOWN.length() - 1)
+            + ",\"info\":\"Your order is proceeded\",\"ip\":\"10.0.0.1\",\"attributes\":[{\"name\":\"a\",\"value\":\"b\"}]}";
+    
+    private String knownString;
+    private byte[] knownBytes;
+    private byte[] unknownBytes;
+    private ObjectMapper plainMapper;
+    private ObjectReader cachedReader;
+    private ObjectReader blackbirdReader;
+    
+    @Setup
+    public void setUp() {
+        knownString = KNOWN;
+        knownBytes = KNOWN.getBytes(StandardCharsets.UTF_8);
+        unknownBytes = UNKNOWN.getBytes(StandardCharsets.UTF_8);
+        plainMapper = new ObjectMapper();
+        cachedReader = JsonMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build()
+                .readerFor(PaymentResponse.class);
+        blackbirdReader = JsonMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .addModule(new BlackbirdModule())
+                .build()
+                .readerFor(PaymentResponse.class);
+    }
+    
+    @Benchmark
+    public PaymentResponse plainMapperReadString() throws IOException {
+        return plainMapper.readValue(knownString, PaymentResponse.class);
+    }
+    
+    @Benchmark
+    public PaymentResponse cachedReader() throws IOException {
+        return cachedReader.readValue(knownBytes);
+    }
+    
+    @Benchmark
+    public PaymentResponse cachedReaderBlackbird() throws IOException {
+        return blackbirdReader.readValue(knownBytes);
+    }
+    
+    @Benchmark
+    public PaymentResponse cachedReaderUnknownFields() throws IOException {
+        return cachedReader.readValue(unknownBytes);
+    }
+    
+    @Benchmark
+    public PaymentResponse cachedReaderBlackbirdUnknownFields() throws IOException {
+        return blackbirdReader.readValue(unknownBytes);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package org.abutimartin.bpcpayment.benchmark;
+
+import org.abutimartin.bpcpayment.http.GatewayEndpoints;
+import org.abutimartin.bpcpayment.metrics.GatewayInstrumentation;
+import org.abutimartin.bpcpayment.metrics.GatewayMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the instrumentation hooks {@code HttpClient} calls once per gateway call, for the no-op
+ * default and for {@link GatewayMetrics}, with four threads hitting the same endpoint.
+ * <p>
+ * Run with {@code java -cp target/classes:target/test-classes:<deps> org.openjdk.jmh.Main MetricsRecordBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MetricsRecordBenchmark {
+    
+    private final GatewayInstrumentation noop = GatewayInstrumentation.NOOP;
+    private final GatewayInstrumentation metrics = new GatewayMetrics();
+    
+    @Benchmark
+    public void noop() {
+        record(noop);
+    }
+    
+    @Benchmark
+    public void gatewayMetrics() {
+        record(metrics);
+    }
+    
+    private static void record(GatewayInstrumentation instrumentation) {
+        long latencyNanos = ThreadLocalRandom.current().nextLong(1_000_000, 200_000_000);
+        instrumentation.callStarted(GatewayEndpoints.DEPOSIT);
+        instrumentation.responseReceived(GatewayEndpoints.DEPOSIT, 200, "0");
+        instrumentation.callFinished(GatewayEndpoints.DEPOSIT, latencyNanos, null);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,160 @@
+package org.abutimartin.bpcpayment.benchmark;
+
+import org.abutimartin.bpcpayment.BomaPayClient;
+import org.abutimartin.bpcpayment.config.BomaPayConfig;
+import org.abutimartin.bpcpayment.config.HttpProtocol;
+import org.abutimartin.bpcpayment.resilience.CircuitBreakerConfig;
+import org.abutimartin.bpcpayment.resilience.RetryPolicy;
+import org.abutimartin.bpcpayment.support.StubGatewayServer;
+import org.abutimartin.bpcpayment.util.VirtualThreads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the blocking API driven from one platform thread per call against one virtual thread
+ * per call, and the async API on the platform dispatcher pool against {@code virtualThreadDispatcher(true)},
+ * reporting peak platform thread count and throughput at a fixed number of concurrent calls. The
+ * flag only changes the dispatcher behind async calls, so the blocking runs use a client without it.
+ * <p>
+ * The virtual thread bridge lives in the Java 21 overlay of the multi-release JAR, so run this on
+ * JDK 21 against the packaged JAR rather than {@code target/classes}. On an older runtime only the
+ * two platform-thread modes run, and the stub's own threads count towards the peak:
+ * <pre>
+ * mvn -B package -DskipTests
+ * mvn -B dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/bomapay-sdk-1.0.0.jar:target/test-classes:$(cat target/cp.txt) \
+ *     org.abutimartin.bpcpayment.benchmark.VirtualThreadBenchmark [calls] [delayMillis]
+ * </pre>
+ */
+public class VirtualThreadBenchmark {
+    
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long delayMillis = args.length > 1 ? Long.parseLong(args[1]) : 200;
+        boolean virtual = VirtualThreads.isSupported();
+        if (!virtual) {
+            System.out.println("Virtual threads unavailable; running the platform-thread modes only. "
+                    + "Run on JDK 21 against the packaged multi-release JAR for all four.");
+        }
+        
+        // on JDK 21 the stub serves on virtual threads so its own threads do not show up in the platform count
+        ExecutorService stubExecutor = virtual ? VirtualThreads.newThreadPerTaskExecutor("stub-") : Executors.newCachedThreadPool();
+        try (StubGatewayServer server = new StubGatewayServer(stubExecutor)) {
+            server.stub("/rest/register.do", 200,
+                    "{\"errorCode\":\"0\",\"orderId\":\"ORD-1\",\"formUrl\":\"https://form\"}", delayMillis);
+            BomaPayClient platform = newClient(server, calls, false);
+            BomaPayClient virtualDispatcher = virtual ? newClient(server, calls, true) : null;
+            
+            // warm up class loading, the connection pools and the JIT before measuring
+            run(platform, Executors.newCachedThreadPool(), Math.min(calls, 500));
+            runAsync(platform, Math.min(calls, 500));
+            if (virtual) {
+                runAsync(virtualDispatcher, Math.min(calls, 500));
+            }
+            
+            System.out.printf("%d concurrent calls, %d ms gateway latency, Java %s%n",
+                    calls, delayMillis, System.getProperty("java.version"));
+            report("blocking, platform callers", run(platform, Executors.newCachedThreadPool(), calls));
+            if (virtual) {
+                report("blocking, virtual callers", run(platform, VirtualThreads.newThreadPerTaskExecutor("caller-"), calls));
+            }
+            report("async, platform dispatcher", runAsync(platform, calls));
+            if (virtual) {
+                report("async, virtual dispatcher", runAsync(virtualDispatcher, calls));
+            }
+        }
+    }
+    
+    private static BomaPayClient newClient(StubGatewayServer server, int calls, boolean virtualDispatcher) {
+        return new BomaPayClient(BomaPayConfig.builder()
+                .baseUrl(server.baseUrl())
+                .username("user")
+                .password("secret")
+                .protocol(HttpProtocol.HTTP_1_1)
+                .maxIdleConnections(calls)
+                // let every async call be dispatched at once, as every blocking caller is
+                .maxRequests(calls)
+                .maxRequestsPerHost(calls)
+                // measure the transport alone; queueing at the stub would otherwise trip the breaker
+                .circuitBreaker(CircuitBreakerConfig.disabled())
+                .retryPolicy(RetryPolicy.disabled())
+                .virtualThreadDispatcher(virtualDispatcher)
+                .build());
+    }
+    
+    private static Result run(BomaPayClient client, ExecutorService callers, int calls) throws InterruptedException {
+        System.gc();
+        THREADS.resetPeakThreadCount();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(calls);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < calls; i++) {
+            String orderNumber = "BENCH-" + i;
+            callers.execute(() -> {
+                try {
+                    start.await();
+                    client.orders().register(10000L, orderNumber, "https://return");
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsedNanos = System.nanoTime() - began;
+        int peakThreads = THREADS.getPeakThreadCount();
+        callers.shutdown();
+        callers.awaitTermination(30, TimeUnit.SECONDS);
+        return new Result(calls, failures.get(), elapsedNanos, peakThreads);
+    }
+    
+    private static Result runAsync(BomaPayClient client, int calls) throws InterruptedException {
+        System.gc();
+        THREADS.resetPeakThreadCount();
+        CountDownLatch done = new CountDownLatch(calls);
+        AtomicInteger failures = new AtomicInteger();
+        long began = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            client.orders().registerAsync(10000L, "BENCH-" + i, "https://return").whenComplete((response, error) -> {
+                if (error != null) {
+                    failures.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsedNanos = System.nanoTime() - began;
+        return new Result(calls, failures.get(), elapsedNanos, THREADS.getPeakThreadCount());
+    }
+    
+    private static void report(String mode, Result result) {
+        double seconds = result.elapsedNanos / 1e9;
+        System.out.printf("%-27s peak platform threads %6d  elapsed %7.2f s  throughput %8.0f calls/s  failures %d%n",
+                mode, result.peakThreads, seconds, result.calls / seconds, result.failures);
+    }
+    
+    private static final class Result {
+        final int calls;
+        final int failures;
+        final long elapsedNanos;
+        final int peakThreads;
+        
+        Result(int calls, int failures, long elapsedNanos, int peakThreads) {
+            this.calls = calls;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+            this.peakThreads = peakThreads;
+        }
+    }
+}
\ No newline at end of file
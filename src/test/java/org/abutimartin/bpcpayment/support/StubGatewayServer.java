@@ -0,0 +1,180 @@
+package org.abutimartin.bpcpayment.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process stand-in for the BPC gateway, built on the JDK HTTP server.
+ * Each endpoint path can be given a canned status, body and artificial delay.
+ */
+public class StubGatewayServer implements AutoCloseable {
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Stub> stubs = new ConcurrentHashMap<>();
+    private final Map<String, Queue<Stub>> oneShots = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> lastForms = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private volatile Stub defaultStub = new Stub(200, "{\"errorCode\":\"0\"}", 0);
+    
+    public StubGatewayServer() throws IOException {
+        this(Executors.newCachedThreadPool());
+    }
+    
+    /**
+     * Serves requests on the given executor, which is shut down on {@link #close()}.
+     */
+    public StubGatewayServer(ExecutorService executor) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = executor;
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+    
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/payment";
+    }
+    
+    public StubGatewayServer stub(String endpoint, int status, String body) {
+        return stub(endpoint, status, body, 0);
+    }
+    
+    public StubGatewayServer stub(String endpoint, int status, String body, long delayMillis) {
+        stubs.put("/payment" + endpoint, new Stub(status, body, delayMillis));
+        return this;
+    }
+    
+    /**
+     * Queues a response that is served once, ahead of the endpoint's regular stub.
+     */
+    public StubGatewayServer enqueue(String endpoint, int status, String body) {
+        return enqueue(endpoint, status, body, Map.of());
+    }
+    
+    /**
+     * Queues a one-shot response that also carries the given headers.
+     */
+    public StubGatewayServer enqueue(String endpoint, int status, String body, Map<String, String> headers) {
+        oneShots.computeIfAbsent("/payment" + endpoint, p -> new ConcurrentLinkedQueue<>())
+                .add(new Stub(status, body, 0, headers));
+        return this;
+    }
+    
+    public StubGatewayServer defaultStub(int status, String body, long delayMillis) {
+        this.defaultStub = new Stub(status, body, delayMillis);
+        return this;
+    }
+    
+    public int hits(String endpoint) {
+        AtomicInteger counter = hits.get("/payment" + endpoint);
+        return counter != null ? counter.get() : 0;
+    }
+    
+    public Map<String, String> lastForm(String endpoint) {
+        return lastForms.get("/payment" + endpoint);
+    }
+    
+    /**
+     * Most requests the server was handling at the same time.
+     */
+    public int maxConcurrentRequests() {
+        return maxActive.get();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            respond(exchange);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+    
+    private void respond(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        hits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        String requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        lastForms.put(path, parseForm(requestBody));
+        
+        Queue<Stub> queued = oneShots.get(path);
+        Stub stub = queued != null ? queued.poll() : null;
+        if (stub == null) {
+            stub = stubs.getOrDefault(path, defaultStub);
+        }
+        if (stub.delayMillis > 0) {
+            try {
+                Thread.sleep(stub.delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        byte[] body = stub.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        stub.headers.forEach(exchange.getResponseHeaders()::add);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(stub.status, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(stub.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> form = new HashMap<>();
+        if (body.isEmpty()) {
+            return form;
+        }
+        for (String pair : body.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            form.put(key, value);
+        }
+        return form;
+    }
+    
+    private static final class Stub {
+        final int status;
+        final String body;
+        final long delayMillis;
+        final Map<String, String> headers;
+        
+        Stub(int status, String body, long delayMillis) {
+            this(status, body, delayMillis, Map.of());
+        }
+        
+        Stub(int status, String body, long delayMillis, Map<String, String> headers) {
+            this.status = status;
+            this.body = body;
+            this.delayMillis = delayMillis;
+            this.headers = headers;
+        }
+    }
+}
\ No newline at end of file